@@ -0,0 +1,65 @@
+package com.trading;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Entry point of {@code benchmarks.jar}: runs the selected benchmarks (same command line
+ * as JMH's own main) with the GC profiler always on, then fails the run if a hot-path
+ * benchmark allocates more than its budget, so allocation regressions are caught
+ * before they are deployed.
+ */
+public final class BenchmarkRunner {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    // bytes per operation; the worker hot path and the queues must stay allocation-free
+    private static final Map<String, Double> ALLOCATION_BUDGETS = new LinkedHashMap<>();
+
+    static {
+        ALLOCATION_BUDGETS.put("com.trading.aggregator.SymbolAggregatorBenchmark.processValue", 1.0);
+        ALLOCATION_BUDGETS.put("com.trading.aggregator.SymbolAggregatorBenchmark.processBatch", 1.0);
+        ALLOCATION_BUDGETS.put("com.trading.aggregator.BatchQueueBenchmark.contended", 1.0);
+        ALLOCATION_BUDGETS.put("com.trading.buffer.RingBufferBenchmark.sequentialSetLaggingGet", 1.0);
+    }
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        boolean failed = false;
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            Double budget = ALLOCATION_BUDGETS.get(benchmark);
+            Result<?> allocated = result.getSecondaryResults().get(ALLOCATION_METRIC);
+            if (budget == null || allocated == null) {
+                continue;
+            }
+            if (allocated.getScore() > budget) {
+                System.err.printf("Allocation regression: %s %s allocates %.1f B/op (budget %.1f)%n",
+                        benchmark, result.getParams(), allocated.getScore(), budget);
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+}
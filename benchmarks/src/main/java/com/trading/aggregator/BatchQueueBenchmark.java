@@ -0,0 +1,61 @@
+package com.trading.aggregator;
+
+import com.trading.model.Batch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BatchQueue} with three request threads offering into one symbol's queue
+ * while its worker polls, as during a burst on a single hot symbol.
+ *
+ * <p>A failed offer or an empty poll still counts as an operation: the scores are
+ * the cost of one attempt on each side under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class BatchQueueBenchmark {
+
+    private BatchQueue queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = new BatchQueue(SymbolAggregator.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+        final Batch batch = new Batch(1);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean offer(ProducerState producer) {
+        return queue.offer(producer.batch);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void poll(Blackhole blackhole) {
+        blackhole.consume(queue.poll());
+    }
+}
@@ -0,0 +1,100 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.dispatcher.GlobalDispatcher;
+import com.trading.dispatcher.WorkerIdleMode;
+import com.trading.model.Stats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.DoubleBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingest-to-snapshot latency through the real runtime: a batch is pushed with
+ * {@link AggregatorManager#push} and the benchmark spins until the symbol's published
+ * {@link Stats} cover it. Symbols are used round-robin, so with more symbols each one's
+ * state is colder when its batch arrives.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EndToEndBenchmark {
+
+    static final int BATCH = 1_000;
+    static final int CAPACITY = 100_000;
+    static final int MAX_SPINS = 1_000;
+
+    @Param({"1", "10", "100"})
+    public int symbols;
+
+    @Param({"backoff", "busy-spin"})
+    public String idleStrategy;
+
+    private AggregatorManager manager;
+    private String[] names;
+    private DoubleBuffer batch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int workers = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        manager = new AggregatorManager(symbol -> new InHeapRingBuffer(CAPACITY),
+                new BatchPool(BatchPool.DEFAULT_MAX_SLABS, BatchPool.DEFAULT_SLAB_SIZE),
+                new GlobalDispatcher(CAPACITY, workers, WorkerIdleMode.fromConfig(idleStrategy)),
+                AggregatorOptions.DEFAULT);
+
+        double[] values = new double[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            values[i] = 100.0 + i * 0.01;
+        }
+        batch = DoubleBuffer.wrap(values);
+
+        names = new String[symbols];
+        for (int i = 0; i < symbols; i++) {
+            names[i] = "SYM" + i;
+            manager.getOrCreate(names[i]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        manager.shutdownAll();
+    }
+
+    @Benchmark
+    public Stats pushAndAwaitSnapshot() {
+        String symbol = names[next];
+        next = next + 1 == symbols ? 0 : next + 1;
+
+        SymbolAggregator aggregator = manager.getOrCreate(symbol);
+        batch.rewind();
+        long sequence = manager.push(aggregator, batch);
+
+        // snapshots are read into a new Stats every time, so wait on the batch's sequence
+        int spins = 0;
+        while (aggregator.processedSequence() < sequence) {
+            // yield after a short spin so the worker is not starved on small machines
+            if (++spins < MAX_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return aggregator.getStats(3);
+    }
+}
@@ -0,0 +1,99 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.CompressedRingBuffer;
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.buffer.RingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker-side cost of one symbol, per window configuration: the ring capacity caps
+ * every window at {@code min(10^k, capacity)}, so it decides how many block levels
+ * are live and how much history each snapshot spans.
+ *
+ * <ul>
+ *   <li>{@code processValue}: storing and folding one value, without publishing.</li>
+ *   <li>{@code processBatch}: a queued batch of {@code batchSize} values followed by the
+ *       snapshot publication of all eight windows, reported per value.</li>
+ * </ul>
+ *
+ * <p>{@code quantiles} toggles the {@link QuantileSketches}, so the difference between
+ * its two settings is the per-value cost of the p50/p95/p99 next to the min/max/sum
+ * summaries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SymbolAggregatorBenchmark {
+
+    static final int BATCH = 1_000;
+
+    @Param({"1000", "100000", "10000000"})
+    public int capacity;
+
+    @Param({"heap", "compressed"})
+    public String ring;
+
+    // "none" aggregates doubles, anything else is a TickSize for fixed point
+    @Param({"none", "0.01"})
+    public String tickSize;
+
+    @Param({"true", "false"})
+    public boolean quantiles;
+
+    private SymbolAggregator aggregator;
+    private double[] batch;
+    private long index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RingBuffer buffer = ring.equals("compressed") ? new CompressedRingBuffer(capacity) : new InHeapRingBuffer(capacity);
+        aggregator = new SymbolAggregator("BENCH", buffer,
+                new BatchPool(BatchPool.DEFAULT_MAX_SLABS, BatchPool.DEFAULT_SLAB_SIZE),
+                SymbolOptions.builder()
+                        .tickSize(tickSize.equals("none") ? null : TickSize.parse(tickSize))
+                        .quantiles(quantiles)
+                        .build());
+        batch = new double[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            batch[i] = price(i);
+        }
+        // wrap the ring once so every window is full
+        for (index = 0; index < capacity; index++) {
+            aggregator.processValue(price(index));
+        }
+    }
+
+    @Benchmark
+    public void processValue() {
+        aggregator.processValue(price(index++));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void processBatch() {
+        aggregator.enqueueBatch(batch);
+        aggregator.runOneIteration();
+    }
+
+    // exact decimals, as parsed from JSON
+    private static double price(long index) {
+        return (10_000 + index % 1_000) / 100.0;
+    }
+}
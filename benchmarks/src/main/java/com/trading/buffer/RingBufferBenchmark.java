@@ -0,0 +1,133 @@
+package com.trading.buffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ring buffer implementations under the access pattern of {@code SymbolAggregator}:
+ * a batch of sequential writes at the head, followed by short contiguous reads at
+ * the trailing edge of every window (10^2 .. 10^7, capped at the capacity).
+ *
+ * <p>Reported time is per ingested value. The memory each buffer holds per retained
+ * value is printed at the end of a trial, for comparing {@code compressed} with the raw
+ * buffers; run with {@code -p capacity=100000000} (and a large enough heap for
+ * {@code heap}) for the footprint of 10^8 windows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "--add-opens=java.base/java.nio=ALL-UNNAMED",
+        "--add-opens=java.base/sun.nio.ch=ALL-UNNAMED",
+        "--add-opens=java.base/java.lang=ALL-UNNAMED",
+        "--add-opens=java.base/java.lang.reflect=ALL-UNNAMED",
+        "--add-opens=java.base/java.io=ALL-UNNAMED",
+        "--add-opens=java.base/java.util=ALL-UNNAMED",
+        "--add-exports=java.base/jdk.internal.ref=ALL-UNNAMED",
+        "--add-exports=java.base/jdk.internal.misc=ALL-UNNAMED"
+})
+@State(Scope.Thread)
+public class RingBufferBenchmark {
+
+    static final int BATCH = 1_000;
+    static final int EDGE_READS = 99;
+
+    @Param({"chronicle", "mapped", "heap", "compressed"})
+    public String type;
+
+    @Param({"10000000"})
+    public int capacity;
+
+    private RingBuffer buffer;
+    private Path directory;
+    private long[] windows;
+    private long head;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch (type) {
+            case "chronicle":
+                buffer = new ChronicleRingBuffer(capacity);
+                break;
+            case "mapped":
+                directory = Files.createTempDirectory("ring-benchmark");
+                buffer = new MappedRingBuffer(directory.resolve("bench.ring"), capacity);
+                break;
+            case "heap":
+                buffer = new InHeapRingBuffer(capacity);
+                break;
+            case "compressed":
+                buffer = new CompressedRingBuffer(capacity);
+                break;
+            default:
+                throw new IllegalArgumentException(type);
+        }
+
+        windows = new long[6];
+        long window = 100;
+        for (int i = 0; i < windows.length; i++, window *= 10) {
+            windows[i] = Math.min(window, capacity);
+        }
+
+        // fill the whole ring so trailing-edge reads hit real history
+        for (head = 0; head < capacity; head++) {
+            buffer.set(head, price(head));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        long bytes = buffer instanceof CompressedRingBuffer
+                ? ((CompressedRingBuffer) buffer).footprintBytes()
+                : (long) capacity * Double.BYTES;
+        System.out.printf("%n%s ring footprint: %.2f bytes per value%n", type, (double) bytes / capacity);
+        buffer.release();
+        if (directory != null) {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public double sequentialSetLaggingGet() {
+        for (int i = 0; i < BATCH; i++, head++) {
+            buffer.set(head, price(head));
+        }
+
+        double checksum = 0;
+        long end = head - 1;
+        for (long window : windows) {
+            long start = end - window + 1;
+            for (long i = start; i < start + EDGE_READS; i++) {
+                checksum += buffer.get(i);
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * A price in cents that drifts and jitters like a tick series, as exact decimals the
+     * way they arrive parsed from JSON.
+     */
+    private static double price(long index) {
+        return (10_000 + index % 1_000 + (index * 7_919) % 13) / 100.0;
+    }
+}
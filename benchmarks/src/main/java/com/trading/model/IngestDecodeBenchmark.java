@@ -0,0 +1,87 @@
+package com.trading.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of turning an /add_batch/ request body into the primitive array handed to
+ * the aggregator: JSON-B into {@link BatchRequest} plus unboxing, versus the
+ * little-endian {@link BinaryBatchRequest} framing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestDecodeBenchmark {
+
+    @Param({"1000", "10000"})
+    public int batchSize;
+
+    private Jsonb jsonb;
+    private byte[] jsonBody;
+    private byte[] binaryBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jsonb = JsonbBuilder.create();
+
+        double[] values = new double[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            values[i] = Math.round(ThreadLocalRandom.current().nextDouble(100, 200) * 100) / 100.0;
+        }
+
+        BatchRequest request = new BatchRequest();
+        request.setSymbol("AAPL");
+        request.setValues(Arrays.stream(values).boxed().collect(Collectors.toList()));
+        jsonBody = jsonb.toJson(request).getBytes(StandardCharsets.UTF_8);
+        binaryBody = BinaryBatchRequest.encode("AAPL", values);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        jsonb.close();
+    }
+
+    @Benchmark
+    public double[] json() {
+        BatchRequest request = jsonb.fromJson(new ByteArrayInputStream(jsonBody), BatchRequest.class);
+        List<Double> boxed = request.getValues();
+        double[] values = new double[boxed.size()];
+        int i = 0;
+        for (double value : boxed) {
+            values[i++] = value;
+        }
+        return values;
+    }
+
+    @Benchmark
+    public double[] binary() {
+        BinaryBatchRequest request = BinaryBatchRequest.decode(binaryBody);
+        double[] values = new double[request.size()];
+        request.getValues().get(values);
+        return values;
+    }
+}
@@ -1,47 +1,551 @@
 package com.trading.aggregator;
 
 import com.trading.buffer.RingBuffer;
+import com.trading.dispatcher.Dispatcher;
 import com.trading.dispatcher.GlobalDispatcher;
+import com.trading.journal.Journal;
+import com.trading.model.BinaryBatchRequest;
+import com.trading.model.Stats;
+import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class AggregatorManager {
-    private final ConcurrentHashMap<String, SymbolAggregator> aggregators = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<String, RingBuffer> buffers = new ConcurrentHashMap<>();
-    private final Supplier<RingBuffer> ringSupplier;
+    private static final long CAPTURE_TIMEOUT_SECONDS = 10;
+    private static final Logger LOG = Logger.getLogger(AggregatorManager.class);
 
-    private final GlobalDispatcher globalDispatcher;
+    private final SymbolRegistry registry = new SymbolRegistry();
+    private final Function<String, RingBuffer> ringFactory;
+    private final BatchPool batchPool;
+    private final AggregatorOptions options;
+    private final Journal journal;
+    private final TimeWindows timeWindows;
+
+    private final Dispatcher dispatcher;
+
+    // checkpoint thread only: next index of each symbol's last checkpoint
+    private final Map<String, Long> checkpointedIndex = new HashMap<>();
+    private ScheduledExecutorService checkpointer;
+
+    // null until eviction is enabled
+    private volatile SymbolLifecycle lifecycle;
+    private final List<Consumer<SymbolAggregator>> evictionListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService sweeper;
+    // checkpoints and eviction sweeps never run at the same time, so a checkpoint never
+    // captures a symbol that is being spilled
+    private final Object maintenanceLock = new Object();
 
     public AggregatorManager(Supplier<RingBuffer> ringSupplier, int capacity) {
-        this.ringSupplier = ringSupplier;
-        this.globalDispatcher = new GlobalDispatcher(capacity);
+        this(symbol -> ringSupplier.get(), capacity);
+    }
+
+    /**
+     * @param ringFactory creates the ring buffer of a symbol, e.g. one mapped file per symbol
+     */
+    public AggregatorManager(Function<String, RingBuffer> ringFactory, int capacity) {
+        this(ringFactory, new BatchPool(BatchPool.DEFAULT_MAX_SLABS, BatchPool.DEFAULT_SLAB_SIZE),
+                new GlobalDispatcher(capacity), AggregatorOptions.DEFAULT);
+    }
+
+    /**
+     * @param batchPool  slabs shared by all symbols; bounds the memory held by queued batches
+     * @param dispatcher worker runtime the aggregators are scheduled on; shut down with the manager
+     * @param options    how symbols queue, journal and aggregate; see {@link AggregatorOptions}
+     */
+    public AggregatorManager(Function<String, RingBuffer> ringFactory, BatchPool batchPool, Dispatcher dispatcher,
+                             AggregatorOptions options) {
+        this.ringFactory = ringFactory;
+        this.batchPool = batchPool;
+        this.dispatcher = dispatcher;
+        this.options = options;
+        this.journal = options.journal();
+        this.timeWindows = options.timeWindows();
     }
 
+    /**
+     * @return the aggregator of {@code symbol}, created if the symbol was never seen and
+     *         reloaded if it was evicted
+     */
     public SymbolAggregator getOrCreate(String symbol) {
-        SymbolAggregator aggregator = aggregators.computeIfAbsent(symbol, s -> {
-            RingBuffer buffer = ringSupplier.get();
-            buffers.put(s, buffer);
-            return new SymbolAggregator(s, buffer);
-        });
+        SymbolAggregator aggregator = registry.getOrRegister(symbol, this::newAggregator);
+        aggregator.touch(System.nanoTime());
+        return aggregator;
+    }
 
+    /**
+     * @return the aggregator registered under {@code id}, reloaded if it was evicted
+     * @throws IllegalArgumentException if no symbol has that id
+     */
+    public SymbolAggregator getOrCreate(int id) {
+        SymbolAggregator aggregator = registry.get(id);
+        if (aggregator == null) {
+            String symbol = registry.symbolOf(id);
+            if (symbol == null) {
+                throw new IllegalArgumentException("Unknown symbol id " + id);
+            }
+            // evicted: the reloaded aggregator is registered under the same id
+            return getOrCreate(symbol);
+        }
+        aggregator.touch(System.nanoTime());
         return aggregator;
     }
 
+    /**
+     * @return the id of {@code symbol}, registering it if it was never seen; binary
+     *         clients resolve it once and then address the symbol by id
+     */
+    public int idOf(String symbol) {
+        return getOrCreate(symbol).getId();
+    }
+
+    private SymbolAggregator newAggregator(String symbol) {
+        SymbolAggregator aggregator = new SymbolAggregator(symbol, ringFactory.apply(symbol), batchPool,
+                options.forSymbol(symbol));
+        SymbolLifecycle current = lifecycle;
+        if (current != null) {
+            current.reload(aggregator);
+        }
+        return aggregator;
+    }
+
+    /**
+     * @return the aggregator of {@code symbol}, reloaded if it was evicted, or null if no
+     *         batch was ever submitted for it
+     */
+    public SymbolAggregator find(String symbol) {
+        SymbolAggregator aggregator = registry.get(symbol);
+        if (aggregator == null) {
+            SymbolLifecycle current = lifecycle;
+            if (current == null) {
+                return null;
+            }
+            if (current.isSpilled(symbol)) {
+                return getOrCreate(symbol);
+            }
+            // not spilled (any more): a reload may be registering the symbol right now
+            aggregator = registry.getSynchronized(symbol);
+            if (aggregator == null) {
+                return null;
+            }
+        }
+        aggregator.touch(System.nanoTime());
+        return aggregator;
+    }
+
+    /**
+     * @return a live view of every aggregator created so far
+     */
+    public Collection<SymbolAggregator> aggregators() {
+        return registry.aggregators();
+    }
+
+    public Dispatcher dispatcher() {
+        return dispatcher;
+    }
+
+    public BatchPool batchPool() {
+        return batchPool;
+    }
+
     public SymbolAggregator getAndPushCalculations(String symbol, List<Double> values) {
         SymbolAggregator aggregator = getOrCreate(symbol);
-        aggregator.enqueueBatch(values);
-        globalDispatcher.submit(aggregator);
+        push(aggregator, values);
+        return aggregator;
+    }
+
+    public SymbolAggregator getAndPushCalculations(String symbol, DoubleBuffer values) {
+        SymbolAggregator aggregator = getOrCreate(symbol);
+        push(aggregator, values);
         return aggregator;
     }
 
+    /**
+     * @throws IllegalArgumentException if no symbol has that id
+     */
+    public SymbolAggregator getAndPushCalculations(int id, DoubleBuffer values) {
+        SymbolAggregator aggregator = getOrCreate(id);
+        push(aggregator, values);
+        return aggregator;
+    }
+
+    /**
+     * Enqueue a batch and schedule the aggregator.
+     *
+     * @return the value sequence the batch ends at, see {@link SymbolAggregator#processedSequence()}
+     * @throws IllegalArgumentException if a price is off the symbol's {@link TickSize} grid
+     */
+    public long push(SymbolAggregator aggregator, List<Double> values) {
+        while (true) {
+            try {
+                long sequence = aggregator.enqueueBatch(values);
+                dispatcher.submit(aggregator);
+                return sequence;
+            } catch (AggregatorRetiredException e) {
+                aggregator = reloaded(aggregator);
+            }
+        }
+    }
+
+    /**
+     * @see #push(SymbolAggregator, List)
+     */
+    public long push(SymbolAggregator aggregator, DoubleBuffer values) {
+        return push(aggregator, values, null, null);
+    }
+
+    /**
+     * @param volumes    the volume of each price, or null
+     * @param timestamps the epoch milliseconds of each price, or null
+     * @see SymbolAggregator#enqueueBatch(DoubleBuffer, DoubleBuffer, LongBuffer)
+     */
+    public long push(SymbolAggregator aggregator, DoubleBuffer values, DoubleBuffer volumes, LongBuffer timestamps) {
+        while (true) {
+            try {
+                long sequence = enqueue(aggregator, values, volumes, timestamps);
+                dispatcher.submit(aggregator);
+                return sequence;
+            } catch (AggregatorRetiredException e) {
+                aggregator = reloaded(aggregator);
+            }
+        }
+    }
+
+    /**
+     * Enqueue a batch, rewinding its buffers if the aggregator turns out to be retired so
+     * that the caller can retry with the reloaded one.
+     */
+    private static long enqueue(SymbolAggregator aggregator, DoubleBuffer values, DoubleBuffer volumes,
+                                LongBuffer timestamps) {
+        int position = values.position();
+        int volumesPosition = volumes == null ? 0 : volumes.position();
+        int timestampsPosition = timestamps == null ? 0 : timestamps.position();
+        try {
+            return aggregator.enqueueBatch(values, volumes, timestamps);
+        } catch (AggregatorRetiredException e) {
+            values.position(position);
+            if (volumes != null) {
+                volumes.position(volumesPosition);
+            }
+            if (timestamps != null) {
+                timestamps.position(timestampsPosition);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the aggregator that replaces one evicted while a producer held it
+     */
+    private SymbolAggregator reloaded(SymbolAggregator retired) {
+        // until the evicting thread has spilled and unregistered it, the lookup returns it again
+        Thread.yield();
+        return getOrCreate(retired.getSymbol());
+    }
+
+    /**
+     * Enqueue the batches of many symbols in one pass. A symbol is submitted to the
+     * dispatcher with its first batch, so its worker drains it while the pass goes on;
+     * its later batches only reschedule it if the worker has gone idle in the meantime.
+     *
+     * <p>Every batch is checked before any is enqueued, so a batch that addresses an
+     * unknown symbol id, has a price off its symbol's tick grid or columns of another
+     * length than its prices rejects the whole request. If a batch is rejected by its
+     * overflow policy, the batches before it stay enqueued and the exception reports
+     * how many, see {@link BatchRejectedException#getAcceptedBatches()}.
+     *
+     * @return the number of distinct symbols submitted
+     * @throws IllegalArgumentException if a batch is invalid; nothing was enqueued
+     */
+    public int getAndPushCalculations(List<BinaryBatchRequest> batches) {
+        for (BinaryBatchRequest batch : batches) {
+            check(batch);
+        }
+        BitSet touched = new BitSet();
+        int symbols = 0;
+        int accepted = 0;
+        for (BinaryBatchRequest batch : batches) {
+            SymbolAggregator aggregator = batch.hasSymbolId()
+                    ? getOrCreate(batch.getSymbolId())
+                    : getOrCreate(batch.getSymbol());
+            while (true) {
+                try {
+                    enqueue(aggregator, batch.getValues(), batch.getVolumes(), batch.getTimestamps());
+                    break;
+                } catch (AggregatorRetiredException e) {
+                    aggregator = reloaded(aggregator);
+                } catch (BatchRejectedException e) {
+                    throw new BatchRejectedException(e.getMessage() + " after " + accepted + " of "
+                            + batches.size() + " batches", e.getSymbol(), e.getQueueDepth(), accepted);
+                }
+            }
+            accepted++;
+            if (!touched.get(aggregator.getId())) {
+                touched.set(aggregator.getId());
+                symbols++;
+            }
+            // a no-op while the symbol is still scheduled from its first batch
+            dispatcher.submit(aggregator);
+        }
+        return symbols;
+    }
+
+    /**
+     * Check a batch of {@link #getAndPushCalculations(List)} without registering its symbol.
+     */
+    private void check(BinaryBatchRequest batch) {
+        String symbol = batch.getSymbol();
+        SymbolAggregator aggregator;
+        if (batch.hasSymbolId()) {
+            aggregator = registry.get(batch.getSymbolId());
+            // an evicted symbol keeps its id
+            symbol = aggregator == null ? registry.symbolOf(batch.getSymbolId()) : aggregator.getSymbol();
+            if (symbol == null) {
+                throw new IllegalArgumentException("Unknown symbol id " + batch.getSymbolId());
+            }
+        } else {
+            aggregator = registry.get(symbol);
+        }
+        TickSize tickSize = aggregator == null ? options.tickSize(symbol) : aggregator.getTickSize();
+        SymbolAggregator.checkBatch(symbol, tickSize, batch.getValues(), batch.getVolumes(), batch.getTimestamps());
+    }
+
+    /**
+     * @return the statistics of window {@code k}; empty for an unknown symbol, which is
+     *         not registered by asking
+     * @throws IllegalArgumentException if {@code k} is not in the symbol's {@link WindowSet}
+     */
+    public Stats getStats(String symbol, int k) {
+        SymbolAggregator aggregator = find(symbol);
+        return aggregator == null ? Stats.empty() : aggregator.getStats(k);
+    }
+
+    /**
+     * @throws IllegalArgumentException if no symbol has that id
+     */
+    public Stats getStats(int id, int k) {
+        return getOrCreate(id).getStats(k);
+    }
+
+    /**
+     * @return the statistics of the last {@code durationNanos}, see
+     *         {@link SymbolAggregator#getTimeStats}; empty for an unknown symbol
+     * @throws IllegalArgumentException if no time window is that long
+     */
+    public Stats getTimeStats(String symbol, long durationNanos) {
+        SymbolAggregator aggregator = find(symbol);
+        if (aggregator == null) {
+            if (timeWindows == null || durationNanos <= 0 || timeWindows.windowFor(durationNanos) < 0) {
+                throw new IllegalArgumentException("No time window of " + durationNanos + " ns");
+            }
+            return Stats.empty();
+        }
+        return aggregator.getTimeStats(durationNanos);
+    }
+
+    /**
+     * Restore every symbol that has a checkpoint in {@code store}. Call once at
+     * startup, before any batch is submitted.
+     *
+     * @return the number of symbols restored
+     */
+    public int restoreCheckpoints(CheckpointStore store) {
+        int restored = 0;
+        for (String symbol : store.symbols()) {
+            SymbolAggregator aggregator = getOrCreate(symbol);
+            try {
+                if (store.restore(aggregator)) {
+                    checkpointedIndex.put(symbol, aggregator.valuesProcessed());
+                    restored++;
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.warnf(e, "Skipping checkpoint of %s", symbol);
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Apply the journaled batches that the restored state does not cover yet, i.e. those
+     * accepted but not processed before the last shutdown or crash. Call at startup,
+     * after {@link #restoreCheckpoints} and before any batch is submitted.
+     *
+     * @return the number of batches replayed
+     */
+    public long recoverFromJournal() {
+        if (journal == null) {
+            return 0;
+        }
+        long[] replayed = new long[1];
+        for (String symbol : journal.symbols()) {
+            SymbolAggregator aggregator = getOrCreate(symbol);
+            journal.forSymbol(symbol).replay(aggregator.lastProcessedSequence(), (sequence, values) -> {
+                aggregator.replayBatch(sequence, values);
+                replayed[0]++;
+            });
+        }
+        return replayed[0];
+    }
+
+    /**
+     * Checkpoint every symbol that received values since its last checkpoint every
+     * {@code intervalMillis}, on a dedicated background thread.
+     */
+    public void startCheckpoints(CheckpointStore store, long intervalMillis) {
+        checkpointer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> checkpointAll(store),
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Checkpoint all changed symbols now, one at a time. Workers are only paused
+     * for the capture of each symbol's in-progress accumulators.
+     */
+    public void checkpointAll(CheckpointStore store) {
+        synchronized (maintenanceLock) {
+            checkpointChanged(store);
+        }
+    }
+
+    private void checkpointChanged(CheckpointStore store) {
+        for (SymbolAggregator aggregator : registry.aggregators()) {
+            String symbol = aggregator.getSymbol();
+            if (checkpointedIndex.getOrDefault(symbol, -1L) == aggregator.valuesProcessed()) {
+                continue;
+            }
+            try {
+                CheckpointCapture capture = capture(aggregator);
+                store.write(aggregator, capture);
+                checkpointedIndex.put(symbol, capture.nextIndex);
+                if (journal != null) {
+                    // the checkpoint now covers every batch up to the capture
+                    journal.forSymbol(symbol).truncate(capture.lastSequence);
+                }
+            } catch (IOException | ExecutionException | TimeoutException e) {
+                LOG.errorf(e, "Checkpoint of %s failed", symbol);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private CheckpointCapture capture(SymbolAggregator aggregator)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        CompletableFuture<CheckpointCapture> request = aggregator.requestCapture();
+        // an idle symbol has no worker; scheduling it runs an empty drain plus the capture
+        dispatcher.submit(aggregator);
+        return request.get(CAPTURE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Let cold symbols be evicted to {@code store} and reloaded on their next use, see
+     * {@link SymbolLifecycle}. Nothing is evicted until {@link #evictColdSymbols()} runs.
+     *
+     * @param idleMillis        evict symbols not looked up for this long; 0 to only evict for the budget
+     * @param memoryBudgetBytes off-heap bytes the ring buffers of registered symbols may hold; 0 for no budget
+     */
+    public void enableEviction(SpillStore store, long idleMillis, long memoryBudgetBytes) {
+        lifecycle = new SymbolLifecycle(registry, store, TimeUnit.MILLISECONDS.toNanos(idleMillis),
+                memoryBudgetBytes, aggregator -> {
+                    for (Consumer<SymbolAggregator> listener : evictionListeners) {
+                        listener.accept(aggregator);
+                    }
+                });
+    }
+
+    /**
+     * {@link #enableEviction Enable eviction} and sweep for cold symbols every
+     * {@code sweepIntervalMillis}, on a dedicated background thread.
+     */
+    public void startEviction(SpillStore store, long idleMillis, long memoryBudgetBytes, long sweepIntervalMillis) {
+        enableEviction(store, idleMillis, memoryBudgetBytes);
+        sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "symbol-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::evictColdSymbols,
+                sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evict the symbols that are idle or over the memory budget now.
+     *
+     * @return the number of symbols evicted; 0 if eviction is not enabled
+     */
+    public int evictColdSymbols() {
+        SymbolLifecycle current = lifecycle;
+        if (current == null) {
+            return 0;
+        }
+        synchronized (maintenanceLock) {
+            return current.sweep(System.nanoTime());
+        }
+    }
+
+    /**
+     * Notify {@code listener}, on the evicting thread, with every aggregator evicted from
+     * now on, e.g. to drop what a cache derived from it.
+     */
+    public void addEvictionListener(Consumer<SymbolAggregator> listener) {
+        evictionListeners.add(listener);
+    }
+
+    /**
+     * @return symbols currently evicted to disk
+     */
+    public int spilledSymbols() {
+        SymbolLifecycle current = lifecycle;
+        return current == null ? 0 : current.spilledSymbols();
+    }
+
+    /**
+     * @return symbols evicted since eviction was enabled
+     */
+    public long evictions() {
+        SymbolLifecycle current = lifecycle;
+        return current == null ? 0 : current.evictions();
+    }
+
+    /**
+     * @return evicted symbols reloaded since eviction was enabled
+     */
+    public long reloads() {
+        SymbolLifecycle current = lifecycle;
+        return current == null ? 0 : current.reloads();
+    }
+
     public void shutdownAll() {
-        for (SymbolAggregator agg : aggregators.values()) {
-            agg.shutdown();
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+        }
+        if (sweeper != null) {
+            sweeper.shutdownNow();
         }
-        for (RingBuffer buffer : buffers.values()) {
-            buffer.release();
+        dispatcher.shutdown();
+        for (SymbolAggregator aggregator : registry.aggregators()) {
+            aggregator.releaseRingBuffer();
         }
     }
 }
@@ -0,0 +1,175 @@
+package com.trading.aggregator;
+
+import com.trading.journal.Journal;
+
+import java.util.function.Function;
+
+/**
+ * The {@link SymbolOptions} an {@link AggregatorManager} gives the symbols it creates.
+ * Overflow policies, tick sizes and window sets may differ per symbol and are resolved
+ * once, when the symbol is first seen; the other options apply to every symbol. Built
+ * with {@link #builder()}; every option left unset keeps the default of
+ * {@link SymbolOptions#DEFAULT}.
+ */
+public final class AggregatorOptions {
+
+    public static final AggregatorOptions DEFAULT = builder().build();
+
+    private final int queueCapacity;
+    private final Function<String, OverflowPolicy> overflowPolicies;
+    private final long blockTimeoutNanos;
+    private final Journal journal;
+    private final Function<String, TickSize> tickSizes;
+    private final TimeWindows timeWindows;
+    private final Function<String, WindowSet> windowSets;
+    private final boolean quantiles;
+    private final BarIntervals barIntervals;
+
+    private AggregatorOptions(Builder builder) {
+        this.queueCapacity = builder.queueCapacity;
+        this.overflowPolicies = builder.overflowPolicies;
+        this.blockTimeoutNanos = builder.blockTimeoutNanos;
+        this.journal = builder.journal;
+        this.tickSizes = builder.tickSizes;
+        this.timeWindows = builder.timeWindows;
+        this.windowSets = builder.windowSets;
+        this.quantiles = builder.quantiles;
+        this.barIntervals = builder.barIntervals;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return where every symbol journals its accepted batches, or null
+     */
+    public Journal journal() {
+        return journal;
+    }
+
+    /**
+     * @return the time-based windows every symbol keeps, or null
+     */
+    public TimeWindows timeWindows() {
+        return timeWindows;
+    }
+
+    /**
+     * @return the tick size {@code symbol} is created with, or null for floating point
+     */
+    public TickSize tickSize(String symbol) {
+        return tickSizes.apply(symbol);
+    }
+
+    /**
+     * @return the options of {@code symbol}, with its own journal
+     */
+    public SymbolOptions forSymbol(String symbol) {
+        return SymbolOptions.builder()
+                .queueCapacity(queueCapacity)
+                .overflowPolicy(overflowPolicies.apply(symbol))
+                .blockTimeoutNanos(blockTimeoutNanos)
+                .journal(journal == null ? null : journal.forSymbol(symbol))
+                .tickSize(tickSizes.apply(symbol))
+                .timeWindows(timeWindows)
+                .windowSet(windowSets.apply(symbol))
+                .quantiles(quantiles)
+                .barIntervals(barIntervals)
+                .build();
+    }
+
+    public static final class Builder {
+
+        private int queueCapacity = SymbolAggregator.DEFAULT_QUEUE_CAPACITY;
+        private Function<String, OverflowPolicy> overflowPolicies = symbol -> OverflowPolicy.REJECT;
+        private long blockTimeoutNanos;
+        private Journal journal;
+        private Function<String, TickSize> tickSizes = symbol -> null;
+        private TimeWindows timeWindows;
+        private Function<String, WindowSet> windowSets = symbol -> WindowSet.ALL;
+        private boolean quantiles = true;
+        private BarIntervals barIntervals;
+
+        private Builder() {
+        }
+
+        /**
+         * @param queueCapacity maximum number of pending batches of each symbol
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicies overflow policy of each symbol
+         */
+        public Builder overflowPolicies(Function<String, OverflowPolicy> overflowPolicies) {
+            this.overflowPolicies = overflowPolicies;
+            return this;
+        }
+
+        /**
+         * @param blockTimeoutNanos how long {@link OverflowPolicy#BLOCK} waits for room before rejecting
+         */
+        public Builder blockTimeoutNanos(long blockTimeoutNanos) {
+            this.blockTimeoutNanos = blockTimeoutNanos;
+            return this;
+        }
+
+        /**
+         * @param journal where every symbol journals its accepted batches; null to not journal
+         */
+        public Builder journal(Journal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param tickSizes tick size of each symbol aggregated in fixed point, null for those
+         *                  aggregated in floating point
+         */
+        public Builder tickSizes(Function<String, TickSize> tickSizes) {
+            this.tickSizes = tickSizes;
+            return this;
+        }
+
+        /**
+         * @param timeWindows time-based windows every symbol keeps; null for none
+         */
+        public Builder timeWindows(TimeWindows timeWindows) {
+            this.timeWindows = timeWindows;
+            return this;
+        }
+
+        /**
+         * @param windowSets the count-based windows of each symbol; the manager's ring factory
+         *                   should size its ring buffer for the largest, see {@link WindowSet#capacity()}
+         */
+        public Builder windowSets(Function<String, WindowSet> windowSets) {
+            this.windowSets = windowSets;
+            return this;
+        }
+
+        /**
+         * @param quantiles whether symbols publish the p50/p95/p99 of their windows
+         */
+        public Builder quantiles(boolean quantiles) {
+            this.quantiles = quantiles;
+            return this;
+        }
+
+        /**
+         * @param barIntervals intervals every symbol builds OHLC/VWAP bars at; null for none
+         */
+        public Builder barIntervals(BarIntervals barIntervals) {
+            this.barIntervals = barIntervals;
+            return this;
+        }
+
+        public AggregatorOptions build() {
+            return new AggregatorOptions(this);
+        }
+    }
+}
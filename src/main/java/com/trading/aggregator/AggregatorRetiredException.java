@@ -0,0 +1,22 @@
+package com.trading.aggregator;
+
+/**
+ * Thrown when a batch is offered to an aggregator that has been evicted by its
+ * {@link SymbolLifecycle}. Nothing of the batch has been applied: the producer must
+ * look the symbol up again, which reloads it, and retry. {@link AggregatorManager#push}
+ * does so transparently.
+ */
+public class AggregatorRetiredException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AggregatorRetiredException(String symbol) {
+        super("Aggregator of " + symbol + " was evicted");
+    }
+
+    // producers retry immediately, so the stack trace would only cost time
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
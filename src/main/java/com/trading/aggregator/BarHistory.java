@@ -0,0 +1,251 @@
+package com.trading.aggregator;
+
+import com.trading.model.Bar;
+import com.trading.model.Batch;
+import org.agrona.BitUtil;
+import org.agrona.BufferUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.trading.buffer.DoubleChannels.readFully;
+import static com.trading.buffer.DoubleChannels.writeFully;
+
+/**
+ * One symbol's {@link BarIntervals}: per interval, a ring of the last
+ * {@link BarIntervals#history()} OHLC/VWAP bars, built by the worker as it processes
+ * batches.
+ *
+ * <p>Each value is stamped with its batch column timestamp, or with its batch's arrival
+ * time when it has none. The bar in progress of every interval lives in worker-owned
+ * fields and is folded into with a few compares and adds per value; it is copied into
+ * its ring slot once per batch, and once more when a value of a later interval closes
+ * it. A value older than the bar in progress is counted in that bar, so bars never
+ * reopen.
+ *
+ * <p>Readers copy bars under a seqlock, as in {@link TimeBuckets}: the worker never waits
+ * for readers, and a reader retries if bars were written while it was copying.
+ *
+ * <p>Layout: the sequence on its own cache line, the number of bars written per interval,
+ * then {@link #FIELDS} 8-byte fields per bar from the next cache line, interval after
+ * interval.
+ */
+final class BarHistory {
+
+    private static final int FIELDS = 8;
+    private static final int START = 0;
+    private static final int COUNT = 1;
+    private static final int OPEN = 2;
+    private static final int HIGH = 3;
+    private static final int LOW = 4;
+    private static final int CLOSE = 5;
+    private static final int VOLUME = 6;
+    private static final int NOTIONAL = 7;
+
+    private static final int CACHE_LINE = 64;
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int WRITTEN_OFFSET = CACHE_LINE;
+    private static final int BAR_BYTES = FIELDS * Long.BYTES;
+
+    private final BarIntervals intervals;
+    private final int history;
+    private final int barsOffset;
+    private final UnsafeBuffer buffer;
+
+    // worker-owned: the bar in progress of each interval, and the number of bars begun
+    private final long[] begun;
+    private final long[] start;
+    private final long[] end;
+    private final long[] count;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final double[] notional;
+
+    BarHistory(BarIntervals intervals) {
+        int n = intervals.intervals();
+        this.intervals = intervals;
+        this.history = intervals.history();
+        this.barsOffset = BitUtil.align(WRITTEN_OFFSET + n * Long.BYTES, CACHE_LINE);
+        this.buffer = new UnsafeBuffer(BufferUtil.allocateDirectAligned(
+                Math.toIntExact(barsOffset + (long) n * history * BAR_BYTES), CACHE_LINE));
+        this.begun = new long[n];
+        this.start = new long[n];
+        this.end = new long[n];
+        this.count = new long[n];
+        this.open = new double[n];
+        this.high = new double[n];
+        this.low = new double[n];
+        this.close = new double[n];
+        this.volume = new double[n];
+        this.notional = new double[n];
+        Arrays.fill(end, Long.MIN_VALUE);
+    }
+
+    BarIntervals intervals() {
+        return intervals;
+    }
+
+    /**
+     * Fold a processed batch into the bars of every interval. Single writer only.
+     *
+     * @param arrivalMillis epoch milliseconds of the values without a timestamp column
+     */
+    void add(Batch head, long arrivalMillis) {
+        boolean any = false;
+        for (Batch slab = head; slab != null; slab = slab.getNext()) {
+            double[] values = slab.getValues();
+            double[] volumes = slab.hasColumns() ? slab.getVolumes() : null;
+            long[] timestamps = slab.hasColumns() ? slab.getTimestamps() : null;
+            for (int i = 0, n = slab.size(); i < n; i++) {
+                double price = values[i];
+                double size = volumes == null ? 0 : volumes[i];
+                long time = timestamps == null || timestamps[i] == 0 ? arrivalMillis : timestamps[i];
+                for (int w = 0; w < begun.length; w++) {
+                    if (time >= end[w]) {
+                        if (begun[w] > 0) {
+                            // a later interval: the bar in progress is final
+                            publish(w, w + 1);
+                        }
+                        long interval = intervals.intervalMillis(w);
+                        begun[w]++;
+                        start[w] = time - Math.floorMod(time, interval);
+                        end[w] = start[w] + interval;
+                        count[w] = 1;
+                        open[w] = price;
+                        high[w] = price;
+                        low[w] = price;
+                        volume[w] = size;
+                        notional[w] = price * size;
+                    } else {
+                        count[w]++;
+                        if (price > high[w]) high[w] = price;
+                        if (price < low[w]) low[w] = price;
+                        volume[w] += size;
+                        notional[w] += price * size;
+                    }
+                    close[w] = price;
+                }
+                any = true;
+            }
+        }
+        if (any) {
+            publish(0, begun.length);
+        }
+    }
+
+    /**
+     * @param w     the interval index, see {@link BarIntervals#intervalMillis}
+     * @param limit the most recent bars to return at most
+     * @return the last bars of interval {@code w}, oldest first; the last one is the bar in
+     *         progress, which changes until a value of a later interval arrives
+     */
+    List<Bar> bars(int w, int limit) {
+        long[] fields = new long[Math.min(limit, history) * FIELDS];
+        while (true) {
+            long before = buffer.getLongVolatile(SEQUENCE_OFFSET);
+            if ((before & 1) == 0) {
+                long written = buffer.getLong(WRITTEN_OFFSET + w * Long.BYTES);
+                int bars = (int) Math.min(written, fields.length / FIELDS);
+                for (int b = 0; b < bars; b++) {
+                    int base = offset(w, written - bars + b);
+                    for (int f = 0; f < FIELDS; f++) {
+                        fields[b * FIELDS + f] = buffer.getLong(base + f * Long.BYTES);
+                    }
+                }
+                VarHandle.loadLoadFence();
+                if (buffer.getLongVolatile(SEQUENCE_OFFSET) == before) {
+                    List<Bar> result = new ArrayList<>(bars);
+                    for (int b = 0; b < bars; b++) {
+                        int base = b * FIELDS;
+                        result.add(new Bar(fields[base + START],
+                                Double.longBitsToDouble(fields[base + OPEN]),
+                                Double.longBitsToDouble(fields[base + HIGH]),
+                                Double.longBitsToDouble(fields[base + LOW]),
+                                Double.longBitsToDouble(fields[base + CLOSE]),
+                                Double.longBitsToDouble(fields[base + VOLUME]),
+                                Double.longBitsToDouble(fields[base + NOTIONAL]),
+                                fields[base + COUNT]));
+                    }
+                    return result;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copy the bars of a retired aggregator, for a spill.
+     */
+    void writeTo(WritableByteChannel channel) throws IOException {
+        writeFully(channel, barBytes());
+    }
+
+    /**
+     * Read what {@link #writeTo} wrote, before the aggregator is published, and resume
+     * the bars in progress.
+     */
+    void readFrom(ReadableByteChannel channel) throws IOException {
+        readFully(channel, barBytes());
+        for (int w = 0; w < begun.length; w++) {
+            begun[w] = buffer.getLong(WRITTEN_OFFSET + w * Long.BYTES);
+            if (begun[w] == 0) {
+                continue;
+            }
+            int base = offset(w, begun[w] - 1);
+            start[w] = buffer.getLong(base + START * Long.BYTES);
+            end[w] = start[w] + intervals.intervalMillis(w);
+            count[w] = buffer.getLong(base + COUNT * Long.BYTES);
+            open[w] = buffer.getDouble(base + OPEN * Long.BYTES);
+            high[w] = buffer.getDouble(base + HIGH * Long.BYTES);
+            low[w] = buffer.getDouble(base + LOW * Long.BYTES);
+            close[w] = buffer.getDouble(base + CLOSE * Long.BYTES);
+            volume[w] = buffer.getDouble(base + VOLUME * Long.BYTES);
+            notional[w] = buffer.getDouble(base + NOTIONAL * Long.BYTES);
+        }
+    }
+
+    /**
+     * Write the bars in progress of intervals {@code [from, to)} into their ring slots.
+     */
+    private void publish(int from, int to) {
+        long sequence = buffer.getLong(SEQUENCE_OFFSET);
+        buffer.putLongOrdered(SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+        for (int w = from; w < to; w++) {
+            int base = offset(w, begun[w] - 1);
+            buffer.putLong(base + START * Long.BYTES, start[w]);
+            buffer.putLong(base + COUNT * Long.BYTES, count[w]);
+            buffer.putDouble(base + OPEN * Long.BYTES, open[w]);
+            buffer.putDouble(base + HIGH * Long.BYTES, high[w]);
+            buffer.putDouble(base + LOW * Long.BYTES, low[w]);
+            buffer.putDouble(base + CLOSE * Long.BYTES, close[w]);
+            buffer.putDouble(base + VOLUME * Long.BYTES, volume[w]);
+            buffer.putDouble(base + NOTIONAL * Long.BYTES, notional[w]);
+            buffer.putLong(WRITTEN_OFFSET + w * Long.BYTES, begun[w]);
+        }
+        buffer.putLongOrdered(SEQUENCE_OFFSET, sequence + 2);
+    }
+
+    private ByteBuffer barBytes() {
+        ByteBuffer bytes = buffer.byteBuffer().duplicate();
+        bytes.position(WRITTEN_OFFSET);
+        return bytes;
+    }
+
+    /**
+     * @return the offset of bar number {@code bar} of interval {@code w}
+     */
+    private int offset(int w, long bar) {
+        return barsOffset + (int) ((w * (long) history + bar % history) * BAR_BYTES);
+    }
+}
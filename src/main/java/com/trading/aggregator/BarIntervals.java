@@ -0,0 +1,77 @@
+package com.trading.aggregator;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The intervals every symbol builds OHLC/VWAP bars at, such as 1s, 1m and 5m bars, and
+ * how many bars of each interval it keeps; see {@link BarHistory}.
+ *
+ * <p>Bars are aligned on the epoch, so a 1m bar covers one wall-clock minute, and the
+ * memory of a symbol's bars is bounded by intervals × history × 64 bytes.
+ */
+public final class BarIntervals {
+
+    public static final int DEFAULT_HISTORY = 500;
+
+    private final long[] intervalMillis;
+    private final int history;
+
+    /**
+     * @param intervalMillis the bar intervals, in any order
+     * @param history        bars kept per interval, the one in progress included
+     */
+    public BarIntervals(long[] intervalMillis, int history) {
+        if (intervalMillis.length == 0 || history < 1) {
+            throw new IllegalArgumentException("Bars need at least one interval and a history of one bar");
+        }
+        long[] sorted = intervalMillis.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] < 1 || (i > 0 && sorted[i] == sorted[i - 1])) {
+                throw new IllegalArgumentException("Bar intervals must be distinct and at least 1 ms: "
+                        + Arrays.toString(intervalMillis));
+            }
+        }
+        this.intervalMillis = sorted;
+        this.history = history;
+    }
+
+    /**
+     * Parse a configuration value such as {@code 1s,1m,5m}, in the units of
+     * {@link TimeWindows#parseDuration}.
+     */
+    public static BarIntervals parse(String intervals, int history) {
+        return new BarIntervals(Arrays.stream(intervals.split(",", -1))
+                .mapToLong(TimeWindows::parseDuration)
+                .map(TimeUnit.NANOSECONDS::toMillis)
+                .toArray(), history);
+    }
+
+    public int intervals() {
+        return intervalMillis.length;
+    }
+
+    /**
+     * @return the length of interval {@code i}, intervals ordered from the shortest
+     */
+    public long intervalMillis(int i) {
+        return intervalMillis[i];
+    }
+
+    public int history() {
+        return history;
+    }
+
+    /**
+     * @return the index of the interval {@code intervalMillis} long, or -1
+     */
+    int indexOf(long intervalMillis) {
+        for (int i = 0; i < this.intervalMillis.length; i++) {
+            if (this.intervalMillis[i] == intervalMillis) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,101 @@
+package com.trading.aggregator;
+
+import com.trading.model.Batch;
+import org.agrona.concurrent.ManyToManyConcurrentArrayQueue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of {@link Batch} slabs shared by producers (request threads) and
+ * workers. Slabs are created lazily up to {@code maxSlabs} and recycled after the
+ * worker has processed them, so steady-state ingest allocates nothing and queued
+ * data never exceeds {@code maxSlabs * slabSize} doubles.
+ */
+public class BatchPool {
+
+    public static final int DEFAULT_MAX_SLABS = 8_192;
+    public static final int DEFAULT_SLAB_SIZE = 4_096;
+
+    private final ManyToManyConcurrentArrayQueue<Batch> free;
+    private final AtomicInteger created = new AtomicInteger();
+    private final int maxSlabs;
+    private final int slabSize;
+
+    public BatchPool(int maxSlabs, int slabSize) {
+        if (maxSlabs <= 0 || slabSize <= 0) {
+            throw new IllegalArgumentException("Pool size and slab size must be positive");
+        }
+        this.free = new ManyToManyConcurrentArrayQueue<>(Math.max(2, maxSlabs));
+        this.maxSlabs = maxSlabs;
+        this.slabSize = slabSize;
+    }
+
+    /**
+     * Acquire a chain of empty slabs able to hold {@code count} values.
+     *
+     * @return the head of the chain, or null if the pool is exhausted
+     */
+    public Batch acquire(int count) {
+        Batch head = null;
+        Batch tail = null;
+        for (int capacity = 0; capacity < count || head == null; capacity += slabSize) {
+            Batch slab = acquireSlab();
+            if (slab == null) {
+                release(head);
+                return null;
+            }
+            if (head == null) {
+                head = slab;
+            } else {
+                tail.setNext(slab);
+            }
+            tail = slab;
+        }
+        return head;
+    }
+
+    /**
+     * Return a whole chain of slabs to the pool.
+     */
+    public void release(Batch head) {
+        Batch slab = head;
+        while (slab != null) {
+            Batch next = slab.getNext();
+            slab.clear();
+            free.offer(slab);
+            slab = next;
+        }
+    }
+
+    public int slabSize() {
+        return slabSize;
+    }
+
+    public int maxSlabs() {
+        return maxSlabs;
+    }
+
+    /**
+     * @return slabs currently handed out (queued or being processed)
+     */
+    public int inUse() {
+        return created.get() - free.size();
+    }
+
+    private Batch acquireSlab() {
+        Batch slab = free.poll();
+        if (slab != null) {
+            return slab;
+        }
+        while (true) {
+            int current = created.get();
+            if (current >= maxSlabs) {
+                // another thread may have released in the meantime
+                return free.poll();
+            }
+            if (created.compareAndSet(current, current + 1)) {
+                return new Batch(slabSize);
+            }
+        }
+    }
+}
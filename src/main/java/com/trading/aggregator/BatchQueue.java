@@ -1,13 +1,17 @@
 package com.trading.aggregator;
 
 import com.trading.model.Batch;
-import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.agrona.concurrent.ManyToManyConcurrentArrayQueue;
 
+/**
+ * Pending batches of one symbol. Many-to-many because, besides the worker,
+ * producers poll the oldest entry under {@link OverflowPolicy#DROP_OLDEST}.
+ */
 public class BatchQueue {
-    private final ManyToOneConcurrentArrayQueue<Batch> queue;
+    private final ManyToManyConcurrentArrayQueue<Batch> queue;
 
     public BatchQueue(int capacity) {
-        this.queue = new ManyToOneConcurrentArrayQueue<>(capacity);
+        this.queue = new ManyToManyConcurrentArrayQueue<>(capacity);
     }
 
     public boolean offer(Batch batch) {
@@ -21,4 +25,15 @@ public class BatchQueue {
     public boolean isEmpty() {
         return queue.isEmpty();
     }
+
+    /**
+     * @return the number of pending batches; approximate under concurrent updates
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return queue.capacity();
+    }
 }
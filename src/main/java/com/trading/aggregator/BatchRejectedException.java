@@ -0,0 +1,48 @@
+package com.trading.aggregator;
+
+/**
+ * Thrown when a batch cannot be queued for a symbol under its {@link OverflowPolicy}.
+ * Nothing of the batch has been applied, so the producer can safely retry it; of a
+ * request with many batches, it retries those from {@link #getAcceptedBatches()} on.
+ */
+public class BatchRejectedException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String symbol;
+    private final int queueDepth;
+    private final int acceptedBatches;
+
+    public BatchRejectedException(String message, String symbol, int queueDepth) {
+        this(message, symbol, queueDepth, -1);
+    }
+
+    /**
+     * @param acceptedBatches batches of the same request that were enqueued before this one
+     */
+    public BatchRejectedException(String message, String symbol, int queueDepth, int acceptedBatches) {
+        super(message);
+        this.symbol = symbol;
+        this.queueDepth = queueDepth;
+        this.acceptedBatches = acceptedBatches;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return batches pending for the symbol when the batch was rejected
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return batches of the same request that stay accepted, or -1 if the request held
+     *         only the rejected batch
+     */
+    public int getAcceptedBatches() {
+        return acceptedBatches;
+    }
+}
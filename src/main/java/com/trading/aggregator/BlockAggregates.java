@@ -0,0 +1,264 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.RingBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Hierarchical block summaries (sum, sum of squares, min, max) over the values
+ * stored in a {@link RingBuffer}.
+ *
+ * <p>Values are grouped into aligned decimal blocks of {@code 10^j} values for
+ * {@code j = 2..7}. Every completed block is summarised once into a per-level ring of
+ * summaries, and the block of the next level up is rolled up from ten such summaries.
+ * A value therefore costs one accumulator update plus, amortized, about 0.01 block
+ * roll-ups, no matter how many windows are served.
+ *
+ * <p>A window {@code [start, end]} is answered exactly by decomposing it into the
+ * largest aligned blocks that fit: at most 99 raw values at the trailing edge (read
+ * contiguously from the ring buffer), at most nine blocks per level, and the in-progress
+ * accumulators at the leading edge. Blocks of 10 values are intentionally not stored:
+ * starting at 10^2 keeps the summaries under 5% of the ring buffer's own footprint.
+ * Like the ring, they are only allocated as the history grows, see {@link SummarySlots}.
+ *
+ * <p>Not thread-safe: owned by the single worker that mutates a {@link SymbolAggregator}.
+ */
+final class BlockAggregates implements WindowAggregates {
+
+    static final int MIN_LEVEL = 2;
+    static final int MAX_LEVEL = 7;
+
+    private static final int FIELDS = 4;
+    private static final int SUM = 0;
+    private static final int SUM_SQ = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+
+    /** Size of {@link #captureAccumulators()}. */
+    static final int ACCUMULATOR_FIELDS = (MAX_LEVEL - MIN_LEVEL + 1) * FIELDS;
+
+    private static final long[] BLOCK_SIZE = new long[MAX_LEVEL + 1];
+
+    static {
+        long size = 1;
+        for (int j = 0; j <= MAX_LEVEL; j++) {
+            BLOCK_SIZE[j] = size;
+            size *= 10;
+        }
+    }
+
+    private final RingBuffer ringBuffer;
+
+    // completed block summaries per level, FIELDS doubles per slot as raw bits; null
+    // for levels whose blocks are larger than the ring
+    private final SummarySlots[] blocks = new SummarySlots[MAX_LEVEL + 1];
+
+    // in-progress accumulators: level MIN_LEVEL sees raw values, higher levels
+    // only hold the completed child blocks of their current block
+    private final double[] accSum = new double[MAX_LEVEL + 1];
+    private final double[] accSumSq = new double[MAX_LEVEL + 1];
+    private final double[] accMin = new double[MAX_LEVEL + 1];
+    private final double[] accMax = new double[MAX_LEVEL + 1];
+
+    // result of the last query
+    private double sum;
+    private double sumSq;
+    private double min;
+    private double max;
+    private long count;
+
+    BlockAggregates(RingBuffer ringBuffer) {
+        this.ringBuffer = ringBuffer;
+        long capacity = ringBuffer.capacity();
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL; j++) {
+            // a window no larger than the ring overlaps at most capacity / 10^j + 1 blocks
+            // a block larger than the ring never fits in a window, so it is only rolled up
+            if (BLOCK_SIZE[j] <= capacity) {
+                blocks[j] = new SummarySlots(capacity / BLOCK_SIZE[j] + 2, FIELDS);
+            }
+            resetAccumulator(j);
+        }
+    }
+
+    @Override
+    public void add(long index, double value) {
+        accSum[MIN_LEVEL] += value;
+        accSumSq[MIN_LEVEL] += value * value;
+        if (value < accMin[MIN_LEVEL]) accMin[MIN_LEVEL] = value;
+        if (value > accMax[MIN_LEVEL]) accMax[MIN_LEVEL] = value;
+
+        long next = index + 1;
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && next % BLOCK_SIZE[j] == 0; j++) {
+            completeBlock(j, index / BLOCK_SIZE[j]);
+        }
+    }
+
+    @Override
+    public void query(long start, long end) {
+        sum = 0;
+        sumSq = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        count = Math.max(0, end - start + 1);
+
+        long pos = start;
+        while (pos <= end) {
+            int level = alignedLevel(pos);
+            if (level < MIN_LEVEL) {
+                mergeValue(ringBuffer.get(pos));
+                pos++;
+            } else if (pos + BLOCK_SIZE[level] - 1 <= end) {
+                mergeBlock(level, pos / BLOCK_SIZE[level]);
+                pos += BLOCK_SIZE[level];
+            } else {
+                // pos starts the in-progress block of this level, so [pos, end]
+                // is exactly what its accumulators and those below it hold
+                mergeInProgress(level);
+                break;
+            }
+        }
+    }
+
+    double sum() { return sum; }
+    double sumSq() { return sumSq; }
+    @Override public double min() { return count == 0 ? Double.NaN : min; }
+    @Override public double max() { return count == 0 ? Double.NaN : max; }
+    @Override public long count() { return count; }
+
+    @Override
+    public double mean() {
+        return sum / count;
+    }
+
+    /**
+     * Population variance as {@code E[x^2] - mean^2}: cancellation makes it inexact, and
+     * slightly negative for a constant window, when the mean is large next to the spread.
+     * {@link TickAggregates} computes it exactly.
+     */
+    @Override
+    public double variance() {
+        double avg = sum / count;
+        return (sumSq / count) - avg * avg;
+    }
+
+    @Override
+    public int accumulatorFields() {
+        return ACCUMULATOR_FIELDS;
+    }
+
+    /**
+     * The accumulators are returned as their raw bits.
+     */
+    @Override
+    public long[] captureAccumulators() {
+        long[] state = new long[ACCUMULATOR_FIELDS];
+        for (int j = MIN_LEVEL, i = 0; j <= MAX_LEVEL; j++) {
+            state[i++] = Double.doubleToRawLongBits(accSum[j]);
+            state[i++] = Double.doubleToRawLongBits(accSumSq[j]);
+            state[i++] = Double.doubleToRawLongBits(accMin[j]);
+            state[i++] = Double.doubleToRawLongBits(accMax[j]);
+        }
+        return state;
+    }
+
+    @Override
+    public void restoreAccumulators(long[] state) {
+        for (int j = MIN_LEVEL, i = 0; j <= MAX_LEVEL; j++) {
+            accSum[j] = Double.longBitsToDouble(state[i++]);
+            accSumSq[j] = Double.longBitsToDouble(state[i++]);
+            accMin[j] = Double.longBitsToDouble(state[i++]);
+            accMax[j] = Double.longBitsToDouble(state[i++]);
+        }
+    }
+
+    @Override
+    public void writeBlocks(WritableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException {
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && blocks[j] != null; j++) {
+            blocks[j].write(channel, scratch, usedSlots(j, nextIndex));
+        }
+    }
+
+    @Override
+    public void readBlocks(ReadableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException {
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && blocks[j] != null; j++) {
+            blocks[j].read(channel, scratch, usedSlots(j, nextIndex));
+        }
+    }
+
+    private long usedSlots(int level, long nextIndex) {
+        // block b lives in slot b % slots, so until the level wraps its blocks fill a prefix
+        return Math.min(blocks[level].slots(), nextIndex / BLOCK_SIZE[level]);
+    }
+
+    private void completeBlock(int level, long blockNumber) {
+        SummarySlots ring = blocks[level];
+        if (ring != null) {
+            long slot = blockNumber % ring.slots();
+            long[] chunk = ring.allocate(slot);
+            int base = ring.offset(slot);
+            chunk[base + SUM] = Double.doubleToRawLongBits(accSum[level]);
+            chunk[base + SUM_SQ] = Double.doubleToRawLongBits(accSumSq[level]);
+            chunk[base + MIN] = Double.doubleToRawLongBits(accMin[level]);
+            chunk[base + MAX] = Double.doubleToRawLongBits(accMax[level]);
+        }
+
+        if (level < MAX_LEVEL) {
+            int parent = level + 1;
+            accSum[parent] += accSum[level];
+            accSumSq[parent] += accSumSq[level];
+            if (accMin[level] < accMin[parent]) accMin[parent] = accMin[level];
+            if (accMax[level] > accMax[parent]) accMax[parent] = accMax[level];
+        }
+        resetAccumulator(level);
+    }
+
+    private void resetAccumulator(int level) {
+        accSum[level] = 0;
+        accSumSq[level] = 0;
+        accMin[level] = Double.POSITIVE_INFINITY;
+        accMax[level] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * @return the largest level j (capped at MAX_LEVEL) such that 10^j divides pos
+     */
+    private static int alignedLevel(long pos) {
+        int level = 0;
+        while (level < MAX_LEVEL && pos % BLOCK_SIZE[level + 1] == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private void mergeValue(double value) {
+        sum += value;
+        sumSq += value * value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    private void mergeBlock(int level, long blockNumber) {
+        SummarySlots ring = blocks[level];
+        long slot = blockNumber % ring.slots();
+        long[] chunk = ring.chunk(slot);
+        int base = ring.offset(slot);
+        sum += Double.longBitsToDouble(chunk[base + SUM]);
+        sumSq += Double.longBitsToDouble(chunk[base + SUM_SQ]);
+        double blockMin = Double.longBitsToDouble(chunk[base + MIN]);
+        double blockMax = Double.longBitsToDouble(chunk[base + MAX]);
+        if (blockMin < min) min = blockMin;
+        if (blockMax > max) max = blockMax;
+    }
+
+    private void mergeInProgress(int level) {
+        for (int j = level; j >= MIN_LEVEL; j--) {
+            sum += accSum[j];
+            sumSq += accSumSq[j];
+            if (accMin[j] < min) min = accMin[j];
+            if (accMax[j] > max) max = accMax[j];
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.trading.aggregator;
+
+/**
+ * The part of a {@link SymbolAggregator}'s state that must be taken exactly, on its
+ * worker, at a batch boundary. Everything else (ring buffer and completed block
+ * summaries) is copied afterwards without stopping the worker.
+ */
+final class CheckpointCapture {
+
+    final long nextIndex;
+    final double lastValue;
+    final long historyStart;
+    final long lastSequence;
+    // see WindowAggregates#captureAccumulators
+    final long[] accumulators;
+
+    CheckpointCapture(long nextIndex, double lastValue, long historyStart, long lastSequence,
+                      long[] accumulators) {
+        this.nextIndex = nextIndex;
+        this.lastValue = lastValue;
+        this.historyStart = historyStart;
+        this.lastSequence = lastSequence;
+        this.accumulators = accumulators;
+    }
+}
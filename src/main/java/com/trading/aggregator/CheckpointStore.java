@@ -0,0 +1,196 @@
+package com.trading.aggregator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.trading.buffer.DoubleChannels.readFully;
+import static com.trading.buffer.DoubleChannels.writeFully;
+
+/**
+ * One checkpoint file per symbol, so a restart serves correct windows immediately
+ * instead of rewarming them from live traffic.
+ *
+ * <p>A checkpoint is taken without stopping ingestion. The worker only captures the
+ * exact state at a batch boundary ({@link CheckpointCapture}: next index, last value,
+ * last journal sequence, in-progress accumulators), then the checkpoint thread bulk-copies the completed
+ * block summaries and the ring buffer while the worker keeps going. If the worker has
+ * reached index {@code M} when the copy ends, the slots of indices below
+ * {@code M - capacity} may have been overwritten mid-copy, so the checkpoint is only
+ * trusted from there: a restored aggregator serves its windows over
+ * {@code [max(historyStart, M - capacity), nextIndex)}. Block summaries recycle more
+ * slowly than the ring, so the same bound covers them. Only the block summaries and
+ * ring slots the first {@code nextIndex} values reached are copied, so a symbol with a
+ * short history has a small checkpoint whatever its ring capacity.
+ *
+ * <p>Layout: a little-endian header ending with the in-progress accumulators, whose
+ * number depends on whether the symbol is aggregated in fixed point, then the block
+ * summaries, the {@link QuantileSketches} if the symbol keeps them, and the ring slots in
+ * native byte order, or a {@link com.trading.buffer.CompressedRingBuffer}'s encoded blocks.
+ * A checkpoint only restores into an aggregator with the same ring capacity and type,
+ * {@link TickSize} and quantile setting; the sketches' in-progress keys are
+ * recomputed from the restored ring. Files are written to a temporary name and atomically renamed.
+ */
+public class CheckpointStore {
+
+    private static final int MAGIC = 0x54434B50; // "TCKP"
+    private static final int VERSION = 6;
+    private static final String FILE_SUFFIX = ".ckpt";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // followed by the accumulators
+    private static final int FIXED_HEADER_BYTES = 6 * Integer.BYTES + 4 * Long.BYTES + 2 * Double.BYTES;
+
+    private final Path directory;
+
+    public CheckpointStore(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create checkpoint directory " + directory, e);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @return the symbols that have a checkpoint
+     */
+    public List<String> symbols() {
+        List<String> symbols = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                symbols.add(URLDecoder.decode(name.substring(0, name.length() - FILE_SUFFIX.length()),
+                        StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list checkpoints in " + directory, e);
+        }
+        return symbols;
+    }
+
+    /**
+     * Write the checkpoint of {@code aggregator} from a capture taken on its worker.
+     * Runs on the checkpoint thread, concurrently with ingestion.
+     */
+    void write(SymbolAggregator aggregator, CheckpointCapture capture) throws IOException {
+        Path file = fileOf(aggregator.getSymbol());
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        long capacity = aggregator.ringCapacity();
+        int headerBytes = FIXED_HEADER_BYTES + capture.accumulators.length * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(headerBytes);
+            aggregator.writeHistory(channel, capture.nextIndex);
+
+            // anything the worker wrote during the copy may have clobbered the oldest slots
+            long reached = aggregator.valuesProcessed();
+            long validFrom = Math.max(capture.historyStart, Math.max(0, reached - capacity));
+
+            ByteBuffer header = ByteBuffer.allocate(headerBytes).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1)
+                    .putInt(capture.accumulators.length)
+                    .putInt(aggregator.hasQuantiles() ? 1 : 0)
+                    .putInt(aggregator.hasCompressedRing() ? 1 : 0)
+                    .putLong(capacity)
+                    .putLong(capture.nextIndex)
+                    .putLong(Math.min(validFrom, capture.nextIndex))
+                    .putLong(capture.lastSequence)
+                    .putDouble(capture.lastValue)
+                    .putDouble(aggregator.recordedTickSize());
+            for (long value : capture.accumulators) {
+                header.putLong(value);
+            }
+            header.flip();
+            channel.position(0);
+            writeFully(channel, header);
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the checkpoint of the aggregator's symbol into it. Must be called before
+     * the aggregator receives its first batch.
+     *
+     * @return false if there is no checkpoint for the symbol
+     * @throws IllegalStateException if the checkpoint was written with another ring
+     *                               capacity, tick size, quantile setting, ring type, byte order
+     *                               or format
+     */
+    boolean restore(SymbolAggregator aggregator) throws IOException {
+        Path file = fileOf(aggregator.getSymbol());
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalStateException("Not a checkpoint of a supported version: " + file);
+            }
+            int order = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1;
+            if (header.getInt() != order) {
+                throw new IllegalStateException("Checkpoint written on an incompatible platform: " + file);
+            }
+            int fields = header.getInt();
+            boolean quantiles = header.getInt() != 0;
+            boolean compressed = header.getInt() != 0;
+            long capacity = header.getLong();
+            if (capacity != aggregator.ringCapacity()) {
+                throw new IllegalStateException("Checkpoint " + file + " has ring capacity " + capacity
+                        + ", expected " + aggregator.ringCapacity());
+            }
+            long nextIndex = header.getLong();
+            long historyStart = header.getLong();
+            long lastSequence = header.getLong();
+            double lastValue = header.getDouble();
+            double tickSize = header.getDouble();
+            if (tickSize != aggregator.recordedTickSize()) {
+                throw new IllegalStateException("Checkpoint " + file + " has tick size " + tickSize
+                        + ", expected " + aggregator.recordedTickSize());
+            }
+            if (fields != aggregator.accumulatorFields()) {
+                throw new IllegalStateException("Checkpoint " + file + " has " + fields
+                        + " accumulator fields, expected " + aggregator.accumulatorFields());
+            }
+            if (quantiles != aggregator.hasQuantiles()) {
+                throw new IllegalStateException("Checkpoint " + file + (quantiles ? " has" : " has no")
+                        + " quantile sketches, unlike the aggregator");
+            }
+            if (compressed != aggregator.hasCompressedRing()) {
+                throw new IllegalStateException("Checkpoint " + file + (compressed ? " has" : " has no")
+                        + " compressed ring, unlike the aggregator");
+            }
+            long[] accumulators = readAccumulators(channel, fields);
+            aggregator.restore(new CheckpointCapture(nextIndex, lastValue, historyStart, lastSequence, accumulators), channel);
+        }
+        return true;
+    }
+
+    static long[] readAccumulators(FileChannel channel, int fields) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(fields * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer);
+        buffer.flip();
+        long[] accumulators = new long[fields];
+        buffer.asLongBuffer().get(accumulators);
+        return accumulators;
+    }
+
+    private Path fileOf(String symbol) {
+        return directory.resolve(URLEncoder.encode(symbol, StandardCharsets.UTF_8) + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,30 @@
+package com.trading.aggregator;
+
+import java.util.Locale;
+
+/**
+ * What {@link SymbolAggregator#enqueueBatch} does when the symbol's {@link BatchQueue}
+ * is full or the shared {@link BatchPool} has no free slabs.
+ */
+public enum OverflowPolicy {
+
+    /** Fail fast with a {@link BatchRejectedException} (HTTP 429), leaving the pacing to the producer. */
+    REJECT,
+    /** Wait up to the configured timeout for the worker to make room, then reject. */
+    BLOCK,
+    /**
+     * Pack pending batches into one staged batch that is processed after the queue,
+     * so a burst of small batches costs one queue entry, tightly filled slabs and a
+     * single snapshot publication. Rejects only when the pool runs dry.
+     */
+    COALESCE,
+    /** Discard the oldest queued batches to make room, counting what was dropped. */
+    DROP_OLDEST;
+
+    /**
+     * Parse a configuration value such as {@code reject} or {@code drop-oldest}.
+     */
+    public static OverflowPolicy fromConfig(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,471 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.RingBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketches over the values of a symbol's ring buffer, kept per block
+ * of the {@link BlockAggregates} hierarchy so that the p50/p95/p99 of any window are
+ * assembled from the same decomposition as its sums, without sorting the window.
+ *
+ * <p>A value is mapped to a bucket key in the manner of DDSketch: bucket {@code i}
+ * covers the magnitudes whose approximate base-2 logarithm (exponent plus linearly
+ * interpolated mantissa) falls in {@code [i / M, (i + 1) / M)}, with {@code M} chosen so
+ * that no bucket is wider than a ratio of {@code (1 + a) / (1 - a)}. Reporting the
+ * harmonic middle of the bucket then errs by at most {@code a} = {@link #RELATIVE_ACCURACY}
+ * relative to the value of that rank. Negative values use the mirrored keys, and
+ * magnitudes below {@link #MIN_MAGNITUDE} count as 0.
+ *
+ * <p>A block's sketch is its sorted (key, count) pairs. Level {@link BlockAggregates#MIN_LEVEL}
+ * sketches are built from the keys of the block's values when it completes, higher
+ * levels by merging their ten children, so a value costs one key computation plus,
+ * amortized, a hundredth of counting its block's distinct keys. Each level has room for a fixed number of
+ * buckets per block ({@link #MAX_BUCKETS}): a block that spans more buckets, e.g. 100
+ * values moving by more than about 8%, is stored at half the resolution, as often as
+ * needed to fit. A window merged from blocks at scale {@code s} is answered at that
+ * scale, where a bucket spans {@code 2^s} buckets and the error bound grows to about
+ * {@code 2^s * a}. The merge itself is bounded by {@link #MAX_BINS} buckets, beyond which
+ * the window is coarsened the same way.
+ *
+ * <p>The summaries add about 0.7 bytes per value to the 8 of the ring, allocated as the
+ * history grows like {@link BlockAggregates}' own.
+ *
+ * <p>Not thread-safe: owned by the single worker that mutates a {@link SymbolAggregator}.
+ */
+final class QuantileSketches {
+
+    /** Relative error of a quantile of a window none of whose blocks was coarsened. */
+    static final double RELATIVE_ACCURACY = 0.01;
+    /** Magnitudes below this are counted as 0. */
+    static final double MIN_MAGNITUDE = 0x1p-30;
+    /** The quantiles {@link #query} computes, in the order of {@link #quantile}. */
+    static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private static final int MIN_LEVEL = BlockAggregates.MIN_LEVEL;
+    private static final int MAX_LEVEL = BlockAggregates.MAX_LEVEL;
+    private static final int PENDING = 100;
+    private static final int[] MAX_BUCKETS = {0, 0, 6, 12, 24, 48, 96, 128};
+    private static final int MAX_BINS = 4_096;
+    // pieces of a window: at most nine blocks per level on either side of its largest one
+    private static final int MAX_PIECES = 2 * 9 * (MAX_LEVEL - MIN_LEVEL + 1);
+
+    private static final double MULTIPLIER =
+            1 / Math.log((1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY));
+    // keys of magnitudes at least MIN_MAGNITUDE start at 1
+    private static final int KEY_OFFSET = (int) Math.ceil(-Math.getExponent(MIN_MAGNITUDE) * MULTIPLIER) + 1;
+
+    private static final long[] BLOCK_SIZE = new long[MAX_LEVEL + 1];
+
+    static {
+        long size = 1;
+        for (int j = 0; j <= MAX_LEVEL; j++) {
+            BLOCK_SIZE[j] = size;
+            size *= 10;
+        }
+    }
+
+    private final RingBuffer ringBuffer;
+
+    // per level, one header (scale << 32 | buckets) and MAX_BUCKETS entries
+    // (key << 32 | count) per slot; null for levels whose blocks are larger than the ring
+    private final SummarySlots[] blocks = new SummarySlots[MAX_LEVEL + 1];
+
+    // keys of the values of the in-progress MIN_LEVEL block, and how many it has
+    private final int[] pending = new int[PENDING];
+    private int pendingCount;
+    // scratch for building a block: up to ten children's entries
+    private final long[] merged = new long[10 * MAX_BUCKETS[MAX_LEVEL]];
+
+    // the pieces of the last query: stored blocks, then trailing raw keys
+    private final int[] pieceLevels = new int[MAX_PIECES];
+    private final long[] pieceBlocks = new long[MAX_PIECES];
+    private final int[] rawKeys = new int[PENDING];
+    private int[] bins = new int[64];
+
+    // result of the last query
+    private final double[] quantiles = new double[QUANTILES.length];
+    private int scale;
+
+    QuantileSketches(RingBuffer ringBuffer) {
+        this.ringBuffer = ringBuffer;
+        long capacity = ringBuffer.capacity();
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL; j++) {
+            if (BLOCK_SIZE[j] <= capacity) {
+                blocks[j] = new SummarySlots(capacity / BLOCK_SIZE[j] + 2, 1 + MAX_BUCKETS[j]);
+            }
+        }
+    }
+
+    /**
+     * Fold the value stored at {@code index} into the sketches.
+     * Indices must be consecutive, starting from 0.
+     */
+    void add(long index, double value) {
+        pending[pendingCount++] = key(value);
+        if (pendingCount < PENDING) {
+            return;
+        }
+        pendingCount = 0;
+        if (blocks[MIN_LEVEL] != null) {
+            completeLowestBlock(index / PENDING);
+            long next = index + 1;
+            for (int j = MIN_LEVEL + 1; j <= MAX_LEVEL && blocks[j] != null && next % BLOCK_SIZE[j] == 0; j++) {
+                completeBlock(j, index / BLOCK_SIZE[j]);
+            }
+        }
+    }
+
+    /**
+     * Compute the {@link #QUANTILES} of the inclusive range {@code [start, end]}, where
+     * {@code end} is the last index passed to {@link #add}, in the units of the ring.
+     */
+    void query(long start, long end) {
+        if (end < start) {
+            Arrays.fill(quantiles, Double.NaN);
+            scale = 0;
+            return;
+        }
+        int pieces = 0;
+        int raw = 0;
+        int pendingKeys = 0;
+        long pos = start;
+        while (pos <= end) {
+            int level = alignedLevel(pos);
+            if (level < MIN_LEVEL) {
+                rawKeys[raw++] = key(ringBuffer.get(pos));
+                pos++;
+            } else if (pos + BLOCK_SIZE[level] - 1 <= end) {
+                pieceLevels[pieces] = level;
+                pieceBlocks[pieces++] = pos / BLOCK_SIZE[level];
+                pos += BLOCK_SIZE[level];
+            } else {
+                // pos starts the in-progress block of this level: its completed children,
+                // level by level, then the keys of the in-progress lowest block
+                for (int j = level - 1; j >= MIN_LEVEL; j--) {
+                    while (pos + BLOCK_SIZE[j] - 1 <= end) {
+                        pieceLevels[pieces] = j;
+                        pieceBlocks[pieces++] = pos / BLOCK_SIZE[j];
+                        pos += BLOCK_SIZE[j];
+                    }
+                }
+                pendingKeys = (int) (end - pos + 1);
+                break;
+            }
+        }
+
+        // the coarsest scale of the pieces, and the range of keys at that scale
+        int scale = 0;
+        for (int p = 0; p < pieces; p++) {
+            scale = Math.max(scale, scale(header(pieceLevels[p], pieceBlocks[p])));
+        }
+        long minKey = Long.MAX_VALUE;
+        long maxKey = Long.MIN_VALUE;
+        for (int p = 0; p < pieces; p++) {
+            SummarySlots ring = blocks[pieceLevels[p]];
+            long slot = pieceBlocks[p] % ring.slots();
+            long[] chunk = ring.chunk(slot);
+            int base = ring.offset(slot);
+            int shift = scale - scale(chunk[base]);
+            minKey = Math.min(minKey, keyOf(chunk[base + 1]) >> shift);
+            maxKey = Math.max(maxKey, keyOf(chunk[base + buckets(chunk[base])]) >> shift);
+        }
+        for (int i = 0; i < raw; i++) {
+            minKey = Math.min(minKey, rawKeys[i] >> scale);
+            maxKey = Math.max(maxKey, rawKeys[i] >> scale);
+        }
+        for (int i = 0; i < pendingKeys; i++) {
+            minKey = Math.min(minKey, pending[i] >> scale);
+            maxKey = Math.max(maxKey, pending[i] >> scale);
+        }
+        int extraShift = 0;
+        while ((maxKey >> extraShift) - (minKey >> extraShift) >= MAX_BINS) {
+            extraShift++;
+        }
+        scale += extraShift;
+        this.scale = scale;
+        minKey >>= extraShift;
+        int range = (int) ((maxKey >> extraShift) - minKey + 1);
+        if (bins.length < range) {
+            bins = new int[Math.max(range, bins.length * 2)];
+        }
+
+        long count = 0;
+        for (int p = 0; p < pieces; p++) {
+            SummarySlots ring = blocks[pieceLevels[p]];
+            long slot = pieceBlocks[p] % ring.slots();
+            long[] chunk = ring.chunk(slot);
+            int base = ring.offset(slot);
+            int shift = scale - scale(chunk[base]);
+            for (int i = 1, n = buckets(chunk[base]); i <= n; i++) {
+                long entry = chunk[base + i];
+                int c = countOf(entry);
+                bins[(int) ((keyOf(entry) >> shift) - minKey)] += c;
+                count += c;
+            }
+        }
+        for (int i = 0; i < raw; i++) {
+            bins[(int) ((rawKeys[i] >> scale) - minKey)]++;
+        }
+        for (int i = 0; i < pendingKeys; i++) {
+            bins[(int) ((pending[i] >> scale) - minKey)]++;
+        }
+        count += raw + pendingKeys;
+
+        int q = 0;
+        long seen = 0;
+        for (int b = 0; b < range; b++) {
+            seen += bins[b];
+            bins[b] = 0;
+            // the first bucket holding the value of rank q * (count - 1), 0-based
+            while (q < QUANTILES.length && seen > (long) (QUANTILES[q] * (count - 1))) {
+                quantiles[q++] = valueOf(minKey + b, scale);
+            }
+        }
+    }
+
+    /**
+     * @return quantile {@code i} of {@link #QUANTILES} of the last query, NaN if it was empty
+     */
+    double quantile(int i) {
+        return quantiles[i];
+    }
+
+    /**
+     * @return the number of times the last query's buckets were halved: its quantiles are
+     *         within {@link #relativeError(int)} of this
+     */
+    int scale() {
+        return scale;
+    }
+
+    /**
+     * @return the error bound of a quantile answered at {@code scale}, relative to the
+     *         value of its rank: {@link #RELATIVE_ACCURACY} at scale 0
+     */
+    static double relativeError(int scale) {
+        double ratio = Math.pow((1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY), 1 << scale);
+        return (ratio - 1) / (ratio + 1);
+    }
+
+    /**
+     * Rebuild the keys of the in-progress lowest block from the ring, after it and the
+     * completed sketches were restored up to {@code nextIndex}.
+     */
+    void restorePending(long nextIndex) {
+        pendingCount = (int) (nextIndex % PENDING);
+        for (int i = 0; i < pendingCount; i++) {
+            pending[i] = key(ringBuffer.get(nextIndex - pendingCount + i));
+        }
+    }
+
+    /**
+     * Bulk-copy the sketch slots of every level the first {@code nextIndex} values can
+     * have completed, like {@link WindowAggregates#writeBlocks}.
+     */
+    void writeBlocks(WritableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException {
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && blocks[j] != null; j++) {
+            blocks[j].write(channel, scratch, usedSlots(j, nextIndex));
+        }
+    }
+
+    /**
+     * Read what {@link #writeBlocks} wrote for the same {@code nextIndex}.
+     */
+    void readBlocks(ReadableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException {
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && blocks[j] != null; j++) {
+            blocks[j].read(channel, scratch, usedSlots(j, nextIndex));
+        }
+    }
+
+    /**
+     * @return the bucket key of {@code value}: 0 for magnitudes below {@link #MIN_MAGNITUDE},
+     *         positive and increasing for positive values, mirrored for negative ones
+     */
+    static int key(double value) {
+        double magnitude = Math.abs(value);
+        if (!(magnitude >= MIN_MAGNITUDE)) {
+            return 0;
+        }
+        long bits = Double.doubleToRawLongBits(magnitude);
+        int exponent = (int) (bits >>> 52) - Double.MAX_EXPONENT;
+        // the mantissa as a double in [1, 2)
+        double mantissa = Double.longBitsToDouble((bits & 0x000F_FFFF_FFFF_FFFFL) | 0x3FF0_0000_0000_0000L);
+        // at least 1, so the cast floors
+        int key = (int) ((exponent + mantissa - 1) * MULTIPLIER + KEY_OFFSET);
+        return value > 0 ? key : -key;
+    }
+
+    /**
+     * @return the value reported for the bucket {@code key} at {@code scale}, which
+     *         covers the keys {@code [key << scale, (key + 1) << scale)}
+     */
+    static double valueOf(long key, int scale) {
+        long first = key << scale;
+        long last = ((key + 1) << scale) - 1;
+        if (first > 0) {
+            return middle(lowerBound(first), lowerBound(last + 1));
+        } else if (last < 0) {
+            return -middle(lowerBound(-last), lowerBound(-first + 1));
+        }
+        return 0;
+    }
+
+    /**
+     * @return the smallest magnitude of the positive key {@code key}
+     */
+    private static double lowerBound(long key) {
+        double log = (key - KEY_OFFSET) / MULTIPLIER;
+        double exponent = Math.floor(log);
+        return Math.scalb(1 + (log - exponent), (int) exponent);
+    }
+
+    /**
+     * @return the point of {@code [low, high]} with the same relative distance to both ends
+     */
+    private static double middle(double low, double high) {
+        return 2 * low * high / (low + high);
+    }
+
+    private long usedSlots(int level, long nextIndex) {
+        return Math.min(blocks[level].slots(), nextIndex / BLOCK_SIZE[level]);
+    }
+
+    private void completeLowestBlock(long blockNumber) {
+        // consecutive prices mostly fall in a few buckets: count them without sorting the
+        // block's keys unless it turns out to span many
+        int n = 0;
+        for (int key : pending) {
+            int i = n - 1;
+            while (i >= 0 && keyOf(merged[i]) != key) {
+                i--;
+            }
+            if (i >= 0) {
+                merged[i]++;
+            } else if (n < MAX_BUCKETS[MIN_LEVEL]) {
+                merged[n++] = entry(key, 1);
+            } else {
+                n = sortedEntries();
+                break;
+            }
+        }
+        Arrays.sort(merged, 0, n);
+        store(MIN_LEVEL, blockNumber, 0, n);
+    }
+
+    /**
+     * @return the number of distinct keys of the block, written to {@code merged} as entries
+     */
+    private int sortedEntries() {
+        Arrays.sort(pending);
+        int n = 0;
+        for (int key : pending) {
+            if (n > 0 && keyOf(merged[n - 1]) == key) {
+                merged[n - 1]++;
+            } else {
+                merged[n++] = entry(key, 1);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Merge the ten children of the block, at the coarsest of their scales.
+     */
+    private void completeBlock(int level, long blockNumber) {
+        SummarySlots children = blocks[level - 1];
+        long first = blockNumber * 10;
+        int scale = 0;
+        for (long child = first; child < first + 10; child++) {
+            scale = Math.max(scale, scale(header(level - 1, child)));
+        }
+        int n = 0;
+        for (long child = first; child < first + 10; child++) {
+            long slot = child % children.slots();
+            long[] chunk = children.chunk(slot);
+            int base = children.offset(slot);
+            int shift = scale - scale(chunk[base]);
+            for (int i = 1, count = buckets(chunk[base]); i <= count; i++) {
+                long entry = chunk[base + i];
+                merged[n++] = entry(keyOf(entry) >> shift, countOf(entry));
+            }
+        }
+        Arrays.sort(merged, 0, n);
+        int out = 0;
+        for (int i = 0; i < n; i++) {
+            if (out > 0 && keyOf(merged[out - 1]) == keyOf(merged[i])) {
+                merged[out - 1] += countOf(merged[i]);
+            } else {
+                merged[out++] = merged[i];
+            }
+        }
+        store(level, blockNumber, scale, out);
+    }
+
+    /**
+     * Write the sorted, distinct entries {@code merged[0, n)} at {@code scale} into the
+     * block's slot, halving their resolution until they fit.
+     */
+    private void store(int level, long blockNumber, int scale, int n) {
+        while (n > MAX_BUCKETS[level]) {
+            int out = 0;
+            for (int i = 0; i < n; i++) {
+                long key = keyOf(merged[i]) >> 1;
+                if (out > 0 && keyOf(merged[out - 1]) == key) {
+                    merged[out - 1] += countOf(merged[i]);
+                } else {
+                    merged[out++] = entry(key, countOf(merged[i]));
+                }
+            }
+            n = out;
+            scale++;
+        }
+        SummarySlots ring = blocks[level];
+        long slot = blockNumber % ring.slots();
+        long[] chunk = ring.allocate(slot);
+        int base = ring.offset(slot);
+        chunk[base] = (long) scale << 32 | n;
+        System.arraycopy(merged, 0, chunk, base + 1, n);
+    }
+
+    private long header(int level, long blockNumber) {
+        SummarySlots ring = blocks[level];
+        long slot = blockNumber % ring.slots();
+        return ring.chunk(slot)[ring.offset(slot)];
+    }
+
+    private static int scale(long header) {
+        return (int) (header >>> 32);
+    }
+
+    private static int buckets(long header) {
+        return (int) header;
+    }
+
+    private static long entry(long key, int count) {
+        return key << 32 | count;
+    }
+
+    private static long keyOf(long entry) {
+        return entry >> 32;
+    }
+
+    private static int countOf(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * @return the largest level j (capped at MAX_LEVEL) such that 10^j divides pos
+     */
+    private static int alignedLevel(long pos) {
+        int level = 0;
+        while (level < MAX_LEVEL && pos % BLOCK_SIZE[level + 1] == 0) {
+            level++;
+        }
+        return level;
+    }
+}
@@ -0,0 +1,84 @@
+package com.trading.aggregator;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The value sequence a symbol's published snapshots cover, with parking waiters for
+ * read-your-writes queries.
+ *
+ * <p>Only the worker advances the watermark. Waiters register themselves and are
+ * unparked by the worker once the watermark reaches them, so nobody polls; when nobody
+ * waits, advancing costs the worker one volatile store and one emptiness check.
+ */
+final class SequenceWatermark {
+
+    private volatile long value;
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    long get() {
+        return value;
+    }
+
+    /**
+     * @return true while some thread is parked in {@link #await}
+     */
+    boolean hasWaiters() {
+        return !waiters.isEmpty();
+    }
+
+    /**
+     * Single writer: move the watermark to {@code sequence} and wake the waiters it reaches.
+     */
+    void advance(long sequence) {
+        value = sequence;
+        if (!waiters.isEmpty()) {
+            for (Waiter waiter : waiters) {
+                if (waiter.sequence <= sequence) {
+                    LockSupport.unpark(waiter.thread);
+                }
+            }
+        }
+    }
+
+    /**
+     * Park the calling thread until the watermark reaches {@code sequence}.
+     *
+     * @return false if {@code timeoutNanos} elapsed first
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    boolean await(long sequence, long timeoutNanos) throws InterruptedException {
+        if (value >= sequence) {
+            return true;
+        }
+        Waiter waiter = new Waiter(sequence, Thread.currentThread());
+        waiters.add(waiter);
+        try {
+            long deadline = System.nanoTime() + timeoutNanos;
+            // re-check after registering: the worker may have advanced before it saw us
+            while (value < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            waiters.remove(waiter);
+        }
+    }
+
+    private static final class Waiter {
+        final long sequence;
+        final Thread thread;
+
+        Waiter(long sequence, Thread thread) {
+            this.sequence = sequence;
+            this.thread = thread;
+        }
+    }
+}
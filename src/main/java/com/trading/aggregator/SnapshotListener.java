@@ -0,0 +1,13 @@
+package com.trading.aggregator;
+
+/**
+ * Notified by the worker every time a symbol publishes new snapshots.
+ *
+ * <p>Runs on the worker thread between two batches, so implementations must only
+ * record that an update is due and return, without I/O or blocking.
+ */
+@FunctionalInterface
+public interface SnapshotListener {
+
+    void onPublished(SymbolAggregator aggregator);
+}
@@ -0,0 +1,169 @@
+package com.trading.aggregator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static com.trading.buffer.DoubleChannels.readFully;
+import static com.trading.buffer.DoubleChannels.writeFully;
+
+/**
+ * Where evicted symbols keep their state until they are used again: one file per symbol,
+ * read back and deleted when the symbol is reloaded.
+ *
+ * <p>Unlike a {@link CheckpointStore} checkpoint, a spill is taken from a retired
+ * aggregator, so it is exact and needs no validity bound, and it is compact: only the
+ * ring slots and block summaries the symbol has actually filled are written. A symbol
+ * that saw a few hundred values spills to a few kilobytes, not to the ring's capacity.
+ *
+ * <p>Spills are a cache of memory, not a durability mechanism: the files left by a
+ * previous process are deleted on startup, since checkpoints and the journal already
+ * recover every symbol, spilled or not.
+ *
+ * <p>Layout: a little-endian header ending with the in-progress accumulators, then the
+ * used block summaries, quantile sketches and ring slots in native byte order, then the time buckets and
+ * bars, if the symbol has time windows and bar intervals. Files are written to a temporary name and
+ * atomically renamed.
+ */
+public class SpillStore {
+
+    private static final int MAGIC = 0x5453504C; // "TSPL"
+    private static final int VERSION = 5;
+    private static final String FILE_SUFFIX = ".spill";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // followed by the accumulators
+    private static final int FIXED_HEADER_BYTES = 5 * Integer.BYTES + 5 * Long.BYTES + 2 * Double.BYTES;
+
+    private final Path directory;
+
+    public SpillStore(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                    "*{" + FILE_SUFFIX + "," + TEMP_SUFFIX + "}")) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prepare spill directory " + directory, e);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Write the state of a {@link SymbolAggregator#retire() retired} aggregator.
+     */
+    void write(SymbolAggregator aggregator) throws IOException {
+        Path file = fileOf(aggregator.getSymbol());
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        CheckpointCapture capture = aggregator.captureRetired();
+        ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES + capture.accumulators.length * Long.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+                .putInt(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1)
+                .putInt(capture.accumulators.length)
+                .putInt(aggregator.hasQuantiles() ? 1 : 0)
+                .putLong(aggregator.ringCapacity())
+                .putLong(capture.nextIndex)
+                .putLong(capture.historyStart)
+                .putLong(capture.lastSequence)
+                .putLong(aggregator.acceptedValues())
+                .putDouble(capture.lastValue)
+                .putDouble(aggregator.recordedTickSize());
+        for (long value : capture.accumulators) {
+            header.putLong(value);
+        }
+        header.flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            aggregator.writeUsedHistory(channel);
+        }
+        // no fsync: a spill does not need to survive a crash, only the process's own reload
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load the spilled state of the aggregator's symbol into a fresh aggregator, then
+     * delete the file.
+     *
+     * @return false if the symbol has no spill
+     * @throws IllegalStateException if the spill was written with another ring capacity
+     *                               tick size or quantile setting
+     */
+    boolean restore(SymbolAggregator aggregator) throws IOException {
+        Path file = fileOf(aggregator.getSymbol());
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IllegalStateException("Not a spill of a supported version: " + file);
+            }
+            int order = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 0 : 1;
+            if (header.getInt() != order) {
+                throw new IllegalStateException("Spill written on an incompatible platform: " + file);
+            }
+            int fields = header.getInt();
+            boolean quantiles = header.getInt() != 0;
+            long capacity = header.getLong();
+            if (capacity != aggregator.ringCapacity()) {
+                throw new IllegalStateException("Spill " + file + " has ring capacity " + capacity
+                        + ", expected " + aggregator.ringCapacity());
+            }
+            long nextIndex = header.getLong();
+            long historyStart = header.getLong();
+            long lastSequence = header.getLong();
+            long acceptedValues = header.getLong();
+            double lastValue = header.getDouble();
+            double tickSize = header.getDouble();
+            if (tickSize != aggregator.recordedTickSize()) {
+                throw new IllegalStateException("Spill " + file + " has tick size " + tickSize
+                        + ", expected " + aggregator.recordedTickSize());
+            }
+            if (fields != aggregator.accumulatorFields()) {
+                throw new IllegalStateException("Spill " + file + " has " + fields
+                        + " accumulator fields, expected " + aggregator.accumulatorFields());
+            }
+            if (quantiles != aggregator.hasQuantiles()) {
+                throw new IllegalStateException("Spill " + file + (quantiles ? " has" : " has no")
+                        + " quantile sketches, unlike the aggregator");
+            }
+            long[] accumulators = CheckpointStore.readAccumulators(channel, fields);
+            aggregator.restoreUsedHistory(
+                    new CheckpointCapture(nextIndex, lastValue, historyStart, lastSequence, accumulators),
+                    acceptedValues, channel);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        return true;
+    }
+
+    /**
+     * @return the size of the symbol's spill file, 0 if it has none
+     */
+    long bytesOf(String symbol) {
+        try {
+            return Files.size(fileOf(symbol));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path fileOf(String symbol) {
+        return directory.resolve(URLEncoder.encode(symbol, StandardCharsets.UTF_8) + FILE_SUFFIX);
+    }
+}
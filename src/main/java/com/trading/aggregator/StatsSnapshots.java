@@ -0,0 +1,150 @@
+package com.trading.aggregator;
+
+import com.trading.model.Stats;
+import org.agrona.BufferUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * The published statistics of all windows of one symbol: a preallocated off-heap block
+ * of {@link #WINDOWS} windows × {@link #FIELDS} doubles, guarded by a seqlock.
+ *
+ * <p>The single writer makes the sequence odd, overwrites the block and makes the
+ * sequence even again. Readers copy the block between two reads of the sequence and
+ * retry if it changed or was odd, so they never block the writer and never see a window,
+ * or a set of windows, from two different batches. Publishing allocates nothing.
+ *
+ * <p>Layout: the sequence on its own cache line, then window k (1-based) at
+ * {@code (k - 1) * FIELDS} doubles, fields in the order of the {@code *_FIELD} constants.
+ * The count is stored as a double, which is exact below 2^53.
+ */
+public final class StatsSnapshots {
+
+    public static final int WINDOWS = 8;
+    public static final int FIELDS = 9;
+    public static final int MIN_FIELD = 0;
+    public static final int MAX_FIELD = 1;
+    public static final int LAST_FIELD = 2;
+    public static final int AVG_FIELD = 3;
+    public static final int VARIANCE_FIELD = 4;
+    public static final int COUNT_FIELD = 5;
+    public static final int P50_FIELD = 6;
+    public static final int P95_FIELD = 7;
+    public static final int P99_FIELD = 8;
+
+    /** Length of the arrays passed to {@link #publish} and {@link #copyTo}. */
+    public static final int LENGTH = WINDOWS * FIELDS;
+
+    private static final int CACHE_LINE = 64;
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int DATA_OFFSET = CACHE_LINE;
+
+    private final UnsafeBuffer buffer =
+            new UnsafeBuffer(BufferUtil.allocateDirectAligned(DATA_OFFSET + LENGTH * Double.BYTES, CACHE_LINE));
+
+    public StatsSnapshots() {
+        double[] empty = new double[LENGTH];
+        for (int k = 1; k <= WINDOWS; k++) {
+            setEmpty(empty, k);
+        }
+        publish(empty);
+    }
+
+    /**
+     * Overwrite the window {@code k} of {@code fields} with the statistics of an empty window.
+     */
+    public static void setEmpty(double[] fields, int k) {
+        int base = (k - 1) * FIELDS;
+        fields[base + MIN_FIELD] = Double.NaN;
+        fields[base + MAX_FIELD] = Double.NaN;
+        fields[base + LAST_FIELD] = Double.NaN;
+        fields[base + AVG_FIELD] = Double.NaN;
+        fields[base + VARIANCE_FIELD] = Double.NaN;
+        fields[base + COUNT_FIELD] = 0;
+        fields[base + P50_FIELD] = Double.NaN;
+        fields[base + P95_FIELD] = Double.NaN;
+        fields[base + P99_FIELD] = Double.NaN;
+    }
+
+    /**
+     * Publish all windows at once. Single writer only.
+     */
+    void publish(double[] fields) {
+        long sequence = buffer.getLong(SEQUENCE_OFFSET);
+        buffer.putLongOrdered(SEQUENCE_OFFSET, sequence + 1);
+        // the odd sequence must be visible before any of the new fields
+        VarHandle.storeStoreFence();
+        for (int i = 0; i < LENGTH; i++) {
+            buffer.putDouble(DATA_OFFSET + i * Double.BYTES, fields[i]);
+        }
+        buffer.putLongOrdered(SEQUENCE_OFFSET, sequence + 2);
+    }
+
+    /**
+     * Copy all windows in one consistent pass.
+     *
+     * @param into at least {@link #LENGTH} doubles
+     * @return the sequence of the copied publication; it only changes when new
+     *         statistics are published, so it can key caches of derived views
+     */
+    public long copyTo(double[] into) {
+        while (true) {
+            long before = buffer.getLongVolatile(SEQUENCE_OFFSET);
+            if ((before & 1) == 0) {
+                for (int i = 0; i < LENGTH; i++) {
+                    into[i] = buffer.getDouble(DATA_OFFSET + i * Double.BYTES);
+                }
+                // the copy must complete before the sequence is checked again
+                VarHandle.loadLoadFence();
+                if (buffer.getLongVolatile(SEQUENCE_OFFSET) == before) {
+                    return before;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return a consistent copy of window {@code k} (1-based)
+     */
+    public Stats get(int k) {
+        int base = DATA_OFFSET + (k - 1) * FIELDS * Double.BYTES;
+        while (true) {
+            long before = buffer.getLongVolatile(SEQUENCE_OFFSET);
+            if ((before & 1) == 0) {
+                double min = buffer.getDouble(base + MIN_FIELD * Double.BYTES);
+                double max = buffer.getDouble(base + MAX_FIELD * Double.BYTES);
+                double last = buffer.getDouble(base + LAST_FIELD * Double.BYTES);
+                double avg = buffer.getDouble(base + AVG_FIELD * Double.BYTES);
+                double variance = buffer.getDouble(base + VARIANCE_FIELD * Double.BYTES);
+                double count = buffer.getDouble(base + COUNT_FIELD * Double.BYTES);
+                double p50 = buffer.getDouble(base + P50_FIELD * Double.BYTES);
+                double p95 = buffer.getDouble(base + P95_FIELD * Double.BYTES);
+                double p99 = buffer.getDouble(base + P99_FIELD * Double.BYTES);
+                VarHandle.loadLoadFence();
+                if (buffer.getLongVolatile(SEQUENCE_OFFSET) == before) {
+                    return new Stats(min, max, last, avg, variance, (long) count, p50, p95, p99);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * @return the sequence of the latest publication
+     */
+    public long sequence() {
+        return buffer.getLongVolatile(SEQUENCE_OFFSET) & ~1L;
+    }
+
+    /**
+     * @return window {@code k} of an array filled by {@link #copyTo}
+     */
+    public static Stats toStats(double[] fields, int k) {
+        int base = (k - 1) * FIELDS;
+        return new Stats(fields[base + MIN_FIELD], fields[base + MAX_FIELD], fields[base + LAST_FIELD],
+                fields[base + AVG_FIELD], fields[base + VARIANCE_FIELD], (long) fields[base + COUNT_FIELD],
+                fields[base + P50_FIELD], fields[base + P95_FIELD], fields[base + P99_FIELD]);
+    }
+}
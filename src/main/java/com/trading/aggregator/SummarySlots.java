@@ -0,0 +1,91 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.DoubleChannels;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * One level's ring of block summaries for {@link BlockAggregates} and
+ * {@link TickAggregates}: {@code fields} longs per slot, allocated a chunk of
+ * {@link #CHUNK_SLOTS} slots at a time as blocks are completed.
+ *
+ * <p>The ring is sized for the ring buffer's capacity, which for a 10^8 window is a
+ * million slots at the lowest level, but block {@code b} lives in slot
+ * {@code b % slots()}, so until the level wraps only a prefix is written. A symbol that
+ * has seen a few thousand values therefore holds a chunk per level instead of the whole
+ * ring. Chunks are never moved once allocated, so a completed block stays where a
+ * concurrent {@link #write} expects it.
+ *
+ * <p>Not thread-safe: owned by the single worker that mutates a {@link SymbolAggregator}.
+ */
+final class SummarySlots {
+
+    static final int CHUNK_SHIFT = 8;
+    static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+
+    private final long slots;
+    private final int fields;
+    private final long[][] chunks;
+
+    SummarySlots(long slots, int fields) {
+        this.slots = slots;
+        this.fields = fields;
+        this.chunks = new long[Math.toIntExact((slots + CHUNK_SLOTS - 1) >>> CHUNK_SHIFT)][];
+    }
+
+    long slots() {
+        return slots;
+    }
+
+    /**
+     * @return the chunk holding {@code slot}, or null if no block was written to it
+     */
+    long[] chunk(long slot) {
+        return chunks[(int) (slot >>> CHUNK_SHIFT)];
+    }
+
+    /**
+     * @return the chunk holding {@code slot}, allocated if needed
+     */
+    long[] allocate(long slot) {
+        int index = (int) (slot >>> CHUNK_SHIFT);
+        long[] chunk = chunks[index];
+        if (chunk == null) {
+            long chunkSlots = Math.min(CHUNK_SLOTS, slots - ((long) index << CHUNK_SHIFT));
+            chunk = new long[(int) chunkSlots * fields];
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * @return the offset of {@code slot}'s first field in its chunk
+     */
+    int offset(long slot) {
+        return ((int) slot & CHUNK_MASK) * fields;
+    }
+
+    /**
+     * Copy the first {@code used} slots, all of which must have been allocated.
+     */
+    void write(WritableByteChannel channel, ByteBuffer scratch, long used) throws IOException {
+        for (long slot = 0; slot < used; slot += CHUNK_SLOTS) {
+            int count = (int) Math.min(CHUNK_SLOTS, used - slot);
+            DoubleChannels.write(channel, chunk(slot), 0, count * fields, scratch);
+        }
+    }
+
+    /**
+     * Read what {@link #write} wrote for the same {@code used}, allocating its chunks.
+     */
+    void read(ReadableByteChannel channel, ByteBuffer scratch, long used) throws IOException {
+        for (long slot = 0; slot < used; slot += CHUNK_SLOTS) {
+            int count = (int) Math.min(CHUNK_SLOTS, used - slot);
+            DoubleChannels.read(channel, allocate(slot), 0, count * fields, scratch);
+        }
+    }
+}
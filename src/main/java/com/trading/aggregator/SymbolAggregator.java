@@ -1,262 +1,1080 @@
 package com.trading.aggregator;
 
+import com.trading.buffer.CompressedRingBuffer;
+import com.trading.buffer.DoubleChannels;
 import com.trading.buffer.RingBuffer;
+import com.trading.journal.SymbolJournal;
+import com.trading.metrics.LatencyHistogram;
+import com.trading.model.Bar;
 import com.trading.model.Batch;
 import com.trading.model.Stats;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.DoublePredicate;
+import java.util.concurrent.locks.LockSupport;
 
 public class SymbolAggregator implements Runnable {
 
-    private static final short AMOUNT_OF_BATCHES_PER_SYMBOL = 9;
+    public static final int DEFAULT_QUEUE_CAPACITY = 65_536;
+    /** How far ahead of the service's clock a timestamp column may be, for producer clock skew. */
+    public static final long MAX_TIMESTAMP_SKEW_MILLIS = 5_000;
+
+    private static final long MIN_BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_BLOCK_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long TOUCH_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
 
     private final String symbol;
+    // dense id assigned by the SymbolRegistry; -1 for an aggregator created outside one
+    private int id = -1;
     private final RingBuffer ringBuffer;
     private final int capacity;
     private final BatchQueue queue;
+    private final BatchPool batchPool;
     private final AtomicLong globalIndex = new AtomicLong(0);
 
-    private final double[] sum = new double[9];
-    private final double[] sumSq = new double[9];
     private final int[] windowSize = new int[9];
-    private final int[] count = new int[9];
-    private final Deque<long[]>[] minDeque = new ConcurrentLinkedDeque[AMOUNT_OF_BATCHES_PER_SYMBOL];
-    private final Deque<long[]>[] maxDeque = new ConcurrentLinkedDeque[AMOUNT_OF_BATCHES_PER_SYMBOL];
-    private volatile AtomicReference<Double> lastValue = new AtomicReference<>(Double.NaN);
-    private final AtomicReference<Stats>[] snapshots = new AtomicReference[AMOUNT_OF_BATCHES_PER_SYMBOL];
-    private AtomicBoolean running = new AtomicBoolean(false);
+    private final WindowSet windowSet;
+    // null for floating-point aggregation
+    private final TickSize tickSize;
+    private final WindowAggregates blocks;
+    // null without quantiles
+    private final QuantileSketches quantiles;
+    // null without time windows
+    private final TimeBuckets timeBuckets;
+    // null without bars
+    private final BarHistory bars;
+    private volatile double lastValue = Double.NaN;
+    private final StatsSnapshots snapshots = new StatsSnapshots();
+    // worker-owned: the next publication, assembled outside the seqlock's write section
+    private final double[] pendingSnapshots = new double[StatsSnapshots.LENGTH];
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final SymbolJournal journal;
+    private final AtomicLong droppedBatches = new AtomicLong();
+    private final AtomicLong droppedValues = new AtomicLong();
+    private final LatencyHistogram ingestLatency = new LatencyHistogram();
+
+    // COALESCE: batches that did not fit in the queue, packed into one chain of slabs
+    // that the worker processes after the queue; mutated under stagingLock
+    private final Object stagingLock = new Object();
+    private volatile Batch stagedHead;
+    private Batch stagedTail;
+
+    // first index the ring still holds valid data for; only moves after a restore
+    // from a checkpoint whose ring copy overlapped later writes
+    private long historyStart;
+    // journal sequence of the last processed batch; worker-owned
+    private long lastSequence;
+    // values accepted so far, the value sequence of the last enqueued batch; guarded by offerLock
+    private final Object offerLock = new Object();
+    private long acceptedValues;
+    // set once the SymbolLifecycle evicts the aggregator; guarded by offerLock
+    private boolean retired;
+    private volatile long lastAccessNanos = System.nanoTime();
+    private final SequenceWatermark processedSequence = new SequenceWatermark();
+    // copy-on-write under listenerLock, so the worker iterates without allocating or locking
+    private final Object listenerLock = new Object();
+    private volatile SnapshotListener[] listeners = new SnapshotListener[0];
+    private final AtomicReference<CompletableFuture<CheckpointCapture>> captureRequest = new AtomicReference<>();
 
     public SymbolAggregator(String symbol, RingBuffer ringBuffer) {
+        this(symbol, ringBuffer, new BatchPool(BatchPool.DEFAULT_MAX_SLABS, BatchPool.DEFAULT_SLAB_SIZE));
+    }
+
+    /**
+     * @param batchPool slabs queued batches are copied into, usually shared by all symbols
+     */
+    public SymbolAggregator(String symbol, RingBuffer ringBuffer, BatchPool batchPool) {
+        this(symbol, ringBuffer, batchPool, SymbolOptions.DEFAULT);
+    }
+
+    /**
+     * @param options queue, overflow policy, journal and what to aggregate; see {@link SymbolOptions}
+     */
+    public SymbolAggregator(String symbol, RingBuffer ringBuffer, BatchPool batchPool, SymbolOptions options) {
         this.symbol = symbol;
         this.ringBuffer = ringBuffer;
         this.capacity = (int) ringBuffer.capacity();
-        this.queue = new BatchQueue(65_536);
+        this.queue = new BatchQueue(options.queueCapacity());
+        this.batchPool = batchPool;
+        this.overflowPolicy = options.overflowPolicy();
+        this.blockTimeoutNanos = options.blockTimeoutNanos();
+        this.journal = options.journal();
+        this.tickSize = options.tickSize();
+        this.blocks = tickSize == null ? new BlockAggregates(ringBuffer) : new TickAggregates(ringBuffer, tickSize);
+        this.quantiles = options.quantiles() ? new QuantileSketches(ringBuffer) : null;
+        this.timeBuckets = options.timeWindows() == null ? null : new TimeBuckets(options.timeWindows());
+        this.bars = options.barIntervals() == null ? null : new BarHistory(options.barIntervals());
+        this.windowSet = options.windowSet();
 
         for (int k = 1; k <= 8; k++) {
             windowSize[k] = (int) Math.pow(10, k);
-            minDeque[k] = new ConcurrentLinkedDeque<>();
-            maxDeque[k] = new ConcurrentLinkedDeque<>();
-            snapshots[k] = new AtomicReference<>(
-                    new Stats(Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN, 0)
-            );
+            StatsSnapshots.setEmpty(pendingSnapshots, k);
         }
 
     }
 
-    public void enqueueBatch(List<Double> values) {
-        Batch batch = new Batch(values);
-        if (!queue.offer(batch)) {
-            throw new IllegalStateException("Batch queue overflow for " + symbol);
+    /**
+     * @return the value sequence the batch ends at, see {@link #processedSequence()}
+     */
+    public long enqueueBatch(List<Double> values) {
+        Batch head = acquireSlabs(values.size());
+        Batch slab = head;
+        for (double value : values) {
+            if (slab.remaining() == 0) {
+                slab = slab.getNext();
+            }
+            slab.add(value);
+        }
+        if (tickSize != null) {
+            checkOnGrid(head);
         }
+        return offer(head, values.size());
     }
 
-    public Stats getStats(int k) {
-        return snapshots[k].get();
+    public long enqueueBatch(double[] values) {
+        return enqueueBatch(DoubleBuffer.wrap(values));
+    }
+
+    /**
+     * Copy the remaining prices of {@code values} into pooled slabs and enqueue them
+     * as one batch. The buffer can be reused by the caller once this returns.
+     *
+     * @return the value sequence the batch ends at, see {@link #processedSequence()}
+     */
+    public long enqueueBatch(DoubleBuffer values) {
+        return enqueueBatch(values, null, null);
     }
 
+    /**
+     * Like {@link #enqueueBatch(DoubleBuffer)}, with a volume and a timestamp per price for
+     * the bars. Both are optional: a price without volume adds nothing to its bar's
+     * volume and VWAP, and a price without timestamp (or with timestamp 0) is stamped with
+     * its arrival time.
+     *
+     * @param volumes    the volume of each price, or null
+     * @param timestamps the epoch milliseconds of each price, or null
+     * @throws IllegalArgumentException if a column does not have one entry per price, a
+     *                                  price is off the symbol's {@link TickSize} grid, a
+     *                                  volume is negative or not finite, or a timestamp is
+     *                                  more than {@link #MAX_TIMESTAMP_SKEW_MILLIS} ahead
+     */
+    public long enqueueBatch(DoubleBuffer values, DoubleBuffer volumes, LongBuffer timestamps) {
+        checkBatch(symbol, tickSize, values, volumes, timestamps);
+        int count = values.remaining();
+        Batch head = acquireSlabs(count);
+        for (Batch slab = head; slab != null && values.hasRemaining(); slab = slab.getNext()) {
+            slab.addAll(values, volumes, timestamps);
+        }
+        return offer(head, count);
+    }
 
-    public boolean markInProgress() {
-        return running.compareAndSet(running.get(), true);
+    private Batch acquireSlabs(int count) {
+        long enqueuedNanos = System.nanoTime();
+        Batch head = batchPool.acquire(count);
+        if (head != null) {
+            head.setEnqueuedNanos(enqueuedNanos);
+            return head;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                head = acquireBlocking(count);
+                break;
+            case DROP_OLDEST:
+                // our own queued batches may be what holds the slabs
+                while ((head = batchPool.acquire(count)) == null && dropOldest()) {
+                    // retry with the slabs just released
+                }
+                break;
+            default:
+                break;
+        }
+        if (head == null) {
+            throw reject("Batch pool exhausted for ");
+        }
+        head.setEnqueuedNanos(enqueuedNanos);
+        return head;
     }
 
-    public void shutdown() {
-        running.compareAndSet(running.get(), false);
+    /**
+     * Assign the batch its value sequence and enqueue it. One lock covers the sequence,
+     * the journal append and the queue offer, so that value sequences and journal
+     * records both follow queue order.
+     */
+    private long offer(Batch head, int count) {
+        synchronized (offerLock) {
+            if (retired) {
+                batchPool.release(head);
+                throw new AggregatorRetiredException(symbol);
+            }
+            long valueSequence = acceptedValues + count;
+            head.setValueSequence(valueSequence);
+            if (journal == null) {
+                offerInOrder(head);
+            } else {
+                long record = journal.append(head);
+                head.setJournalRecord(record);
+                try {
+                    offerInOrder(head);
+                } catch (BatchRejectedException e) {
+                    journal.cancel(record);
+                    throw e;
+                }
+            }
+            acceptedValues = valueSequence;
+            return valueSequence;
+        }
     }
 
-    public void run() {
-        while (running.get()) {
-            while (!queue.isEmpty()) {
-                Batch batch = queue.poll();
-                if (batch == null) {
-                    continue;
+    /**
+     * Reject a batch that {@link #enqueueBatch(DoubleBuffer, DoubleBuffer, LongBuffer)}
+     * would, without consuming its buffers, so that a caller can check many batches
+     * before enqueuing any.
+     *
+     * <p>Volumes and timestamps are checked because the bars cannot undo them: a negative
+     * or non-finite volume would corrupt its bars' volume and VWAP for good, and a
+     * timestamp in the future would open a bar that every later value falls behind.
+     *
+     * @param tickSize the symbol's tick size, or null
+     * @throws IllegalArgumentException if a column does not have one entry per price, a
+     *                                  price is off the {@code tickSize} grid, a volume is
+     *                                  negative or not finite, or a timestamp is more than
+     *                                  {@link #MAX_TIMESTAMP_SKEW_MILLIS} ahead
+     */
+    static void checkBatch(String symbol, TickSize tickSize, DoubleBuffer values, DoubleBuffer volumes,
+                           LongBuffer timestamps) {
+        int count = values.remaining();
+        if ((volumes != null && volumes.remaining() != count)
+                || (timestamps != null && timestamps.remaining() != count)) {
+            throw new IllegalArgumentException("Volumes and timestamps of " + symbol
+                    + " must have one entry per value (" + count + ")");
+        }
+        if (tickSize != null) {
+            for (int i = values.position(), end = values.limit(); i < end; i++) {
+                double price = values.get(i);
+                if (!tickSize.isOnGrid(price)) {
+                    throw new IllegalArgumentException("Price " + price + " of " + symbol
+                            + " is not a multiple of its tick size " + tickSize);
+                }
+            }
+        }
+        if (volumes != null) {
+            for (int i = volumes.position(), end = volumes.limit(); i < end; i++) {
+                double volume = volumes.get(i);
+                // also false for NaN
+                if (!(volume >= 0 && volume < Double.POSITIVE_INFINITY)) {
+                    throw new IllegalArgumentException("Volume " + volume + " of " + symbol
+                            + " is not a finite, non-negative number");
                 }
+            }
+        }
+        if (timestamps != null) {
+            long latest = System.currentTimeMillis() + MAX_TIMESTAMP_SKEW_MILLIS;
+            for (int i = timestamps.position(), end = timestamps.limit(); i < end; i++) {
+                if (timestamps.get(i) > latest) {
+                    throw new IllegalArgumentException("Timestamp " + timestamps.get(i) + " of " + symbol
+                            + " is in the future");
+                }
+            }
+        }
+    }
 
-                for (double value : batch.getValues()) {
-                    processValue(value);
+    /**
+     * Reject the whole batch if a price is not a whole number of ticks, before it is
+     * journaled or queued, so the worker only ever converts exact prices.
+     */
+    private void checkOnGrid(Batch head) {
+        for (Batch slab = head; slab != null; slab = slab.getNext()) {
+            double[] values = slab.getValues();
+            for (int i = 0, n = slab.size(); i < n; i++) {
+                if (!tickSize.isOnGrid(values[i])) {
+                    batchPool.release(head);
+                    throw new IllegalArgumentException("Price " + values[i] + " of " + symbol
+                            + " is not a multiple of its tick size " + tickSize);
                 }
-                updateSnapshots();
             }
         }
     }
 
+    private void offerInOrder(Batch head) {
+        if (overflowPolicy == OverflowPolicy.COALESCE && stagedHead != null) {
+            // keep arrival order: once staging has started, everything goes behind it
+            stage(head);
+            return;
+        }
+        if (queue.offer(head)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                if (offerBlocking(head)) {
+                    return;
+                }
+                break;
+            case COALESCE:
+                stage(head);
+                return;
+            case DROP_OLDEST:
+                do {
+                    dropOldest();
+                } while (!queue.offer(head));
+                return;
+            default:
+                break;
+        }
+        batchPool.release(head);
+        throw reject("Batch queue overflow for ");
+    }
+
+    private Batch acquireBlocking(int count) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        long parkNanos = MIN_BLOCK_PARK_NANOS;
+        Batch head;
+        while ((head = batchPool.acquire(count)) == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos << 1, MAX_BLOCK_PARK_NANOS);
+        }
+        return head;
+    }
 
+    private boolean offerBlocking(Batch head) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        long parkNanos = MIN_BLOCK_PARK_NANOS;
+        while (!queue.offer(head)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(Math.min(parkNanos, remaining));
+            parkNanos = Math.min(parkNanos << 1, MAX_BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
 
     /**
-     * Processes a single incoming trading price and updates all rolling statistics
-     * (min, max, average, variance) for each configured sliding window size (10^1 ... 10^8).
-     *
-     * <p>This method is invoked by the worker thread whenever a new value is received.
-     * It maintains state in constant time for every sliding window:
-     * <ul>
-     *   <li>Stores the value in the ring buffer, indexed by a global sequence number.</li>
-     *   <li>Updates the "last" observed value.</li>
-     *   <li>For each window size (10^k):
-     *     <ul>
-     *       <li>Adds the new value to rolling sums (sum and sum of squares).</li>
-     *       <li>If the window is full, evicts the oldest value and subtracts its contribution.</li>
-     *       <li>Maintains monotonic deques for min and max in amortized O(1).</li>
-     *     </ul>
-     *   </li>
-     * </ul>
+     * Append a batch to the staged chain, topping up the last staged slab first so
+     * that small batches end up densely packed; emptied slabs go back to the pool.
+     */
+    private void stage(Batch head) {
+        synchronized (stagingLock) {
+            long enqueuedNanos = head.getEnqueuedNanos();
+            long sequence = head.getSequence();
+            long valueSequence = head.getValueSequence();
+            Batch slab = head;
+            while (slab != null) {
+                Batch next = slab.getNext();
+                slab.setNext(null);
+                if (stagedTail != null) {
+                    slab.moveTo(stagedTail);
+                }
+                if (slab.size() == 0) {
+                    batchPool.release(slab);
+                } else {
+                    if (stagedTail == null) {
+                        // the staged batch is as old as its first contributor
+                        slab.setEnqueuedNanos(enqueuedNanos);
+                        stagedHead = slab;
+                    } else {
+                        stagedTail.setNext(slab);
+                    }
+                    stagedTail = slab;
+                }
+                slab = next;
+            }
+            if (stagedHead != null) {
+                stagedHead.setSequence(sequence);
+                stagedHead.setValueSequence(valueSequence);
+            }
+        }
+    }
+
+    private Batch takeStaged() {
+        if (stagedHead == null) {
+            return null;
+        }
+        synchronized (stagingLock) {
+            Batch head = stagedHead;
+            stagedHead = null;
+            stagedTail = null;
+            return head;
+        }
+    }
+
+    /**
+     * @return false if there was nothing left to drop
+     */
+    private boolean dropOldest() {
+        Batch oldest = queue.poll();
+        if (oldest == null) {
+            return false;
+        }
+        long values = 0;
+        for (Batch slab = oldest; slab != null; slab = slab.getNext()) {
+            values += slab.size();
+        }
+        if (journal != null) {
+            // the batch was journaled when it was accepted: replay must skip it too
+            synchronized (offerLock) {
+                journal.cancel(oldest.getSequence(), oldest.getJournalRecord());
+            }
+        }
+        droppedBatches.incrementAndGet();
+        droppedValues.addAndGet(values);
+        batchPool.release(oldest);
+        return true;
+    }
+
+    private BatchRejectedException reject(String reason) {
+        return new BatchRejectedException(reason + symbol, symbol, queueDepth());
+    }
+
+    /**
+     * @throws IllegalArgumentException if window {@code k} is not in the symbol's {@link WindowSet}
+     */
+    public Stats getStats(int k) {
+        if (!windowSet.contains(k)) {
+            throw new IllegalArgumentException("Window k=" + k + " is not configured for " + symbol
+                    + " (" + windowSet + ")");
+        }
+        return snapshots.get(k);
+    }
+
+    public WindowSet getWindowSet() {
+        return windowSet;
+    }
+
+    /**
+     * @return the statistics of the values enqueued during the last {@code durationNanos},
+     *         to within one bucket of the shortest time window at least that long
+     * @throws IllegalArgumentException if the symbol has no time window that long
+     */
+    public Stats getTimeStats(long durationNanos) {
+        double[] fields = new double[StatsSnapshots.FIELDS];
+        copyTimeWindow(durationNanos, fields);
+        return StatsSnapshots.toStats(fields, 1);
+    }
+
+    /**
+     * Like {@link #getTimeStats}, into the first {@link StatsSnapshots#FIELDS} doubles of
+     * {@code into}, laid out as window 1 of {@link StatsSnapshots#copyTo}.
+     */
+    public void copyTimeWindow(long durationNanos, double[] into) {
+        if (timeBuckets == null) {
+            throw new IllegalArgumentException("No time windows configured for " + symbol);
+        }
+        timeBuckets.query(System.nanoTime(), durationNanos, into);
+    }
+
+    /**
+     * @return the time windows of the symbol, or null
+     */
+    public TimeWindows getTimeWindows() {
+        return timeBuckets == null ? null : timeBuckets.windows();
+    }
+
+    /**
+     * @param intervalMillis the bar interval, one of {@link #getBarIntervals()}
+     * @param limit          the most recent bars to return at most
+     * @return the last bars of that interval, oldest first; the last one is still in
+     *         progress until a value of a later interval is processed
+     * @throws IllegalArgumentException if the symbol builds no bars of that interval
+     */
+    public List<Bar> getBars(long intervalMillis, int limit) {
+        int w = bars == null ? -1 : bars.intervals().indexOf(intervalMillis);
+        if (w < 0) {
+            throw new IllegalArgumentException("No " + intervalMillis + " ms bars configured for " + symbol);
+        }
+        return bars.bars(w, limit);
+    }
+
+    /**
+     * @return the bar intervals of the symbol, or null
+     */
+    public BarIntervals getBarIntervals() {
+        return bars == null ? null : bars.intervals();
+    }
+
+    /**
+     * @return the published statistics of every window, read together
+     */
+    public StatsSnapshots snapshots() {
+        return snapshots;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the symbol's id in the {@link AggregatorManager} that created it, or -1
+     */
+    public int getId() {
+        return id;
+    }
+
+    void assignId(int id) {
+        this.id = id;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the tick size of a symbol aggregated in fixed point, or null
+     */
+    public TickSize getTickSize() {
+        return tickSize;
+    }
+
+    /**
+     * @return the size of {@link CheckpointCapture#accumulators}
+     */
+    int accumulatorFields() {
+        return blocks.accumulatorFields();
+    }
+
+    /**
+     * @return whether the symbol keeps quantile sketches, which checkpoints and spills
+     *         hold after the block summaries
+     */
+    boolean hasQuantiles() {
+        return quantiles != null;
+    }
+
+    /**
+     * @return whether the ring writes its encoded blocks rather than raw slots, which a
+     *         checkpoint only restores into a ring of the same kind
+     */
+    boolean hasCompressedRing() {
+        return ringBuffer instanceof CompressedRingBuffer;
+    }
+
+    /**
+     * @return the tick size as checkpoints and spills record it, 0 for floating point
+     */
+    double recordedTickSize() {
+        return tickSize == null ? 0 : tickSize.value();
+    }
+
+    /**
+     * @return batches waiting for the worker, counting a staged coalesced batch as one;
+     *         approximate while producers and the worker are active
+     */
+    public int queueDepth() {
+        return queue.size() + (stagedHead != null ? 1 : 0);
+    }
+
+    /**
+     * @return values processed since the aggregator was created
+     */
+    public long valuesProcessed() {
+        return globalIndex.get();
+    }
+
+    /**
+     * @return time from {@code enqueueBatch} until the batch's snapshots were published
+     */
+    public LatencyHistogram ingestLatency() {
+        return ingestLatency;
+    }
+
+    public long offHeapBytes() {
+        return ringBuffer.offHeapBytes();
+    }
+
+    /**
+     * Record a lookup of the symbol, for the {@link SymbolLifecycle}'s idle and LRU
+     * policies. Only stores when the recorded time is stale, so that hot symbols read
+     * by many threads do not contend on the field.
+     */
+    void touch(long nowNanos) {
+        if (nowNanos - lastAccessNanos > TOUCH_RESOLUTION_NANOS) {
+            lastAccessNanos = nowNanos;
+        }
+    }
+
+    long lastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    long ringCapacity() {
+        return ringBuffer.capacity();
+    }
+
+    void releaseRingBuffer() {
+        ringBuffer.release();
+    }
+
+    public int queueCapacity() {
+        return queue.capacity();
+    }
+
+    /**
+     * @return batches discarded under {@link OverflowPolicy#DROP_OLDEST}
+     */
+    public long droppedBatches() {
+        return droppedBatches.get();
+    }
+
+    /**
+     * @return values discarded under {@link OverflowPolicy#DROP_OLDEST}
+     */
+    public long droppedValues() {
+        return droppedValues.get();
+    }
+
+    /**
+     * Claim the right to schedule this aggregator. Only one caller wins until
+     * {@link #markIdle()} is called, which guarantees that at most one worker
+     * processes the symbol at any time.
      *
-     * <p>Complexity:
-     * <ul>
-     *   <li>Insertion per value: O(1) amortized for each window.</li>
-     *   <li>Maintains min/max in O(1) amortized via monotonic queues.</li>
-     * </ul>
+     * @return true if the caller must hand the aggregator to a worker
+     */
+    public boolean markInProgress() {
+        return scheduled.compareAndSet(false, true);
+    }
+
+    /**
+     * Release the scheduling claim once the worker is done. Batches enqueued while
+     * the worker was draining may have been rejected by {@link #markInProgress()},
+     * so the caller must check {@link #hasPendingWork()} and reschedule.
+     */
+    public void markIdle() {
+        scheduled.set(false);
+    }
+
+    /**
+     * @return true if there are batches to process or a checkpoint capture to take
+     */
+    public boolean hasPendingWork() {
+        return !queue.isEmpty() || stagedHead != null || captureRequest.get() != null;
+    }
+
+    /**
+     * Drain the pending batches and return, so a dispatcher worker can move on to
+     * the next symbol.
+     */
+    public void run() {
+        drainQueue();
+        completeCaptureRequest();
+    }
+
+    /**
+     * Ask the worker to capture the exact state at its next batch boundary. The
+     * aggregator must then be submitted to the dispatcher, so that an idle symbol
+     * gets a worker too.
+     */
+    CompletableFuture<CheckpointCapture> requestCapture() {
+        CompletableFuture<CheckpointCapture> request = new CompletableFuture<>();
+        while (!captureRequest.compareAndSet(null, request)) {
+            CompletableFuture<CheckpointCapture> pending = captureRequest.get();
+            if (pending != null) {
+                return pending;
+            }
+        }
+        return request;
+    }
+
+    private void completeCaptureRequest() {
+        CompletableFuture<CheckpointCapture> request = captureRequest.getAndSet(null);
+        if (request != null) {
+            request.complete(new CheckpointCapture(
+                    globalIndex.get(), lastValue, historyStart, lastSequence, blocks.captureAccumulators()));
+        }
+    }
+
+    /**
+     * Copy the completed block summaries and the ring slots that the first
+     * {@code nextIndex} values reached, in that order, without stopping the worker. See
+     * {@link CheckpointStore} for which parts stay valid.
      *
-     * <p>Thread-safety:
-     * This method is intended to be called by a single worker thread per symbol.
-     * No external synchronization is required because only one thread mutates
-     * the state of each {@code SymbolAggregator}.
+     * @param nextIndex the {@link CheckpointCapture#nextIndex} of the capture
+     */
+    void writeHistory(WritableByteChannel channel, long nextIndex) throws IOException {
+        writeSummaries(channel, nextIndex);
+        ringBuffer.writeTo(channel, Math.min(nextIndex, ringBuffer.capacity()));
+    }
+
+    /**
+     * Load a checkpoint into a fresh aggregator before it receives any batch. The
+     * capture's history start is the first index whose ring slot and block summaries
+     * are valid.
+     */
+    void restore(CheckpointCapture capture, ReadableByteChannel channel) throws IOException {
+        readSummaries(channel, capture.nextIndex);
+        ringBuffer.readFrom(channel, Math.min(capture.nextIndex, ringBuffer.capacity()));
+        restoreState(capture, capture.nextIndex);
+    }
+
+    private void writeSummaries(WritableByteChannel channel, long nextIndex) throws IOException {
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        blocks.writeBlocks(channel, scratch, nextIndex);
+        if (quantiles != null) {
+            quantiles.writeBlocks(channel, scratch, nextIndex);
+        }
+    }
+
+    private void readSummaries(ReadableByteChannel channel, long nextIndex) throws IOException {
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        blocks.readBlocks(channel, scratch, nextIndex);
+        if (quantiles != null) {
+            quantiles.readBlocks(channel, scratch, nextIndex);
+        }
+    }
+
+    private void restoreState(CheckpointCapture capture, long acceptedValues) {
+        blocks.restoreAccumulators(capture.accumulators);
+        if (quantiles != null) {
+            // the ring was restored first
+            quantiles.restorePending(capture.nextIndex);
+        }
+        this.historyStart = capture.historyStart;
+        this.lastSequence = capture.lastSequence;
+        this.lastValue = capture.lastValue;
+        globalIndex.set(capture.nextIndex);
+        synchronized (offerLock) {
+            this.acceptedValues = acceptedValues;
+        }
+        updateSnapshots();
+        processedSequence.advance(acceptedValues);
+    }
+
+    /**
+     * Stop accepting batches so the aggregator can be spilled: from now on producers get
+     * an {@link AggregatorRetiredException}. Only succeeds on a quiescent aggregator that
+     * nobody is using: not scheduled, no pending batches or capture, no listeners and no
+     * thread waiting for a sequence. The caller then owns the scheduling claim, so no
+     * worker touches the state until {@link #unretire()}.
      *
-     * @param value the new trading price to process
+     * @return false if the aggregator is busy and was left as it was
      */
-    private void processValue(double value) {
-        long index = globalIndex.getAndIncrement();
+    boolean retire() {
+        if (!markInProgress()) {
+            return false;
+        }
+        synchronized (offerLock) {
+            if (!hasPendingWork() && listeners.length == 0 && !processedSequence.hasWaiters()) {
+                retired = true;
+                return true;
+            }
+        }
+        markIdle();
+        return false;
+    }
 
-        // Store value in the ring buffer (for later eviction).
-        ringBuffer.set(index, value);
+    /**
+     * Undo {@link #retire()}, e.g. when spilling failed. No batch was accepted meanwhile.
+     */
+    void unretire() {
+        synchronized (offerLock) {
+            retired = false;
+        }
+        markIdle();
+    }
 
-        // Update the last seen value.
-        lastValue.set(value);
+    /**
+     * @return the exact state of a retired aggregator
+     */
+    CheckpointCapture captureRetired() {
+        return new CheckpointCapture(globalIndex.get(), lastValue, historyStart, lastSequence,
+                blocks.captureAccumulators());
+    }
 
-        // Update all configured windows (10^1 ... 10^8).
-        for (int k = 1; k <= 8; k++) {
-            processForWindow(k, index, value);
+    /**
+     * @return the value sequence of the last accepted batch, see {@link #processedSequence()}
+     */
+    long acceptedValues() {
+        synchronized (offerLock) {
+            return acceptedValues;
         }
     }
 
     /**
-     * Update statistics for a single sliding window size 10^k.
+     * Copy the block summaries and ring slots that hold data, i.e. the whole history
+     * only once the ring has wrapped. Only on a retired aggregator, whose state is exact.
      */
-    private void processForWindow(int k, long index, double value) {
-        int window = windowSize[k];
+    void writeUsedHistory(WritableByteChannel channel) throws IOException {
+        long nextIndex = globalIndex.get();
+        writeSummaries(channel, nextIndex);
+        ringBuffer.writeTo(channel, Math.min(nextIndex, ringBuffer.capacity()));
+        if (timeBuckets != null) {
+            timeBuckets.writeTo(channel);
+        }
+        if (bars != null) {
+            bars.writeTo(channel);
+        }
+    }
 
-        // Update rolling sums for mean/variance
-        sum[k] += value;
-        sumSq[k] += value * value;
+    /**
+     * Load a state written by {@link #writeUsedHistory} into a fresh aggregator before it
+     * is published, resuming its value sequence at {@code acceptedValues}.
+     */
+    void restoreUsedHistory(CheckpointCapture capture, long acceptedValues, ReadableByteChannel channel)
+            throws IOException {
+        readSummaries(channel, capture.nextIndex);
+        ringBuffer.readFrom(channel, Math.min(capture.nextIndex, ringBuffer.capacity()));
+        if (timeBuckets != null) {
+            timeBuckets.readFrom(channel);
+        }
+        if (bars != null) {
+            bars.readFrom(channel);
+        }
+        restoreState(capture, acceptedValues);
+    }
 
-        if (count[k] < window) {
-            // Window not full → just increase count
-            count[k]++;
-        } else {
-            // Window full → evict oldest
-            evictOldValue(k, index - window);
+    /**
+     * Apply a journaled batch synchronously on the calling thread, bypassing the queue
+     * and the journal. Only for recovery before the aggregator is first scheduled, and
+     * for offline replay. The journal does not record when a batch arrived, nor its
+     * volumes and timestamps, so replayed batches are left out of the time windows and bars.
+     */
+    public void replayBatch(long sequence, DoubleBuffer values) {
+        int count = values.remaining();
+        Batch head = acquireSlabs(count);
+        for (Batch slab = head; slab != null && values.hasRemaining(); slab = slab.getNext()) {
+            slab.addAll(values);
         }
+        head.setSequence(sequence);
+        synchronized (offerLock) {
+            acceptedValues += count;
+            head.setValueSequence(acceptedValues);
+        }
+        processBatch(head, false);
+    }
 
-        // Maintain monotonic deques for min and max
-        long rawBits = Double.doubleToRawLongBits(value);
-        updateDeque(minDeque[k], index, rawBits, v -> v > value);
-        updateDeque(maxDeque[k], index, rawBits, v -> v < value);
+    /**
+     * @return journal sequence of the last batch processed, 0 if none was journaled;
+     *         only stable while the aggregator is not scheduled
+     */
+    public long lastProcessedSequence() {
+        return lastSequence;
     }
 
     /**
-     * Remove the oldest value from rolling sums and deques.
+     * @return the value sequence covered by the published snapshots: every batch whose
+     *         {@code enqueueBatch} returned at most this is included (or was dropped by
+     *         the overflow policy). Without drops it equals {@link #valuesProcessed()}
+     *         once the batch is published.
      */
-    private void evictOldValue(int k, long outIndex) {
-        double outValue = ringBuffer.get(outIndex);
+    public long processedSequence() {
+        return processedSequence.get();
+    }
 
-        sum[k] -= outValue;
-        sumSq[k] -= outValue * outValue;
+    /**
+     * Notify {@code listener} on the worker thread after every batch's publication.
+     */
+    public void addListener(SnapshotListener listener) {
+        synchronized (listenerLock) {
+            SnapshotListener[] current = listeners;
+            SnapshotListener[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = listener;
+            listeners = updated;
+        }
+    }
 
-        if (!minDeque[k].isEmpty() && minDeque[k].peekFirst()[0] == outIndex) {
-            minDeque[k].pollFirst();
+    public void removeListener(SnapshotListener listener) {
+        synchronized (listenerLock) {
+            SnapshotListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    SnapshotListener[] updated = new SnapshotListener[current.length - 1];
+                    System.arraycopy(current, 0, updated, 0, i);
+                    System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                    listeners = updated;
+                    return;
+                }
+            }
         }
-        if (!maxDeque[k].isEmpty() && maxDeque[k].peekFirst()[0] == outIndex) {
-            maxDeque[k].pollFirst();
+    }
+
+    /**
+     * Park until the published snapshots cover {@code sequence}, a value returned by
+     * {@code enqueueBatch}. The worker wakes the caller when it publishes; nothing polls.
+     *
+     * @return false if {@code timeoutNanos} elapsed first
+     */
+    public boolean awaitSequence(long sequence, long timeoutNanos) throws InterruptedException {
+        return processedSequence.await(sequence, timeoutNanos);
+    }
+
+    /**
+     * Process every slab of a batch, publish the snapshots and return the slabs to the pool.
+     *
+     * @param timed whether to count the batch in the time windows and bars, at its enqueue time
+     */
+    private void processBatch(Batch head, boolean timed) {
+        long enqueuedNanos = head.getEnqueuedNanos();
+        long sequence = head.getSequence();
+        long valueSequence = head.getValueSequence();
+        try {
+            for (Batch slab = head; slab != null; slab = slab.getNext()) {
+                double[] values = slab.getValues();
+                for (int i = 0, n = slab.size(); i < n; i++) {
+                    processValue(values[i]);
+                }
+            }
+            if (timed && timeBuckets != null) {
+                timeBuckets.add(enqueuedNanos, head);
+            }
+            if (timed && bars != null) {
+                long arrivalMillis = System.currentTimeMillis()
+                        - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedNanos);
+                bars.add(head, arrivalMillis);
+            }
+            updateSnapshots();
+            // after the publication, so a woken reader sees snapshots covering its batch
+            processedSequence.advance(valueSequence);
+            for (SnapshotListener listener : listeners) {
+                listener.onPublished(this);
+            }
+            ingestLatency.record(System.nanoTime() - enqueuedNanos);
+            if (sequence != 0) {
+                lastSequence = sequence;
+            }
+        } finally {
+            // even if a listener or the ring throws: leaked slabs would starve the pool
+            batchPool.release(head);
         }
     }
 
     /**
-     * Update a monotonic deque: remove obsolete tail values
-     * according to comparator, then push the new value.
+     * Processes a single incoming trading price.
      *
-     * @param deque    deque of [index, rawDoubleBits]
-     * @param index    index of the new value
-     * @param rawBits  new value in raw double bits
-     * @param shouldRemove predicate deciding if tail must be removed
+     * <p>This method is invoked by the worker thread whenever a new value is received:
+     * <ul>
+     *   <li>Stores the value in the ring buffer, indexed by a global sequence number;
+     *       as a tick count for a symbol with a {@link TickSize}.</li>
+     *   <li>Updates the "last" observed value.</li>
+     *   <li>Folds the value into the hierarchical block summaries ({@link BlockAggregates},
+     *       or {@link TickAggregates} in fixed point) and, if enabled, the
+     *       {@link QuantileSketches}.
+     *       The windows themselves are not touched here; they are assembled from whole
+     *       blocks when the snapshots are published.</li>
+     * </ul>
+     *
+     * <p>Complexity:
+     * <ul>
+     *   <li>Insertion per value: O(1) amortized, independent of the number of windows.</li>
+     *   <li>No eviction reads: the ring buffer is only written sequentially.</li>
+     *   <li>Allocation-free.</li>
+     * </ul>
+     *
+     * <p>Thread-safety:
+     * This method is intended to be called by a single worker thread per symbol.
+     * No external synchronization is required because only one thread mutates
+     * the state of each {@code SymbolAggregator}.
+     *
+     * @param value the new trading price to process
      */
-    private void updateDeque(Deque<long[]> deque,
-                             long index,
-                             long rawBits,
-                             DoublePredicate shouldRemove) {
-        while (!deque.isEmpty()
-                && shouldRemove.test(Double.longBitsToDouble(deque.peekLast()[1]))) {
-            deque.pollLast();
+    // visible for testing
+    void processValue(double value) {
+        long index = globalIndex.getAndIncrement();
+
+        // Store value in the ring buffer (for block decomposition at the window edges).
+        double stored = tickSize == null ? value : tickSize.ticksOf(value);
+        ringBuffer.set(index, stored);
+
+        // Update the last seen value.
+        lastValue = value;
+
+        blocks.add(index, stored);
+        if (quantiles != null) {
+            quantiles.add(index, stored);
         }
-        deque.addLast(new long[]{index, rawBits});
     }
 
     /**
-     * Update snapshots for all windows (latest statistics).
+     * Update snapshots for all windows of the {@link WindowSet} (latest statistics):
+     * compute every window, then publish them together so the seqlock's write section
+     * is just a copy.
      */
     private void updateSnapshots() {
         long endIndex = globalIndex.get() - 1;
         for (int k = 1; k <= 8; k++) {
-            updateSnapshotForWindow(k, endIndex);
+            if (windowSet.contains(k)) {
+                updateSnapshotForWindow(k, endIndex);
+            }
         }
+        snapshots.publish(pendingSnapshots);
     }
 
     /**
-     * Update snapshot for one sliding window.
+     * Update snapshot for one sliding window. Windows larger than the ring buffer
+     * are served over the values the ring still holds.
      */
     private void updateSnapshotForWindow(int k, long endIndex) {
-        int countInWindow = count[k];
-        if (countInWindow == 0) {
-            snapshots[k].set(Stats.empty());
+        if (endIndex < 0) {
+            StatsSnapshots.setEmpty(pendingSnapshots, k);
             return;
         }
 
-        long startIndex = Math.max(0L, endIndex - (windowSize[k] - 1));
-        evictOutdated(minDeque[k], startIndex);
-        evictOutdated(maxDeque[k], startIndex);
+        long window = Math.min(windowSize[k], capacity);
+        long startIndex = Math.max(historyStart, endIndex - (window - 1));
+        blocks.query(startIndex, endIndex);
 
-        double avg = sum[k] / countInWindow;
-        double var = (sumSq[k] / countInWindow) - avg * avg;
-        double min = peekValue(minDeque[k]);
-        double max = peekValue(maxDeque[k]);
+        long countInWindow = blocks.count();
+        double avg = blocks.mean();
+        double var = blocks.variance();
 
-        snapshots[k].set(new Stats(min, max, lastValue.get(), avg, var, countInWindow));
-    }
-
-    /**
-     * Remove outdated values (indices < startIndex) from a deque.
-     */
-    private void evictOutdated(Deque<long[]> deque, long startIndex) {
-        while (!deque.isEmpty() && deque.peekFirst()[0] < startIndex) {
-            deque.pollFirst();
+        int base = (k - 1) * StatsSnapshots.FIELDS;
+        pendingSnapshots[base + StatsSnapshots.MIN_FIELD] = blocks.min();
+        pendingSnapshots[base + StatsSnapshots.MAX_FIELD] = blocks.max();
+        pendingSnapshots[base + StatsSnapshots.LAST_FIELD] = lastValue;
+        pendingSnapshots[base + StatsSnapshots.AVG_FIELD] = avg;
+        pendingSnapshots[base + StatsSnapshots.VARIANCE_FIELD] = var;
+        pendingSnapshots[base + StatsSnapshots.COUNT_FIELD] = countInWindow;
+        if (quantiles != null) {
+            quantiles.query(startIndex, endIndex);
+            pendingSnapshots[base + StatsSnapshots.P50_FIELD] = quantile(0, blocks.min(), blocks.max());
+            pendingSnapshots[base + StatsSnapshots.P95_FIELD] = quantile(1, blocks.min(), blocks.max());
+            pendingSnapshots[base + StatsSnapshots.P99_FIELD] = quantile(2, blocks.min(), blocks.max());
         }
     }
 
     /**
-     * Peek the first value from a deque (min or max).
-     *
-     * @return the decoded double, or NaN if empty
+     * @return quantile {@code i} of the last query in price units, within the window's
+     *         exact {@code [min, max]}
      */
-    private double peekValue(Deque<long[]> deque) {
-        return deque.isEmpty()
-                ? Double.NaN
-                : Double.longBitsToDouble(deque.peekFirst()[1]);
+    private double quantile(int i, double min, double max) {
+        double stored = quantiles.quantile(i);
+        double price = tickSize == null ? stored : tickSize.priceOf(stored);
+        return Math.max(min, Math.min(max, price));
     }
 
     // visible for testing
     void runOneIteration() {
-        while (!queue.isEmpty()) {
+        run();
+    }
+
+    private void drainQueue() {
+        while (true) {
             Batch batch = queue.poll();
-            if (batch == null) continue;
-            for (double value : batch.getValues()) {
-                processValue(value);
+            if (batch == null) {
+                // the staged batch only holds what arrived after the queue was full
+                batch = takeStaged();
+                if (batch == null) {
+                    return;
+                }
             }
-            updateSnapshots();
+            processBatch(batch, true);
         }
     }
 }
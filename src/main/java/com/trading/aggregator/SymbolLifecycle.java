@@ -0,0 +1,165 @@
+package com.trading.aggregator;
+
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Evicts cold symbols to a {@link SpillStore} and reloads them on their next use, so
+ * that a long tail of rarely traded (or mistyped) symbols does not pin a ring buffer
+ * each.
+ *
+ * <p>A sweep first evicts every symbol not looked up for the idle time, then, while the
+ * ring buffers of the remaining symbols hold more off-heap memory than the budget, the
+ * least recently used ones. Symbols in use are never evicted: those with queued
+ * batches, a worker, a subscription or a waiting reader (see {@link SymbolAggregator#retire()}).
+ *
+ * <p>Eviction retires the aggregator, spills its exact state, unregisters it (keeping its
+ * id) and releases its ring buffer. A producer that still holds the retired aggregator
+ * gets an {@link AggregatorRetiredException} and looks the symbol up again; the lookup
+ * registers a fresh aggregator and {@link #reload reloads} the spill into it before
+ * anyone else can see it. Readers never see an empty window in between: until the
+ * aggregator is unregistered, lookups return the retired one, whose snapshots stay valid.
+ */
+final class SymbolLifecycle {
+
+    private static final Logger LOG = Logger.getLogger(SymbolLifecycle.class);
+
+    private final SymbolRegistry registry;
+    private final SpillStore store;
+    private final long idleNanos;
+    private final long memoryBudgetBytes;
+    private final Set<String> spilled = ConcurrentHashMap.newKeySet();
+    private final Consumer<SymbolAggregator> onEvicted;
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    /**
+     * @param idleNanos         evict symbols not looked up for this long; 0 to only evict for the budget
+     * @param memoryBudgetBytes off-heap bytes the registered ring buffers may hold; 0 for no budget
+     * @param onEvicted         called on the evicting thread with every evicted aggregator
+     */
+    SymbolLifecycle(SymbolRegistry registry, SpillStore store, long idleNanos, long memoryBudgetBytes,
+                    Consumer<SymbolAggregator> onEvicted) {
+        if (idleNanos < 0 || memoryBudgetBytes < 0) {
+            throw new IllegalArgumentException("Idle time and memory budget must not be negative");
+        }
+        this.registry = registry;
+        this.store = store;
+        this.idleNanos = idleNanos;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.onEvicted = onEvicted;
+    }
+
+    /**
+     * Run the idle and budget policies once.
+     *
+     * @return the number of symbols evicted
+     */
+    int sweep(long nowNanos) {
+        List<Candidate> kept = new ArrayList<>();
+        long footprint = 0;
+        int evicted = 0;
+        for (SymbolAggregator aggregator : registry.aggregators()) {
+            // read once: the sort below needs keys that do not move under it
+            long lastAccess = aggregator.lastAccessNanos();
+            if (idleNanos > 0 && nowNanos - lastAccess >= idleNanos && evict(aggregator)) {
+                evicted++;
+            } else {
+                kept.add(new Candidate(aggregator, lastAccess));
+                footprint += aggregator.offHeapBytes();
+            }
+        }
+        if (memoryBudgetBytes > 0 && footprint > memoryBudgetBytes) {
+            kept.sort((a, b) -> Long.compare(a.lastAccessNanos, b.lastAccessNanos));
+            for (Candidate candidate : kept) {
+                if (footprint <= memoryBudgetBytes) {
+                    break;
+                }
+                long bytes = candidate.aggregator.offHeapBytes();
+                if (evict(candidate.aggregator)) {
+                    footprint -= bytes;
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return false if the aggregator is in use or could not be spilled
+     */
+    boolean evict(SymbolAggregator aggregator) {
+        if (!aggregator.retire()) {
+            return false;
+        }
+        String symbol = aggregator.getSymbol();
+        try {
+            store.write(aggregator);
+        } catch (IOException | RuntimeException e) {
+            aggregator.unretire();
+            LOG.errorf(e, "Spilling %s failed", symbol);
+            return false;
+        }
+        // mark it spilled before unregistering, so a concurrent lookup that misses reloads it
+        spilled.add(symbol);
+        registry.remove(aggregator);
+        aggregator.releaseRingBuffer();
+        evictions.incrementAndGet();
+        onEvicted.accept(aggregator);
+        return true;
+    }
+
+    /**
+     * Load the spilled state of a fresh aggregator's symbol, if it has one. Called while
+     * the aggregator is being registered, before any other thread can reach it.
+     */
+    void reload(SymbolAggregator aggregator) {
+        String symbol = aggregator.getSymbol();
+        if (!spilled.contains(symbol)) {
+            return;
+        }
+        try {
+            if (store.restore(aggregator)) {
+                reloads.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.errorf(e, "Dropping spilled state of %s", symbol);
+        } finally {
+            // still under the registry's lock, see SymbolRegistry#getSynchronized
+            spilled.remove(symbol);
+        }
+    }
+
+    boolean isSpilled(String symbol) {
+        return spilled.contains(symbol);
+    }
+
+    int spilledSymbols() {
+        return spilled.size();
+    }
+
+    long evictions() {
+        return evictions.get();
+    }
+
+    long reloads() {
+        return reloads.get();
+    }
+
+    private static final class Candidate {
+        final SymbolAggregator aggregator;
+        final long lastAccessNanos;
+
+        Candidate(SymbolAggregator aggregator, long lastAccessNanos) {
+            this.aggregator = aggregator;
+            this.lastAccessNanos = lastAccessNanos;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.trading.aggregator;
+
+import com.trading.journal.SymbolJournal;
+
+/**
+ * How one {@link SymbolAggregator} queues, journals and aggregates its values. Built with
+ * {@link #builder()}; every option left unset keeps the default of {@link #DEFAULT}: a
+ * {@link SymbolAggregator#DEFAULT_QUEUE_CAPACITY} queue that rejects when full, no
+ * journal, floating point, every count-based window with quantiles, no time windows and
+ * no bars.
+ */
+public final class SymbolOptions {
+
+    public static final SymbolOptions DEFAULT = builder().build();
+
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final SymbolJournal journal;
+    private final TickSize tickSize;
+    private final TimeWindows timeWindows;
+    private final WindowSet windowSet;
+    private final boolean quantiles;
+    private final BarIntervals barIntervals;
+
+    private SymbolOptions(Builder builder) {
+        this.queueCapacity = builder.queueCapacity;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.blockTimeoutNanos = builder.blockTimeoutNanos;
+        this.journal = builder.journal;
+        this.tickSize = builder.tickSize;
+        this.timeWindows = builder.timeWindows;
+        this.windowSet = builder.windowSet;
+        this.quantiles = builder.quantiles;
+        this.barIntervals = builder.barIntervals;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    public OverflowPolicy overflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public long blockTimeoutNanos() {
+        return blockTimeoutNanos;
+    }
+
+    /**
+     * @return where accepted batches are appended before they are queued, or null
+     */
+    public SymbolJournal journal() {
+        return journal;
+    }
+
+    /**
+     * @return the tick size of a symbol aggregated in fixed point, or null
+     */
+    public TickSize tickSize() {
+        return tickSize;
+    }
+
+    /**
+     * @return the time-based windows, or null
+     */
+    public TimeWindows timeWindows() {
+        return timeWindows;
+    }
+
+    public WindowSet windowSet() {
+        return windowSet;
+    }
+
+    public boolean quantiles() {
+        return quantiles;
+    }
+
+    /**
+     * @return the intervals bars are built at, or null
+     */
+    public BarIntervals barIntervals() {
+        return barIntervals;
+    }
+
+    public static final class Builder {
+
+        private int queueCapacity = SymbolAggregator.DEFAULT_QUEUE_CAPACITY;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+        private long blockTimeoutNanos;
+        private SymbolJournal journal;
+        private TickSize tickSize;
+        private TimeWindows timeWindows;
+        private WindowSet windowSet = WindowSet.ALL;
+        private boolean quantiles = true;
+        private BarIntervals barIntervals;
+
+        private Builder() {
+        }
+
+        /**
+         * @param queueCapacity maximum number of pending batches
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy what to do when the queue is full or the pool is exhausted
+         */
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * @param blockTimeoutNanos how long {@link OverflowPolicy#BLOCK} waits before rejecting
+         */
+        public Builder blockTimeoutNanos(long blockTimeoutNanos) {
+            this.blockTimeoutNanos = blockTimeoutNanos;
+            return this;
+        }
+
+        /**
+         * @param journal where accepted batches are appended before they are queued; null to not journal
+         */
+        public Builder journal(SymbolJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * @param tickSize aggregate in fixed point: prices must be whole numbers of this tick,
+         *                 the ring buffer stores tick counts and every sum is exact (see
+         *                 {@link TickAggregates}); null to aggregate doubles
+         */
+        public Builder tickSize(TickSize tickSize) {
+            this.tickSize = tickSize;
+            return this;
+        }
+
+        /**
+         * @param timeWindows time-based windows to keep next to the count-based ones, see
+         *                    {@link SymbolAggregator#getTimeStats}; null for none
+         */
+        public Builder timeWindows(TimeWindows timeWindows) {
+            this.timeWindows = timeWindows;
+            return this;
+        }
+
+        /**
+         * @param windowSet the count-based windows to compute and publish; the others stay
+         *                  empty. The ring buffer should hold {@link WindowSet#capacity()} values.
+         */
+        public Builder windowSet(WindowSet windowSet) {
+            this.windowSet = windowSet;
+            return this;
+        }
+
+        /**
+         * @param quantiles whether to publish the p50/p95/p99 of the windows, see
+         *                  {@link QuantileSketches}; they are NaN otherwise
+         */
+        public Builder quantiles(boolean quantiles) {
+            this.quantiles = quantiles;
+            return this;
+        }
+
+        /**
+         * @param barIntervals intervals to build OHLC/VWAP bars at from the ingested values,
+         *                     see {@link SymbolAggregator#getBars}; null for none
+         */
+        public Builder barIntervals(BarIntervals barIntervals) {
+            this.barIntervals = barIntervals;
+            return this;
+        }
+
+        public SymbolOptions build() {
+            return new SymbolOptions(this);
+        }
+    }
+}
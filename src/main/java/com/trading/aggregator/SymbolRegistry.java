@@ -0,0 +1,130 @@
+package com.trading.aggregator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Interns symbols: every symbol is assigned a dense int id, in registration order, and
+ * its aggregator is stored in a table indexed by that id.
+ *
+ * <p>Lookups by id are a bounds check plus one volatile array read, without hashing or
+ * locking. Lookups by name probe a single map. Registration is rare (once per symbol per
+ * process) and serialized, so ids stay dense and the table only grows by copying under
+ * the lock; a reader racing with a growth still sees every entry in the old table.
+ *
+ * <p>A symbol keeps its id for the life of the process, also while its aggregator is
+ * evicted: {@link #remove} empties the slot but reserves the id, and the reloaded
+ * aggregator is registered under it again.
+ *
+ * <p>Ids are only meaningful within one process: they are reassigned at every start.
+ */
+final class SymbolRegistry {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentHashMap<String, SymbolAggregator> bySymbol = new ConcurrentHashMap<>();
+    private volatile AtomicReferenceArray<SymbolAggregator> byId = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private int size;
+    // guarded by this: the symbol of every id handed out, for ids whose slot was emptied
+    private final List<String> symbols = new ArrayList<>();
+    private final Map<String, Integer> reservedIds = new HashMap<>();
+
+    /**
+     * @return the aggregator of {@code symbol}, created by {@code factory} and assigned
+     *         the next id if the symbol was never seen
+     */
+    SymbolAggregator getOrRegister(String symbol, Function<String, SymbolAggregator> factory) {
+        SymbolAggregator aggregator = bySymbol.get(symbol);
+        return aggregator != null ? aggregator : register(symbol, factory);
+    }
+
+    /**
+     * @return the aggregator of {@code symbol}, or null if it was never registered
+     */
+    SymbolAggregator get(String symbol) {
+        return bySymbol.get(symbol);
+    }
+
+    /**
+     * Like {@link #get(String)}, but waits for a registration in progress, e.g. one that
+     * is reloading the symbol's spilled state, to complete.
+     */
+    synchronized SymbolAggregator getSynchronized(String symbol) {
+        return bySymbol.get(symbol);
+    }
+
+    /**
+     * @return the aggregator with {@code id}, or null if no symbol has that id
+     */
+    SymbolAggregator get(int id) {
+        AtomicReferenceArray<SymbolAggregator> table = byId;
+        return id >= 0 && id < table.length() ? table.get(id) : null;
+    }
+
+    /**
+     * @return the symbol that was assigned {@code id}, also while it is removed, or null
+     */
+    synchronized String symbolOf(int id) {
+        return id >= 0 && id < size ? symbols.get(id) : null;
+    }
+
+    /**
+     * Unregister {@code aggregator}, keeping its id for the symbol's next registration.
+     *
+     * @return false if another aggregator is registered for the symbol
+     */
+    synchronized boolean remove(SymbolAggregator aggregator) {
+        String symbol = aggregator.getSymbol();
+        if (bySymbol.get(symbol) != aggregator) {
+            return false;
+        }
+        int id = aggregator.getId();
+        // by name first, so nobody resolves the symbol to an id whose slot is empty
+        bySymbol.remove(symbol);
+        byId.set(id, null);
+        reservedIds.put(symbol, id);
+        return true;
+    }
+
+    /**
+     * @return a live view of every registered aggregator
+     */
+    Collection<SymbolAggregator> aggregators() {
+        return bySymbol.values();
+    }
+
+    private synchronized SymbolAggregator register(String symbol, Function<String, SymbolAggregator> factory) {
+        SymbolAggregator aggregator = bySymbol.get(symbol);
+        if (aggregator != null) {
+            return aggregator;
+        }
+        aggregator = factory.apply(symbol);
+        Integer reserved = reservedIds.remove(symbol);
+        int id = reserved != null ? reserved : size;
+        aggregator.assignId(id);
+
+        AtomicReferenceArray<SymbolAggregator> table = byId;
+        if (id == table.length()) {
+            AtomicReferenceArray<SymbolAggregator> grown = new AtomicReferenceArray<>(table.length() * 2);
+            for (int i = 0; i < id; i++) {
+                grown.lazySet(i, table.get(i));
+            }
+            table = grown;
+        }
+        // publish by id first, so any id handed out through the name map resolves
+        table.set(id, aggregator);
+        byId = table;
+        bySymbol.put(symbol, aggregator);
+        if (reserved == null) {
+            symbols.add(symbol);
+            size = id + 1;
+        }
+        return aggregator;
+    }
+}
@@ -0,0 +1,279 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.RingBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The {@link BlockAggregates} hierarchy in fixed point, for symbols with a
+ * {@link TickSize}: the ring buffer holds tick counts, and every sum is an integer.
+ *
+ * <p>Sums of ticks are {@code long}s and sums of squared ticks are 128-bit, kept as a
+ * high and a low word. Nothing is ever rounded, so any window's sums are exact however
+ * long the symbol has been running, and the variance is computed from them exactly as
+ * {@code (n * sumSq - sum^2) / n^2}: it is never negative and is 0 for a constant
+ * window. Only the final conversion to price units rounds.
+ *
+ * <p>Tick counts are at most {@link TickSize#MAX_TICKS} in magnitude and windows hold
+ * at most 2^31 values, so sums stay below 2^62 and {@code n * sumSq} below 2^124.
+ *
+ * <p>Not thread-safe: owned by the single worker that mutates a {@link SymbolAggregator}.
+ */
+final class TickAggregates implements WindowAggregates {
+
+    private static final int MIN_LEVEL = BlockAggregates.MIN_LEVEL;
+    private static final int MAX_LEVEL = BlockAggregates.MAX_LEVEL;
+
+    private static final int FIELDS = 5;
+    private static final int SUM = 0;
+    private static final int SUM_SQ_HIGH = 1;
+    private static final int SUM_SQ_LOW = 2;
+    private static final int MIN = 3;
+    private static final int MAX = 4;
+
+    private static final int ACCUMULATOR_FIELDS = (MAX_LEVEL - MIN_LEVEL + 1) * FIELDS;
+
+    private static final long[] BLOCK_SIZE = new long[MAX_LEVEL + 1];
+
+    static {
+        long size = 1;
+        for (int j = 0; j <= MAX_LEVEL; j++) {
+            BLOCK_SIZE[j] = size;
+            size *= 10;
+        }
+    }
+
+    private final RingBuffer ringBuffer;
+    private final TickSize tickSize;
+
+    // completed block summaries per level, FIELDS longs per slot; null for levels
+    // whose blocks are larger than the ring
+    private final SummarySlots[] blocks = new SummarySlots[MAX_LEVEL + 1];
+
+    // in-progress accumulators, as in BlockAggregates
+    private final long[] accSum = new long[MAX_LEVEL + 1];
+    private final long[] accSumSqHigh = new long[MAX_LEVEL + 1];
+    private final long[] accSumSqLow = new long[MAX_LEVEL + 1];
+    private final long[] accMin = new long[MAX_LEVEL + 1];
+    private final long[] accMax = new long[MAX_LEVEL + 1];
+
+    // result of the last query
+    private long sum;
+    private long sumSqHigh;
+    private long sumSqLow;
+    private long min;
+    private long max;
+    private long count;
+
+    /**
+     * @param ringBuffer holds the tick count of every value, see {@link TickSize#ticksOf}
+     */
+    TickAggregates(RingBuffer ringBuffer, TickSize tickSize) {
+        this.ringBuffer = ringBuffer;
+        this.tickSize = tickSize;
+        long capacity = ringBuffer.capacity();
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL; j++) {
+            // a block larger than the ring never fits in a window, so it is only rolled up
+            if (BLOCK_SIZE[j] <= capacity) {
+                blocks[j] = new SummarySlots(capacity / BLOCK_SIZE[j] + 2, FIELDS);
+            }
+            resetAccumulator(j);
+        }
+    }
+
+    /**
+     * @param value the tick count stored at {@code index}
+     */
+    @Override
+    public void add(long index, double value) {
+        long ticks = (long) value;
+        long square = ticks * ticks;
+        accSum[MIN_LEVEL] += ticks;
+        long low = accSumSqLow[MIN_LEVEL] + square;
+        if (Long.compareUnsigned(low, square) < 0) accSumSqHigh[MIN_LEVEL]++;
+        accSumSqLow[MIN_LEVEL] = low;
+        if (ticks < accMin[MIN_LEVEL]) accMin[MIN_LEVEL] = ticks;
+        if (ticks > accMax[MIN_LEVEL]) accMax[MIN_LEVEL] = ticks;
+
+        long next = index + 1;
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && next % BLOCK_SIZE[j] == 0; j++) {
+            completeBlock(j, index / BLOCK_SIZE[j]);
+        }
+    }
+
+    @Override
+    public void query(long start, long end) {
+        sum = 0;
+        sumSqHigh = 0;
+        sumSqLow = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        count = Math.max(0, end - start + 1);
+
+        long pos = start;
+        while (pos <= end) {
+            int level = alignedLevel(pos);
+            if (level < MIN_LEVEL) {
+                mergeValue((long) ringBuffer.get(pos));
+                pos++;
+            } else if (pos + BLOCK_SIZE[level] - 1 <= end) {
+                SummarySlots ring = blocks[level];
+                long slot = pos / BLOCK_SIZE[level] % ring.slots();
+                long[] chunk = ring.chunk(slot);
+                int base = ring.offset(slot);
+                merge(chunk[base + SUM], chunk[base + SUM_SQ_HIGH], chunk[base + SUM_SQ_LOW],
+                        chunk[base + MIN], chunk[base + MAX]);
+                pos += BLOCK_SIZE[level];
+            } else {
+                for (int j = level; j >= MIN_LEVEL; j--) {
+                    merge(accSum[j], accSumSqHigh[j], accSumSqLow[j], accMin[j], accMax[j]);
+                }
+                break;
+            }
+        }
+    }
+
+    @Override public long count() { return count; }
+    @Override public double min() { return count == 0 ? Double.NaN : tickSize.priceOf(min); }
+    @Override public double max() { return count == 0 ? Double.NaN : tickSize.priceOf(max); }
+
+    @Override
+    public double mean() {
+        return tickSize.priceOf((double) sum / count);
+    }
+
+    @Override
+    public double variance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        // count * sumSq, unsigned: count is positive
+        long productHigh = Math.multiplyHigh(count, sumSqLow) + ((sumSqLow >> 63) & count) + count * sumSqHigh;
+        long productLow = count * sumSqLow;
+        // minus sum^2, which is non-negative and below 2^124
+        long squareHigh = Math.multiplyHigh(sum, sum);
+        long squareLow = sum * sum;
+        long low = productLow - squareLow;
+        long high = productHigh - squareHigh - (Long.compareUnsigned(productLow, squareLow) < 0 ? 1 : 0);
+        double n = count;
+        return tickSize.squaredPriceOf(toDouble(high, low) / (n * n));
+    }
+
+    @Override
+    public int accumulatorFields() {
+        return ACCUMULATOR_FIELDS;
+    }
+
+    @Override
+    public long[] captureAccumulators() {
+        long[] state = new long[ACCUMULATOR_FIELDS];
+        for (int j = MIN_LEVEL, i = 0; j <= MAX_LEVEL; j++) {
+            state[i++] = accSum[j];
+            state[i++] = accSumSqHigh[j];
+            state[i++] = accSumSqLow[j];
+            state[i++] = accMin[j];
+            state[i++] = accMax[j];
+        }
+        return state;
+    }
+
+    @Override
+    public void restoreAccumulators(long[] state) {
+        for (int j = MIN_LEVEL, i = 0; j <= MAX_LEVEL; j++) {
+            accSum[j] = state[i++];
+            accSumSqHigh[j] = state[i++];
+            accSumSqLow[j] = state[i++];
+            accMin[j] = state[i++];
+            accMax[j] = state[i++];
+        }
+    }
+
+    @Override
+    public void writeBlocks(WritableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException {
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && blocks[j] != null; j++) {
+            blocks[j].write(channel, scratch, usedSlots(j, nextIndex));
+        }
+    }
+
+    @Override
+    public void readBlocks(ReadableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException {
+        for (int j = MIN_LEVEL; j <= MAX_LEVEL && blocks[j] != null; j++) {
+            blocks[j].read(channel, scratch, usedSlots(j, nextIndex));
+        }
+    }
+
+    private long usedSlots(int level, long nextIndex) {
+        return Math.min(blocks[level].slots(), nextIndex / BLOCK_SIZE[level]);
+    }
+
+    private void completeBlock(int level, long blockNumber) {
+        SummarySlots ring = blocks[level];
+        if (ring != null) {
+            long slot = blockNumber % ring.slots();
+            long[] chunk = ring.allocate(slot);
+            int base = ring.offset(slot);
+            chunk[base + SUM] = accSum[level];
+            chunk[base + SUM_SQ_HIGH] = accSumSqHigh[level];
+            chunk[base + SUM_SQ_LOW] = accSumSqLow[level];
+            chunk[base + MIN] = accMin[level];
+            chunk[base + MAX] = accMax[level];
+        }
+
+        if (level < MAX_LEVEL) {
+            int parent = level + 1;
+            accSum[parent] += accSum[level];
+            long low = accSumSqLow[parent] + accSumSqLow[level];
+            accSumSqHigh[parent] += accSumSqHigh[level]
+                    + (Long.compareUnsigned(low, accSumSqLow[level]) < 0 ? 1 : 0);
+            accSumSqLow[parent] = low;
+            if (accMin[level] < accMin[parent]) accMin[parent] = accMin[level];
+            if (accMax[level] > accMax[parent]) accMax[parent] = accMax[level];
+        }
+        resetAccumulator(level);
+    }
+
+    private void resetAccumulator(int level) {
+        accSum[level] = 0;
+        accSumSqHigh[level] = 0;
+        accSumSqLow[level] = 0;
+        accMin[level] = Long.MAX_VALUE;
+        accMax[level] = Long.MIN_VALUE;
+    }
+
+    private static int alignedLevel(long pos) {
+        int level = 0;
+        while (level < MAX_LEVEL && pos % BLOCK_SIZE[level + 1] == 0) {
+            level++;
+        }
+        return level;
+    }
+
+    private void mergeValue(long ticks) {
+        long square = ticks * ticks;
+        sum += ticks;
+        long low = sumSqLow + square;
+        if (Long.compareUnsigned(low, square) < 0) sumSqHigh++;
+        sumSqLow = low;
+        if (ticks < min) min = ticks;
+        if (ticks > max) max = ticks;
+    }
+
+    private void merge(long blockSum, long blockSumSqHigh, long blockSumSqLow, long blockMin, long blockMax) {
+        sum += blockSum;
+        long low = sumSqLow + blockSumSqLow;
+        sumSqHigh += blockSumSqHigh + (Long.compareUnsigned(low, blockSumSqLow) < 0 ? 1 : 0);
+        sumSqLow = low;
+        if (blockMin < min) min = blockMin;
+        if (blockMax > max) max = blockMax;
+    }
+
+    /**
+     * @return the non-negative 128-bit integer {@code high * 2^64 + low}, rounded
+     */
+    private static double toDouble(long high, long low) {
+        return high * 0x1p64 + ((low >>> 1) * 2.0 + (low & 1));
+    }
+}
@@ -0,0 +1,109 @@
+package com.trading.aggregator;
+
+import java.math.BigDecimal;
+
+/**
+ * The price increment of a symbol aggregated in fixed point, such as 0.01 or 0.05:
+ * its prices are stored and summed as integer tick counts instead of doubles.
+ *
+ * <p>A tick size is {@code multiple / 10^decimals}. A price is on its grid when it is
+ * exactly the double nearest to a multiple of the tick, which is what parsing the
+ * price's decimal text yields, so converting to ticks and back is exact.
+ */
+public final class TickSize {
+
+    /** Largest tick count, in magnitude, of an accepted price. */
+    public static final long MAX_TICKS = Integer.MAX_VALUE;
+
+    private static final int MAX_DECIMALS = 9;
+    // ticks * multiple must stay an exact double
+    private static final int MAX_MULTIPLE_BITS = 21;
+
+    private final long multiple;
+    private final double scale;
+    // ticks per unit of price: one multiplication per conversion, exact enough to round
+    private final double ticksPerUnit;
+    private final String text;
+
+    private TickSize(long multiple, int decimals, String text) {
+        this.multiple = multiple;
+        double pow = 1;
+        for (int d = 0; d < decimals; d++) {
+            pow *= 10;
+        }
+        this.scale = pow;
+        this.ticksPerUnit = pow / multiple;
+        this.text = text;
+    }
+
+    /**
+     * Parse a configuration value such as {@code 0.01}.
+     *
+     * @throws IllegalArgumentException if the value is not a positive decimal of at most
+     *                                  9 decimals and 2^21 units of its last decimal
+     */
+    public static TickSize parse(String value) {
+        BigDecimal size;
+        try {
+            size = new BigDecimal(value.trim()).stripTrailingZeros();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a tick size: " + value);
+        }
+        if (size.scale() < 0) {
+            size = size.setScale(0);
+        }
+        if (size.signum() <= 0 || size.scale() > MAX_DECIMALS
+                || size.unscaledValue().bitLength() > MAX_MULTIPLE_BITS) {
+            throw new IllegalArgumentException("Unsupported tick size: " + value);
+        }
+        return new TickSize(size.unscaledValue().longValue(), size.scale(), size.toPlainString());
+    }
+
+    /**
+     * @return the tick count of {@code price}, rounded to the nearest tick
+     */
+    public long ticksOf(double price) {
+        return (long) Math.rint(price * ticksPerUnit);
+    }
+
+    /**
+     * @return true if {@code price} is a whole number of ticks, at most {@link #MAX_TICKS}
+     */
+    public boolean isOnGrid(double price) {
+        long ticks = ticksOf(price);
+        return Math.abs(ticks) <= MAX_TICKS && priceOf(ticks) == price;
+    }
+
+    /**
+     * @return the price of a whole number of ticks, the double nearest to its decimal value
+     */
+    public double priceOf(long ticks) {
+        return (double) (ticks * multiple) / scale;
+    }
+
+    /**
+     * @return the price of a fractional number of ticks, such as a mean
+     */
+    public double priceOf(double ticks) {
+        return ticks * multiple / scale;
+    }
+
+    /**
+     * @return a quantity in squared ticks, such as a variance, in squared price units
+     */
+    public double squaredPriceOf(double squaredTicks) {
+        return squaredTicks * multiple * multiple / (scale * scale);
+    }
+
+    /**
+     * @return the tick size as a double, e.g. to record it in a checkpoint
+     */
+    public double value() {
+        return multiple / scale;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
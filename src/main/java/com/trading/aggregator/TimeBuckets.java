@@ -0,0 +1,228 @@
+package com.trading.aggregator;
+
+import com.trading.model.Batch;
+import org.agrona.BufferUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static com.trading.buffer.DoubleChannels.readFully;
+import static com.trading.buffer.DoubleChannels.writeFully;
+
+/**
+ * One symbol's {@link TimeWindows}: per window, a ring of time buckets that each sum up
+ * the batches ingested during one bucket width.
+ *
+ * <p>Values are timestamped per batch, with the time the batch was enqueued. The worker
+ * folds each batch's summary into the current bucket of every window once, so the cost
+ * per value is one pass of adds, and the cost per batch grows with the number of windows,
+ * not with their durations. A bucket is evicted as a whole when the ring comes back
+ * round to it.
+ *
+ * <p>Queries are answered by the reader from the buckets that fall into the requested
+ * duration as of the time of the query, so a window also empties while no batch
+ * arrives. The buckets are guarded by a seqlock, as in {@link StatsSnapshots}: the
+ * worker never waits for readers, and a reader retries if a batch was folded in while
+ * it was summing.
+ *
+ * <p>Layout: the sequence on its own cache line, the worker's last batch time, then
+ * {@link #FIELDS} 8-byte fields per bucket, window after window.
+ */
+final class TimeBuckets {
+
+    private static final int FIELDS = 7;
+    private static final int ID = 0;
+    private static final int COUNT = 1;
+    private static final int SUM = 2;
+    private static final int SUM_SQ = 3;
+    private static final int MIN = 4;
+    private static final int MAX = 5;
+    private static final int LAST = 6;
+
+    private static final int CACHE_LINE = 64;
+    private static final int SEQUENCE_OFFSET = 0;
+    private static final int LAST_TIME_OFFSET = CACHE_LINE;
+    private static final int BUCKETS_OFFSET = LAST_TIME_OFFSET + Long.BYTES;
+    private static final int BUCKET_BYTES = FIELDS * Long.BYTES;
+
+    private final TimeWindows windows;
+    private final int buckets;
+    private final long[] bucketNanos;
+    private final UnsafeBuffer buffer;
+
+    TimeBuckets(TimeWindows windows) {
+        this.windows = windows;
+        this.buckets = windows.buckets();
+        this.bucketNanos = new long[windows.windows()];
+        for (int w = 0; w < bucketNanos.length; w++) {
+            bucketNanos[w] = windows.bucketNanos(w);
+        }
+        this.buffer = new UnsafeBuffer(BufferUtil.allocateDirectAligned(
+                BUCKETS_OFFSET + windows.windows() * buckets * BUCKET_BYTES, CACHE_LINE));
+        buffer.putLong(LAST_TIME_OFFSET, Long.MIN_VALUE);
+        for (int w = 0; w < bucketNanos.length; w++) {
+            for (int b = 0; b < buckets; b++) {
+                // no real bucket has this id
+                buffer.putLong(offset(w, b) + ID * Long.BYTES, Long.MIN_VALUE);
+            }
+        }
+    }
+
+    TimeWindows windows() {
+        return windows;
+    }
+
+    /**
+     * Fold a processed batch into the current bucket of every window. Single writer only.
+     *
+     * @param timeNanos the batch's {@link System#nanoTime()} timestamp; a batch older than
+     *                  the previous one is counted at the previous one's time
+     */
+    void add(long timeNanos, Batch head) {
+        long count = 0;
+        double sum = 0;
+        double sumSq = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double last = Double.NaN;
+        for (Batch slab = head; slab != null; slab = slab.getNext()) {
+            double[] values = slab.getValues();
+            int n = slab.size();
+            for (int i = 0; i < n; i++) {
+                double value = values[i];
+                sum += value;
+                sumSq += value * value;
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            if (n > 0) {
+                last = values[n - 1];
+            }
+            count += n;
+        }
+        if (count == 0) {
+            return;
+        }
+        long time = Math.max(timeNanos, buffer.getLong(LAST_TIME_OFFSET));
+
+        long sequence = buffer.getLong(SEQUENCE_OFFSET);
+        buffer.putLongOrdered(SEQUENCE_OFFSET, sequence + 1);
+        VarHandle.storeStoreFence();
+        buffer.putLong(LAST_TIME_OFFSET, time);
+        for (int w = 0; w < bucketNanos.length; w++) {
+            long id = Math.floorDiv(time, bucketNanos[w]);
+            int base = offset(w, (int) Math.floorMod(id, (long) buckets));
+            if (buffer.getLong(base + ID * Long.BYTES) != id) {
+                buffer.putLong(base + ID * Long.BYTES, id);
+                buffer.putLong(base + COUNT * Long.BYTES, count);
+                buffer.putDouble(base + SUM * Long.BYTES, sum);
+                buffer.putDouble(base + SUM_SQ * Long.BYTES, sumSq);
+                buffer.putDouble(base + MIN * Long.BYTES, min);
+                buffer.putDouble(base + MAX * Long.BYTES, max);
+            } else {
+                buffer.putLong(base + COUNT * Long.BYTES, buffer.getLong(base + COUNT * Long.BYTES) + count);
+                buffer.putDouble(base + SUM * Long.BYTES, buffer.getDouble(base + SUM * Long.BYTES) + sum);
+                buffer.putDouble(base + SUM_SQ * Long.BYTES, buffer.getDouble(base + SUM_SQ * Long.BYTES) + sumSq);
+                buffer.putDouble(base + MIN * Long.BYTES, Math.min(buffer.getDouble(base + MIN * Long.BYTES), min));
+                buffer.putDouble(base + MAX * Long.BYTES, Math.max(buffer.getDouble(base + MAX * Long.BYTES), max));
+            }
+            buffer.putDouble(base + LAST * Long.BYTES, last);
+        }
+        buffer.putLongOrdered(SEQUENCE_OFFSET, sequence + 2);
+    }
+
+    /**
+     * Summarize the values ingested during the last {@code durationNanos} before
+     * {@code nowNanos}, to within one bucket of the shortest window that is at least that
+     * long, into window 1 of a {@link StatsSnapshots} field array.
+     *
+     * @throws IllegalArgumentException if the duration is longer than the longest window
+     */
+    void query(long nowNanos, long durationNanos, double[] into) {
+        int w = windows.windowFor(durationNanos);
+        if (w < 0 || durationNanos <= 0) {
+            throw new IllegalArgumentException("Duration must be positive and at most the longest time window ("
+                    + windows.durationNanos(windows.windows() - 1) / 1_000_000 + " ms)");
+        }
+        long width = bucketNanos[w];
+        long current = Math.floorDiv(nowNanos, width);
+        // the current bucket and the ones before it that the duration reaches into
+        long oldest = current - (-Math.floorDiv(-durationNanos, width)) + 1;
+        while (true) {
+            long before = buffer.getLongVolatile(SEQUENCE_OFFSET);
+            if ((before & 1) == 0) {
+                long count = 0;
+                double sum = 0;
+                double sumSq = 0;
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double last = Double.NaN;
+                long newest = Long.MIN_VALUE;
+                for (int b = 0; b < buckets; b++) {
+                    int base = offset(w, b);
+                    long id = buffer.getLong(base + ID * Long.BYTES);
+                    if (id < oldest || id > current) {
+                        continue;
+                    }
+                    count += buffer.getLong(base + COUNT * Long.BYTES);
+                    sum += buffer.getDouble(base + SUM * Long.BYTES);
+                    sumSq += buffer.getDouble(base + SUM_SQ * Long.BYTES);
+                    min = Math.min(min, buffer.getDouble(base + MIN * Long.BYTES));
+                    max = Math.max(max, buffer.getDouble(base + MAX * Long.BYTES));
+                    if (id > newest) {
+                        newest = id;
+                        last = buffer.getDouble(base + LAST * Long.BYTES);
+                    }
+                }
+                VarHandle.loadLoadFence();
+                if (buffer.getLongVolatile(SEQUENCE_OFFSET) == before) {
+                    if (count == 0) {
+                        StatsSnapshots.setEmpty(into, 1);
+                    } else {
+                        double avg = sum / count;
+                        into[StatsSnapshots.MIN_FIELD] = min;
+                        into[StatsSnapshots.MAX_FIELD] = max;
+                        into[StatsSnapshots.LAST_FIELD] = last;
+                        into[StatsSnapshots.AVG_FIELD] = avg;
+                        into[StatsSnapshots.VARIANCE_FIELD] = sumSq / count - avg * avg;
+                        into[StatsSnapshots.COUNT_FIELD] = count;
+                        // buckets keep no quantile sketches
+                        into[StatsSnapshots.P50_FIELD] = Double.NaN;
+                        into[StatsSnapshots.P95_FIELD] = Double.NaN;
+                        into[StatsSnapshots.P99_FIELD] = Double.NaN;
+                    }
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copy the buckets of a retired aggregator, for a spill.
+     */
+    void writeTo(WritableByteChannel channel) throws IOException {
+        writeFully(channel, bucketBytes());
+    }
+
+    /**
+     * Read what {@link #writeTo} wrote, before the aggregator is published.
+     */
+    void readFrom(ReadableByteChannel channel) throws IOException {
+        readFully(channel, bucketBytes());
+    }
+
+    private ByteBuffer bucketBytes() {
+        ByteBuffer bytes = buffer.byteBuffer().duplicate();
+        bytes.position(LAST_TIME_OFFSET);
+        return bytes;
+    }
+
+    private int offset(int window, int bucket) {
+        return BUCKETS_OFFSET + (window * buckets + bucket) * BUCKET_BYTES;
+    }
+}
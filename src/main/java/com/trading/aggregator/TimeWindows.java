@@ -0,0 +1,111 @@
+package com.trading.aggregator;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The time-based windows every symbol keeps next to its count-based ones, such as the
+ * last second, minute and hour of values.
+ *
+ * <p>Each window is a ring of {@link #buckets()} fixed time buckets of
+ * {@code duration / buckets} each; see {@link TimeBuckets}. A window therefore slides
+ * one bucket at a time, and its memory is bounded by the bucket count, not by the
+ * number of values it covers.
+ */
+public final class TimeWindows {
+
+    public static final int DEFAULT_BUCKETS = 60;
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h)");
+
+    private final long[] durationNanos;
+    private final int buckets;
+
+    /**
+     * @param durationNanos the window durations, in any order
+     * @param buckets       buckets per window
+     */
+    public TimeWindows(long[] durationNanos, int buckets) {
+        if (durationNanos.length == 0 || buckets < 1) {
+            throw new IllegalArgumentException("Time windows need at least one duration and one bucket");
+        }
+        long[] sorted = durationNanos.clone();
+        Arrays.sort(sorted);
+        if (sorted[0] < buckets) {
+            throw new IllegalArgumentException("Time window of " + sorted[0] + " ns is shorter than "
+                    + buckets + " buckets of 1 ns");
+        }
+        this.durationNanos = sorted;
+        this.buckets = buckets;
+    }
+
+    /**
+     * Parse a configuration value such as {@code 1s,1m,1h}.
+     */
+    public static TimeWindows parse(String durations, int buckets) {
+        return new TimeWindows(Arrays.stream(durations.split(",", -1))
+                .mapToLong(TimeWindows::parseDuration)
+                .toArray(), buckets);
+    }
+
+    /**
+     * Parse a duration such as {@code 500ms}, {@code 1s}, {@code 5m} or {@code 1h}.
+     *
+     * @return the duration in nanoseconds
+     */
+    public static long parseDuration(String value) {
+        Matcher matcher = DURATION.matcher(value.trim().toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a duration (ms, s, m or h): " + value);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2)) {
+            case "ms":
+                return TimeUnit.MILLISECONDS.toNanos(amount);
+            case "s":
+                return TimeUnit.SECONDS.toNanos(amount);
+            case "m":
+                return TimeUnit.MINUTES.toNanos(amount);
+            default:
+                return TimeUnit.HOURS.toNanos(amount);
+        }
+    }
+
+    public int windows() {
+        return durationNanos.length;
+    }
+
+    /**
+     * @return the duration of window {@code w}, windows ordered from the shortest
+     */
+    public long durationNanos(int w) {
+        return durationNanos[w];
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+
+    /**
+     * @return the bucket width of window {@code w}, rounded up so that the buckets cover
+     *         the whole duration
+     */
+    long bucketNanos(int w) {
+        return -Math.floorDiv(-durationNanos[w], buckets);
+    }
+
+    /**
+     * @return the shortest window at least {@code durationNanos} long, or -1
+     */
+    int windowFor(long durationNanos) {
+        for (int w = 0; w < this.durationNanos.length; w++) {
+            if (this.durationNanos[w] >= durationNanos) {
+                return w;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,66 @@
+package com.trading.aggregator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Summaries over the values of a symbol's ring buffer that answer any window
+ * {@code [start, end]} ending at the latest value, see {@link BlockAggregates} for the
+ * decomposition. {@link TickAggregates} runs the same scheme in fixed point.
+ *
+ * <p>Not thread-safe: owned by the single worker that mutates a {@link SymbolAggregator}.
+ */
+interface WindowAggregates {
+
+    /**
+     * Fold the value stored at {@code index} into the summaries.
+     * Indices must be consecutive, starting from 0.
+     */
+    void add(long index, double value);
+
+    /**
+     * Aggregate the inclusive range {@code [start, end]}, where {@code end} is the
+     * last index passed to {@link #add}. The result is exposed through the getters.
+     */
+    void query(long start, long end);
+
+    long count();
+
+    double min();
+
+    double max();
+
+    double mean();
+
+    double variance();
+
+    /**
+     * @return the size of {@link #captureAccumulators()}
+     */
+    int accumulatorFields();
+
+    /**
+     * Copy the in-progress accumulators: together with the completed block summaries
+     * and the ring buffer they are the whole state at the current index.
+     */
+    long[] captureAccumulators();
+
+    void restoreAccumulators(long[] state);
+
+    /**
+     * Bulk-copy the summary slots of every level that the first {@code nextIndex} values
+     * can have completed: a short history writes a few slots instead of every level's
+     * ring. Like {@link com.trading.buffer.RingBuffer#writeTo}, this may run while the
+     * owner keeps adding values; only blocks completed before the capture and not yet
+     * recycled are meaningful.
+     */
+    void writeBlocks(WritableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException;
+
+    /**
+     * Read what {@link #writeBlocks(WritableByteChannel, ByteBuffer, long)} wrote for the
+     * same {@code nextIndex}.
+     */
+    void readBlocks(ReadableByteChannel channel, ByteBuffer scratch, long nextIndex) throws IOException;
+}
@@ -0,0 +1,120 @@
+package com.trading.aggregator;
+
+import java.util.StringJoiner;
+
+/**
+ * The count-based windows a symbol serves, as a subset of the exponents {@code k = 1..8}
+ * of the last {@code 10^k} values.
+ *
+ * <p>A symbol only computes and publishes the windows in its set, and its ring buffer
+ * only has to hold the largest of them, see {@link #capacity()}. An illiquid symbol that
+ * is only ever asked for {@code k <= 3} needs a ring of a thousand values, a symbol
+ * serving {@code k = 8} one of a hundred million.
+ */
+public final class WindowSet {
+
+    public static final WindowSet ALL = new WindowSet(fullMask(1, StatsSnapshots.WINDOWS));
+
+    // bit k set for every window 10^k in the set
+    private final int mask;
+
+    private WindowSet(int mask) {
+        if (mask == 0) {
+            throw new IllegalArgumentException("A window set needs at least one window");
+        }
+        this.mask = mask;
+    }
+
+    /**
+     * @param ks window exponents (1-8)
+     */
+    public static WindowSet of(int... ks) {
+        int mask = 0;
+        for (int k : ks) {
+            mask |= bit(k);
+        }
+        return new WindowSet(mask);
+    }
+
+    /**
+     * Parse a configuration value such as {@code 1-8}, {@code 1,2,3} or {@code 1-3,5}.
+     */
+    public static WindowSet parse(String value) {
+        int mask = 0;
+        for (String part : value.split(",", -1)) {
+            String range = part.trim();
+            int dash = range.indexOf('-');
+            try {
+                if (dash < 0) {
+                    mask |= bit(Integer.parseInt(range));
+                } else {
+                    int from = Integer.parseInt(range.substring(0, dash).trim());
+                    int to = Integer.parseInt(range.substring(dash + 1).trim());
+                    bit(from);
+                    bit(to);
+                    if (from > to) {
+                        throw new IllegalArgumentException("Not a window range: " + range);
+                    }
+                    mask |= fullMask(from, to);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a window set (e.g. 1-3,5): " + value);
+            }
+        }
+        return new WindowSet(mask);
+    }
+
+    public boolean contains(int k) {
+        return k >= 1 && k <= StatsSnapshots.WINDOWS && (mask & (1 << k)) != 0;
+    }
+
+    /**
+     * @return the exponent of the largest window
+     */
+    public int largest() {
+        return 31 - Integer.numberOfLeadingZeros(mask);
+    }
+
+    /**
+     * @return the ring buffer capacity that holds the largest window, {@code 10^largest()}
+     */
+    public long capacity() {
+        long capacity = 1;
+        for (int k = 0; k < largest(); k++) {
+            capacity *= 10;
+        }
+        return capacity;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WindowSet && ((WindowSet) other).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner ks = new StringJoiner(",");
+        for (int k = 1; k <= StatsSnapshots.WINDOWS; k++) {
+            if (contains(k)) {
+                ks.add(Integer.toString(k));
+            }
+        }
+        return ks.toString();
+    }
+
+    private static int bit(int k) {
+        if (k < 1 || k > StatsSnapshots.WINDOWS) {
+            throw new IllegalArgumentException("Invalid window k=" + k + " (1-8)");
+        }
+        return 1 << k;
+    }
+
+    private static int fullMask(int from, int to) {
+        return (2 << to) - (1 << from);
+    }
+}
@@ -0,0 +1,34 @@
+package com.trading.api;
+
+import com.trading.aggregator.BatchRejectedException;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Turns a rejected batch into {@code 429 Too Many Requests} with a {@code Retry-After}
+ * hint, instead of the generic 500 an {@link IllegalStateException} would produce. A
+ * rejection in the middle of {@code /add_batches/} also says how many batches were accepted.
+ */
+@Provider
+public class BatchRejectedExceptionMapper implements ExceptionMapper<BatchRejectedException> {
+
+    static final int TOO_MANY_REQUESTS = 429;
+    static final String RETRY_AFTER_SECONDS = "1";
+
+    @Override
+    public Response toResponse(BatchRejectedException exception) {
+        Response.ResponseBuilder response = Response.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .header(TradingResource.QUEUE_DEPTH_HEADER, exception.getQueueDepth());
+        if (exception.getAcceptedBatches() >= 0) {
+            response.header(TradingResource.ACCEPTED_BATCHES_HEADER, exception.getAcceptedBatches());
+        }
+        return response.type(MediaType.APPLICATION_JSON)
+                .entity(exception.getMessage())
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package com.trading.api;
+
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.subscription.UpdateSink;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Writes subscription updates as server-sent events named {@code stats}: the data is
+ * the symbol's requested windows in the {@code /stats/bulk/} format, and the event id
+ * is the value sequence the snapshot covers at least.
+ */
+final class SseUpdateSink implements UpdateSink {
+
+    static final String EVENT_NAME = "stats";
+
+    private final SseEventSink sink;
+    private final Sse sse;
+    private final StatsJsonCache statsJson;
+    private final int[] windows;
+
+    SseUpdateSink(SseEventSink sink, Sse sse, StatsJsonCache statsJson, int[] windows) {
+        this.sink = sink;
+        this.sse = sse;
+        this.statsJson = statsJson;
+        this.windows = windows;
+    }
+
+    @Override
+    public CompletionStage<?> send(SymbolAggregator aggregator) {
+        // read the watermark before the snapshot, which is published first
+        long sequence = aggregator.processedSequence();
+        byte[] json = statsJson.bulk(List.of(aggregator.getSymbol()), windows);
+        return sink.send(sse.newEventBuilder()
+                .name(EVENT_NAME)
+                .id(Long.toString(sequence))
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(new String(json, StandardCharsets.UTF_8))
+                .build());
+    }
+
+    @Override
+    public boolean isClosed() {
+        return sink.isClosed();
+    }
+
+    @Override
+    public void close() {
+        sink.close();
+    }
+}
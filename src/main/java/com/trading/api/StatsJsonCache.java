@@ -0,0 +1,192 @@
+package com.trading.api;
+
+import com.trading.aggregator.AggregatorManager;
+import com.trading.aggregator.StatsSnapshots;
+import com.trading.aggregator.SymbolAggregator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stats snapshots pre-serialized to JSON, so that polling many symbols costs a few
+ * array copies per symbol instead of a JSON-B serialization per window.
+ *
+ * <p>Each symbol's entry holds the JSON of all its windows, keyed by the
+ * {@link StatsSnapshots#sequence() sequence} of the publication it was built from. It
+ * is only rebuilt, from one consistent copy of all windows, when a request sees that
+ * the sequence moved on. Concurrent rebuilds of the same entry are harmless: each one
+ * produces the JSON of a complete publication.
+ *
+ * <p>Symbols are looked up with {@link AggregatorManager#find}, so unknown symbols are
+ * answered with {@code null} without creating an aggregator.
+ */
+final class StatsJsonCache {
+
+    private static final byte[] NULL = bytes("null");
+    private static final byte[] EMPTY_WINDOW = windowJson(emptyFields(), 1);
+
+    private final AggregatorManager manager;
+    private final ConcurrentHashMap<SymbolAggregator, Entry> entries = new ConcurrentHashMap<>();
+
+    StatsJsonCache(AggregatorManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * @param windows window exponents (1-8) to include for every symbol, in order
+     * @return {@code {"SYMBOL":{"k":{stats},...},...}}, with {@code null} for unknown symbols
+     *         and for the fields of an empty window
+     */
+    byte[] bulk(List<String> symbols, int[] windows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + symbols.size() * windows.length * 128);
+        out.write('{');
+        for (int i = 0; i < symbols.size(); i++) {
+            String symbol = symbols.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            writeString(out, symbol);
+            out.write(':');
+
+            SymbolAggregator aggregator = manager.find(symbol);
+            if (aggregator == null) {
+                out.writeBytes(NULL);
+                continue;
+            }
+            Entry entry = entry(aggregator);
+            out.write('{');
+            for (int w = 0; w < windows.length; w++) {
+                if (w > 0) {
+                    out.write(',');
+                }
+                out.write('"');
+                out.write('0' + windows[w]);
+                out.write('"');
+                out.write(':');
+                out.writeBytes(entry.windows[windows[w] - 1]);
+            }
+            out.write('}');
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * @param aggregator the symbol's aggregator, or null for an unknown symbol
+     * @return the JSON of window {@code k} (1-8)
+     */
+    byte[] window(SymbolAggregator aggregator, int k) {
+        return aggregator == null ? EMPTY_WINDOW : entry(aggregator).windows[k - 1];
+    }
+
+    /**
+     * @param aggregator the symbol's aggregator, or null for an unknown symbol
+     * @return the JSON of the time window covering the last {@code durationNanos}; not
+     *         cached, since it changes with the time of the request
+     * @throws IllegalArgumentException if the symbol has no time window that long
+     */
+    byte[] timeWindow(SymbolAggregator aggregator, long durationNanos) {
+        if (aggregator == null) {
+            return EMPTY_WINDOW;
+        }
+        double[] fields = new double[StatsSnapshots.FIELDS];
+        aggregator.copyTimeWindow(durationNanos, fields);
+        return windowJson(fields, 1);
+    }
+
+    /**
+     * Drop the entry of an evicted aggregator; its reloaded successor gets a new one.
+     */
+    void evict(SymbolAggregator aggregator) {
+        entries.remove(aggregator);
+    }
+
+    private Entry entry(SymbolAggregator aggregator) {
+        StatsSnapshots snapshots = aggregator.snapshots();
+        Entry entry = entries.get(aggregator);
+        if (entry != null && entry.sequence == snapshots.sequence()) {
+            return entry;
+        }
+        double[] fields = new double[StatsSnapshots.LENGTH];
+        long sequence = snapshots.copyTo(fields);
+        entry = new Entry(sequence, fields);
+        entries.put(aggregator, entry);
+        return entry;
+    }
+
+    /**
+     * @return the JSON of one window, with the property names and order JSON-B uses for
+     *         {@link com.trading.model.Stats}
+     */
+    static byte[] windowJson(double[] fields, int k) {
+        int base = (k - 1) * StatsSnapshots.FIELDS;
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"avg\":");
+        appendDouble(json, fields[base + StatsSnapshots.AVG_FIELD]);
+        json.append(",\"count\":").append((long) fields[base + StatsSnapshots.COUNT_FIELD]);
+        json.append(",\"last\":");
+        appendDouble(json, fields[base + StatsSnapshots.LAST_FIELD]);
+        json.append(",\"max\":");
+        appendDouble(json, fields[base + StatsSnapshots.MAX_FIELD]);
+        json.append(",\"min\":");
+        appendDouble(json, fields[base + StatsSnapshots.MIN_FIELD]);
+        json.append(",\"p50\":");
+        appendDouble(json, fields[base + StatsSnapshots.P50_FIELD]);
+        json.append(",\"p95\":");
+        appendDouble(json, fields[base + StatsSnapshots.P95_FIELD]);
+        json.append(",\"p99\":");
+        appendDouble(json, fields[base + StatsSnapshots.P99_FIELD]);
+        json.append(",\"variance\":");
+        appendDouble(json, fields[base + StatsSnapshots.VARIANCE_FIELD]);
+        json.append('}');
+        return bytes(json.toString());
+    }
+
+    private static double[] emptyFields() {
+        double[] fields = new double[StatsSnapshots.LENGTH];
+        StatsSnapshots.setEmpty(fields, 1);
+        return fields;
+    }
+
+    private static void appendDouble(StringBuilder json, double value) {
+        // JSON has no NaN: an empty window's statistics are null
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        out.writeBytes(bytes(json.append('"').toString()));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final byte[][] windows = new byte[StatsSnapshots.WINDOWS][];
+
+        Entry(long sequence, double[] fields) {
+            this.sequence = sequence;
+            for (int k = 1; k <= StatsSnapshots.WINDOWS; k++) {
+                windows[k - 1] = windowJson(fields, k);
+            }
+        }
+    }
+}
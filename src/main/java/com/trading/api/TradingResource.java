@@ -1,68 +1,661 @@
 package com.trading.api;
 
 import com.trading.aggregator.AggregatorManager;
+import com.trading.aggregator.AggregatorOptions;
+import com.trading.aggregator.BarIntervals;
+import com.trading.aggregator.BatchPool;
+import com.trading.aggregator.CheckpointStore;
+import com.trading.aggregator.OverflowPolicy;
+import com.trading.aggregator.SpillStore;
+import com.trading.aggregator.StatsSnapshots;
 import com.trading.aggregator.SymbolAggregator;
+import com.trading.aggregator.TickSize;
+import com.trading.aggregator.TimeWindows;
+import com.trading.aggregator.WindowSet;
 import com.trading.buffer.ChronicleRingBuffer;
+import com.trading.buffer.CompressedRingBuffer;
+import com.trading.buffer.MappedRingBuffer;
 import com.trading.buffer.RingBuffer;
+import com.trading.dispatcher.Dispatcher;
+import com.trading.dispatcher.GlobalDispatcher;
+import com.trading.dispatcher.ShardedDispatcher;
+import com.trading.dispatcher.WorkerIdleMode;
+import com.trading.journal.Journal;
+import com.trading.metrics.PrometheusExporter;
+import com.trading.model.Bar;
 import com.trading.model.BatchRequest;
-import com.trading.model.Stats;
+import com.trading.model.BinaryBatchRequest;
+import com.trading.model.QueueDepth;
+import com.trading.model.SymbolId;
+import com.trading.subscription.SubscriptionHub;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.ServiceUnavailableException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 
-import java.util.function.Supplier;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 @Path("/")
 public class TradingResource {
 
-    // TODO: should be increased for further production usage
+    // capacity of the dispatcher's queues of scheduled symbols
     private static final int GLOBAL_CAPACITY = 1_000_000;
 
+    static final String QUEUE_DEPTH_HEADER = "X-Queue-Depth";
+    static final String SEQUENCE_HEADER = "X-Sequence";
+    static final String ACCEPTED_BATCHES_HEADER = "X-Accepted-Batches";
+    static final long MAX_STATS_WAIT_MS = 30_000;
+
 
     private final AggregatorManager manager;
+    private final PrometheusExporter metrics;
+    private final StatsJsonCache statsJson;
+    private final SubscriptionHub subscriptions;
 
 
     public TradingResource() {
-        Supplier<RingBuffer> bufferSupplier = () -> new ChronicleRingBuffer(GLOBAL_CAPACITY);
-        this.manager = new AggregatorManager(bufferSupplier, GLOBAL_CAPACITY);
+        Config config = ConfigProvider.getConfig();
+        BatchPool batchPool = new BatchPool(
+                config.getOptionalValue("trading.batch-pool.max-slabs", Integer.class).orElse(BatchPool.DEFAULT_MAX_SLABS),
+                config.getOptionalValue("trading.batch-pool.slab-size", Integer.class).orElse(BatchPool.DEFAULT_SLAB_SIZE));
+        long blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                config.getOptionalValue("trading.overflow.block-timeout-ms", Long.class).orElse(50L));
+        Function<String, WindowSet> windowSets = windowSets(config);
+        AggregatorOptions options = AggregatorOptions.builder()
+                .overflowPolicies(overflowPolicies(config))
+                .blockTimeoutNanos(blockTimeoutNanos)
+                .journal(journal(config))
+                .tickSizes(tickSizes(config))
+                .timeWindows(timeWindows(config))
+                .windowSets(windowSets)
+                .quantiles(config.getOptionalValue("trading.quantiles", Boolean.class).orElse(true))
+                .barIntervals(barIntervals(config))
+                .build();
+        this.manager = new AggregatorManager(ringBufferFactory(config, windowSets), batchPool, dispatcher(config),
+                options);
+        this.metrics = new PrometheusExporter(manager);
+        this.statsJson = new StatsJsonCache(manager);
+        this.subscriptions = new SubscriptionHub();
+        manager.addEvictionListener(statsJson::evict);
+        startCheckpoints(config, manager);
+        startEviction(config, manager);
+    }
+
+    /**
+     * trading.lifecycle.spill-directory enables eviction: symbols not used for
+     * trading.lifecycle.idle-seconds, and the least recently used ones while the ring
+     * buffers exceed trading.lifecycle.memory-budget-mb, are spilled there every
+     * trading.lifecycle.sweep-interval-seconds and reloaded on their next batch or query.
+     */
+    private static void startEviction(Config config, AggregatorManager manager) {
+        config.getOptionalValue("trading.lifecycle.spill-directory", String.class).ifPresent(directory -> {
+            long idleSeconds = config.getOptionalValue("trading.lifecycle.idle-seconds", Long.class).orElse(600L);
+            long budgetMb = config.getOptionalValue("trading.lifecycle.memory-budget-mb", Long.class).orElse(0L);
+            long interval = config.getOptionalValue("trading.lifecycle.sweep-interval-seconds", Long.class).orElse(10L);
+            manager.startEviction(new SpillStore(Paths.get(directory)), TimeUnit.SECONDS.toMillis(idleSeconds),
+                    budgetMb << 20, TimeUnit.SECONDS.toMillis(interval));
+        });
+    }
+
+    /**
+     * trading.journal.directory enables the ingest journal, split into segments of
+     * trading.journal.segment-mb megabytes.
+     */
+    private static Journal journal(Config config) {
+        return config.getOptionalValue("trading.journal.directory", String.class)
+                .map(directory -> new Journal(Paths.get(directory), Math.toIntExact(
+                        config.getOptionalValue("trading.journal.segment-mb", Integer.class).orElse(64) * (1L << 20))))
+                .orElse(null);
+    }
+
+    /**
+     * Bring the aggregators back to where they were: restore the checkpoints found in
+     * trading.checkpoint.directory, replay the journaled batches they do not cover, then
+     * checkpoint changed symbols every trading.checkpoint.interval-seconds.
+     */
+    private static void startCheckpoints(Config config, AggregatorManager manager) {
+        Optional<CheckpointStore> store = config.getOptionalValue("trading.checkpoint.directory", String.class)
+                .map(directory -> new CheckpointStore(Paths.get(directory)));
+        store.ifPresent(manager::restoreCheckpoints);
+        manager.recoverFromJournal();
+        store.ifPresent(checkpoints -> {
+            long interval = config.getOptionalValue("trading.checkpoint.interval-seconds", Long.class).orElse(60L);
+            manager.startCheckpoints(checkpoints, TimeUnit.SECONDS.toMillis(interval));
+        });
+    }
+
+    /**
+     * trading.time-windows (e.g. 1s,1m,1h) adds time-based windows to every symbol, each
+     * a ring of trading.time-windows.buckets buckets.
+     */
+    private static TimeWindows timeWindows(Config config) {
+        return config.getOptionalValue("trading.time-windows", String.class)
+                .map(durations -> TimeWindows.parse(durations, config.getOptionalValue(
+                        "trading.time-windows.buckets", Integer.class).orElse(TimeWindows.DEFAULT_BUCKETS)))
+                .orElse(null);
+    }
+
+    /**
+     * trading.bars (e.g. 1s,1m,5m) builds OHLC/VWAP bars at those intervals for every
+     * symbol, keeping the last trading.bars.history bars of each.
+     */
+    private static BarIntervals barIntervals(Config config) {
+        return config.getOptionalValue("trading.bars", String.class)
+                .map(intervals -> BarIntervals.parse(intervals, config.getOptionalValue(
+                        "trading.bars.history", Integer.class).orElse(BarIntervals.DEFAULT_HISTORY)))
+                .orElse(null);
+    }
+
+    /**
+     * trading.windows (default 1-8) is the set of count-based windows every symbol serves;
+     * trading.windows.SYMBOL overrides it for one symbol. Either value may instead name a
+     * symbol class whose set is trading.window-class.NAME.
+     */
+    private static Function<String, WindowSet> windowSets(Config config) {
+        Function<String, WindowSet> resolve = value -> {
+            if (!value.isEmpty() && Character.isDigit(value.charAt(0))) {
+                return WindowSet.parse(value);
+            }
+            return WindowSet.parse(config.getOptionalValue("trading.window-class." + value, String.class)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown window class: " + value)));
+        };
+        WindowSet defaultSet = config.getOptionalValue("trading.windows", String.class)
+                .map(resolve)
+                .orElse(WindowSet.ALL);
+        return symbol -> config.getOptionalValue("trading.windows." + symbol, String.class)
+                .map(resolve)
+                .orElse(defaultSet);
+    }
+
+    /**
+     * trading.fixed-point.tick-size (e.g. 0.01) aggregates every symbol in fixed point;
+     * trading.fixed-point.tick-size.SYMBOL sets it for one symbol, or with "none" keeps
+     * that symbol in floating point.
+     */
+    private static Function<String, TickSize> tickSizes(Config config) {
+        Optional<String> defaultSize = config.getOptionalValue("trading.fixed-point.tick-size", String.class);
+        // fail at startup, not at the first symbol, on a malformed default
+        defaultSize.filter(size -> !size.equals("none")).ifPresent(TickSize::parse);
+        return symbol -> config.getOptionalValue("trading.fixed-point.tick-size." + symbol, String.class)
+                .or(() -> defaultSize)
+                .filter(size -> !size.equals("none"))
+                .map(TickSize::parse)
+                .orElse(null);
+    }
+
+    /**
+     * trading.overflow.policy is the default overflow policy (reject, block, coalesce or
+     * drop-oldest); trading.overflow.policy.SYMBOL overrides it for one symbol.
+     */
+    private static Function<String, OverflowPolicy> overflowPolicies(Config config) {
+        OverflowPolicy defaultPolicy = OverflowPolicy.fromConfig(
+                config.getOptionalValue("trading.overflow.policy", String.class).orElse("reject"));
+        return symbol -> config.getOptionalValue("trading.overflow.policy." + symbol, String.class)
+                .map(OverflowPolicy::fromConfig)
+                .orElse(defaultPolicy);
+    }
+
+    /**
+     * trading.dispatcher.mode selects the worker runtime: "global" (shared task queue,
+     * default) or "sharded" (each symbol pinned to one worker, optionally pinned to
+     * the CPUs listed in trading.dispatcher.cpus).
+     */
+    private static Dispatcher dispatcher(Config config) {
+        int workers = config.getOptionalValue("trading.dispatcher.workers", Integer.class)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        WorkerIdleMode idleMode = WorkerIdleMode.fromConfig(
+                config.getOptionalValue("trading.dispatcher.idle-strategy", String.class).orElse("backoff"));
+        String mode = config.getOptionalValue("trading.dispatcher.mode", String.class).orElse("global");
+        switch (mode) {
+            case "global":
+                return new GlobalDispatcher(GLOBAL_CAPACITY, workers, idleMode);
+            case "sharded":
+                int[] cpus = config.getOptionalValue("trading.dispatcher.cpus", String.class)
+                        .map(value -> Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray())
+                        .orElse(new int[0]);
+                return new ShardedDispatcher(workers, GLOBAL_CAPACITY, idleMode, cpus);
+            default:
+                throw new IllegalArgumentException("Unknown trading.dispatcher.mode: " + mode);
+        }
+    }
+
+    /**
+     * trading.ring-buffer.type selects the per-symbol storage: "chronicle" (direct memory,
+     * default), "mapped" (one file per symbol under trading.ring-buffer.directory) or
+     * "compressed" (encoded heap blocks). Each
+     * symbol's ring holds its largest window.
+     */
+    private static Function<String, RingBuffer> ringBufferFactory(Config config, Function<String, WindowSet> windowSets) {
+        String type = config.getOptionalValue("trading.ring-buffer.type", String.class).orElse("chronicle");
+        switch (type) {
+            case "chronicle":
+                return symbol -> new ChronicleRingBuffer(windowSets.apply(symbol).capacity());
+            case "mapped":
+                String directory = config.getOptionalValue("trading.ring-buffer.directory", String.class)
+                        .orElse("data/rings");
+                return MappedRingBuffer.perSymbol(Paths.get(directory), symbol -> windowSets.apply(symbol).capacity());
+            case "compressed":
+                return symbol -> new CompressedRingBuffer(windowSets.apply(symbol).capacity());
+            default:
+                throw new IllegalArgumentException("Unknown trading.ring-buffer.type: " + type);
+        }
     }
 
     /**
      * POST /add_batch/
-     * Add a batch of trading values for a symbol.
+     * Add a batch of trading values for a symbol, optionally with a volume and an epoch
+     * millisecond timestamp per value for the bars (see GET /bars/).
      */
     @POST
     @Path("/add_batch/")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
     public Response addBatch(BatchRequest request) {
-        if (request.getSymbol() == null || request.getValues() == null || request.getValues().isEmpty()) {
+        check(request);
+        // only batches with columns are converted; plain ones go straight into the slabs
+        BinaryBatchRequest columns = request.getVolumes() == null && request.getTimestamps() == null
+                ? null : toBatch(request);
+        SymbolAggregator aggregator = manager.getOrCreate(request.getSymbol());
+        long sequence;
+        try {
+            sequence = columns == null
+                    ? manager.push(aggregator, request.getValues())
+                    : manager.push(aggregator, columns.getValues(), columns.getVolumes(), columns.getTimestamps());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        return Response.ok("Batch added for " + request.symbol + ", size=" + request.getValues().size())
+                .header(QUEUE_DEPTH_HEADER, aggregator.queueDepth())
+                .header(SEQUENCE_HEADER, sequence)
+                .build();
+    }
+
+    /**
+     * POST /add_batch/ with Content-Type: application/octet-stream
+     * Binary variant of {@link #addBatch(BatchRequest)}: the symbol followed by raw
+     * little-endian doubles (see {@link BinaryBatchRequest}), copied straight from the
+     * request body into pooled primitive slabs without boxing.
+     */
+    @POST
+    @Path("/add_batch/")
+    @Consumes(BinaryBatchRequest.MEDIA_TYPE)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addBinaryBatch(byte[] body) {
+        BinaryBatchRequest request;
+        try {
+            request = BinaryBatchRequest.decode(body);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        if (request.size() == 0) {
+            throw new BadRequestException("symbol and values must be provided");
+        }
+        int size = request.size();
+        SymbolAggregator aggregator;
+        try {
+            aggregator = request.hasSymbolId()
+                    ? manager.getOrCreate(request.getSymbolId())
+                    : manager.getOrCreate(request.getSymbol());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        long sequence;
+        try {
+            sequence = manager.push(aggregator, request.getValues());
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        return Response.ok("Batch added for " + aggregator.getSymbol() + ", size=" + size)
+                .header(QUEUE_DEPTH_HEADER, aggregator.queueDepth())
+                .header(SEQUENCE_HEADER, sequence)
+                .build();
+    }
+
+    /**
+     * POST /add_batches/
+     * Add batches of many symbols in one request; every batch is checked before any is
+     * enqueued, and a symbol is scheduled with its first batch.
+     */
+    @POST
+    @Path("/add_batches/")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addBatches(List<BatchRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new BadRequestException("batches must be provided");
+        }
+        List<BinaryBatchRequest> batches = new ArrayList<>(requests.size());
+        for (BatchRequest request : requests) {
+            check(request);
+            batches.add(toBatch(request));
+        }
+        return pushBatches(batches);
+    }
+
+    /**
+     * Reject a JSON batch that cannot be unboxed into a {@link BinaryBatchRequest}.
+     */
+    private static void check(BatchRequest request) {
+        if (request == null || request.getSymbol() == null || request.getValues() == null
+                || request.getValues().isEmpty()) {
             throw new BadRequestException("symbol and values must be provided");
         }
-        manager.getAndPushCalculations(request.getSymbol(), request.getValues());
-        return Response.ok("Batch added for " + request.symbol + ", size=" + request.getValues().size()).build();
+        int size = request.getValues().size();
+        if ((request.getVolumes() != null && request.getVolumes().size() != size)
+                || (request.getTimestamps() != null && request.getTimestamps().size() != size)) {
+            throw new BadRequestException("volumes and timestamps must have one entry per value");
+        }
+        if (hasNull(request.getValues()) || hasNull(request.getVolumes()) || hasNull(request.getTimestamps())) {
+            throw new BadRequestException("values, volumes and timestamps must not contain null");
+        }
+    }
+
+    private static boolean hasNull(List<?> column) {
+        if (column != null) {
+            for (Object entry : column) {
+                if (entry == null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static BinaryBatchRequest toBatch(BatchRequest request) {
+        double[] values = request.getValues().stream().mapToDouble(Double::doubleValue).toArray();
+        DoubleBuffer volumes = request.getVolumes() == null ? null
+                : DoubleBuffer.wrap(request.getVolumes().stream().mapToDouble(Double::doubleValue).toArray());
+        LongBuffer timestamps = request.getTimestamps() == null ? null
+                : LongBuffer.wrap(request.getTimestamps().stream().mapToLong(Long::longValue).toArray());
+        return new BinaryBatchRequest(request.getSymbol(), DoubleBuffer.wrap(values), volumes, timestamps);
     }
 
     /**
-     * GET /stats/?symbol=AAPL&k=3
-     * Get statistics for the last 10^k values.
+     * POST /add_batches/ with Content-Type: application/octet-stream
+     * Binary variant of {@link #addBatches(List)}: a sequence of frames, one per batch
+     * (see {@link BinaryBatchRequest#decodeAll}).
+     */
+    @POST
+    @Path("/add_batches/")
+    @Consumes(BinaryBatchRequest.MEDIA_TYPE)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addBinaryBatches(byte[] body) {
+        List<BinaryBatchRequest> batches;
+        try {
+            batches = BinaryBatchRequest.decodeAll(body);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        if (batches.isEmpty()) {
+            throw new BadRequestException("batches must be provided");
+        }
+        return pushBatches(batches);
+    }
+
+    private Response pushBatches(List<BinaryBatchRequest> batches) {
+        long values = 0;
+        for (BinaryBatchRequest batch : batches) {
+            values += batch.size();
+        }
+        int symbols;
+        try {
+            symbols = manager.getAndPushCalculations(batches);
+        } catch (IllegalArgumentException e) {
+            // every batch is checked before any is enqueued
+            throw new BadRequestException(e.getMessage(), Response.status(Response.Status.BAD_REQUEST)
+                    .header(ACCEPTED_BATCHES_HEADER, 0)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(e.getMessage())
+                    .build());
+        }
+        return Response.ok("Batches added: " + batches.size() + ", symbols=" + symbols + ", size=" + values)
+                .header(ACCEPTED_BATCHES_HEADER, batches.size())
+                .build();
+    }
+
+    /**
+     * GET /symbol_id/?symbol=AAPL
+     * Id of a symbol, registering it if needed, for clients that address symbols by id.
+     */
+    @GET
+    @Path("/symbol_id/")
+    @Produces(MediaType.APPLICATION_JSON)
+    public SymbolId getSymbolId(@QueryParam("symbol") String symbol) {
+        if (symbol == null || symbol.isEmpty()) {
+            throw new BadRequestException("symbol must be provided");
+        }
+        return new SymbolId(symbol, manager.idOf(symbol));
+    }
+
+    /**
+     * GET /stats/?symbol=AAPL&k=3 or GET /stats/?id=0&k=3
+     * Get statistics for the last 10^k values, served from the pre-serialized snapshot,
+     * including the approximate p50/p95/p99 unless trading.quantiles is false.
+     * An unknown symbol gets an empty window and is not registered; a window outside the
+     * symbol's window set is a bad request.
+     *
+     * <p>GET /stats/?symbol=AAPL&duration=1m instead gets the values enqueued during the
+     * last duration (ms, s, m or h), up to the longest configured time window. Time
+     * windows have no quantiles.
+     *
+     * <p>With minSeq (an X-Sequence returned by /add_batch/), the request parks until
+     * the snapshot covers that sequence or timeoutMs elapses. The X-Sequence of the
+     * response is the sequence the returned snapshot covers at least, so a caller can
+     * tell a timed-out answer apart.
      */
     @GET
     @Path("/stats/")
     @Produces(MediaType.APPLICATION_JSON)
-    public Stats getStats(@QueryParam("symbol") String symbol,
-                                  @QueryParam("k") int k) {
-        if (symbol == null || k < 1 || k > 8) {
+    public Response getStats(@QueryParam("symbol") String symbol,
+                             @QueryParam("id") @DefaultValue("-1") int id,
+                             @QueryParam("k") int k,
+                             @QueryParam("duration") String duration,
+                             @QueryParam("minSeq") @DefaultValue("0") long minSeq,
+                             @QueryParam("timeoutMs") @DefaultValue("1000") long timeoutMs) {
+        if ((symbol == null && id < 0) || (duration == null && (k < 1 || k > 8))) {
             throw new BadRequestException("Invalid symbol or k (1-8)");
         }
-        SymbolAggregator aggregator = manager.getOrCreate(symbol);
-       return aggregator.getStats(k);
+        long durationNanos = 0;
+        if (duration != null) {
+            try {
+                durationNanos = TimeWindows.parseDuration(duration);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
+        if (timeoutMs < 0 || timeoutMs > MAX_STATS_WAIT_MS) {
+            throw new BadRequestException("Invalid timeoutMs (0-" + MAX_STATS_WAIT_MS + ")");
+        }
+        SymbolAggregator aggregator;
+        if (symbol != null) {
+            aggregator = manager.find(symbol);
+        } else {
+            try {
+                aggregator = manager.getOrCreate(id);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
+        if (aggregator == null) {
+            byte[] empty = duration == null ? statsJson.window(null, k) : statsJson.timeWindow(null, durationNanos);
+            return Response.ok(empty).header(SEQUENCE_HEADER, 0).build();
+        }
+        if (minSeq > 0) {
+            try {
+                aggregator.awaitSequence(minSeq, TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServiceUnavailableException("Interrupted while waiting for sequence " + minSeq);
+            }
+        }
+        if (duration == null && !aggregator.getWindowSet().contains(k)) {
+            throw new BadRequestException("Window k=" + k + " is not configured for " + aggregator.getSymbol()
+                    + " (" + aggregator.getWindowSet() + ")");
+        }
+        // read the watermark before the snapshot, which is published first
+        long covered = aggregator.processedSequence();
+        if (duration != null) {
+            try {
+                return Response.ok(statsJson.timeWindow(aggregator, durationNanos))
+                        .header(SEQUENCE_HEADER, covered).build();
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException(e.getMessage());
+            }
+        }
+        return Response.ok(statsJson.window(aggregator, k)).header(SEQUENCE_HEADER, covered).build();
+    }
+
+    /**
+     * GET /bars/?symbol=AAPL&interval=1m&limit=100
+     * The last OHLC/VWAP bars of one of the trading.bars intervals, oldest first. The last
+     * bar is still in progress until a value of a later interval arrives. Bars are built
+     * from live batches only: they start empty after a restart. An unknown symbol has no
+     * bars and is not registered.
+     */
+    @GET
+    @Path("/bars/")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Bar> getBars(@QueryParam("symbol") String symbol,
+                             @QueryParam("interval") String interval,
+                             @QueryParam("limit") @DefaultValue("" + BarIntervals.DEFAULT_HISTORY) int limit) {
+        if (symbol == null || interval == null) {
+            throw new BadRequestException("symbol and interval must be provided");
+        }
+        if (limit < 1) {
+            throw new BadRequestException("Invalid limit " + limit);
+        }
+        long intervalMillis;
+        try {
+            intervalMillis = TimeUnit.NANOSECONDS.toMillis(TimeWindows.parseDuration(interval));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+        SymbolAggregator aggregator = manager.find(symbol);
+        if (aggregator == null) {
+            return List.of();
+        }
+        try {
+            return aggregator.getBars(intervalMillis, limit);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    /**
+     * GET /stats/bulk/?symbol=AAPL&symbol=MSFT&k=1&k=3
+     * Statistics of several windows of many symbols in one response; every window when
+     * no k is given. Unknown symbols map to null and are not registered. Windows outside
+     * a symbol's window set are empty.
+     */
+    @GET
+    @Path("/stats/bulk/")
+    @Produces(MediaType.APPLICATION_JSON)
+    public byte[] getBulkStats(@QueryParam("symbol") List<String> symbols,
+                               @QueryParam("k") List<Integer> windows) {
+        if (symbols.isEmpty()) {
+            throw new BadRequestException("symbol must be provided");
+        }
+        return statsJson.bulk(symbols, windows(windows));
+    }
+
+    /**
+     * GET /subscribe/?symbol=AAPL&symbol=MSFT&k=1&k=3
+     * Server-sent events with the requested windows of a symbol every time it publishes
+     * new snapshots, starting with the current ones. Updates are conflated: a slow client
+     * gets the latest snapshot of each symbol instead of a backlog. Only symbols that have
+     * received batches can be subscribed to: an unknown symbol is a 404 and is not
+     * registered.
+     */
+    @GET
+    @Path("/subscribe/")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribe(@QueryParam("symbol") List<String> symbols,
+                          @QueryParam("k") List<Integer> windows,
+                          @Context SseEventSink sink,
+                          @Context Sse sse) {
+        if (symbols.isEmpty()) {
+            throw new BadRequestException("symbol must be provided");
+        }
+        int[] ks = windows(windows);
+        List<SymbolAggregator> aggregators = new ArrayList<>(symbols.size());
+        for (String symbol : new LinkedHashSet<>(symbols)) {
+            SymbolAggregator aggregator = manager.find(symbol);
+            if (aggregator == null) {
+                throw new NotFoundException("Unknown symbol: " + symbol);
+            }
+            aggregators.add(aggregator);
+        }
+        subscriptions.subscribe(aggregators, new SseUpdateSink(sink, sse, statsJson, ks));
+    }
+
+    /**
+     * @return the requested window exponents, or all of them when none was requested
+     */
+    private static int[] windows(List<Integer> windows) {
+        int[] ks = windows.isEmpty()
+                ? IntStream.rangeClosed(1, StatsSnapshots.WINDOWS).toArray()
+                : windows.stream().mapToInt(Integer::intValue).toArray();
+        for (int k : ks) {
+            if (k < 1 || k > StatsSnapshots.WINDOWS) {
+                throw new BadRequestException("Invalid k (1-8)");
+            }
+        }
+        return ks;
+    }
+
+    /**
+     * GET /queue_depth/?symbol=AAPL
+     * Pending batches for a symbol, so producers can slow down before batches are rejected.
+     */
+    @GET
+    @Path("/queue_depth/")
+    @Produces(MediaType.APPLICATION_JSON)
+    public QueueDepth getQueueDepth(@QueryParam("symbol") String symbol) {
+        if (symbol == null) {
+            throw new BadRequestException("symbol must be provided");
+        }
+        SymbolAggregator aggregator = manager.find(symbol);
+        if (aggregator == null) {
+            return new QueueDepth(symbol, 0, SymbolAggregator.DEFAULT_QUEUE_CAPACITY, null, 0, 0);
+        }
+        return new QueueDepth(symbol, aggregator.queueDepth(), aggregator.queueCapacity(),
+                aggregator.getOverflowPolicy().name(), aggregator.droppedBatches(), aggregator.droppedValues());
+    }
+
+    /**
+     * GET /metrics/
+     * Pipeline metrics in the Prometheus text format: ingest-to-snapshot latency,
+     * per-symbol throughput and queue depths, worker busy/idle time, off-heap usage.
+     */
+    @GET
+    @Path("/metrics/")
+    @Produces(PrometheusExporter.CONTENT_TYPE)
+    public String getMetrics() {
+        return metrics.scrape();
     }
 }
@@ -1,30 +1,63 @@
 package com.trading.buffer;
 
 import net.openhft.chronicle.bytes.Bytes;
+import org.agrona.concurrent.UnsafeBuffer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static org.agrona.UnsafeAccess.UNSAFE;
+
+/**
+ * Ring buffer in direct memory, allocated a chunk of {@link #CHUNK_SLOTS} slots at a
+ * time on the first write to it: a ring sized for a window of 10^8 values only holds
+ * as much memory as the symbol has values, up to its capacity. Chunks never move once
+ * allocated, so a concurrent {@link #writeTo} sees every slot written before it started.
+ *
+ * <p>Slots are read and written straight at the chunks' native addresses: a chunk is
+ * always exactly as large as its slots, so the index arithmetic is the bounds check.
+ */
 public class ChronicleRingBuffer implements RingBuffer {
-    private final Bytes<?> bytes;
+
+    public static final int CHUNK_SHIFT = 14;
+    public static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+
+    private final Bytes<?>[] chunks;
+    // native address of each chunk, 0 until it is allocated
+    private final long[] addresses;
     private final long capacity;
+    private volatile long allocatedBytes;
 
     public ChronicleRingBuffer(long capacity) {
         if (capacity <= 0) {
             throw new IllegalArgumentException("Capacity must be positive");
         }
         this.capacity = capacity;
-        long totalBytes = capacity * Double.BYTES;
-        this.bytes = Bytes.allocateDirect(totalBytes);
+        this.chunks = new Bytes<?>[Math.toIntExact((capacity + CHUNK_SLOTS - 1) >>> CHUNK_SHIFT)];
+        this.addresses = new long[chunks.length];
     }
 
     @Override
     public void set(long absoluteIndex, double value) {
-        long offset = (absoluteIndex % capacity) * Double.BYTES;
-        bytes.writeDouble(offset, value);
+        long slot = absoluteIndex % capacity;
+        long address = addresses[(int) (slot >>> CHUNK_SHIFT)];
+        if (address == 0) {
+            address = allocate((int) (slot >>> CHUNK_SHIFT));
+        }
+        UNSAFE.putDouble(address + (slot & CHUNK_MASK) * Double.BYTES, value);
     }
 
+    /**
+     * @return the value at {@code absoluteIndex}, or 0 if its slot was never written
+     */
     @Override
     public double get(long absoluteIndex) {
-        long offset = (absoluteIndex % capacity) * Double.BYTES;
-        return bytes.readDouble(offset);
+        long slot = absoluteIndex % capacity;
+        long address = addresses[(int) (slot >>> CHUNK_SHIFT)];
+        return address == 0 ? 0 : UNSAFE.getDouble(address + (slot & CHUNK_MASK) * Double.BYTES);
     }
 
     @Override
@@ -32,8 +65,80 @@ public class ChronicleRingBuffer implements RingBuffer {
         return capacity;
     }
 
+    /**
+     * Copies straight out of the native memory behind each chunk's {@link Bytes}, a
+     * scratch-buffer sized piece at a time. Slots of chunks never written are copied as 0.
+     */
+    @Override
+    public void writeTo(WritableByteChannel channel, long slots) throws IOException {
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        UnsafeBuffer view = new UnsafeBuffer(new byte[0]);
+        for (int c = 0; (long) c << CHUNK_SHIFT < slots; c++) {
+            long address = addresses[c];
+            long total = Math.min(CHUNK_SLOTS, slots - ((long) c << CHUNK_SHIFT)) * Double.BYTES;
+            for (long pos = 0; pos < total; pos += scratch.capacity()) {
+                int length = (int) Math.min(scratch.capacity(), total - pos);
+                scratch.clear();
+                if (address == 0) {
+                    for (int i = 0; i < length; i++) {
+                        scratch.put(i, (byte) 0);
+                    }
+                } else {
+                    view.wrap(address + pos, length);
+                    view.getBytes(0, scratch, 0, length);
+                }
+                scratch.limit(length);
+                DoubleChannels.writeFully(channel, scratch);
+            }
+        }
+    }
+
+    @Override
+    public void readFrom(ReadableByteChannel channel, long slots) throws IOException {
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        UnsafeBuffer view = new UnsafeBuffer(new byte[0]);
+        for (int c = 0; (long) c << CHUNK_SHIFT < slots; c++) {
+            long address = addresses[c] == 0 ? allocate(c) : addresses[c];
+            long total = Math.min(CHUNK_SLOTS, slots - ((long) c << CHUNK_SHIFT)) * Double.BYTES;
+            for (long pos = 0; pos < total; pos += scratch.capacity()) {
+                int length = (int) Math.min(scratch.capacity(), total - pos);
+                scratch.clear().limit(length);
+                DoubleChannels.readFully(channel, scratch);
+                view.wrap(address + pos, length);
+                view.putBytes(0, scratch, 0, length);
+            }
+        }
+    }
+
+    /**
+     * @return the bytes of the chunks allocated so far
+     */
+    @Override
+    public long offHeapBytes() {
+        return allocatedBytes;
+    }
+
     @Override
     public void release() {
-        bytes.releaseLast();
+        for (int c = 0; c < chunks.length; c++) {
+            if (chunks[c] != null) {
+                chunks[c].releaseLast();
+                chunks[c] = null;
+                addresses[c] = 0;
+            }
+        }
+        allocatedBytes = 0;
+    }
+
+    /**
+     * @return the native address of the new chunk {@code c}
+     */
+    private long allocate(int c) {
+        long slots = Math.min(CHUNK_SLOTS, capacity - ((long) c << CHUNK_SHIFT));
+        Bytes<?> chunk = Bytes.allocateDirect(slots * Double.BYTES);
+        chunks[c] = chunk;
+        addresses[c] = chunk.addressForWrite(0);
+        allocatedBytes += chunk.realCapacity();
+        return addresses[c];
     }
 }
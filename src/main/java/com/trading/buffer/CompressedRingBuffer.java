@@ -0,0 +1,507 @@
+package com.trading.buffer;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Ring buffer that keeps only a small raw hot region and stores completed blocks of
+ * {@link #BLOCK} values compressed, for symbols whose windows reach far back (10^7 and
+ * 10^8 values) and would otherwise hold 8 bytes per value.
+ *
+ * <p>The aggregator writes sequentially at the head and reads short contiguous runs at
+ * the trailing edge of each window. The current block and the one before it stay raw,
+ * so the head and the small windows never decode anything. When a block completes it
+ * is encoded with the first scheme that represents every value exactly:
+ * <ul>
+ *   <li>Frame of reference over decimal ticks: if every value is {@code n / 10^d} for an
+ *       integer {@code n} and {@code d <= 9} (prices parsed from decimal text are), the
+ *       block stores the smallest {@code n} and each value's offset from it in just
+ *       enough bits. Autocorrelated prices span a narrow range within a block, so a
+ *       value typically costs one byte, and any value is read in O(1) without decoding
+ *       its neighbours.</li>
+ *   <li>Gorilla-style XOR otherwise (arbitrary doubles, NaN): each value is XORed with
+ *       its predecessor and only the meaningful bits are stored. Such a block can only
+ *       be decoded sequentially, so a read decodes the whole block once into a small
+ *       cache that the window's trailing edge then walks through.</li>
+ * </ul>
+ *
+ * <p>Indices must be written sequentially, like {@link RingBuffer} is used by the
+ * aggregator. Encoded blocks live on the heap, so {@link #offHeapBytes()} is 0; see
+ * {@link #footprintBytes()}. The slots have no fixed byte layout, so {@link #writeTo}
+ * copies the retained blocks as they are encoded, each with its scheme, rather than slot
+ * by slot.
+ *
+ * <p>Not thread-safe: owned by the single worker that mutates a symbol.
+ */
+public class CompressedRingBuffer implements RingBuffer {
+
+    public static final int BLOCK_SHIFT = 10;
+    public static final int BLOCK = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK - 1;
+
+    private static final byte FRAME = 0;
+    private static final byte XOR = 1;
+    // only in streams: the block in progress, as raw doubles
+    private static final byte RAW = 2;
+
+    // encoding, decimals, width, base, word count
+    private static final int BLOCK_HEADER_BYTES = 3 + Long.BYTES + Integer.BYTES;
+
+    private static final int MAX_DECIMALS = 9;
+    private static final double[] POW10 = new double[MAX_DECIMALS + 1];
+    // scaled values must stay exact integers in a double
+    private static final double MAX_SCALED = 0x1p53;
+
+    // first value, then at most '11' + 5 + 6 + 64 bits per value
+    private static final int MAX_XOR_WORDS = (64 + (BLOCK - 1) * 77 + 63) / 64;
+    // a window's trailing edge spans at most two blocks; eight windows
+    private static final int DECODE_CACHE = 16;
+
+    static {
+        double pow = 1;
+        for (int d = 0; d <= MAX_DECIMALS; d++) {
+            POW10[d] = pow;
+            pow *= 10;
+        }
+    }
+
+    private final long capacity;
+    private final int slots;
+
+    // encoded blocks, block b in slot b % slots
+    private final long[][] words;
+    private final byte[] encoding;
+    private final byte[] decimals;
+    private final byte[] width;
+    private final long[] base;
+    private long encodedBytes;
+
+    // raw hot region: block b in hot[b & 1]
+    private final double[][] hot = new double[2][BLOCK];
+    private long currentBlock;
+    // blocks below it are encoded and final; read by a concurrent writeTo
+    private volatile long encodedBlocks;
+
+    private final long[] scaledScratch = new long[BLOCK];
+    private final long[] xorScratch = new long[MAX_XOR_WORDS];
+    private final double[][] decoded = new double[DECODE_CACHE][];
+    private final long[] decodedBlock = new long[DECODE_CACHE];
+    private int nextDecodeEntry;
+
+    public CompressedRingBuffer(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        // a window no larger than the capacity overlaps at most capacity / BLOCK + 2 blocks
+        this.slots = Math.toIntExact(capacity / BLOCK + 2);
+        this.words = new long[slots][];
+        this.encoding = new byte[slots];
+        this.decimals = new byte[slots];
+        this.width = new byte[slots];
+        this.base = new long[slots];
+        Arrays.fill(decodedBlock, -1);
+    }
+
+    @Override
+    public void set(long absoluteIndex, double value) {
+        long block = absoluteIndex >>> BLOCK_SHIFT;
+        int offset = (int) absoluteIndex & BLOCK_MASK;
+        if (block != currentBlock) {
+            moveTo(block);
+        }
+        hot[(int) block & 1][offset] = value;
+        if (offset == BLOCK_MASK) {
+            encode(block);
+        }
+    }
+
+    @Override
+    public double get(long absoluteIndex) {
+        long block = absoluteIndex >>> BLOCK_SHIFT;
+        int offset = (int) absoluteIndex & BLOCK_MASK;
+        if (block >= currentBlock - 1) {
+            return hot[(int) block & 1][offset];
+        }
+        int slot = (int) (block % slots);
+        return encoding[slot] == FRAME ? frameValue(slot, offset) : xorValue(block, slot, offset);
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return heap bytes held by the encoded blocks, the hot region and the decode cache
+     */
+    public long footprintBytes() {
+        long cache = 0;
+        for (double[] entry : decoded) {
+            cache += entry == null ? 0 : (long) BLOCK * Double.BYTES;
+        }
+        return encodedBytes + (long) slots * (3 + Long.BYTES) + 2L * BLOCK * Double.BYTES + cache;
+    }
+
+    /**
+     * Copy the blocks the ring retains, from the oldest to the one in progress: the
+     * completed ones encoded, the one in progress raw. Every block is self-contained, so
+     * the stream restores both the values and the block layout, whatever {@code slots}
+     * is. May run while the owner keeps calling {@link #set}: a block the owner finishes
+     * meanwhile is copied encoded, and only blocks older than the capacity can be
+     * overwritten mid-copy, as with the other rings.
+     */
+    @Override
+    public void writeTo(WritableByteChannel channel, long slots) throws IOException {
+        long last = encodedBlocks;
+        long first = Math.max(0, last - (this.slots - 1));
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        scratch.putLong(first).putLong(last);
+        for (long block = first; block < last; block++) {
+            putEncoded(channel, scratch, block);
+        }
+        double[] raw = hot[(int) last & 1].clone();
+        VarHandle.loadLoadFence();
+        // the raw copy is intact unless the owner went on to fill the block after next
+        if (encodedBlocks <= last + 1) {
+            ensureRemaining(channel, scratch, 1 + BLOCK * Double.BYTES);
+            scratch.put(RAW);
+            scratch.asDoubleBuffer().put(raw);
+            scratch.position(scratch.position() + BLOCK * Double.BYTES);
+        } else {
+            putEncoded(channel, scratch, last);
+        }
+        scratch.flip();
+        DoubleChannels.writeFully(channel, scratch);
+    }
+
+    /**
+     * Replace the contents with a stream written by {@link #writeTo}. The owner may then
+     * resume writing at any index the stream's blocks cover, including one behind the
+     * stream's block in progress, as a checkpoint taken during ingestion requires.
+     *
+     * @throws IllegalStateException if the stream was not written by a compressed ring
+     *                               of this capacity
+     */
+    @Override
+    public void readFrom(ReadableByteChannel channel, long slots) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Math.max(BLOCK_HEADER_BYTES, 2 * Long.BYTES))
+                .order(ByteOrder.nativeOrder());
+        header.limit(2 * Long.BYTES);
+        DoubleChannels.readFully(channel, header);
+        header.flip();
+        long first = header.getLong();
+        long last = header.getLong();
+        if (first < 0 || last < first || last - first >= this.slots) {
+            throw new IllegalStateException("Not a compressed ring of capacity " + capacity
+                    + ": blocks " + first + " to " + last);
+        }
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        for (long block = first; block <= last; block++) {
+            header.clear();
+            DoubleChannels.readFully(channel, header.limit(1));
+            byte kind = header.get(0);
+            if (kind == RAW && block == last) {
+                DoubleChannels.read(channel, hot[(int) block & 1], 0, BLOCK, scratch);
+                continue;
+            }
+            header.limit(BLOCK_HEADER_BYTES);
+            DoubleChannels.readFully(channel, header);
+            header.flip();
+            readEncoded(channel, block, header, scratch);
+            if (block == last) {
+                decodeInto(block, hot[(int) block & 1]);
+            }
+        }
+        if (last > first) {
+            decodeInto(last - 1, hot[(int) (last - 1) & 1]);
+        }
+        currentBlock = last;
+        encodedBlocks = last;
+        Arrays.fill(decodedBlock, -1);
+    }
+
+    private void putEncoded(WritableByteChannel channel, ByteBuffer scratch, long block) throws IOException {
+        int slot = (int) (block % slots);
+        long[] source = words[slot];
+        byte scheme = encoding[slot];
+        byte bits = width[slot];
+        // a block overwritten mid-copy is invalid anyway, but must still parse
+        int length = scheme == FRAME ? frameWords(bits) : source.length;
+        ensureRemaining(channel, scratch, BLOCK_HEADER_BYTES + length * Long.BYTES);
+        scratch.put(scheme).put(decimals[slot]).put(bits).putLong(base[slot]).putInt(length);
+        for (int i = 0; i < length; i++) {
+            scratch.putLong(i < source.length ? source[i] : 0);
+        }
+    }
+
+    private void readEncoded(ReadableByteChannel channel, long block, ByteBuffer header, ByteBuffer scratch)
+            throws IOException {
+        byte scheme = header.get();
+        byte d = header.get();
+        byte bits = header.get();
+        long min = header.getLong();
+        int length = header.getInt();
+        boolean valid = scheme == FRAME
+                ? bits >= 0 && bits <= 64 && d >= 0 && d <= MAX_DECIMALS && length == frameWords(bits)
+                : scheme == XOR && length > 0 && length <= MAX_XOR_WORDS;
+        if (!valid) {
+            throw new IllegalStateException("Corrupt block " + block + " in a compressed ring stream");
+        }
+        int slot = (int) (block % slots);
+        DoubleChannels.read(channel, reserve(slot, length), 0, length, scratch);
+        encoding[slot] = scheme;
+        decimals[slot] = d;
+        width[slot] = bits;
+        base[slot] = min;
+    }
+
+    /**
+     * Flush {@code scratch} to {@code channel} unless it has {@code bytes} left.
+     */
+    private static void ensureRemaining(WritableByteChannel channel, ByteBuffer scratch, int bytes) throws IOException {
+        if (scratch.remaining() < bytes) {
+            scratch.flip();
+            DoubleChannels.writeFully(channel, scratch);
+            scratch.clear();
+        }
+    }
+
+    /**
+     * Make {@code block} the one in progress. Sequential writes only step to the next
+     * block; after {@link #readFrom} the owner may resume behind the stream's block in
+     * progress, and then the raw region is reloaded with the blocks that left it.
+     */
+    private void moveTo(long block) {
+        if (block != currentBlock + 1) {
+            for (long b = Math.max(0, block - 1); b <= block; b++) {
+                if (b < currentBlock - 1) {
+                    decodeInto(b, hot[(int) b & 1]);
+                }
+            }
+            // blocks from here on are encoded again, and cached decodings of them go stale
+            encodedBlocks = block;
+            Arrays.fill(decodedBlock, -1);
+        }
+        currentBlock = block;
+    }
+
+    private void decodeInto(long block, double[] target) {
+        int slot = (int) (block % slots);
+        if (encoding[slot] == XOR) {
+            decodeXor(words[slot], target);
+            return;
+        }
+        for (int offset = 0; offset < BLOCK; offset++) {
+            target[offset] = frameValue(slot, offset);
+        }
+    }
+
+    private static int frameWords(int bits) {
+        return (BLOCK * bits + 63) / 64;
+    }
+
+    private void encode(long block) {
+        double[] values = hot[(int) block & 1];
+        int slot = (int) (block % slots);
+        int d = decimalsOf(values);
+        if (d >= 0) {
+            encodeFrame(slot, d);
+        } else {
+            encodeXor(values, slot);
+        }
+        encodedBlocks = block + 1;
+    }
+
+    /**
+     * @return the fewest decimals that represent every value exactly, or -1; on success
+     *         the scaled values are left in {@code scaledScratch}
+     */
+    private int decimalsOf(double[] values) {
+        // too few decimals fail at the first value that needs more, so the search
+        // costs about one pass over the block
+        for (int d = 0; d <= MAX_DECIMALS; d++) {
+            if (fitsDecimals(values, d)) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fitsDecimals(double[] values, int d) {
+        double scale = POW10[d];
+        long[] scaledValues = scaledScratch;
+        for (int i = 0; i < BLOCK; i++) {
+            double value = values[i];
+            double scaled = Math.rint(value * scale);
+            // also rejects NaN, infinities and -0.0, which do not survive the round trip
+            if (!(Math.abs(scaled) < MAX_SCALED)
+                    || Double.doubleToRawLongBits((double) (long) scaled / scale) != Double.doubleToRawLongBits(value)) {
+                return false;
+            }
+            scaledValues[i] = (long) scaled;
+        }
+        return true;
+    }
+
+    private void encodeFrame(int slot, int d) {
+        long[] scaledValues = scaledScratch;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long scaled : scaledValues) {
+            min = Math.min(min, scaled);
+            max = Math.max(max, scaled);
+        }
+        int bits = 64 - Long.numberOfLeadingZeros(max - min);
+        long[] target = reserve(slot, frameWords(bits));
+        long position = 0;
+        if (bits > 0) {
+            for (long scaled : scaledValues) {
+                position = writeBits(target, position, scaled - min, bits);
+            }
+        }
+        encoding[slot] = FRAME;
+        decimals[slot] = (byte) d;
+        width[slot] = (byte) bits;
+        base[slot] = min;
+    }
+
+    private double frameValue(int slot, int offset) {
+        int bits = width[slot];
+        long delta = bits == 0 ? 0 : readBits(words[slot], (long) offset * bits, bits);
+        return (double) (base[slot] + delta) / POW10[decimals[slot]];
+    }
+
+    /**
+     * Gorilla encoding: the first value verbatim, then per value a '0' if it repeats its
+     * predecessor, '10' plus the meaningful bits if the XOR fits the previous window of
+     * leading and trailing zeros, or '11', 5 bits of leading zeros, 6 bits of length
+     * minus one and the meaningful bits.
+     */
+    private void encodeXor(double[] values, int slot) {
+        long[] scratch = xorScratch;
+        long previous = Double.doubleToRawLongBits(values[0]);
+        long position = writeBits(scratch, 0, previous, 64);
+        int windowLeading = -1;
+        int windowTrailing = 0;
+        for (int i = 1; i < BLOCK; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                position = writeBits(scratch, position, 0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (windowLeading >= 0 && leading >= windowLeading && trailing >= windowTrailing) {
+                position = writeBits(scratch, position, 0b01, 2);
+                position = writeBits(scratch, position, xor >>> windowTrailing, 64 - windowLeading - windowTrailing);
+            } else {
+                int length = 64 - leading - trailing;
+                position = writeBits(scratch, position, 0b11, 2);
+                position = writeBits(scratch, position, leading, 5);
+                position = writeBits(scratch, position, length - 1, 6);
+                position = writeBits(scratch, position, xor >>> trailing, length);
+                windowLeading = leading;
+                windowTrailing = trailing;
+            }
+        }
+        int used = (int) ((position + 63) >>> 6);
+        System.arraycopy(scratch, 0, reserve(slot, used), 0, used);
+        encoding[slot] = XOR;
+    }
+
+    private double xorValue(long block, int slot, int offset) {
+        for (int entry = 0; entry < DECODE_CACHE; entry++) {
+            if (decodedBlock[entry] == block) {
+                return decoded[entry][offset];
+            }
+        }
+        int entry = nextDecodeEntry;
+        nextDecodeEntry = (entry + 1) % DECODE_CACHE;
+        if (decoded[entry] == null) {
+            decoded[entry] = new double[BLOCK];
+        }
+        decodeXor(words[slot], decoded[entry]);
+        decodedBlock[entry] = block;
+        return decoded[entry][offset];
+    }
+
+    private static void decodeXor(long[] source, double[] target) {
+        long previous = readBits(source, 0, 64);
+        long position = 64;
+        target[0] = Double.longBitsToDouble(previous);
+        int windowLeading = 0;
+        int windowTrailing = 0;
+        for (int i = 1; i < BLOCK; i++) {
+            if (readBits(source, position++, 1) == 0) {
+                target[i] = Double.longBitsToDouble(previous);
+                continue;
+            }
+            if (readBits(source, position++, 1) == 1) {
+                windowLeading = (int) readBits(source, position, 5);
+                int length = (int) readBits(source, position + 5, 6) + 1;
+                position += 11;
+                windowTrailing = 64 - windowLeading - length;
+            }
+            int length = 64 - windowLeading - windowTrailing;
+            previous ^= readBits(source, position, length) << windowTrailing;
+            position += length;
+            target[i] = Double.longBitsToDouble(previous);
+        }
+    }
+
+    /**
+     * @return the slot's word array, with room for at least {@code length} words; only
+     *         grows, so a ring that has wrapped encodes without allocating
+     */
+    private long[] reserve(int slot, int length) {
+        long[] current = words[slot];
+        if (current != null && current.length >= length) {
+            return current;
+        }
+        encodedBytes += (long) (length - (current == null ? 0 : current.length)) * Long.BYTES;
+        words[slot] = new long[length];
+        return words[slot];
+    }
+
+    /**
+     * Append the low {@code count} bits of {@code value} at bit {@code position},
+     * least significant bit first. Words are overwritten as they are first reached,
+     * so the target needs no clearing.
+     *
+     * @return the position after the written bits
+     */
+    private static long writeBits(long[] target, long position, long value, int count) {
+        if (count < 64) {
+            value &= (1L << count) - 1;
+        }
+        int word = (int) (position >>> 6);
+        int shift = (int) (position & 63);
+        if (shift == 0) {
+            target[word] = value;
+        } else {
+            target[word] |= value << shift;
+        }
+        if (shift + count > 64) {
+            target[word + 1] = value >>> (64 - shift);
+        }
+        return position + count;
+    }
+
+    private static long readBits(long[] source, long position, int count) {
+        int word = (int) (position >>> 6);
+        int shift = (int) (position & 63);
+        long value = source[word] >>> shift;
+        if (shift + count > 64) {
+            value |= source[word + 1] << (64 - shift);
+        }
+        return count == 64 ? value : value & ((1L << count) - 1);
+    }
+}
@@ -0,0 +1,90 @@
+package com.trading.buffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Bulk copies between {@code double[]} (or {@code long[]}) and channels in native byte
+ * order, staged through a direct scratch buffer so each chunk is a single memory copy.
+ */
+public final class DoubleChannels {
+
+    public static final int SCRATCH_BYTES = 1 << 20;
+
+    private DoubleChannels() {
+    }
+
+    public static ByteBuffer newScratch() {
+        return ByteBuffer.allocateDirect(SCRATCH_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    public static void write(WritableByteChannel channel, double[] source, int offset, int length,
+                             ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / Double.BYTES;
+        for (int pos = offset, end = offset + length; pos < end; pos += chunk) {
+            int count = Math.min(chunk, end - pos);
+            scratch.clear();
+            DoubleBuffer view = scratch.asDoubleBuffer();
+            view.put(source, pos, count);
+            scratch.limit(count * Double.BYTES);
+            writeFully(channel, scratch);
+        }
+    }
+
+    public static void read(ReadableByteChannel channel, double[] target, int offset, int length,
+                            ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / Double.BYTES;
+        for (int pos = offset, end = offset + length; pos < end; pos += chunk) {
+            int count = Math.min(chunk, end - pos);
+            scratch.clear().limit(count * Double.BYTES);
+            readFully(channel, scratch);
+            scratch.flip();
+            scratch.asDoubleBuffer().get(target, pos, count);
+        }
+    }
+
+    public static void write(WritableByteChannel channel, long[] source, int offset, int length,
+                             ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / Long.BYTES;
+        for (int pos = offset, end = offset + length; pos < end; pos += chunk) {
+            int count = Math.min(chunk, end - pos);
+            scratch.clear();
+            LongBuffer view = scratch.asLongBuffer();
+            view.put(source, pos, count);
+            scratch.limit(count * Long.BYTES);
+            writeFully(channel, scratch);
+        }
+    }
+
+    public static void read(ReadableByteChannel channel, long[] target, int offset, int length,
+                            ByteBuffer scratch) throws IOException {
+        int chunk = scratch.capacity() / Long.BYTES;
+        for (int pos = offset, end = offset + length; pos < end; pos += chunk) {
+            int count = Math.min(chunk, end - pos);
+            scratch.clear().limit(count * Long.BYTES);
+            readFully(channel, scratch);
+            scratch.flip();
+            scratch.asLongBuffer().get(target, pos, count);
+        }
+    }
+
+    public static void writeFully(WritableByteChannel channel, ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    public static void readFully(ReadableByteChannel channel, ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                throw new EOFException("Unexpected end of channel");
+            }
+        }
+    }
+}
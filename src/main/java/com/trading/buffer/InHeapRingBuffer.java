@@ -1,5 +1,9 @@
 package com.trading.buffer;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
 public class InHeapRingBuffer implements RingBuffer {
     private final double[] buffer;
 
@@ -21,4 +25,14 @@ public class InHeapRingBuffer implements RingBuffer {
     public long capacity() {
         return buffer.length;
     }
+
+    @Override
+    public void writeTo(WritableByteChannel channel, long slots) throws IOException {
+        DoubleChannels.write(channel, buffer, 0, Math.toIntExact(slots), DoubleChannels.newScratch());
+    }
+
+    @Override
+    public void readFrom(ReadableByteChannel channel, long slots) throws IOException {
+        DoubleChannels.read(channel, buffer, 0, Math.toIntExact(slots), DoubleChannels.newScratch());
+    }
 }
@@ -0,0 +1,148 @@
+package com.trading.buffer;
+
+import org.agrona.IoUtil;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * File-backed ring buffer: the slots live in a memory-mapped file, so the OS page
+ * cache keeps the hot tail resident while cold history can be paged out. This lets
+ * windows larger than physical memory be served, at the price of page faults when a
+ * window's trailing edge reaches history that has been evicted.
+ *
+ * <p>A file may exceed the 2 GB limit of a single {@link MappedByteBuffer}, so it is
+ * mapped as a series of fixed-size segments.
+ */
+public class MappedRingBuffer implements RingBuffer {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_BYTES - 1;
+    private static final String FILE_SUFFIX = ".ring";
+
+    private final Path file;
+    private final long capacity;
+    private final MappedByteBuffer[] segments;
+
+    public MappedRingBuffer(Path file, long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.file = file;
+        this.capacity = capacity;
+
+        long totalBytes = capacity * Double.BYTES;
+        int segmentCount = (int) ((totalBytes + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT);
+        this.segments = new MappedByteBuffer[segmentCount];
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < segmentCount; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                long size = Math.min(SEGMENT_BYTES, totalBytes - position);
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                segments[i].order(ByteOrder.nativeOrder());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map ring buffer file " + file, e);
+        }
+    }
+
+    /**
+     * Create a factory that maps one file per symbol under {@code directory}.
+     */
+    public static Function<String, RingBuffer> perSymbol(Path directory, long capacity) {
+        return perSymbol(directory, symbol -> capacity);
+    }
+
+    /**
+     * Like {@link #perSymbol(Path, long)}, with a capacity per symbol. Files are sparse,
+     * so slots never written take no disk space.
+     */
+    public static Function<String, RingBuffer> perSymbol(Path directory, ToLongFunction<String> capacities) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create ring buffer directory " + directory, e);
+        }
+        return symbol -> new MappedRingBuffer(directory.resolve(fileName(symbol)), capacities.applyAsLong(symbol));
+    }
+
+    static String fileName(String symbol) {
+        return URLEncoder.encode(symbol, StandardCharsets.UTF_8) + FILE_SUFFIX;
+    }
+
+    @Override
+    public void set(long absoluteIndex, double value) {
+        long offset = (absoluteIndex % capacity) * Double.BYTES;
+        segments[(int) (offset >>> SEGMENT_SHIFT)].putDouble((int) (offset & SEGMENT_MASK), value);
+    }
+
+    @Override
+    public double get(long absoluteIndex) {
+        long offset = (absoluteIndex % capacity) * Double.BYTES;
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getDouble((int) (offset & SEGMENT_MASK));
+    }
+
+    @Override
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void writeTo(WritableByteChannel channel, long slots) throws IOException {
+        long remaining = slots * Double.BYTES;
+        for (int i = 0; remaining > 0; i++) {
+            ByteBuffer chunk = segments[i].duplicate().clear();
+            chunk.limit((int) Math.min(chunk.capacity(), remaining));
+            DoubleChannels.writeFully(channel, chunk);
+            remaining -= chunk.limit();
+        }
+    }
+
+    @Override
+    public void readFrom(ReadableByteChannel channel, long slots) throws IOException {
+        long remaining = slots * Double.BYTES;
+        for (int i = 0; remaining > 0; i++) {
+            ByteBuffer chunk = segments[i].duplicate().clear();
+            chunk.limit((int) Math.min(chunk.capacity(), remaining));
+            DoubleChannels.readFully(channel, chunk);
+            remaining -= chunk.limit();
+        }
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return capacity * Double.BYTES;
+    }
+
+    /**
+     * Unmap the file and delete it: the slots are meaningless without the
+     * aggregator state that indexes them.
+     */
+    @Override
+    public void release() {
+        for (MappedByteBuffer segment : segments) {
+            IoUtil.unmap(segment);
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete ring buffer file " + file, e);
+        }
+    }
+}
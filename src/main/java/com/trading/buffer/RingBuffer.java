@@ -1,9 +1,75 @@
 package com.trading.buffer;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
 public interface RingBuffer {
     void set(long absoluteIndex, double value);
     double get(long absoluteIndex);
     long capacity();
 
+    /**
+     * @return bytes held outside the Java heap (direct or mapped memory)
+     */
+    default long offHeapBytes() {
+        return 0;
+    }
+
+    /**
+     * Copy every slot, in slot order and native byte order, to {@code channel}.
+     * May run while the owner keeps calling {@link #set}: slots overwritten during
+     * the copy may hold either value, so callers must treat them as invalid.
+     */
+    default void writeTo(WritableByteChannel channel) throws IOException {
+        writeTo(channel, capacity());
+    }
+
+    /**
+     * Copy the first {@code slots} slots like {@link #writeTo(WritableByteChannel)}, e.g.
+     * only the slots a ring that has not wrapped yet ever wrote.
+     *
+     * <p>The default copies slot by slot; implementations override it with a bulk copy.
+     */
+    default void writeTo(WritableByteChannel channel, long slots) throws IOException {
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        for (long slot = 0; slot < slots; slot++) {
+            if (!scratch.hasRemaining()) {
+                scratch.flip();
+                DoubleChannels.writeFully(channel, scratch);
+                scratch.clear();
+            }
+            scratch.putDouble(get(slot));
+        }
+        scratch.flip();
+        DoubleChannels.writeFully(channel, scratch);
+    }
+
+    /**
+     * Overwrite every slot with {@link #capacity()} doubles read from {@code channel},
+     * as written by {@link #writeTo}.
+     */
+    default void readFrom(ReadableByteChannel channel) throws IOException {
+        readFrom(channel, capacity());
+    }
+
+    /**
+     * Overwrite the first {@code slots} slots with doubles read from {@code channel}, as
+     * written by {@link #writeTo(WritableByteChannel, long)}; the other slots are untouched.
+     */
+    default void readFrom(ReadableByteChannel channel, long slots) throws IOException {
+        ByteBuffer scratch = DoubleChannels.newScratch();
+        long slot = 0;
+        while (slot < slots) {
+            scratch.clear().limit((int) Math.min(scratch.capacity(), (slots - slot) * Double.BYTES));
+            DoubleChannels.readFully(channel, scratch);
+            scratch.flip();
+            while (scratch.hasRemaining()) {
+                set(slot++, scratch.getDouble());
+            }
+        }
+    }
+
     default void release() {}
 }
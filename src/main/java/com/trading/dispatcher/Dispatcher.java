@@ -0,0 +1,24 @@
+package com.trading.dispatcher;
+
+import com.trading.aggregator.SymbolAggregator;
+
+/**
+ * Schedules symbol aggregators with pending batches onto worker threads.
+ */
+public interface Dispatcher {
+
+    /**
+     * Submit a SymbolAggregator to be processed.
+     * If it's already scheduled, implementations do nothing.
+     */
+    void submit(SymbolAggregator aggregator);
+
+    /**
+     * @return aggregators scheduled but not yet picked up by a worker
+     */
+    int queueDepth();
+
+    WorkerMetrics workerMetrics();
+
+    void shutdown();
+}
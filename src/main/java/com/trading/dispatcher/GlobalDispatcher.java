@@ -2,6 +2,8 @@ package com.trading.dispatcher;
 
 import com.trading.aggregator.SymbolAggregator;
 import com.trading.task.TaskRingBuffer;
+import org.agrona.concurrent.IdleStrategy;
+import org.jboss.logging.Logger;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -10,50 +12,87 @@ import java.util.concurrent.Executors;
  * GlobalDispatcher manages a pool of worker threads and a global task queue
  * for symbol aggregators. Instead of running one thread per symbol,
  * we allow a fixed-size pool (e.g. #CPU cores) to process all symbols fairly.
+ *
+ * <p>What a worker does while the queue is empty is decided by its
+ * {@link WorkerIdleMode}.
  */
-public class GlobalDispatcher {
+public class GlobalDispatcher implements Dispatcher {
+
+    private static final Logger LOG = Logger.getLogger(GlobalDispatcher.class);
 
     private final ExecutorService workerPool;
     private final TaskRingBuffer taskQueue;
+    private final WorkerSignal signal;
+    private final WorkerMetrics metrics;
 
     public GlobalDispatcher(int capacityOfItems) {
-        int numWorkers = Runtime.getRuntime().availableProcessors();
+        this(capacityOfItems, Runtime.getRuntime().availableProcessors(), WorkerIdleMode.BACKOFF);
+    }
+
+    public GlobalDispatcher(int capacityOfItems, int numWorkers, WorkerIdleMode idleMode) {
         this.workerPool = Executors.newFixedThreadPool(numWorkers);
         this.taskQueue = new TaskRingBuffer(capacityOfItems);
-        startWorkers(numWorkers);
+        this.signal = new WorkerSignal(numWorkers);
+        this.metrics = new WorkerMetrics(numWorkers);
+        startWorkers(numWorkers, idleMode);
     }
 
-    /**
-     * Submit a SymbolAggregator to be processed.
-     * If it's already scheduled (inProgress == true), we do nothing.
-     */
+    @Override
     public void submit(SymbolAggregator aggregator) {
         if (aggregator.markInProgress()) {
             taskQueue.offer(aggregator);
+            signal.signal();
         }
     }
 
-    private void startWorkers(int numWorkers) {
+    private void startWorkers(int numWorkers, WorkerIdleMode idleMode) {
         for (int i = 0; i < numWorkers; i++) {
-            workerPool.submit(this::workerLoop);
+            int worker = i;
+            IdleStrategy idleStrategy = idleMode.newStrategy(signal, worker, () -> !taskQueue.isEmpty());
+            workerPool.submit(() -> workerLoop(worker, idleStrategy));
         }
     }
 
-    private void workerLoop() {
-        while (taskQueue.isEmpty()) {
+    private void workerLoop(int worker, IdleStrategy idleStrategy) {
+        long last = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            SymbolAggregator aggregator = taskQueue.take();
+            if (aggregator == null) {
+                idleStrategy.idle();
+                long now = System.nanoTime();
+                metrics.addIdle(worker, now - last);
+                last = now;
+                continue;
+            }
+            idleStrategy.reset();
             try {
-                SymbolAggregator aggregator = taskQueue.take();
-                if (aggregator != null) {
-                    aggregator.run();
-                    aggregator.shutdown();
-                }
+                aggregator.run();
             } catch (Exception e) {
-                e.printStackTrace();
+                LOG.errorf(e, "Processing %s failed", aggregator.getSymbol());
+            } finally {
+                aggregator.markIdle();
+            }
+            if (aggregator.hasPendingWork()) {
+                submit(aggregator);
             }
+            long now = System.nanoTime();
+            metrics.addBusy(worker, now - last);
+            last = now;
         }
     }
 
+    @Override
+    public int queueDepth() {
+        return taskQueue.size();
+    }
+
+    @Override
+    public WorkerMetrics workerMetrics() {
+        return metrics;
+    }
+
+    @Override
     public void shutdown() {
         workerPool.shutdownNow();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+package com.trading.dispatcher;
+
+import com.trading.aggregator.SymbolAggregator;
+import net.openhft.affinity.AffinityLock;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.jboss.logging.Logger;
+
+/**
+ * Symbol-affine dispatcher: every symbol is hashed to a fixed shard, and each shard
+ * is a single worker thread with its own lane of scheduled aggregators.
+ *
+ * <p>A symbol's state is therefore only ever touched by its shard's thread, so there is
+ * no cache-line migration of aggregator state between cores and no contention on a
+ * shared task queue: a lane is only contended by the producers of its own symbols and
+ * has exactly one consumer. Shards can optionally be pinned to CPUs.
+ */
+public class ShardedDispatcher implements Dispatcher {
+
+    private static final Logger LOG = Logger.getLogger(ShardedDispatcher.class);
+
+    private final Shard[] shards;
+    private final WorkerMetrics metrics;
+
+    /**
+     * @param laneCapacity maximum number of symbols scheduled on one shard at a time
+     * @param cpus         CPUs to pin the shards to (shard i uses cpus[i % cpus.length]); empty to not pin
+     */
+    public ShardedDispatcher(int numShards, int laneCapacity, WorkerIdleMode idleMode, int[] cpus) {
+        if (numShards <= 0) {
+            throw new IllegalArgumentException("Number of shards must be positive");
+        }
+        this.shards = new Shard[numShards];
+        this.metrics = new WorkerMetrics(numShards);
+        for (int i = 0; i < numShards; i++) {
+            int cpu = cpus.length == 0 ? -1 : cpus[i % cpus.length];
+            shards[i] = new Shard(i, laneCapacity, idleMode, cpu, metrics);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    @Override
+    public void submit(SymbolAggregator aggregator) {
+        if (aggregator.markInProgress()) {
+            shards[shardOf(aggregator.getSymbol(), shards.length)].schedule(aggregator);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+    }
+
+    @Override
+    public int queueDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.lane.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public WorkerMetrics workerMetrics() {
+        return metrics;
+    }
+
+    static int shardOf(String symbol, int numShards) {
+        int hash = symbol.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % numShards;
+    }
+
+    private static final class Shard implements Runnable {
+        private final ManyToOneConcurrentArrayQueue<SymbolAggregator> lane;
+        private final WorkerSignal signal = new WorkerSignal(1);
+        private final IdleStrategy idleStrategy;
+        private final int cpu;
+        private final int index;
+        private final WorkerMetrics metrics;
+        private final Thread thread;
+
+        Shard(int index, int laneCapacity, WorkerIdleMode idleMode, int cpu, WorkerMetrics metrics) {
+            this.lane = new ManyToOneConcurrentArrayQueue<>(laneCapacity);
+            this.idleStrategy = idleMode.newStrategy(signal, 0, () -> !lane.isEmpty());
+            this.cpu = cpu;
+            this.index = index;
+            this.metrics = metrics;
+            this.thread = new Thread(this, "symbol-shard-" + index);
+        }
+
+        void schedule(SymbolAggregator aggregator) {
+            lane.add(aggregator);
+            signal.signal();
+        }
+
+        @Override
+        public void run() {
+            AffinityLock affinityLock = cpu < 0 ? null : AffinityLock.acquireLock(cpu);
+            try {
+                long last = System.nanoTime();
+                while (!Thread.currentThread().isInterrupted()) {
+                    SymbolAggregator aggregator = lane.poll();
+                    if (aggregator == null) {
+                        idleStrategy.idle();
+                        long now = System.nanoTime();
+                        metrics.addIdle(index, now - last);
+                        last = now;
+                        continue;
+                    }
+                    idleStrategy.reset();
+                    process(aggregator);
+                    long now = System.nanoTime();
+                    metrics.addBusy(index, now - last);
+                    last = now;
+                }
+            } finally {
+                if (affinityLock != null) {
+                    affinityLock.release();
+                }
+            }
+        }
+
+        private void process(SymbolAggregator aggregator) {
+            try {
+                aggregator.run();
+            } catch (Exception e) {
+                LOG.errorf(e, "Processing %s failed", aggregator.getSymbol());
+            } finally {
+                aggregator.markIdle();
+            }
+            if (aggregator.hasPendingWork() && aggregator.markInProgress()) {
+                lane.add(aggregator);
+            }
+        }
+    }
+}
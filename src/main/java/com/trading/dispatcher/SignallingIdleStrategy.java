@@ -0,0 +1,58 @@
+package com.trading.dispatcher;
+
+import org.agrona.concurrent.IdleStrategy;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins briefly, then parks the worker on a {@link WorkerSignal} until a submit
+ * wakes it up. Gives near busy-spin latency under load without burning a core
+ * while idle. {@code maxParkNanos} only bounds the park as a safety net.
+ */
+public final class SignallingIdleStrategy implements IdleStrategy {
+
+    private final WorkerSignal signal;
+    private final int worker;
+    private final BooleanSupplier hasWork;
+    private final int maxSpins;
+    private final long maxParkNanos;
+    private int spins;
+
+    public SignallingIdleStrategy(WorkerSignal signal, int worker, BooleanSupplier hasWork,
+                                  int maxSpins, long maxParkNanos) {
+        this.signal = signal;
+        this.worker = worker;
+        this.hasWork = hasWork;
+        this.maxSpins = maxSpins;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public void idle(int workCount) {
+        if (workCount > 0) {
+            reset();
+        } else {
+            idle();
+        }
+    }
+
+    @Override
+    public void idle() {
+        if (spins < maxSpins) {
+            spins++;
+            Thread.onSpinWait();
+        } else {
+            signal.await(worker, hasWork, maxParkNanos);
+        }
+    }
+
+    @Override
+    public void reset() {
+        spins = 0;
+    }
+
+    @Override
+    public String alias() {
+        return "signal";
+    }
+}
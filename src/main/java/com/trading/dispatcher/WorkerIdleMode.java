@@ -0,0 +1,57 @@
+package com.trading.dispatcher;
+
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingIdleStrategy;
+import org.agrona.concurrent.YieldingIdleStrategy;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How a dispatcher worker waits when there is nothing to process, trading CPU burn
+ * against ingest-to-snapshot latency.
+ */
+public enum WorkerIdleMode {
+
+    /** Never gives up the core: lowest latency, one fully busy core per worker. */
+    BUSY_SPIN,
+    /** Spins with {@link Thread#yield()}: low latency, still busy from the OS point of view. */
+    YIELD,
+    /** Spins, yields, then parks with exponential backoff up to 1 ms: suited to shared boxes. */
+    BACKOFF,
+    /** Parks for a fixed 1 ms: the cheapest while idle, up to 1 ms extra latency. */
+    SLEEP,
+    /** Spins briefly, then parks until a submit signals new work. */
+    SIGNAL;
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SIGNAL_SAFETY_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MAX_SPINS = 100;
+
+    IdleStrategy newStrategy(WorkerSignal signal, int worker, BooleanSupplier hasWork) {
+        switch (this) {
+            case BUSY_SPIN:
+                return new BusySpinIdleStrategy();
+            case YIELD:
+                return new YieldingIdleStrategy();
+            case BACKOFF:
+                return new BackoffIdleStrategy(MAX_SPINS, 10, 1_000, MAX_PARK_NANOS);
+            case SLEEP:
+                return new SleepingIdleStrategy(MAX_PARK_NANOS);
+            case SIGNAL:
+                return new SignallingIdleStrategy(signal, worker, hasWork, MAX_SPINS, SIGNAL_SAFETY_PARK_NANOS);
+            default:
+                throw new IllegalStateException("Unknown idle mode " + this);
+        }
+    }
+
+    /**
+     * Parse a configuration value such as {@code busy-spin} or {@code signal}.
+     */
+    public static WorkerIdleMode fromConfig(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,42 @@
+package com.trading.dispatcher;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Busy and idle time of each dispatcher worker. Each slot is written by its own
+ * worker only, with ordered stores, so recording costs one {@link System#nanoTime()}
+ * per loop iteration and no contention.
+ */
+public final class WorkerMetrics {
+
+    // busy and idle nanos of worker i at 2 * i and 2 * i + 1
+    private final AtomicLongArray nanos;
+    private final int workers;
+
+    WorkerMetrics(int workers) {
+        this.workers = workers;
+        this.nanos = new AtomicLongArray(2 * workers);
+    }
+
+    public int workers() {
+        return workers;
+    }
+
+    public long busyNanos(int worker) {
+        return nanos.get(2 * worker);
+    }
+
+    public long idleNanos(int worker) {
+        return nanos.get(2 * worker + 1);
+    }
+
+    void addBusy(int worker, long elapsed) {
+        int index = 2 * worker;
+        nanos.lazySet(index, nanos.get(index) + elapsed);
+    }
+
+    void addIdle(int worker, long elapsed) {
+        int index = 2 * worker + 1;
+        nanos.lazySet(index, nanos.get(index) + elapsed);
+    }
+}
@@ -0,0 +1,56 @@
+package com.trading.dispatcher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lets idle workers park until new work is submitted. Each worker owns one slot,
+ * so parking and waking up allocate nothing, and {@link #signal()} costs a single
+ * volatile read while no worker is parked.
+ */
+public final class WorkerSignal {
+
+    private final AtomicReferenceArray<Thread> parked;
+    private final AtomicInteger parkedCount = new AtomicInteger();
+
+    public WorkerSignal(int workers) {
+        this.parked = new AtomicReferenceArray<>(workers);
+    }
+
+    /**
+     * Park the calling worker until signalled or {@code maxParkNanos} elapse.
+     *
+     * @param hasWork re-checked after registering, so a submit racing with the
+     *                decision to park is never missed
+     */
+    void await(int worker, BooleanSupplier hasWork, long maxParkNanos) {
+        parked.set(worker, Thread.currentThread());
+        parkedCount.incrementAndGet();
+        try {
+            if (!hasWork.getAsBoolean()) {
+                LockSupport.parkNanos(this, maxParkNanos);
+            }
+        } finally {
+            parked.set(worker, null);
+            parkedCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Wake up one parked worker, if any.
+     */
+    public void signal() {
+        if (parkedCount.get() == 0) {
+            return;
+        }
+        for (int i = 0; i < parked.length(); i++) {
+            Thread worker = parked.get(i);
+            if (worker != null) {
+                LockSupport.unpark(worker);
+                return;
+            }
+        }
+    }
+}
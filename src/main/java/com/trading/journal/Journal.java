@@ -0,0 +1,62 @@
+package com.trading.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ingest journal: one {@link SymbolJournal} per symbol under a common directory.
+ */
+public class Journal {
+
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ConcurrentHashMap<String, SymbolJournal> journals = new ConcurrentHashMap<>();
+
+    public Journal(Path directory, int segmentBytes) {
+        if (segmentBytes <= JournalSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal directory " + directory, e);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+    }
+
+    public SymbolJournal forSymbol(String symbol) {
+        return journals.computeIfAbsent(symbol, s ->
+                new SymbolJournal(directory.resolve(URLEncoder.encode(s, StandardCharsets.UTF_8)), segmentBytes));
+    }
+
+    /**
+     * @return the symbols that have a journal on disk
+     */
+    public List<String> symbols() {
+        List<String> symbols = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path entry : entries) {
+                symbols.add(URLDecoder.decode(entry.getFileName().toString(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list journals in " + directory, e);
+        }
+        return symbols;
+    }
+
+    public void close() {
+        journals.values().forEach(SymbolJournal::close);
+    }
+}
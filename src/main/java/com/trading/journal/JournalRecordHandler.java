@@ -0,0 +1,15 @@
+package com.trading.journal;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Receives the batches of a journal in the order they were queued.
+ */
+@FunctionalInterface
+public interface JournalRecordHandler {
+
+    /**
+     * @param values view of the record's prices, only valid during the call
+     */
+    void onBatch(long sequence, DoubleBuffer values);
+}
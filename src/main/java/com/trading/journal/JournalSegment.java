@@ -0,0 +1,169 @@
+package com.trading.journal;
+
+import com.trading.model.Batch;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of a {@link SymbolJournal}.
+ *
+ * <p>Layout, native byte order: a header {@code [int magic][int version][long firstSequence]},
+ * then 8-byte aligned records {@code [int recordBytes][int flags][long sequence][double...]}.
+ * {@code recordBytes} is stored last with an ordered write, so a record cut short by a
+ * crash reads as zero, which marks the end of the segment.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x4A524E4C; // "JRNL"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_HEADER_BYTES = 16;
+    static final int FLAG_CANCELLED = 1;
+
+    private static final int FLAGS_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+
+    private final Path file;
+    private final MappedByteBuffer mapped;
+    private final UnsafeBuffer buffer;
+    private final DoubleBuffer doubles;
+    private final long firstSequence;
+    private int position = HEADER_BYTES;
+
+    private JournalSegment(Path file, MappedByteBuffer mapped, long firstSequence) {
+        this.file = file;
+        this.mapped = mapped;
+        this.buffer = new UnsafeBuffer(mapped);
+        this.doubles = mapped.duplicate().order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        this.firstSequence = firstSequence;
+    }
+
+    static JournalSegment create(Path file, long firstSequence, int sizeBytes) {
+        JournalSegment segment = new JournalSegment(file,
+                map(file, FileChannel.MapMode.READ_WRITE, sizeBytes), firstSequence);
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putLong(8, firstSequence);
+        return segment;
+    }
+
+    /**
+     * Map an existing segment and position it after its last complete record, so
+     * that it can be read or appended to.
+     */
+    static JournalSegment open(Path file) {
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal segment " + file, e);
+        }
+        MappedByteBuffer mapped = map(file, FileChannel.MapMode.READ_WRITE, Math.toIntExact(size));
+        UnsafeBuffer header = new UnsafeBuffer(mapped);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            IoUtil.unmap(mapped);
+            throw new IllegalStateException("Not a journal segment of a supported version: " + file);
+        }
+        JournalSegment segment = new JournalSegment(file, mapped, header.getLong(8));
+        while (segment.position + RECORD_HEADER_BYTES <= segment.buffer.capacity()) {
+            int recordBytes = segment.buffer.getIntVolatile(segment.position);
+            if (recordBytes == 0) {
+                break;
+            }
+            segment.position += recordBytes;
+        }
+        return segment;
+    }
+
+    static int recordBytes(int values) {
+        return RECORD_HEADER_BYTES + values * Double.BYTES;
+    }
+
+    long firstSequence() {
+        return firstSequence;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /**
+     * Copy every slab of {@code head} into a new record.
+     *
+     * @return the record's position, or -1 if it does not fit in this segment
+     */
+    int append(long sequence, Batch head, int values) {
+        int recordBytes = recordBytes(values);
+        if (position + recordBytes > buffer.capacity()) {
+            return -1;
+        }
+        int record = position;
+        buffer.putLong(record + SEQUENCE_OFFSET, sequence);
+        buffer.putInt(record + FLAGS_OFFSET, 0);
+        int index = (record + RECORD_HEADER_BYTES) / Double.BYTES;
+        for (Batch slab = head; slab != null; slab = slab.getNext()) {
+            doubles.put(index, slab.getValues(), 0, slab.size());
+            index += slab.size();
+        }
+        buffer.putIntOrdered(record, recordBytes);
+        position += recordBytes;
+        return record;
+    }
+
+    /**
+     * Mark a record whose batch was rejected after being journaled, so replay skips it.
+     */
+    void cancel(int record) {
+        buffer.putIntOrdered(record + FLAGS_OFFSET, FLAG_CANCELLED);
+    }
+
+    /**
+     * Stream the complete, non-cancelled records with a sequence above {@code afterSequence}.
+     *
+     * @return the last sequence seen, cancelled or not, or {@code afterSequence} if none
+     */
+    long replay(long afterSequence, JournalRecordHandler handler) {
+        long lastSequence = afterSequence;
+        int record = HEADER_BYTES;
+        while (record + RECORD_HEADER_BYTES <= buffer.capacity()) {
+            int recordBytes = buffer.getIntVolatile(record);
+            if (recordBytes == 0) {
+                break;
+            }
+            long sequence = buffer.getLong(record + SEQUENCE_OFFSET);
+            lastSequence = Math.max(lastSequence, sequence);
+            if (sequence > afterSequence && (buffer.getInt(record + FLAGS_OFFSET) & FLAG_CANCELLED) == 0) {
+                int values = (recordBytes - RECORD_HEADER_BYTES) / Double.BYTES;
+                int first = (record + RECORD_HEADER_BYTES) / Double.BYTES;
+                handler.onBatch(sequence, doubles.duplicate().position(first).limit(first + values));
+            }
+            record += recordBytes;
+        }
+        return lastSequence;
+    }
+
+    void close() {
+        IoUtil.unmap(mapped);
+    }
+
+    private static MappedByteBuffer map(Path file, FileChannel.MapMode mode, int sizeBytes) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer mapped = channel.map(mode, 0, sizeBytes);
+            mapped.order(ByteOrder.nativeOrder());
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map journal segment " + file, e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.trading.journal;
+
+import com.trading.model.Batch;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only journal of one symbol's accepted batches, as a directory of mapped
+ * segments named after the first sequence they hold.
+ *
+ * <p>Appending is a copy into the page cache: there is no {@code fsync} on the ingest
+ * path, so journaled batches survive a process crash but not the loss of the host.
+ *
+ * <p>Callers serialize {@link #append} and {@link #cancel} on this object, and hold
+ * the same lock while queueing the batch, so that journal order is queue order.
+ *
+ * <p>Segments rolled over stay mapped until {@link #truncate} deletes them, since they may
+ * still hold queued batches that a producer cancels when it drops them.
+ */
+public final class SymbolJournal {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private JournalSegment current;
+    // segments rolled over since the journal was opened, oldest first; guarded by itself,
+    // since truncate runs on the checkpoint thread
+    private final List<JournalSegment> retained = new ArrayList<>();
+    private long nextSequence;
+
+    SymbolJournal(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal directory " + directory, e);
+        }
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+        } else {
+            current = JournalSegment.open(segments.get(segments.size() - 1));
+            nextSequence = current.replay(current.firstSequence() - 1, (sequence, values) -> { }) + 1;
+        }
+    }
+
+    /**
+     * Journal a batch and stamp it with its sequence.
+     *
+     * @return a handle for {@link #cancel} if the batch is then rejected
+     */
+    public long append(Batch head) {
+        int values = 0;
+        for (Batch slab = head; slab != null; slab = slab.getNext()) {
+            values += slab.size();
+        }
+        long sequence = nextSequence++;
+        head.setSequence(sequence);
+
+        int record = current == null ? -1 : current.append(sequence, head, values);
+        if (record < 0) {
+            roll(sequence, values);
+            record = current.append(sequence, head, values);
+        }
+        return record;
+    }
+
+    /**
+     * Mark the last appended record as not queued.
+     */
+    public void cancel(long record) {
+        current.cancel((int) record);
+    }
+
+    /**
+     * Mark a queued record as dropped before it was processed, so replay skips it. The
+     * record may be in a segment written before the current one.
+     *
+     * @param sequence the batch's sequence, as stamped by {@link #append}
+     * @param record   the handle {@link #append} returned for it
+     */
+    public void cancel(long sequence, long record) {
+        if (current != null && sequence >= current.firstSequence()) {
+            current.cancel((int) record);
+            return;
+        }
+        JournalSegment segment = null;
+        synchronized (retained) {
+            for (JournalSegment older : retained) {
+                if (older.firstSequence() > sequence) {
+                    break;
+                }
+                segment = older;
+            }
+        }
+        // a queued batch was journaled by this process, after any segment that is not retained
+        if (segment != null) {
+            segment.cancel((int) record);
+        }
+    }
+
+    /**
+     * Stream the journaled batches with a sequence above {@code afterSequence}, oldest first.
+     * Must not run concurrently with {@link #append}.
+     */
+    public void replay(long afterSequence, JournalRecordHandler handler) {
+        for (Path file : segments()) {
+            if (current != null && file.equals(current.file())) {
+                current.replay(afterSequence, handler);
+            } else {
+                JournalSegment segment = JournalSegment.open(file);
+                try {
+                    segment.replay(afterSequence, handler);
+                } finally {
+                    segment.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the segments whose batches all have a sequence up to {@code processedSequence},
+     * e.g. because a checkpoint covers them. The segment being written is always kept.
+     */
+    public void truncate(long processedSequence) {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSequence(segments.get(i + 1)) > processedSequence + 1) {
+                break;
+            }
+            release(segments.get(i));
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to delete journal segment " + segments.get(i), e);
+            }
+        }
+    }
+
+    public void close() {
+        synchronized (retained) {
+            retained.forEach(JournalSegment::close);
+            retained.clear();
+        }
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    private void roll(long firstSequence, int values) {
+        if (current != null) {
+            synchronized (retained) {
+                retained.add(current);
+            }
+        }
+        int size = Math.max(segmentBytes, JournalSegment.HEADER_BYTES + JournalSegment.recordBytes(values));
+        current = JournalSegment.create(directory.resolve(segmentName(firstSequence)), firstSequence, size);
+    }
+
+    /**
+     * Unmap the retained segment of {@code file}, if any, before it is deleted.
+     */
+    private void release(Path file) {
+        synchronized (retained) {
+            for (int i = 0; i < retained.size(); i++) {
+                if (retained.get(i).file().equals(file)) {
+                    retained.remove(i).close();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the segment files, oldest first
+     */
+    private List<Path> segments() {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list journal segments in " + directory, e);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static String segmentName(long firstSequence) {
+        // zero-padded, so that name order is sequence order
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,137 @@
+package com.trading.metrics;
+
+import com.trading.aggregator.AggregatorManager;
+import com.trading.aggregator.BatchPool;
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.dispatcher.Dispatcher;
+import com.trading.dispatcher.WorkerMetrics;
+
+/**
+ * Renders the pipeline's metrics in the Prometheus text exposition format (0.0.4).
+ *
+ * <p>Everything is read from counters the pipeline maintains anyway; scraping allocates
+ * on the scraping thread only and never blocks a worker. Rates (values per second,
+ * busy ratio) are left to Prometheus, e.g. {@code rate(trading_values_total[1m])}.
+ */
+public final class PrometheusExporter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final AggregatorManager manager;
+
+    public PrometheusExporter(AggregatorManager manager) {
+        this.manager = manager;
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4_096);
+        writeIngestLatency(out);
+        writeSymbols(out);
+        writeLifecycle(out);
+        writeDispatcher(out);
+        writeBatchPool(out);
+        return out.toString();
+    }
+
+    private void writeIngestLatency(StringBuilder out) {
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        long count = 0;
+        long sumNanos = 0;
+        for (SymbolAggregator aggregator : manager.aggregators()) {
+            LatencyHistogram histogram = aggregator.ingestLatency();
+            histogram.addTo(buckets);
+            count += histogram.count();
+            sumNanos += histogram.sumNanos();
+        }
+
+        header(out, "trading_ingest_to_snapshot_seconds", "summary",
+                "Time from enqueueBatch until the batch's snapshots are published.");
+        for (double quantile : QUANTILES) {
+            out.append("trading_ingest_to_snapshot_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(LatencyHistogram.valueAtQuantile(buckets, quantile) / NANOS_PER_SECOND).append('\n');
+        }
+        out.append("trading_ingest_to_snapshot_seconds_sum ").append(sumNanos / NANOS_PER_SECOND).append('\n');
+        out.append("trading_ingest_to_snapshot_seconds_count ").append(count).append('\n');
+    }
+
+    private void writeSymbols(StringBuilder out) {
+        header(out, "trading_values_total", "counter", "Values processed per symbol.");
+        for (SymbolAggregator aggregator : manager.aggregators()) {
+            sample(out, "trading_values_total", aggregator, aggregator.valuesProcessed());
+        }
+        header(out, "trading_batch_queue_depth", "gauge", "Batches waiting for the worker per symbol.");
+        for (SymbolAggregator aggregator : manager.aggregators()) {
+            sample(out, "trading_batch_queue_depth", aggregator, aggregator.queueDepth());
+        }
+        header(out, "trading_dropped_values_total", "counter", "Values discarded by the drop-oldest overflow policy.");
+        for (SymbolAggregator aggregator : manager.aggregators()) {
+            sample(out, "trading_dropped_values_total", aggregator, aggregator.droppedValues());
+        }
+        header(out, "trading_ring_buffer_off_heap_bytes", "gauge", "Direct or mapped memory held by each ring buffer.");
+        for (SymbolAggregator aggregator : manager.aggregators()) {
+            sample(out, "trading_ring_buffer_off_heap_bytes", aggregator, aggregator.offHeapBytes());
+        }
+    }
+
+    private void writeLifecycle(StringBuilder out) {
+        header(out, "trading_spilled_symbols", "gauge", "Symbols evicted to disk, reloaded on their next use.");
+        out.append("trading_spilled_symbols ").append(manager.spilledSymbols()).append('\n');
+        header(out, "trading_symbol_evictions_total", "counter", "Symbols evicted to disk.");
+        out.append("trading_symbol_evictions_total ").append(manager.evictions()).append('\n');
+        header(out, "trading_symbol_reloads_total", "counter", "Evicted symbols reloaded from disk.");
+        out.append("trading_symbol_reloads_total ").append(manager.reloads()).append('\n');
+    }
+
+    private void writeDispatcher(StringBuilder out) {
+        Dispatcher dispatcher = manager.dispatcher();
+        header(out, "trading_dispatcher_queue_depth", "gauge", "Symbols scheduled but not yet picked up by a worker.");
+        out.append("trading_dispatcher_queue_depth ").append(dispatcher.queueDepth()).append('\n');
+
+        WorkerMetrics workers = dispatcher.workerMetrics();
+        header(out, "trading_worker_busy_seconds_total", "counter", "Time each worker spent processing symbols.");
+        for (int i = 0; i < workers.workers(); i++) {
+            out.append("trading_worker_busy_seconds_total{worker=\"").append(i).append("\"} ")
+                    .append(workers.busyNanos(i) / NANOS_PER_SECOND).append('\n');
+        }
+        header(out, "trading_worker_idle_seconds_total", "counter", "Time each worker spent waiting for work.");
+        for (int i = 0; i < workers.workers(); i++) {
+            out.append("trading_worker_idle_seconds_total{worker=\"").append(i).append("\"} ")
+                    .append(workers.idleNanos(i) / NANOS_PER_SECOND).append('\n');
+        }
+    }
+
+    private void writeBatchPool(StringBuilder out) {
+        BatchPool pool = manager.batchPool();
+        header(out, "trading_batch_pool_slabs_in_use", "gauge", "Slabs holding queued or in-flight batches.");
+        out.append("trading_batch_pool_slabs_in_use ").append(pool.inUse()).append('\n');
+        header(out, "trading_batch_pool_slabs_max", "gauge", "Upper bound on pooled slabs.");
+        out.append("trading_batch_pool_slabs_max ").append(pool.maxSlabs()).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, SymbolAggregator aggregator, long value) {
+        out.append(name).append("{symbol=\"");
+        escape(out, aggregator.getSymbol());
+        out.append("\"} ").append(value).append('\n');
+    }
+
+    private static void escape(StringBuilder out, String labelValue) {
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.trading.model;
+
+/**
+ * One OHLC/VWAP bar of a symbol: the values whose timestamps fall into one interval.
+ */
+public final class Bar {
+
+    private final long start;
+    private final double open;
+    private final double high;
+    private final double low;
+    private final double close;
+    private final double volume;
+    private final double notional;
+    private final long count;
+
+    /**
+     * @param start    epoch milliseconds the interval starts at
+     * @param notional sum of price × volume, from which the VWAP is derived
+     * @param count    number of values in the bar
+     */
+    public Bar(long start, double open, double high, double low, double close,
+               double volume, double notional, long count) {
+        this.start = start;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.notional = notional;
+        this.count = count;
+    }
+
+    public long getStart() { return start; }
+    public double getOpen() { return open; }
+    public double getHigh() { return high; }
+    public double getLow() { return low; }
+    public double getClose() { return close; }
+    public double getVolume() { return volume; }
+    public long getCount() { return count; }
+
+    /**
+     * @return the volume-weighted average price, or null if the bar has no volume
+     */
+    public Double getVwap() {
+        return volume == 0 ? null : notional / volume;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("start=%d open=%.4f high=%.4f low=%.4f close=%.4f volume=%.4f vwap=%s count=%d",
+                start, open, high, low, close, volume, getVwap(), count);
+    }
+}
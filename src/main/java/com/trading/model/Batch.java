@@ -1,17 +1,235 @@
 package com.trading.model;
 
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
 
+/**
+ * A recyclable slab of primitive prices. Batches larger than one slab are carried
+ * as a chain of slabs linked through {@link #getNext()}, so a whole request still
+ * occupies a single queue entry.
+ *
+ * <p>A slab can also carry a volume and a timestamp per price. Those columns are only
+ * allocated the first time a batch with them is copied into the slab, and then stay with
+ * it in the pool, so price-only ingest pays nothing for them.
+ */
 public class Batch {
-    private final List<Double> values;
+    private final double[] values;
+    // allocated on first use; valid only while hasColumns
+    private double[] volumes;
+    private long[] timestamps;
+    private boolean hasColumns;
+    private int size;
+    private Batch next;
+    private long enqueuedNanos;
+    private long sequence;
+    private long journalRecord;
+    private long valueSequence;
 
-    public Batch(List<Double> values) {
-        this.values = values;
+    public Batch(int slabSize) {
+        this.values = new double[slabSize];
     }
 
-    public List<Double> getValues() {
+    /**
+     * @return the slab; only the first {@link #size()} entries are valid
+     */
+    public double[] getValues() {
         return values;
     }
 
+    public int size() {
+        return size;
+    }
+
+    public int remaining() {
+        return values.length - size;
+    }
+
+    /**
+     * @return whether {@link #getVolumes()} and {@link #getTimestamps()} hold this slab's
+     *         columns; values copied without them have volume 0 and timestamp 0
+     */
+    public boolean hasColumns() {
+        return hasColumns;
+    }
+
+    /**
+     * @return the volume of each value, if {@link #hasColumns()}
+     */
+    public double[] getVolumes() {
+        return volumes;
+    }
+
+    /**
+     * @return the epoch milliseconds of each value, 0 when not given, if {@link #hasColumns()}
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public void add(double value) {
+        if (hasColumns) {
+            volumes[size] = 0;
+            timestamps[size] = 0;
+        }
+        values[size++] = value;
+    }
+
+    public void add(double value, double volume, long timestampMillis) {
+        ensureColumns();
+        volumes[size] = volume;
+        timestamps[size] = timestampMillis;
+        values[size++] = value;
+    }
+
+    /**
+     * Copy as many values as fit into this slab.
+     *
+     * @return the number of values copied
+     */
+    public int addAll(DoubleBuffer source) {
+        return addAll(source, null, null);
+    }
+
+    /**
+     * Copy as many values as fit into this slab, with their volumes and timestamps when
+     * given. The column buffers must have at least as many remaining entries as
+     * {@code source}; they advance with it.
+     *
+     * @param volumes    the volume of each value, or null
+     * @param timestamps the epoch milliseconds of each value, or null
+     * @return the number of values copied
+     */
+    public int addAll(DoubleBuffer source, DoubleBuffer volumes, LongBuffer timestamps) {
+        int count = Math.min(remaining(), source.remaining());
+        if (volumes != null || timestamps != null) {
+            ensureColumns();
+        }
+        if (hasColumns) {
+            if (volumes != null) {
+                volumes.get(this.volumes, size, count);
+            } else {
+                Arrays.fill(this.volumes, size, size + count, 0);
+            }
+            if (timestamps != null) {
+                timestamps.get(this.timestamps, size, count);
+            } else {
+                Arrays.fill(this.timestamps, size, size + count, 0);
+            }
+        }
+        source.get(values, size, count);
+        size += count;
+        return count;
+    }
+
+    /**
+     * Move as many values as fit into {@code target}; the values left over are
+     * shifted to the front of this slab.
+     *
+     * @return the number of values moved
+     */
+    public int moveTo(Batch target) {
+        int count = Math.min(target.remaining(), size);
+        if (hasColumns) {
+            target.ensureColumns();
+        }
+        if (target.hasColumns) {
+            if (hasColumns) {
+                System.arraycopy(volumes, 0, target.volumes, target.size, count);
+                System.arraycopy(timestamps, 0, target.timestamps, target.size, count);
+                System.arraycopy(volumes, count, volumes, 0, size - count);
+                System.arraycopy(timestamps, count, timestamps, 0, size - count);
+            } else {
+                Arrays.fill(target.volumes, target.size, target.size + count, 0);
+                Arrays.fill(target.timestamps, target.size, target.size + count, 0);
+            }
+        }
+        System.arraycopy(values, 0, target.values, target.size, count);
+        target.size += count;
+        System.arraycopy(values, count, values, 0, size - count);
+        size -= count;
+        return count;
+    }
+
+    public Batch getNext() {
+        return next;
+    }
+
+    public void setNext(Batch next) {
+        this.next = next;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} when the batch was handed to the aggregator; set on the head slab only
+     */
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    public void setEnqueuedNanos(long enqueuedNanos) {
+        this.enqueuedNanos = enqueuedNanos;
+    }
+
+    /**
+     * @return the journal sequence of the batch (of its last batch, once coalesced),
+     *         or 0 when journaling is off; set on the head slab only
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /**
+     * @return the journal's handle of the batch's record, valid while {@link #getSequence()}
+     *         is not 0; set on the head slab only
+     */
+    public long getJournalRecord() {
+        return journalRecord;
+    }
+
+    public void setJournalRecord(long journalRecord) {
+        this.journalRecord = journalRecord;
+    }
+
+    /**
+     * @return the number of values the aggregator had accepted once this batch (its
+     *         last batch, once coalesced) was enqueued; set on the head slab only
+     */
+    public long getValueSequence() {
+        return valueSequence;
+    }
+
+    public void setValueSequence(long valueSequence) {
+        this.valueSequence = valueSequence;
+    }
+
+    public void clear() {
+        size = 0;
+        hasColumns = false;
+        next = null;
+        enqueuedNanos = 0;
+        sequence = 0;
+        journalRecord = 0;
+        valueSequence = 0;
+    }
+
+    /**
+     * Start carrying columns, with volume 0 and timestamp 0 for the values already held.
+     */
+    private void ensureColumns() {
+        if (hasColumns) {
+            return;
+        }
+        if (volumes == null) {
+            volumes = new double[values.length];
+            timestamps = new long[values.length];
+        }
+        Arrays.fill(volumes, 0, size, 0);
+        Arrays.fill(timestamps, 0, size, 0);
+        hasColumns = true;
+    }
+
 }
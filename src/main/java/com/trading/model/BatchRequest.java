@@ -6,6 +6,9 @@ public class BatchRequest {
 
     public String symbol;
     public List<Double> values;
+    // optional, one per value: traded volume, and epoch milliseconds (default: arrival time)
+    public List<Double> volumes;
+    public List<Long> timestamps;
 
     public String getSymbol() {
         return symbol;
@@ -22,4 +25,20 @@ public class BatchRequest {
     public void setValues(List<Double> values) {
         this.values = values;
     }
+
+    public List<Double> getVolumes() {
+        return volumes;
+    }
+
+    public void setVolumes(List<Double> volumes) {
+        this.volumes = volumes;
+    }
+
+    public List<Long> getTimestamps() {
+        return timestamps;
+    }
+
+    public void setTimestamps(List<Long> timestamps) {
+        this.timestamps = timestamps;
+    }
 }
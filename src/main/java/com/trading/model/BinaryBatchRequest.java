@@ -0,0 +1,257 @@
+package com.trading.model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of {@link BatchRequest}. The prices are exposed as a little-endian
+ * {@link DoubleBuffer} view over the request body, so nothing is copied or boxed until
+ * they are written into the aggregator's pooled slabs.
+ *
+ * <p>Framing, all little-endian:
+ * <pre>
+ *   u16     symbol length in bytes (N)
+ *   N bytes symbol, UTF-8
+ *   K * f64 prices (the rest of the body, K = remaining / 8)
+ * </pre>
+ *
+ * <p>A symbol length of 0 instead addresses the symbol by the id it was registered
+ * under, which skips decoding and looking up the name:
+ * <pre>
+ *   u16     0
+ *   i32     symbol id
+ *   K * f64 prices
+ * </pre>
+ *
+ * <p>A multi-symbol body ({@link #decodeAll}) is a sequence of frames, each of which
+ * states its price count because it does not end with the body:
+ * <pre>
+ *   u16     symbol length in bytes (N), or 0 followed by an i32 symbol id
+ *   N bytes symbol, UTF-8
+ *   u32     price count (K)
+ *   K * f64 prices
+ * </pre>
+ *
+ * <p>The binary framing carries prices only. JSON batches with volumes and timestamps
+ * are carried in this form too, with their columns as extra buffers.
+ */
+public final class BinaryBatchRequest {
+
+    public static final String MEDIA_TYPE = "application/octet-stream";
+
+    public static final int NO_SYMBOL_ID = -1;
+
+    private final String symbol;
+    private final int symbolId;
+    private final DoubleBuffer values;
+    private final DoubleBuffer volumes;
+    private final LongBuffer timestamps;
+
+    public BinaryBatchRequest(String symbol, DoubleBuffer values) {
+        this(symbol, NO_SYMBOL_ID, values, null, null);
+    }
+
+    public BinaryBatchRequest(int symbolId, DoubleBuffer values) {
+        this(null, symbolId, values, null, null);
+    }
+
+    /**
+     * @param volumes    the volume of each price, or null
+     * @param timestamps the epoch milliseconds of each price, or null
+     */
+    public BinaryBatchRequest(String symbol, DoubleBuffer values, DoubleBuffer volumes, LongBuffer timestamps) {
+        this(symbol, NO_SYMBOL_ID, values, volumes, timestamps);
+    }
+
+    private BinaryBatchRequest(String symbol, int symbolId, DoubleBuffer values) {
+        this(symbol, symbolId, values, null, null);
+    }
+
+    private BinaryBatchRequest(String symbol, int symbolId, DoubleBuffer values,
+                               DoubleBuffer volumes, LongBuffer timestamps) {
+        this.symbol = symbol;
+        this.symbolId = symbolId;
+        this.values = values;
+        this.volumes = volumes;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * @return the symbol, or null if the request addresses it by id
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return the symbol id, or {@link #NO_SYMBOL_ID} if the request names the symbol
+     */
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public boolean hasSymbolId() {
+        return symbolId != NO_SYMBOL_ID;
+    }
+
+    public DoubleBuffer getValues() {
+        return values;
+    }
+
+    /**
+     * @return the volume of each price, or null
+     */
+    public DoubleBuffer getVolumes() {
+        return volumes;
+    }
+
+    /**
+     * @return the epoch milliseconds of each price, or null
+     */
+    public LongBuffer getTimestamps() {
+        return timestamps;
+    }
+
+    public int size() {
+        return values.remaining();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body does not follow the framing
+     */
+    public static BinaryBatchRequest decode(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int symbolLength = Short.toUnsignedInt(buffer.getShort());
+            if (symbolLength == 0) {
+                int symbolId = buffer.getInt();
+                if (symbolId < 0) {
+                    throw new IllegalArgumentException("Invalid symbol id " + symbolId);
+                }
+                return new BinaryBatchRequest(symbolId, values(buffer));
+            }
+            if (symbolLength > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid symbol length " + symbolLength);
+            }
+            String symbol = new String(body, buffer.position(), symbolLength, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + symbolLength);
+            return new BinaryBatchRequest(symbol, values(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary batch", e);
+        }
+    }
+
+    /**
+     * Decode a multi-symbol body. The values of every frame are views over {@code body}.
+     *
+     * @throws IllegalArgumentException if the body does not follow the framing, or a frame
+     *                                  has no prices
+     */
+    public static List<BinaryBatchRequest> decodeAll(byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        List<BinaryBatchRequest> requests = new ArrayList<>();
+        try {
+            while (buffer.hasRemaining()) {
+                int symbolLength = Short.toUnsignedInt(buffer.getShort());
+                String symbol = null;
+                int symbolId = NO_SYMBOL_ID;
+                if (symbolLength == 0) {
+                    symbolId = buffer.getInt();
+                    if (symbolId < 0) {
+                        throw new IllegalArgumentException("Invalid symbol id " + symbolId);
+                    }
+                } else {
+                    if (symbolLength > buffer.remaining()) {
+                        throw new IllegalArgumentException("Invalid symbol length " + symbolLength);
+                    }
+                    symbol = new String(body, buffer.position(), symbolLength, StandardCharsets.UTF_8);
+                    buffer.position(buffer.position() + symbolLength);
+                }
+
+                long count = Integer.toUnsignedLong(buffer.getInt());
+                if (count == 0) {
+                    // would register the symbol and enqueue an empty batch
+                    throw new IllegalArgumentException("Frame " + requests.size() + " has no prices");
+                }
+                if (count * Double.BYTES > buffer.remaining()) {
+                    throw new IllegalArgumentException("Price count " + count + " exceeds the body");
+                }
+                int end = buffer.position() + (int) count * Double.BYTES;
+                DoubleBuffer values = buffer.duplicate().limit(end).slice()
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                buffer.position(end);
+                requests.add(new BinaryBatchRequest(symbol, symbolId, values));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary batch", e);
+        }
+        return requests;
+    }
+
+    private static DoubleBuffer values(ByteBuffer buffer) {
+        if (buffer.remaining() % Double.BYTES != 0) {
+            throw new IllegalArgumentException("Price payload is not a multiple of 8 bytes");
+        }
+        return buffer.asDoubleBuffer();
+    }
+
+    public static byte[] encode(String symbol, double[] values) {
+        byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+        if (symbolBytes.length == 0 || symbolBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid symbol length " + symbolBytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Short.BYTES + symbolBytes.length + values.length * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) symbolBytes.length);
+        buffer.put(symbolBytes);
+        buffer.asDoubleBuffer().put(values);
+        return buffer.array();
+    }
+
+    public static byte[] encode(int symbolId, double[] values) {
+        if (symbolId < 0) {
+            throw new IllegalArgumentException("Invalid symbol id " + symbolId);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Short.BYTES + Integer.BYTES + values.length * Double.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putShort((short) 0);
+        buffer.putInt(symbolId);
+        buffer.asDoubleBuffer().put(values);
+        return buffer.array();
+    }
+
+    /**
+     * Encode a multi-symbol body for {@link #decodeAll}.
+     */
+    public static byte[] encodeAll(List<String> symbols, List<double[]> values) {
+        if (symbols.size() != values.size()) {
+            throw new IllegalArgumentException("One price array per symbol expected");
+        }
+        List<byte[]> symbolBytes = new ArrayList<>(symbols.size());
+        int length = 0;
+        for (int i = 0; i < symbols.size(); i++) {
+            byte[] bytes = symbols.get(i).getBytes(StandardCharsets.UTF_8);
+            if (bytes.length == 0 || bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("Invalid symbol length " + bytes.length);
+            }
+            symbolBytes.add(bytes);
+            length += Short.BYTES + bytes.length + Integer.BYTES + values.get(i).length * Double.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < symbols.size(); i++) {
+            buffer.putShort((short) symbolBytes.get(i).length);
+            buffer.put(symbolBytes.get(i));
+            buffer.putInt(values.get(i).length);
+            for (double value : values.get(i)) {
+                buffer.putDouble(value);
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,31 @@
+package com.trading.model;
+
+/**
+ * Backlog of one symbol, for producers that pace themselves before they get rejected.
+ */
+public final class QueueDepth {
+
+    private final String symbol;
+    private final int depth;
+    private final int capacity;
+    private final String overflowPolicy;
+    private final long droppedBatches;
+    private final long droppedValues;
+
+    public QueueDepth(String symbol, int depth, int capacity, String overflowPolicy,
+                      long droppedBatches, long droppedValues) {
+        this.symbol = symbol;
+        this.depth = depth;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.droppedBatches = droppedBatches;
+        this.droppedValues = droppedValues;
+    }
+
+    public String getSymbol() { return symbol; }
+    public int getDepth() { return depth; }
+    public int getCapacity() { return capacity; }
+    public String getOverflowPolicy() { return overflowPolicy; }
+    public long getDroppedBatches() { return droppedBatches; }
+    public long getDroppedValues() { return droppedValues; }
+}
@@ -11,14 +11,29 @@ public final class Stats {
     private final double avg;
     private final double variance;
     private final long count;
+    private final double p50;
+    private final double p95;
+    private final double p99;
 
     public Stats(double min, double max, double last, double avg, double variance, long count) {
+        this(min, max, last, avg, variance, count, Double.NaN, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * @param p50 median, p95 and p99 of the window, approximate (see the aggregator's
+     *            quantile sketches); NaN when not computed
+     */
+    public Stats(double min, double max, double last, double avg, double variance, long count,
+                 double p50, double p95, double p99) {
         this.min = min;
         this.max = max;
         this.last = last;
         this.avg = avg;
         this.variance = variance;
         this.count = count;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
     }
 
     public double getMin() { return min; }
@@ -27,6 +42,9 @@ public final class Stats {
     public double getAvg() { return avg; }
     public double getVariance() { return variance; }
     public long getCount() { return count; }
+    public double getP50() { return p50; }
+    public double getP95() { return p95; }
+    public double getP99() { return p99; }
 
     public static Stats empty() {
         return EMPTY;
@@ -34,7 +52,7 @@ public final class Stats {
 
     @Override
     public String toString() {
-        return String.format("count=%d last=%.4f min=%.4f max=%.4f avg=%.4f var=%.6f",
-                count, last, min, max, avg, variance);
+        return String.format("count=%d last=%.4f min=%.4f max=%.4f avg=%.4f var=%.6f p50=%.4f p95=%.4f p99=%.4f",
+                count, last, min, max, avg, variance, p50, p95, p99);
     }
 }
@@ -0,0 +1,18 @@
+package com.trading.model;
+
+/**
+ * Id a symbol is registered under, for binary clients that address symbols by id.
+ */
+public final class SymbolId {
+
+    private final String symbol;
+    private final int id;
+
+    public SymbolId(String symbol, int id) {
+        this.symbol = symbol;
+        this.id = id;
+    }
+
+    public String getSymbol() { return symbol; }
+    public int getId() { return id; }
+}
@@ -0,0 +1,122 @@
+package com.trading.subscription;
+
+import com.trading.aggregator.SnapshotListener;
+import com.trading.aggregator.SymbolAggregator;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * One subscriber's interest in a set of symbols, conflated per symbol.
+ *
+ * <p>A publication only marks its symbol dirty and, unless the subscription is already
+ * scheduled, hands it to the {@link SubscriptionHub}. While updates are being written
+ * to the sink the subscription stays scheduled, so further publications just leave
+ * their symbols dirty. Once the sink has taken them all, the dirty symbols are sent
+ * again with their latest snapshots. A slow consumer therefore receives fewer, fresher
+ * updates, holds at most one pending update per symbol, and never delays a worker.
+ */
+public final class Subscription {
+
+    private final SubscriptionHub hub;
+    private final SymbolAggregator[] aggregators;
+    private final SnapshotListener[] listeners;
+    private final UpdateSink sink;
+    private final AtomicIntegerArray dirty;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean closed;
+
+    Subscription(SubscriptionHub hub, List<SymbolAggregator> aggregators, UpdateSink sink) {
+        this.hub = hub;
+        this.aggregators = aggregators.toArray(new SymbolAggregator[0]);
+        this.listeners = new SnapshotListener[this.aggregators.length];
+        this.sink = sink;
+        this.dirty = new AtomicIntegerArray(this.aggregators.length);
+        for (int i = 0; i < this.aggregators.length; i++) {
+            int index = i;
+            listeners[i] = aggregator -> markDirty(index);
+        }
+    }
+
+    /**
+     * Start listening, with every symbol's current snapshots as the first updates.
+     */
+    void open() {
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregators[i].addListener(listeners[i]);
+            dirty.set(i, 1);
+        }
+        schedule();
+    }
+
+    /**
+     * Stop listening and close the sink. Idempotent.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < aggregators.length; i++) {
+            aggregators[i].removeListener(listeners[i]);
+        }
+        sink.close();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void markDirty(int index) {
+        dirty.lazySet(index, 1);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!closed && scheduled.compareAndSet(false, true)) {
+            hub.ready(this);
+        }
+    }
+
+    /**
+     * Send every dirty symbol. Runs on the hub thread; the subscription stays scheduled
+     * until the sink has completed all of the sends.
+     */
+    void deliver() {
+        if (closed || sink.isClosed()) {
+            close();
+            return;
+        }
+        // one extra count so that sends completing during the loop cannot finish the round
+        inFlight.set(1);
+        for (int i = 0; i < aggregators.length && !closed; i++) {
+            if (dirty.get(i) != 0 && dirty.getAndSet(i, 0) != 0) {
+                inFlight.incrementAndGet();
+                sink.send(aggregators[i]).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        close();
+                    }
+                    completeSend();
+                });
+            }
+        }
+        completeSend();
+    }
+
+    private void completeSend() {
+        if (inFlight.decrementAndGet() != 0) {
+            return;
+        }
+        scheduled.set(false);
+        // a publication that saw us scheduled left its symbol dirty without rescheduling
+        for (int i = 0; i < aggregators.length; i++) {
+            if (dirty.get(i) != 0) {
+                schedule();
+                return;
+            }
+        }
+    }
+}
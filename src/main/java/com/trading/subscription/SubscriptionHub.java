@@ -0,0 +1,72 @@
+package com.trading.subscription;
+
+import com.trading.aggregator.SymbolAggregator;
+import org.jboss.logging.Logger;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers conflated snapshot updates to subscribers on one dedicated thread, so that
+ * workers only ever flag updates and never touch a subscriber's connection.
+ *
+ * <p>A subscription is queued at most once at a time, so the ready queue never holds
+ * more entries than there are subscriptions.
+ */
+public final class SubscriptionHub {
+
+    private static final Logger LOG = Logger.getLogger(SubscriptionHub.class);
+
+    private final ConcurrentLinkedQueue<Subscription> ready = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean parked;
+
+    public SubscriptionHub() {
+        this.thread = new Thread(this::run, "subscription-hub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Subscribe {@code sink} to the snapshots of {@code aggregators}; it first receives
+     * their current snapshots, then an update after new publications.
+     */
+    public Subscription subscribe(List<SymbolAggregator> aggregators, UpdateSink sink) {
+        Subscription subscription = new Subscription(this, aggregators, sink);
+        subscription.open();
+        return subscription;
+    }
+
+    void ready(Subscription subscription) {
+        ready.offer(subscription);
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    public void shutdown() {
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Subscription subscription = ready.poll();
+            if (subscription == null) {
+                parked = true;
+                // re-check after announcing the park, so a racing ready() is not missed
+                if (ready.isEmpty()) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+                continue;
+            }
+            try {
+                subscription.deliver();
+            } catch (RuntimeException e) {
+                LOG.warn("Closing a subscription whose delivery failed", e);
+                subscription.close();
+            }
+        }
+    }
+}
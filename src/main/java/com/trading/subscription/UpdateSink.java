@@ -0,0 +1,22 @@
+package com.trading.subscription;
+
+import com.trading.aggregator.SymbolAggregator;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Where a {@link Subscription} delivers updates, e.g. one server-sent event stream.
+ */
+public interface UpdateSink {
+
+    /**
+     * Send the latest snapshots of {@code aggregator} without blocking.
+     *
+     * @return completes once the update was written, exceptionally if the sink failed
+     */
+    CompletionStage<?> send(SymbolAggregator aggregator);
+
+    boolean isClosed();
+
+    void close();
+}
@@ -1,26 +1,27 @@
 package com.trading.task;
 
 import com.trading.aggregator.SymbolAggregator;
-import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
-
-import java.util.Deque;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import org.agrona.concurrent.ManyToManyConcurrentArrayQueue;
 
 /**
- * A simple lock-free ring buffer queue for SymbolAggregator tasks.
- * Only single-consumer is assumed per slot, but multiple workers can poll concurrently.
+ * A lock-free ring buffer queue for SymbolAggregator tasks.
+ * Producers (request threads) and consumers (dispatcher workers) are both many.
  */
 public class TaskRingBuffer {
-    private final ManyToOneConcurrentArrayQueue<SymbolAggregator> buffer;
+    private final ManyToManyConcurrentArrayQueue<SymbolAggregator> buffer;
 
     public TaskRingBuffer(int capacity) {
-        this.buffer = new ManyToOneConcurrentArrayQueue<>(capacity);
+        this.buffer = new ManyToManyConcurrentArrayQueue<>(capacity);
     }
 
     public boolean isEmpty() {
         return buffer.isEmpty();
     }
 
+    public int size() {
+        return buffer.size();
+    }
+
     public boolean offer(SymbolAggregator task) {
         return buffer.add(task);
     }
@@ -28,4 +29,4 @@ public class TaskRingBuffer {
     public SymbolAggregator take()  {
         return buffer.isEmpty() ? null : buffer.poll();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,170 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.dispatcher.Dispatcher;
+import com.trading.dispatcher.WorkerMetrics;
+import com.trading.model.BinaryBatchRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregatorManagerTest {
+
+    @Test
+    void testBulkIngestSubmitsEverySymbolOnce() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher();
+        AggregatorManager manager = manager(dispatcher, 16);
+        int msft = manager.idOf("MSFT");
+
+        int symbols = manager.getAndPushCalculations(List.of(
+                batch("AAPL", 1, 2),
+                new BinaryBatchRequest(msft, DoubleBuffer.wrap(new double[]{10})),
+                batch("AAPL", 3),
+                batch("MSFT", 20),
+                batch("GOOG", 5)));
+
+        assertEquals(3, symbols);
+        assertEquals(List.of("AAPL", "MSFT", "GOOG"), dispatcher.submitted);
+        for (SymbolAggregator aggregator : manager.aggregators()) {
+            aggregator.run();
+        }
+        assertEquals(3, manager.getStats("AAPL", 1).getCount());
+        assertEquals(2.0, manager.getStats("AAPL", 1).getAvg());
+        assertEquals(15.0, manager.getStats("MSFT", 1).getAvg());
+        assertEquals(1, manager.getStats("GOOG", 1).getCount());
+    }
+
+    @Test
+    void testBulkIngestSubmitsAcceptedSymbolsWhenABatchIsRejected() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher();
+        // room for three queued batches
+        AggregatorManager manager = manager(dispatcher, 3);
+
+        BatchRejectedException e = assertThrows(BatchRejectedException.class,
+                () -> manager.getAndPushCalculations(List.of(
+                        batch("AAPL", 1),
+                        batch("MSFT", 2),
+                        batch("MSFT", 3),
+                        batch("MSFT", 4),
+                        batch("GOOG", 5))));
+
+        assertEquals(3, e.getAcceptedBatches());
+        assertEquals(List.of("AAPL", "MSFT"), dispatcher.submitted);
+        assertNull(manager.find("GOOG"));
+        assertThrows(IllegalArgumentException.class, () -> manager.getAndPushCalculations(
+                List.of(new BinaryBatchRequest(99, DoubleBuffer.wrap(new double[]{1})))));
+    }
+
+    @Test
+    void testBulkIngestChecksEveryBatchBeforeEnqueuingAny() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher();
+        AggregatorOptions options = AggregatorOptions.builder()
+                .tickSizes(symbol -> symbol.equals("EURUSD") ? TickSize.parse("0.01") : null)
+                .build();
+        AggregatorManager manager = new AggregatorManager(symbol -> new InHeapRingBuffer(1_000),
+                new BatchPool(16, 64), dispatcher, options);
+        SymbolAggregator aapl = manager.getOrCreate("AAPL");
+
+        assertThrows(IllegalArgumentException.class, () -> manager.getAndPushCalculations(List.of(
+                batch("AAPL", 1),
+                batch("EURUSD", 1.005))));
+        assertThrows(IllegalArgumentException.class, () -> manager.getAndPushCalculations(List.of(
+                batch("AAPL", 1),
+                new BinaryBatchRequest("MSFT", DoubleBuffer.wrap(new double[]{1, 2}),
+                        DoubleBuffer.wrap(new double[]{100}), null))));
+        assertThrows(IllegalArgumentException.class, () -> manager.getAndPushCalculations(List.of(
+                batch("AAPL", 1),
+                new BinaryBatchRequest(99, DoubleBuffer.wrap(new double[]{1})))));
+
+        assertEquals(0, aapl.queueDepth());
+        assertTrue(dispatcher.submitted.isEmpty());
+        assertNull(manager.find("EURUSD"));
+        assertNull(manager.find("MSFT"));
+    }
+
+    @Test
+    void testBulkIngestReschedulesASymbolDrainedDuringThePass() {
+        RecordingDispatcher dispatcher = new RecordingDispatcher();
+        AggregatorManager manager = manager(dispatcher, 16);
+        SymbolAggregator aapl = manager.getOrCreate("AAPL");
+        // the worker drains AAPL's first batch before the second is enqueued
+        dispatcher.onSubmit = aggregator -> {
+            aggregator.run();
+            aggregator.markIdle();
+        };
+
+        assertEquals(1, manager.getAndPushCalculations(List.of(batch("AAPL", 1), batch("AAPL", 3))));
+
+        assertEquals(List.of("AAPL", "AAPL"), dispatcher.submitted);
+        assertEquals(0, aapl.queueDepth());
+        assertEquals(2.0, aapl.getStats(1).getAvg());
+    }
+
+    @Test
+    void testOptionsAreResolvedOncePerSymbol() {
+        List<String> resolved = new ArrayList<>();
+        TickSize cent = TickSize.parse("0.01");
+        AggregatorOptions options = AggregatorOptions.builder()
+                .overflowPolicies(symbol -> {
+                    resolved.add(symbol);
+                    return symbol.equals("EURUSD") ? OverflowPolicy.COALESCE : OverflowPolicy.REJECT;
+                })
+                .tickSizes(symbol -> symbol.equals("EURUSD") ? cent : null)
+                .quantiles(false)
+                .build();
+        AggregatorManager manager = new AggregatorManager(symbol -> new InHeapRingBuffer(1_000),
+                new BatchPool(16, 64), new RecordingDispatcher(), options);
+
+        SymbolAggregator fx = manager.getOrCreate("EURUSD");
+        manager.getOrCreate("EURUSD");
+        SymbolAggregator stock = manager.getOrCreate("AAPL");
+        assertEquals(List.of("EURUSD", "AAPL"), resolved);
+        assertEquals(OverflowPolicy.COALESCE, fx.getOverflowPolicy());
+        assertSame(cent, fx.getTickSize());
+        assertEquals(OverflowPolicy.REJECT, stock.getOverflowPolicy());
+        assertNull(stock.getTickSize());
+        assertFalse(stock.hasQuantiles());
+    }
+
+    private static AggregatorManager manager(Dispatcher dispatcher, int maxSlabs) {
+        return new AggregatorManager(symbol -> new InHeapRingBuffer(1_000), new BatchPool(maxSlabs, 64), dispatcher,
+                AggregatorOptions.DEFAULT);
+    }
+
+    private static BinaryBatchRequest batch(String symbol, double... values) {
+        return new BinaryBatchRequest(symbol, DoubleBuffer.wrap(values));
+    }
+
+    private static final class RecordingDispatcher implements Dispatcher {
+        final List<String> submitted = new ArrayList<>();
+        Consumer<SymbolAggregator> onSubmit = aggregator -> { };
+
+        @Override
+        public void submit(SymbolAggregator aggregator) {
+            // like the real dispatchers, hand a symbol over only while it is idle
+            if (aggregator.markInProgress()) {
+                submitted.add(aggregator.getSymbol());
+                onSubmit.accept(aggregator);
+            }
+        }
+
+        @Override
+        public int queueDepth() {
+            return 0;
+        }
+
+        @Override
+        public WorkerMetrics workerMetrics() {
+            return null;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Bar;
+import com.trading.model.Batch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BarHistoryTest {
+
+    private static final long T0 = 1_760_700_000_000L;
+
+    @Test
+    void testBarsFoldPricesVolumesAndTimestamps() {
+        BarHistory bars = new BarHistory(BarIntervals.parse("1s,1m", 10));
+        Batch batch = new Batch(8);
+        batch.add(10.0, 100, T0 + 100);
+        batch.add(12.0, 50, T0 + 200);
+        batch.add(9.0, 50, T0 + 900);
+        batch.add(11.0, 200, T0 + 1_000);
+        // late: counted in the 1s bar in progress
+        batch.add(10.5, 0, T0 + 300);
+        bars.add(batch, 0);
+
+        List<Bar> seconds = bars.bars(0, 10);
+        assertEquals(2, seconds.size());
+        assertBar(seconds.get(0), T0, 10.0, 12.0, 9.0, 9.0, 200, 3);
+        assertEquals((10.0 * 100 + 12.0 * 50 + 9.0 * 50) / 200, seconds.get(0).getVwap(), 1e-12);
+        assertBar(seconds.get(1), T0 + 1_000, 11.0, 11.0, 10.5, 10.5, 200, 2);
+        assertEquals(11.0, seconds.get(1).getVwap(), 1e-12);
+
+        List<Bar> minutes = bars.bars(1, 10);
+        assertEquals(1, minutes.size());
+        assertBar(minutes.get(0), T0 - T0 % 60_000, 10.0, 12.0, 9.0, 10.5, 400, 5);
+    }
+
+    @Test
+    void testHistoryKeepsTheLastBars() {
+        BarHistory bars = new BarHistory(BarIntervals.parse("1s", 3));
+        for (int s = 0; s < 5; s++) {
+            Batch batch = new Batch(2);
+            batch.add(s, 1, T0 + s * 1_000L);
+            batch.add(s + 0.5, 1, T0 + s * 1_000L + 10);
+            bars.add(batch, 0);
+        }
+        List<Bar> last = bars.bars(0, 10);
+        assertEquals(3, last.size());
+        assertEquals(T0 + 2_000, last.get(0).getStart());
+        assertEquals(4.5, last.get(2).getClose());
+        assertEquals(2, last.get(2).getCount());
+
+        List<Bar> limited = bars.bars(0, 1);
+        assertEquals(1, limited.size());
+        assertEquals(T0 + 4_000, limited.get(0).getStart());
+    }
+
+    @Test
+    void testValuesWithoutColumnsUseTheArrivalTime() {
+        BarHistory bars = new BarHistory(BarIntervals.parse("1m", 5));
+        Batch batch = new Batch(4);
+        batch.add(1.0);
+        batch.add(3.0);
+        bars.add(batch, T0 + 61_000);
+
+        Bar bar = bars.bars(0, 5).get(0);
+        assertBar(bar, T0 - T0 % 60_000 + 60_000, 1.0, 3.0, 1.0, 3.0, 0, 2);
+        assertNull(bar.getVwap());
+    }
+
+    @Test
+    void testBarsSurviveASpillRoundTrip() throws IOException {
+        BarIntervals intervals = BarIntervals.parse("1s", 4);
+        BarHistory bars = new BarHistory(intervals);
+        Batch batch = new Batch(2);
+        batch.add(5.0, 10, T0);
+        batch.add(6.0, 10, T0 + 1_500);
+        bars.add(batch, 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bars.writeTo(Channels.newChannel(bytes));
+
+        BarHistory restored = new BarHistory(intervals);
+        restored.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        Batch later = new Batch(1);
+        later.add(7.0, 30, T0 + 1_600);
+        restored.add(later, 0);
+        List<Bar> result = restored.bars(0, 4);
+        assertEquals(2, result.size());
+        assertBar(result.get(1), T0 + 1_000, 6.0, 7.0, 6.0, 7.0, 40, 2);
+    }
+
+    @Test
+    void testIntervalsAreValidated() {
+        BarIntervals intervals = BarIntervals.parse("5m, 1s,500ms", 10);
+        assertEquals(500, intervals.intervalMillis(0));
+        assertEquals(300_000, intervals.intervalMillis(2));
+        assertEquals(1, intervals.indexOf(1_000));
+        assertEquals(-1, intervals.indexOf(2_000));
+        assertThrows(IllegalArgumentException.class, () -> BarIntervals.parse("1s,1000ms", 10));
+        assertThrows(IllegalArgumentException.class, () -> BarIntervals.parse("1s", 0));
+        assertThrows(IllegalArgumentException.class, () -> BarIntervals.parse("1d", 10));
+    }
+
+    @Test
+    void testAggregatorBuildsBarsFromColumnsAndCoalescedSlabs() {
+        SymbolAggregator aggregator = new SymbolAggregator("AAPL", new InHeapRingBuffer(1_000),
+                new BatchPool(16, 4), SymbolOptions.builder().barIntervals(BarIntervals.parse("1s", 10)).build());
+        aggregator.enqueueBatch(DoubleBuffer.wrap(new double[]{1, 2, 3, 4, 5, 6}),
+                DoubleBuffer.wrap(new double[]{1, 1, 1, 1, 1, 5}),
+                LongBuffer.wrap(new long[]{T0, T0, T0, T0, T0 + 1_000, T0 + 1_000}));
+        aggregator.runOneIteration();
+
+        List<Bar> bars = aggregator.getBars(1_000, 10);
+        assertEquals(2, bars.size());
+        assertBar(bars.get(0), T0, 1, 4, 1, 4, 4, 4);
+        assertBar(bars.get(1), T0 + 1_000, 5, 6, 5, 6, 6, 2);
+        assertEquals(6, aggregator.getStats(1).getCount());
+
+        assertThrows(IllegalArgumentException.class, () -> aggregator.getBars(60_000, 10));
+        assertThrows(IllegalArgumentException.class, () -> aggregator.enqueueBatch(
+                DoubleBuffer.wrap(new double[]{1, 2}), DoubleBuffer.wrap(new double[]{1}), null));
+
+        // a slab with columns moved behind one without keeps them, and vice versa
+        Batch plain = new Batch(4);
+        plain.add(1.0);
+        Batch columns = new Batch(4);
+        columns.add(2.0, 7, T0);
+        columns.moveTo(plain);
+        assertTrue(plain.hasColumns());
+        assertEquals(0, plain.getVolumes()[0]);
+        assertEquals(7, plain.getVolumes()[1]);
+        assertEquals(T0, plain.getTimestamps()[1]);
+        Batch other = new Batch(4);
+        other.add(3.0);
+        other.moveTo(plain);
+        assertEquals(0, plain.getVolumes()[2]);
+        plain.clear();
+        assertFalse(plain.hasColumns());
+    }
+
+    @Test
+    void testAggregatorRejectsVolumesAndTimestampsBarsCannotUndo() {
+        SymbolAggregator aggregator = new SymbolAggregator("AAPL", new InHeapRingBuffer(1_000),
+                new BatchPool(16, 4), SymbolOptions.builder().barIntervals(BarIntervals.parse("1s", 10)).build());
+        long now = System.currentTimeMillis();
+        for (double volume : new double[]{-1, Double.NaN, Double.POSITIVE_INFINITY}) {
+            assertThrows(IllegalArgumentException.class, () -> aggregator.enqueueBatch(
+                    DoubleBuffer.wrap(new double[]{1, 2}), DoubleBuffer.wrap(new double[]{1, volume}), null));
+        }
+        long future = now + SymbolAggregator.MAX_TIMESTAMP_SKEW_MILLIS + 60_000;
+        assertThrows(IllegalArgumentException.class, () -> aggregator.enqueueBatch(
+                DoubleBuffer.wrap(new double[]{1, 2}), null, LongBuffer.wrap(new long[]{now, future})));
+        assertEquals(0, aggregator.queueDepth());
+
+        // a little skew is accepted, and later values still reach the bars
+        aggregator.enqueueBatch(DoubleBuffer.wrap(new double[]{1, 2}), DoubleBuffer.wrap(new double[]{0, 3}),
+                LongBuffer.wrap(new long[]{now - 1_000, now + 1_000}));
+        aggregator.runOneIteration();
+        List<Bar> bars = aggregator.getBars(1_000, 10);
+        assertFalse(bars.isEmpty());
+        assertEquals(3, bars.stream().mapToDouble(Bar::getVolume).sum());
+    }
+
+    private static void assertBar(Bar bar, long start, double open, double high, double low, double close,
+                                  double volume, long count) {
+        assertEquals(start, bar.getStart(), "start");
+        assertEquals(open, bar.getOpen(), "open");
+        assertEquals(high, bar.getHigh(), "high");
+        assertEquals(low, bar.getLow(), "low");
+        assertEquals(close, bar.getClose(), "close");
+        assertEquals(volume, bar.getVolume(), "volume");
+        assertEquals(count, bar.getCount(), "count");
+    }
+}
@@ -0,0 +1,78 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Batch;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchPoolTest {
+
+    @Test
+    void testAcquireChainsSlabsAndRecycles() {
+        BatchPool pool = new BatchPool(4, 8);
+
+        Batch head = pool.acquire(20);
+        assertNotNull(head);
+        assertNotNull(head.getNext());
+        assertNotNull(head.getNext().getNext());
+        assertNull(head.getNext().getNext().getNext());
+        assertEquals(3, pool.inUse());
+
+        pool.release(head);
+        assertEquals(0, pool.inUse());
+        assertSame(head, pool.acquire(1));
+    }
+
+    @Test
+    void testExhaustedPoolReturnsNullWithoutLeaking() {
+        BatchPool pool = new BatchPool(2, 8);
+
+        assertNull(pool.acquire(17));
+        assertEquals(0, pool.inUse());
+        assertNotNull(pool.acquire(16));
+        assertNull(pool.acquire(1));
+    }
+
+    @Test
+    void testBatchSpanningSlabsIsProcessedAndReturned() {
+        BatchPool pool = new BatchPool(4, 8);
+        SymbolAggregator aggregator = new SymbolAggregator("SLABS", new InHeapRingBuffer(1_000), pool);
+
+        double[] values = new double[20];
+        for (int i = 0; i < values.length; i++) values[i] = i + 1;
+        aggregator.enqueueBatch(values);
+        assertEquals(3, pool.inUse());
+
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getStats(2);
+        assertEquals(20, stats.getCount());
+        assertEquals(10.5, stats.getAvg(), 1e-9);
+        assertEquals(20, stats.getLast());
+        assertEquals(0, pool.inUse());
+    }
+
+    @Test
+    void testEnqueueFailsWhenPoolExhausted() {
+        BatchPool pool = new BatchPool(1, 8);
+        SymbolAggregator aggregator = new SymbolAggregator("FULL", new InHeapRingBuffer(1_000), pool);
+
+        aggregator.enqueueBatch(new double[8]);
+        assertThrows(IllegalStateException.class, () -> aggregator.enqueueBatch(new double[1]));
+    }
+
+    @Test
+    void testSlabsAreReleasedWhenProcessingFails() {
+        BatchPool pool = new BatchPool(4, 8);
+        SymbolAggregator aggregator = new SymbolAggregator("FAIL", new InHeapRingBuffer(1_000), pool);
+        aggregator.addListener(published -> {
+            throw new IllegalStateException("listener failed");
+        });
+
+        aggregator.enqueueBatch(new double[20]);
+        assertThrows(IllegalStateException.class, aggregator::runOneIteration);
+        assertEquals(0, pool.inUse());
+    }
+}
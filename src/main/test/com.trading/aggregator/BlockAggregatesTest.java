@@ -0,0 +1,64 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockAggregatesTest {
+
+    private static final int CAPACITY = 25_000;
+
+    @Test
+    void testQueryMatchesBruteForceAcrossRingWrapAround() {
+        InHeapRingBuffer ringBuffer = new InHeapRingBuffer(CAPACITY);
+        BlockAggregates blocks = new BlockAggregates(ringBuffer);
+        Random random = new Random(42);
+
+        double[] history = new double[120_000];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 100 + random.nextGaussian();
+            ringBuffer.set(i, history[i]);
+            blocks.add(i, history[i]);
+
+            if (i % 7_919 == 0 || i == history.length - 1) {
+                for (long window : new long[]{1, 10, 99, 100, 101, 1_000, 12_345, CAPACITY}) {
+                    long start = Math.max(0, i - window + 1);
+                    blocks.query(start, i);
+                    assertMatches(history, start, i, blocks);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testEmptyRange() {
+        BlockAggregates blocks = new BlockAggregates(new InHeapRingBuffer(1_000));
+        blocks.query(0, -1);
+        assertEquals(0, blocks.count());
+        assertTrue(Double.isNaN(blocks.min()));
+        assertTrue(Double.isNaN(blocks.max()));
+    }
+
+    private static void assertMatches(double[] history, long start, long end, BlockAggregates blocks) {
+        double sum = 0;
+        double sumSq = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (long i = start; i <= end; i++) {
+            double v = history[(int) i];
+            sum += v;
+            sumSq += v * v;
+            min = Math.min(min, v);
+            max = Math.max(max, v);
+        }
+        String range = "[" + start + ", " + end + "]";
+        assertEquals(end - start + 1, blocks.count(), range);
+        assertEquals(sum, blocks.sum(), 1e-9 * Math.abs(sum), range);
+        assertEquals(sumSq, blocks.sumSq(), 1e-9 * Math.abs(sumSq), range);
+        assertEquals(min, blocks.min(), range);
+        assertEquals(max, blocks.max(), range);
+    }
+}
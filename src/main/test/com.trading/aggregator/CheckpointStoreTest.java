@@ -0,0 +1,220 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.ChronicleRingBuffer;
+import com.trading.buffer.CompressedRingBuffer;
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointStoreTest {
+
+    private static final int CAPACITY = 1_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRestoredAggregatorServesTheSameStats() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        SymbolAggregator original = aggregator("BRK/B");
+        ingest(original, 0, 12_345);
+
+        store.write(original, capture(original));
+
+        SymbolAggregator restored = aggregator("BRK/B");
+        assertTrue(store.restore(restored));
+        assertEquals(List.of("BRK/B"), store.symbols());
+        assertSameStats(original, restored);
+
+        // both continue identically, across block boundaries at every level
+        ingest(original, 12_345, 3_000);
+        ingest(restored, 12_345, 3_000);
+        assertSameStats(original, restored);
+    }
+
+    @Test
+    void testValuesWrittenDuringTheCopyShrinkTheRestoredHistory() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        SymbolAggregator original = aggregator("FUZZY");
+        ingest(original, 0, 5_000);
+        CheckpointCapture capture = capture(original);
+
+        // the worker moves on before the checkpoint thread copies the ring
+        ingest(original, 5_000, 40);
+        store.write(original, capture);
+
+        SymbolAggregator restored = aggregator("FUZZY");
+        assertTrue(store.restore(restored));
+
+        // valid history is [5_040 - CAPACITY, 5_000)
+        Stats stats = restored.getStats(3);
+        assertEquals(CAPACITY - 40, stats.getCount());
+        assertEquals(price(4_999), stats.getLast());
+        double sum = 0;
+        for (long i = 5_040 - CAPACITY; i < 5_000; i++) {
+            sum += price(i);
+        }
+        assertEquals(sum / stats.getCount(), stats.getAvg(), 1e-9);
+        double lastHundred = 0;
+        for (long i = 4_900; i < 5_000; i++) {
+            lastHundred += price(i);
+        }
+        assertEquals(100, restored.getStats(2).getCount());
+        assertEquals(lastHundred / 100, restored.getStats(2).getAvg(), 1e-9);
+    }
+
+    @Test
+    void testCheckpointWithOtherCapacityIsRejected() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        SymbolAggregator original = aggregator("CAP");
+        ingest(original, 0, 100);
+        store.write(original, capture(original));
+
+        SymbolAggregator other = new SymbolAggregator("CAP", new InHeapRingBuffer(CAPACITY * 2));
+        assertThrows(IllegalStateException.class, () -> store.restore(other));
+        assertFalse(store.restore(aggregator("MISSING")));
+    }
+
+    @Test
+    void testFixedPointCheckpointOnlyRestoresWithTheSameTickSize() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        SymbolAggregator original = tickAggregator("TICK", "0.01");
+        ingest(original, 0, 2_345);
+        store.write(original, capture(original));
+
+        assertThrows(IllegalStateException.class, () -> store.restore(aggregator("TICK")));
+        assertThrows(IllegalStateException.class, () -> store.restore(tickAggregator("TICK", "0.05")));
+
+        SymbolAggregator restored = tickAggregator("TICK", "0.01");
+        assertTrue(store.restore(restored));
+        ingest(original, 2_345, 1_000);
+        ingest(restored, 2_345, 1_000);
+        for (int k = 1; k <= 8; k++) {
+            Stats e = original.getStats(k);
+            Stats a = restored.getStats(k);
+            assertEquals(e.getCount(), a.getCount(), "count k=" + k);
+            assertEquals(e.getMin(), a.getMin(), "min k=" + k);
+            assertEquals(e.getAvg(), a.getAvg(), "avg k=" + k);
+            assertEquals(e.getVariance(), a.getVariance(), "variance k=" + k);
+            assertEquals(e.getP50(), a.getP50(), "p50 k=" + k);
+            assertEquals(e.getP99(), a.getP99(), "p99 k=" + k);
+        }
+    }
+
+    @Test
+    void testCheckpointOnlyCopiesTheFilledHistory() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        WindowSet windows = WindowSet.ALL;
+        SymbolAggregator original = new SymbolAggregator("RARE", new ChronicleRingBuffer(windows.capacity()));
+        try {
+            ingest(original, 0, 2_500);
+            store.write(original, capture(original));
+            // 8 bytes per value, plus the summaries and quantile sketches of 25 blocks of 100 and 2 of 1,000
+            assertTrue(Files.size(directory.resolve("RARE.ckpt")) < 2_500 * Double.BYTES + 4_000);
+
+            SymbolAggregator restored = new SymbolAggregator("RARE", new ChronicleRingBuffer(windows.capacity()));
+            try {
+                assertTrue(store.restore(restored));
+                assertSameStats(original, restored);
+            } finally {
+                restored.releaseRingBuffer();
+            }
+        } finally {
+            original.releaseRingBuffer();
+        }
+    }
+
+    @Test
+    void testCompressedRingIsCheckpointedWhileTheWorkerMovesOn() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        int capacity = 10 * CompressedRingBuffer.BLOCK;
+        SymbolAggregator original = new SymbolAggregator("ZIP", new CompressedRingBuffer(capacity));
+        ingest(original, 0, 30_000);
+        CheckpointCapture capture = capture(original);
+        // past two blocks, so the copied ring is ahead of the capture
+        ingest(original, 30_000, 2_500);
+        store.write(original, capture);
+
+        assertThrows(IllegalStateException.class,
+                () -> store.restore(new SymbolAggregator("ZIP", new InHeapRingBuffer(capacity))));
+        SymbolAggregator restored = new SymbolAggregator("ZIP", new CompressedRingBuffer(capacity));
+        assertTrue(store.restore(restored));
+        // valid history is [32_500 - capacity, 30_000), which every window still covers after the same values
+        ingest(restored, 30_000, 2_500);
+        assertSameStats(original, restored);
+    }
+
+    @Test
+    void testManagerCheckpointsAndRestoresThroughTheDispatcher() throws Exception {
+        CheckpointStore store = new CheckpointStore(directory);
+        AggregatorManager manager = new AggregatorManager(() -> new InHeapRingBuffer(CAPACITY), 1_024);
+        try {
+            manager.getAndPushCalculations("AAPL", List.of(1.0, 2.0, 3.0));
+            manager.checkpointAll(store);
+        } finally {
+            manager.shutdownAll();
+        }
+
+        AggregatorManager restarted = new AggregatorManager(() -> new InHeapRingBuffer(CAPACITY), 1_024);
+        try {
+            assertEquals(1, restarted.restoreCheckpoints(store));
+            Stats stats = restarted.getOrCreate("AAPL").getStats(1);
+            assertEquals(3, stats.getCount());
+            assertEquals(2.0, stats.getAvg(), 1e-9);
+        } finally {
+            restarted.shutdownAll();
+        }
+    }
+
+    private static SymbolAggregator aggregator(String symbol) {
+        return new SymbolAggregator(symbol, new InHeapRingBuffer(CAPACITY));
+    }
+
+    private static SymbolAggregator tickAggregator(String symbol, String tickSize) {
+        return new SymbolAggregator(symbol, new InHeapRingBuffer(CAPACITY),
+                new BatchPool(BatchPool.DEFAULT_MAX_SLABS, BatchPool.DEFAULT_SLAB_SIZE),
+                SymbolOptions.builder().tickSize(TickSize.parse(tickSize)).build());
+    }
+
+    private static CheckpointCapture capture(SymbolAggregator aggregator) {
+        CompletableFuture<CheckpointCapture> request = aggregator.requestCapture();
+        assertFalse(request.isDone());
+        // taken by the worker at its next batch boundary
+        aggregator.runOneIteration();
+        return request.join();
+    }
+
+    private static void ingest(SymbolAggregator aggregator, long from, int count) {
+        double[] batch = new double[count];
+        for (int i = 0; i < count; i++) {
+            batch[i] = price(from + i);
+        }
+        aggregator.enqueueBatch(batch);
+        aggregator.runOneIteration();
+    }
+
+    private static double price(long index) {
+        return (10_000 + index * 7919 % 1_000) / 100.0;
+    }
+
+    private static void assertSameStats(SymbolAggregator expected, SymbolAggregator actual) {
+        for (int k = 1; k <= 8; k++) {
+            Stats e = expected.getStats(k);
+            Stats a = actual.getStats(k);
+            assertEquals(e.getCount(), a.getCount(), "count k=" + k);
+            assertEquals(e.getMin(), a.getMin(), "min k=" + k);
+            assertEquals(e.getMax(), a.getMax(), "max k=" + k);
+            assertEquals(e.getLast(), a.getLast(), "last k=" + k);
+            assertEquals(e.getAvg(), a.getAvg(), 1e-9, "avg k=" + k);
+            assertEquals(e.getVariance(), a.getVariance(), 1e-6, "variance k=" + k);
+        }
+    }
+}
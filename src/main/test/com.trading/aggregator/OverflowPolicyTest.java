@@ -0,0 +1,123 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverflowPolicyTest {
+
+    private static final int QUEUE_CAPACITY = 2;
+
+    private BatchPool pool;
+
+    private SymbolAggregator aggregator(OverflowPolicy policy, long blockTimeoutMillis) {
+        pool = new BatchPool(16, 8);
+        return new SymbolAggregator("OVER", new InHeapRingBuffer(1_000), pool, SymbolOptions.builder()
+                .queueCapacity(QUEUE_CAPACITY)
+                .overflowPolicy(policy)
+                .blockTimeoutNanos(TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis))
+                .build());
+    }
+
+    @Test
+    void testRejectReportsQueueDepthAndReleasesSlabs() {
+        SymbolAggregator aggregator = aggregator(OverflowPolicy.REJECT, 0);
+        aggregator.enqueueBatch(new double[]{1});
+        aggregator.enqueueBatch(new double[]{2});
+
+        BatchRejectedException e = assertThrows(BatchRejectedException.class,
+                () -> aggregator.enqueueBatch(new double[]{3}));
+        assertEquals("OVER", e.getSymbol());
+        assertEquals(2, e.getQueueDepth());
+        assertEquals(2, pool.inUse());
+    }
+
+    @Test
+    void testBlockWaitsForTheWorker() {
+        SymbolAggregator aggregator = aggregator(OverflowPolicy.BLOCK, 10_000);
+        aggregator.enqueueBatch(new double[]{1});
+        aggregator.enqueueBatch(new double[]{2});
+
+        CompletableFuture<Void> worker = CompletableFuture.runAsync(() -> {
+            sleep(20);
+            aggregator.runOneIteration();
+        });
+        aggregator.enqueueBatch(new double[]{3});
+        worker.join();
+        aggregator.runOneIteration();
+
+        assertEquals(3, aggregator.getStats(1).getCount());
+        assertEquals(3, aggregator.getStats(1).getLast());
+    }
+
+    @Test
+    void testBlockRejectsAfterTimeout() {
+        SymbolAggregator aggregator = aggregator(OverflowPolicy.BLOCK, 10);
+        aggregator.enqueueBatch(new double[]{1});
+        aggregator.enqueueBatch(new double[]{2});
+
+        assertThrows(BatchRejectedException.class, () -> aggregator.enqueueBatch(new double[]{3}));
+        assertEquals(2, pool.inUse());
+    }
+
+    @Test
+    void testCoalescePacksOverflowIntoOneBatchInOrder() {
+        SymbolAggregator aggregator = aggregator(OverflowPolicy.COALESCE, 0);
+        double next = 1;
+        for (int batch = 0; batch < 5; batch++) {
+            aggregator.enqueueBatch(new double[]{next++, next++, next++});
+        }
+
+        // two queued batches plus one staged batch holding 9 values in two slabs
+        assertEquals(3, aggregator.queueDepth());
+        assertEquals(4, pool.inUse());
+
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getStats(1);
+        assertEquals(10, stats.getCount());
+        assertEquals(6, stats.getMin());
+        assertEquals(15, stats.getMax());
+        assertEquals(15, stats.getLast());
+        assertEquals(0, aggregator.queueDepth());
+        assertEquals(0, pool.inUse());
+    }
+
+    @Test
+    void testDropOldestCountsWhatWasDropped() {
+        SymbolAggregator aggregator = aggregator(OverflowPolicy.DROP_OLDEST, 0);
+        aggregator.enqueueBatch(new double[]{1, 1});
+        aggregator.enqueueBatch(new double[]{2});
+        aggregator.enqueueBatch(new double[]{3});
+        aggregator.enqueueBatch(new double[]{4});
+
+        assertEquals(2, aggregator.droppedBatches());
+        assertEquals(3, aggregator.droppedValues());
+
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getStats(1);
+        assertEquals(2, stats.getCount());
+        assertEquals(3.5, stats.getAvg(), 1e-9);
+        assertEquals(0, pool.inUse());
+    }
+
+    @Test
+    void testFromConfig() {
+        assertEquals(OverflowPolicy.DROP_OLDEST, OverflowPolicy.fromConfig(" drop-oldest"));
+        assertEquals(OverflowPolicy.BLOCK, OverflowPolicy.fromConfig("block"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuantileSketchesTest {
+
+    private static final int CAPACITY = 25_000;
+
+    @Test
+    void testKeysPreserveOrderWithinTheRelativeAccuracy() {
+        int previous = Integer.MIN_VALUE;
+        for (int i = -8_000; i <= 8_000; i++) {
+            // from -1e6 to 1e6 by steps of 0.5%, through 0
+            double value = i == 0 ? 0 : Math.signum(i) * 1e6 * Math.pow(1.005, Math.abs(i) - 8_000);
+            int key = QuantileSketches.key(value);
+            assertTrue(key >= previous, "key of " + value);
+            previous = key;
+            double reported = QuantileSketches.valueOf(key, 0);
+            if (Math.abs(value) >= QuantileSketches.MIN_MAGNITUDE) {
+                assertEquals(value, reported, QuantileSketches.RELATIVE_ACCURACY * Math.abs(value), "value " + value);
+            } else {
+                assertEquals(0, reported);
+            }
+        }
+        assertEquals(0, QuantileSketches.key(0));
+        assertEquals(-QuantileSketches.key(123.45), QuantileSketches.key(-123.45));
+    }
+
+    @Test
+    void testQueryMatchesSortedWindowAcrossRingWrapAround() {
+        InHeapRingBuffer ringBuffer = new InHeapRingBuffer(CAPACITY);
+        QuantileSketches sketches = new QuantileSketches(ringBuffer);
+        Random random = new Random(42);
+
+        double[] history = new double[120_000];
+        for (int i = 0; i < history.length; i++) {
+            history[i] = 100 + 0.5 * random.nextGaussian();
+            ringBuffer.set(i, history[i]);
+            sketches.add(i, history[i]);
+
+            if (i % 7_919 == 0 || i == history.length - 1) {
+                for (long window : new long[]{1, 10, 99, 100, 101, 1_000, 12_345, CAPACITY}) {
+                    long start = Math.max(0, i - window + 1);
+                    sketches.query(start, i);
+                    assertEquals(0, sketches.scale(), "[" + start + ", " + i + "]");
+                    assertMatches(history, start, i, sketches);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWideBlocksAreCoarsenedWithinTheirBound() {
+        InHeapRingBuffer ringBuffer = new InHeapRingBuffer(CAPACITY);
+        QuantileSketches sketches = new QuantileSketches(ringBuffer);
+        Random random = new Random(7);
+
+        double[] history = new double[60_000];
+        for (int i = 0; i < history.length; i++) {
+            // several orders of magnitude, both signs
+            history[i] = (random.nextBoolean() ? 1 : -1) * Math.exp(random.nextDouble() * 12);
+            ringBuffer.set(i, history[i]);
+            sketches.add(i, history[i]);
+        }
+        long end = history.length - 1;
+        for (long window : new long[]{10, 1_000, CAPACITY}) {
+            sketches.query(end - window + 1, end);
+            assertMatches(history, end - window + 1, end, sketches);
+        }
+        assertTrue(sketches.scale() > 0);
+    }
+
+    @Test
+    void testEmptyRange() {
+        QuantileSketches sketches = new QuantileSketches(new InHeapRingBuffer(1_000));
+        sketches.query(0, -1);
+        assertTrue(Double.isNaN(sketches.quantile(0)));
+    }
+
+    @Test
+    void testAggregatorPublishesQuantilesInPriceUnits() {
+        SymbolAggregator aggregator = new SymbolAggregator("XYZ", new InHeapRingBuffer(1_000),
+                new BatchPool(16, 1_024), SymbolOptions.builder().tickSize(TickSize.parse("0.01")).build());
+        double[] values = new double[1_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (10_000 + i) / 100.0;
+        }
+        aggregator.enqueueBatch(values);
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getStats(3);
+        assertEquals(104.99, stats.getP50(), 104.99 * QuantileSketches.RELATIVE_ACCURACY);
+        assertEquals(109.49, stats.getP95(), 109.49 * QuantileSketches.RELATIVE_ACCURACY);
+        assertEquals(109.89, stats.getP99(), 109.89 * QuantileSketches.RELATIVE_ACCURACY);
+        assertTrue(stats.getP99() <= stats.getMax());
+
+        SymbolAggregator without = new SymbolAggregator("XYZ", new InHeapRingBuffer(1_000),
+                new BatchPool(16, 1_024), SymbolOptions.builder().quantiles(false).build());
+        without.enqueueBatch(values);
+        without.runOneIteration();
+        assertEquals(1_000, without.getStats(3).getCount());
+        assertTrue(Double.isNaN(without.getStats(3).getP50()));
+    }
+
+    private static void assertMatches(double[] history, long start, long end, QuantileSketches sketches) {
+        double[] sorted = Arrays.copyOfRange(history, (int) start, (int) end + 1);
+        Arrays.sort(sorted);
+        double bound = QuantileSketches.relativeError(sketches.scale());
+        for (int q = 0; q < QuantileSketches.QUANTILES.length; q++) {
+            double expected = sorted[(int) (QuantileSketches.QUANTILES[q] * (sorted.length - 1))];
+            assertEquals(expected, sketches.quantile(q), bound * Math.abs(expected) + 1e-12,
+                    "q=" + QuantileSketches.QUANTILES[q] + " of [" + start + ", " + end + "]");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceWatermarkTest {
+
+    @Test
+    void testSequencesCountAcceptedValues() throws InterruptedException {
+        SymbolAggregator aggregator = new SymbolAggregator("SEQ", new InHeapRingBuffer(1_000));
+        assertEquals(3, aggregator.enqueueBatch(new double[]{1, 2, 3}));
+        assertEquals(5, aggregator.enqueueBatch(new double[]{4, 5}));
+        assertEquals(0, aggregator.processedSequence());
+
+        aggregator.runOneIteration();
+        assertEquals(5, aggregator.processedSequence());
+        assertEquals(aggregator.valuesProcessed(), aggregator.processedSequence());
+        assertTrue(aggregator.awaitSequence(5, 0));
+        assertFalse(aggregator.awaitSequence(6, TimeUnit.MILLISECONDS.toNanos(10)));
+    }
+
+    @Test
+    void testWaiterIsWokenByThePublicationThatCoversIt() throws Exception {
+        SymbolAggregator aggregator = new SymbolAggregator("SEQ", new InHeapRingBuffer(1_000));
+        long first = aggregator.enqueueBatch(new double[]{1, 2});
+        long second = aggregator.enqueueBatch(new double[]{3});
+
+        CompletableFuture<Long> reader = CompletableFuture.supplyAsync(() -> {
+            try {
+                assertTrue(aggregator.awaitSequence(second, TimeUnit.SECONDS.toNanos(10)));
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            return aggregator.getStats(1).getCount();
+        });
+        Thread.sleep(50);
+        assertFalse(reader.isDone());
+
+        long start = System.nanoTime();
+        aggregator.runOneIteration();
+        assertEquals(3, reader.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(first < second);
+    }
+
+    @Test
+    void testDroppedBatchesAreCoveredByLaterOnes() throws InterruptedException {
+        SymbolAggregator aggregator = new SymbolAggregator("DROP", new InHeapRingBuffer(1_000),
+                new BatchPool(16, 8),
+                SymbolOptions.builder().queueCapacity(2).overflowPolicy(OverflowPolicy.DROP_OLDEST).build());
+        long dropped = aggregator.enqueueBatch(new double[]{1});
+        aggregator.enqueueBatch(new double[]{2});
+        long kept = aggregator.enqueueBatch(new double[]{3});
+        aggregator.runOneIteration();
+
+        assertEquals(1, aggregator.droppedBatches());
+        assertTrue(aggregator.awaitSequence(dropped, 0));
+        assertEquals(kept, aggregator.processedSequence());
+        assertEquals(2, aggregator.valuesProcessed());
+    }
+}
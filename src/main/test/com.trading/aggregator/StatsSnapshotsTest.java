@@ -0,0 +1,86 @@
+package com.trading.aggregator;
+
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsSnapshotsTest {
+
+    @Test
+    void testStartsEmpty() {
+        StatsSnapshots snapshots = new StatsSnapshots();
+        for (int k = 1; k <= StatsSnapshots.WINDOWS; k++) {
+            Stats stats = snapshots.get(k);
+            assertEquals(0, stats.getCount());
+            assertTrue(Double.isNaN(stats.getAvg()));
+        }
+    }
+
+    @Test
+    void testWindowsAreLaidOutByExponent() {
+        StatsSnapshots snapshots = new StatsSnapshots();
+        double[] fields = new double[StatsSnapshots.LENGTH];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = i;
+        }
+        long before = snapshots.sequence();
+        snapshots.publish(fields);
+        assertEquals(before + 2, snapshots.sequence());
+
+        Stats third = snapshots.get(3);
+        assertEquals(18, third.getMin());
+        assertEquals(19, third.getMax());
+        assertEquals(20, third.getLast());
+        assertEquals(21, third.getAvg());
+        assertEquals(22, third.getVariance());
+        assertEquals(23, third.getCount());
+        assertEquals(24, third.getP50());
+        assertEquals(25, third.getP95());
+        assertEquals(26, third.getP99());
+
+        double[] copy = new double[StatsSnapshots.LENGTH];
+        assertEquals(snapshots.sequence(), snapshots.copyTo(copy));
+        assertArrayEquals(fields, copy);
+        assertEquals(23, StatsSnapshots.toStats(copy, 3).getCount());
+        assertEquals(26, StatsSnapshots.toStats(copy, 3).getP99());
+    }
+
+    @Test
+    void testReadersNeverSeeTornPublications() throws InterruptedException {
+        StatsSnapshots snapshots = new StatsSnapshots();
+        snapshots.publish(new double[StatsSnapshots.LENGTH]);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            double[] fields = new double[StatsSnapshots.LENGTH];
+            for (long generation = 1; running.get(); generation++) {
+                Arrays.fill(fields, generation);
+                snapshots.publish(fields);
+            }
+        });
+        writer.start();
+        try {
+            double[] copy = new double[StatsSnapshots.LENGTH];
+            long lastSequence = 0;
+            for (int i = 0; i < 200_000; i++) {
+                long sequence = snapshots.copyTo(copy);
+                assertEquals(0, sequence & 1);
+                assertTrue(sequence >= lastSequence);
+                lastSequence = sequence;
+                for (double field : copy) {
+                    assertEquals(copy[0], field, "torn copy at sequence " + sequence);
+                }
+
+                Stats stats = snapshots.get(1 + i % StatsSnapshots.WINDOWS);
+                assertEquals(stats.getMin(), stats.getVariance());
+                assertEquals((long) stats.getMin(), stats.getCount());
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.DoubleBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SymbolAggregatorAllocationTest {
+
+    private static final int WARM_UP_VALUES = 200_000;
+    private static final int MEASURED_VALUES = 1_000_000;
+    private static final int WARM_UP_BATCHES = 30_000;
+    private static final int MEASURED_BATCHES = 10_000;
+
+    private SymbolAggregator aggregator;
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @BeforeEach
+    void setUp() {
+        // smaller than the warm-up: once the ring has wrapped, every summary chunk is allocated
+        aggregator = new SymbolAggregator("ALLOC", new InHeapRingBuffer(100_000));
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    void testProcessValueAllocatesNothingAfterWarmUp() {
+        // Saw-tooth prices crossing every block boundary of the hierarchy.
+        long index = 0;
+        for (int i = 0; i < WARM_UP_VALUES; i++, index++) {
+            aggregator.processValue(price(index));
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long overhead = measureOverhead(threadId);
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_VALUES; i++, index++) {
+            aggregator.processValue(price(index));
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        assertEquals(0, Math.max(0, allocated),
+                "processValue allocated " + allocated + " bytes over " + MEASURED_VALUES + " values");
+    }
+
+    @Test
+    void testBatchPublicationAllocatesNothingAfterWarmUp() {
+        double[] values = new double[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = price(i);
+        }
+        DoubleBuffer batch = DoubleBuffer.wrap(values);
+        // publication runs once per batch, so it needs more batches than values to reach C2
+        for (int i = 0; i < WARM_UP_BATCHES; i++) {
+            aggregator.enqueueBatch(batch.clear());
+            aggregator.runOneIteration();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long overhead = measureOverhead(threadId);
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_BATCHES; i++) {
+            aggregator.enqueueBatch(batch.clear());
+            aggregator.runOneIteration();
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+
+        // tier transitions may still allocate a few bytes once; anything per batch is at least 16
+        assertTrue(allocated < MEASURED_BATCHES,
+                "enqueue, processing and publication allocated " + allocated + " bytes over "
+                        + MEASURED_BATCHES + " batches");
+    }
+
+    private static double price(long index) {
+        return 100.0 + (index % 100) * 0.01;
+    }
+
+    private long measureOverhead(long threadId) {
+        long first = threadBean.getThreadAllocatedBytes(threadId);
+        long second = threadBean.getThreadAllocatedBytes(threadId);
+        return second - first;
+    }
+}
@@ -0,0 +1,197 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.buffer.RingBuffer;
+import com.trading.dispatcher.Dispatcher;
+import com.trading.dispatcher.WorkerMetrics;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.DoubleBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolLifecycleTest {
+
+    private static final int CAPACITY = 100_000;
+
+    @TempDir
+    Path directory;
+
+    private final List<RingBuffer> released = new ArrayList<>();
+    private AggregatorManager manager;
+
+    @AfterEach
+    void shutdown() {
+        manager.shutdownAll();
+    }
+
+    @Test
+    void testIdleSymbolIsSpilledCompactlyAndReloadedOnQuery() throws Exception {
+        SpillStore store = new SpillStore(directory);
+        manager = manager();
+        manager.enableEviction(store, 1, 0);
+        manager.push(manager.getOrCreate("AAPL"), values(250, 1.0));
+        SymbolAggregator evicted = manager.find("AAPL");
+        int id = evicted.getId();
+        Stats before = manager.getStats("AAPL", 2);
+        long sequence = evicted.processedSequence();
+
+        Thread.sleep(20);
+        assertEquals(1, manager.evictColdSymbols());
+
+        assertEquals(1, manager.spilledSymbols());
+        assertTrue(manager.aggregators().isEmpty());
+        assertEquals(1, released.size());
+        // 250 values and two block summaries, not the ring's 800 KB
+        long spillBytes = store.bytesOf("AAPL");
+        assertTrue(spillBytes > 250 * Double.BYTES && spillBytes < 4_096, "spill of " + spillBytes + " bytes");
+
+        SymbolAggregator reloaded = manager.find("AAPL");
+        assertNotSame(evicted, reloaded);
+        assertEquals(id, reloaded.getId());
+        assertSameStats(before, reloaded.getStats(2));
+        assertEquals(sequence, reloaded.processedSequence());
+        assertEquals(0, manager.spilledSymbols());
+        assertEquals(1, manager.reloads());
+        assertEquals(0, store.bytesOf("AAPL"));
+
+        // later values extend the reloaded history as if the symbol had never left
+        manager.push(reloaded, values(750, 251.0));
+        Stats window = manager.getStats("AAPL", 3);
+        assertEquals(1_000, window.getCount());
+        assertEquals(500.5, window.getAvg(), 1e-9);
+        assertEquals(1.0, window.getMin());
+    }
+
+    @Test
+    void testProducerHoldingAnEvictedAggregatorReachesTheReloadedOne() throws Exception {
+        manager = manager();
+        manager.enableEviction(new SpillStore(directory), 1, 0);
+        SymbolAggregator stale = manager.getOrCreate("MSFT");
+        long first = manager.push(stale, values(10, 1.0));
+        Thread.sleep(20);
+        assertEquals(1, manager.evictColdSymbols());
+
+        assertThrows(AggregatorRetiredException.class, () -> stale.enqueueBatch(new double[]{1}));
+        long second = manager.push(stale, DoubleBuffer.wrap(new double[]{11, 12}));
+
+        assertEquals(first + 2, second);
+        SymbolAggregator current = manager.find("MSFT");
+        assertNotSame(stale, current);
+        assertEquals(12, current.getStats(2).getCount());
+        assertEquals(12.0, current.getStats(1).getLast());
+    }
+
+    @Test
+    void testBudgetEvictsLeastRecentlyUsedFirst() throws Exception {
+        manager = manager();
+        // each ring reports CAPACITY * 8 bytes, so the budget holds two symbols
+        manager.enableEviction(new SpillStore(directory), 0, 2L * CAPACITY * Double.BYTES);
+        for (String symbol : List.of("A", "B", "C")) {
+            manager.push(manager.getOrCreate(symbol), values(5, 1.0));
+            Thread.sleep(15);
+        }
+        manager.find("A");
+
+        assertEquals(1, manager.evictColdSymbols());
+        assertNull(manager.aggregators().stream().filter(a -> a.getSymbol().equals("B")).findAny().orElse(null));
+        assertEquals(0, manager.evictColdSymbols());
+        assertEquals(5, manager.getStats("B", 1).getCount());
+    }
+
+    @Test
+    void testSymbolsInUseAreNotEvicted() throws Exception {
+        manager = manager();
+        manager.enableEviction(new SpillStore(directory), 1, 0);
+        SymbolAggregator subscribed = manager.getOrCreate("SUB");
+        subscribed.addListener(aggregator -> { });
+        SymbolAggregator queued = manager.getOrCreate("QUEUED");
+        queued.enqueueBatch(new double[]{1, 2, 3});
+        Thread.sleep(20);
+
+        assertEquals(0, manager.evictColdSymbols());
+        assertSame(subscribed, manager.find("SUB"));
+        assertSame(queued, manager.find("QUEUED"));
+    }
+
+    @Test
+    void testEvictedSymbolIsReloadedById() throws Exception {
+        manager = manager();
+        manager.enableEviction(new SpillStore(directory), 1, 0);
+        int id = manager.idOf("GOOG");
+        manager.getAndPushCalculations(id, DoubleBuffer.wrap(new double[]{4, 5}));
+        manager.idOf("AMZN");
+        Thread.sleep(20);
+        assertEquals(2, manager.evictColdSymbols());
+
+        assertEquals(4.5, manager.getStats(id, 1).getAvg());
+        assertEquals(id, manager.idOf("GOOG"));
+        assertNotEquals(id, manager.idOf("AMZN"));
+        assertThrows(IllegalArgumentException.class, () -> manager.getOrCreate(2));
+    }
+
+    private AggregatorManager manager() {
+        return new AggregatorManager(symbol -> new InHeapRingBuffer(CAPACITY) {
+            @Override
+            public long offHeapBytes() {
+                return capacity() * Double.BYTES;
+            }
+
+            @Override
+            public void release() {
+                released.add(this);
+            }
+        }, new BatchPool(64, 1_024), new InlineDispatcher(), AggregatorOptions.DEFAULT);
+    }
+
+    private static void assertSameStats(Stats expected, Stats actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getLast(), actual.getLast());
+        assertEquals(expected.getAvg(), actual.getAvg());
+        assertEquals(expected.getVariance(), actual.getVariance());
+    }
+
+    private static List<Double> values(int count, double first) {
+        List<Double> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(first + i);
+        }
+        return values;
+    }
+
+    /**
+     * Processes every submitted aggregator on the submitting thread.
+     */
+    private static final class InlineDispatcher implements Dispatcher {
+
+        @Override
+        public void submit(SymbolAggregator aggregator) {
+            if (aggregator.markInProgress()) {
+                aggregator.run();
+                aggregator.markIdle();
+            }
+        }
+
+        @Override
+        public int queueDepth() {
+            return 0;
+        }
+
+        @Override
+        public WorkerMetrics workerMetrics() {
+            return null;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.DoubleBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolRegistryTest {
+
+    @Test
+    void testIdsAreDenseAndStableAcrossGrowth() {
+        SymbolRegistry registry = new SymbolRegistry();
+        for (int i = 0; i < 1_000; i++) {
+            SymbolAggregator aggregator = registry.getOrRegister("S" + i, SymbolRegistryTest::aggregator);
+            assertEquals(i, aggregator.getId());
+        }
+        for (int i = 0; i < 1_000; i++) {
+            assertEquals("S" + i, registry.get(i).getSymbol());
+            assertSame(registry.get(i), registry.get("S" + i));
+            assertSame(registry.get(i), registry.getOrRegister("S" + i, SymbolRegistryTest::aggregator));
+        }
+        assertNull(registry.get(1_000));
+        assertNull(registry.get(-1));
+        assertNull(registry.get("S1000"));
+        assertEquals(1_000, registry.aggregators().size());
+    }
+
+    @Test
+    void testConcurrentRegistrationCreatesEachSymbolOnce() throws InterruptedException {
+        SymbolRegistry registry = new SymbolRegistry();
+        Set<String> created = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int symbols = 500;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < symbols; i++) {
+                    String symbol = "S" + i;
+                    SymbolAggregator aggregator = registry.getOrRegister(symbol, s -> {
+                        assertTrue(created.add(s), "created twice: " + s);
+                        return aggregator(s);
+                    });
+                    assertSame(aggregator, registry.get(aggregator.getId()));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(symbols, created.size());
+        for (int id = 0; id < symbols; id++) {
+            assertEquals(id, registry.get(registry.get(id).getSymbol()).getId());
+        }
+    }
+
+    @Test
+    void testManagerAddressesSymbolsById() {
+        AggregatorManager manager = new AggregatorManager(() -> new InHeapRingBuffer(1_000), 1_024);
+        try {
+            int aapl = manager.idOf("AAPL");
+            int msft = manager.idOf("MSFT");
+            assertNotEquals(aapl, msft);
+            assertEquals(aapl, manager.idOf("AAPL"));
+
+            manager.getAndPushCalculations(aapl, DoubleBuffer.wrap(new double[]{1, 2, 3}));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (manager.getStats(aapl, 1).getCount() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(3, manager.getStats("AAPL", 1).getCount());
+            assertEquals(0, manager.getStats(msft, 1).getCount());
+            assertThrows(IllegalArgumentException.class, () -> manager.getStats(2, 1));
+        } finally {
+            manager.shutdownAll();
+        }
+    }
+
+    private static SymbolAggregator aggregator(String symbol) {
+        return new SymbolAggregator(symbol, new InHeapRingBuffer(100));
+    }
+}
@@ -0,0 +1,125 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickAggregatesTest {
+
+    private static final int CAPACITY = 25_000;
+    private static final TickSize CENT = TickSize.parse("0.01");
+
+    @Test
+    void testQueryIsExactAcrossRingWrapAround() {
+        InHeapRingBuffer ringBuffer = new InHeapRingBuffer(CAPACITY);
+        TickAggregates blocks = new TickAggregates(ringBuffer, CENT);
+        Random random = new Random(42);
+
+        long[] history = new long[120_000];
+        for (int i = 0; i < history.length; i++) {
+            // the extremes push the squares past 64 bits
+            history[i] = i % 1_000 == 0 ? TickSize.MAX_TICKS * (i % 2_000 == 0 ? 1 : -1)
+                    : 1_000_000 + random.nextInt(2_000);
+            ringBuffer.set(i, history[i]);
+            blocks.add(i, history[i]);
+
+            if (i % 7_919 == 0 || i == history.length - 1) {
+                for (long window : new long[]{1, 10, 99, 100, 101, 1_000, 12_345, CAPACITY}) {
+                    long start = Math.max(0, i - window + 1);
+                    blocks.query(start, i);
+                    assertMatches(history, start, i, blocks);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testConstantWindowHasExactMeanAndZeroVariance() {
+        TickAggregates blocks = new TickAggregates(new InHeapRingBuffer(1_000_000), CENT);
+        long ticks = CENT.ticksOf(101.37);
+        for (int i = 0; i < 1_000_000; i++) {
+            blocks.add(i, ticks);
+        }
+        blocks.query(0, 999_999);
+        assertEquals(101.37, blocks.mean());
+        assertEquals(0.0, blocks.variance());
+        assertEquals(101.37, blocks.min());
+        assertEquals(101.37, blocks.max());
+    }
+
+    @Test
+    void testEmptyRange() {
+        TickAggregates blocks = new TickAggregates(new InHeapRingBuffer(1_000), CENT);
+        blocks.query(0, -1);
+        assertEquals(0, blocks.count());
+        assertTrue(Double.isNaN(blocks.min()));
+        assertTrue(Double.isNaN(blocks.variance()));
+    }
+
+    @Test
+    void testTickSizeGrid() {
+        TickSize nickel = TickSize.parse(" 0.050 ");
+        assertEquals("0.05", nickel.toString());
+        assertEquals(2027, nickel.ticksOf(101.35));
+        assertEquals(101.35, nickel.priceOf(2027L));
+        assertTrue(nickel.isOnGrid(101.35));
+        assertTrue(nickel.isOnGrid(-0.05));
+        assertFalse(nickel.isOnGrid(101.37));
+        assertFalse(nickel.isOnGrid(Double.NaN));
+        assertFalse(nickel.isOnGrid(Double.POSITIVE_INFINITY));
+        assertFalse(CENT.isOnGrid(1e300));
+        assertTrue(TickSize.parse("25").isOnGrid(1_000));
+        assertThrows(IllegalArgumentException.class, () -> TickSize.parse("0"));
+        assertThrows(IllegalArgumentException.class, () -> TickSize.parse("0.0000000001"));
+        assertThrows(IllegalArgumentException.class, () -> TickSize.parse("cent"));
+    }
+
+    @Test
+    void testAggregatorRejectsBatchesOffTheGrid() {
+        BatchPool pool = new BatchPool(16, 8);
+        SymbolAggregator aggregator = new SymbolAggregator("FX", new InHeapRingBuffer(1_000), pool,
+                SymbolOptions.builder().tickSize(CENT).build());
+        aggregator.enqueueBatch(new double[]{1.10, 1.20});
+
+        assertThrows(IllegalArgumentException.class, () -> aggregator.enqueueBatch(new double[]{1.30, 1.305}));
+        assertEquals(1, pool.inUse());
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getStats(1);
+        assertEquals(2, stats.getCount());
+        assertEquals(1.15, stats.getAvg());
+        assertEquals(1.10, stats.getMin());
+        assertEquals(1.20, stats.getLast());
+        assertEquals(0.0025, stats.getVariance(), 1e-18);
+    }
+
+    private static void assertMatches(long[] history, long start, long end, TickAggregates blocks) {
+        BigInteger sum = BigInteger.ZERO;
+        BigInteger sumSq = BigInteger.ZERO;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long i = start; i <= end; i++) {
+            BigInteger v = BigInteger.valueOf(history[(int) i]);
+            sum = sum.add(v);
+            sumSq = sumSq.add(v.multiply(v));
+            min = Math.min(min, history[(int) i]);
+            max = Math.max(max, history[(int) i]);
+        }
+        long n = end - start + 1;
+        BigInteger scaledVariance = sumSq.multiply(BigInteger.valueOf(n)).subtract(sum.multiply(sum));
+        double variance = scaledVariance.doubleValue() / ((double) n * n);
+
+        String range = "[" + start + ", " + end + "]";
+        assertEquals(n, blocks.count(), range);
+        assertEquals(CENT.priceOf(sum.doubleValue() / n), blocks.mean(), range);
+        // converting the 128-bit difference to a double rounds differently from BigInteger
+        assertEquals(CENT.squaredPriceOf(variance), blocks.variance(), 4 * Math.ulp(blocks.variance()), range);
+        assertEquals(CENT.priceOf(min), blocks.min(), range);
+        assertEquals(CENT.priceOf(max), blocks.max(), range);
+    }
+}
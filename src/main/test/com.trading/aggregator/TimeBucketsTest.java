@@ -0,0 +1,131 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Batch;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void testWindowCoversItsDurationToWithinOneBucket() {
+        // a 1-minute window of 60 one-second buckets
+        TimeBuckets buckets = new TimeBuckets(TimeWindows.parse("1m", 60));
+        for (int s = 0; s < 120; s++) {
+            buckets.add(s * SECOND, batch(s, s));
+        }
+        double[] fields = new double[StatsSnapshots.FIELDS];
+
+        buckets.query(119 * SECOND + SECOND / 2, MINUTE, fields);
+        Stats stats = StatsSnapshots.toStats(fields, 1);
+        assertEquals(120, stats.getCount());
+        assertEquals(60, stats.getMin());
+        assertEquals(119, stats.getMax());
+        assertEquals(119, stats.getLast());
+        assertEquals(89.5, stats.getAvg());
+
+        buckets.query(119 * SECOND, 10 * SECOND, fields);
+        assertEquals(20, StatsSnapshots.toStats(fields, 1).getCount());
+    }
+
+    @Test
+    void testWindowEmptiesWithoutBatches() {
+        TimeBuckets buckets = new TimeBuckets(TimeWindows.parse("1m", 60));
+        buckets.add(0, batch(1.0, 2.0));
+        double[] fields = new double[StatsSnapshots.FIELDS];
+
+        buckets.query(59 * SECOND, MINUTE, fields);
+        assertEquals(2, StatsSnapshots.toStats(fields, 1).getCount());
+        buckets.query(60 * SECOND, MINUTE, fields);
+        Stats stats = StatsSnapshots.toStats(fields, 1);
+        assertEquals(0, stats.getCount());
+        assertTrue(Double.isNaN(stats.getMin()));
+    }
+
+    @Test
+    void testDurationSelectsShortestWindowThatCoversIt() {
+        TimeWindows windows = TimeWindows.parse("1h, 1s,1m", 10);
+        assertEquals(SECOND, windows.durationNanos(0));
+        assertEquals(0, windows.windowFor(500 * 1_000_000L));
+        assertEquals(1, windows.windowFor(SECOND + 1));
+        assertEquals(2, windows.windowFor(TimeUnit.HOURS.toNanos(1)));
+        assertEquals(-1, windows.windowFor(TimeUnit.HOURS.toNanos(2)));
+
+        TimeBuckets buckets = new TimeBuckets(windows);
+        buckets.add(0, batch(1.0));
+        buckets.add(30 * SECOND, batch(2.0));
+        double[] fields = new double[StatsSnapshots.FIELDS];
+        buckets.query(30 * SECOND, SECOND, fields);
+        assertEquals(1, StatsSnapshots.toStats(fields, 1).getCount());
+        buckets.query(30 * SECOND, MINUTE, fields);
+        assertEquals(2, StatsSnapshots.toStats(fields, 1).getCount());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> buckets.query(0, TimeUnit.HOURS.toNanos(2), fields));
+        assertThrows(IllegalArgumentException.class, () -> buckets.query(0, 0, fields));
+    }
+
+    @Test
+    void testParseRejectsInvalidDurations() {
+        assertEquals(500_000_000L, TimeWindows.parseDuration("500ms"));
+        assertEquals(5 * MINUTE, TimeWindows.parseDuration(" 5M "));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.parseDuration("1d"));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.parseDuration("-1s"));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.parse("1s,", 60));
+        assertThrows(IllegalArgumentException.class, () -> TimeWindows.parse("10ms", 0));
+    }
+
+    @Test
+    void testBucketsSurviveASpillRoundTrip() throws IOException {
+        TimeWindows windows = TimeWindows.parse("1s,1m", 60);
+        TimeBuckets buckets = new TimeBuckets(windows);
+        buckets.add(5 * SECOND, batch(3.0, 4.0));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        buckets.writeTo(Channels.newChannel(bytes));
+
+        TimeBuckets restored = new TimeBuckets(windows);
+        restored.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        // a late batch is counted at the time of the last one
+        restored.add(0, batch(5.0));
+        double[] fields = new double[StatsSnapshots.FIELDS];
+        restored.query(5 * SECOND, SECOND, fields);
+        Stats stats = StatsSnapshots.toStats(fields, 1);
+        assertEquals(3, stats.getCount());
+        assertEquals(5.0, stats.getLast());
+    }
+
+    @Test
+    void testAggregatorCountsProcessedBatches() {
+        SymbolAggregator aggregator = new SymbolAggregator("AAPL", new InHeapRingBuffer(1_000),
+                new BatchPool(16, 8), SymbolOptions.builder().timeWindows(TimeWindows.parse("1h", 60)).build());
+        aggregator.enqueueBatch(new double[]{1.0, 2.0, 3.0});
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getTimeStats(MINUTE);
+        assertEquals(3, stats.getCount());
+        assertEquals(2.0, stats.getAvg());
+        assertThrows(IllegalArgumentException.class, () -> aggregator.getTimeStats(2 * MINUTE * 60));
+
+        SymbolAggregator untimed = new SymbolAggregator("MSFT", new InHeapRingBuffer(1_000), new BatchPool(16, 8));
+        assertThrows(IllegalArgumentException.class, () -> untimed.getTimeStats(MINUTE));
+    }
+
+    private static Batch batch(double... values) {
+        Batch batch = new Batch(Math.max(1, values.length));
+        for (double value : values) {
+            batch.add(value);
+        }
+        return batch;
+    }
+}
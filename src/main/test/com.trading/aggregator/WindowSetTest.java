@@ -0,0 +1,63 @@
+package com.trading.aggregator;
+
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowSetTest {
+
+    @Test
+    void testParseRangesAndLists() {
+        WindowSet windows = WindowSet.parse(" 1-3, 5 ");
+        assertTrue(windows.contains(1));
+        assertTrue(windows.contains(3));
+        assertFalse(windows.contains(4));
+        assertTrue(windows.contains(5));
+        assertFalse(windows.contains(9));
+        assertEquals(5, windows.largest());
+        assertEquals(100_000, windows.capacity());
+        assertEquals("1,2,3,5", windows.toString());
+        assertEquals(WindowSet.of(1, 2, 3, 5), windows);
+
+        assertEquals(WindowSet.ALL, WindowSet.parse("1-8"));
+        assertEquals(100_000_000, WindowSet.ALL.capacity());
+        assertEquals(10, WindowSet.parse("1").capacity());
+    }
+
+    @Test
+    void testParseRejectsInvalidSets() {
+        assertThrows(IllegalArgumentException.class, () -> WindowSet.parse("0-3"));
+        assertThrows(IllegalArgumentException.class, () -> WindowSet.parse("9"));
+        assertThrows(IllegalArgumentException.class, () -> WindowSet.parse("3-1"));
+        assertThrows(IllegalArgumentException.class, () -> WindowSet.parse("1,"));
+        assertThrows(IllegalArgumentException.class, () -> WindowSet.parse("illiquid"));
+        assertThrows(IllegalArgumentException.class, WindowSet::of);
+    }
+
+    @Test
+    void testAggregatorOnlyPublishesItsWindows() {
+        WindowSet windows = WindowSet.parse("1-3");
+        SymbolAggregator aggregator = new SymbolAggregator("XYZ", new InHeapRingBuffer((int) windows.capacity()),
+                new BatchPool(16, 1_024), SymbolOptions.builder().windowSet(windows).build());
+        double[] values = new double[2_500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        aggregator.enqueueBatch(values);
+        aggregator.runOneIteration();
+
+        Stats stats = aggregator.getStats(3);
+        assertEquals(1_000, stats.getCount());
+        assertEquals(1_500, stats.getMin());
+        assertEquals(1_999.5, stats.getAvg());
+        assertEquals(100, aggregator.getStats(2).getCount());
+        assertThrows(IllegalArgumentException.class, () -> aggregator.getStats(4));
+
+        double[] fields = new double[StatsSnapshots.LENGTH];
+        aggregator.snapshots().copyTo(fields);
+        assertEquals(0, StatsSnapshots.toStats(fields, 4).getCount());
+        assertTrue(Double.isNaN(StatsSnapshots.toStats(fields, 8).getAvg()));
+    }
+}
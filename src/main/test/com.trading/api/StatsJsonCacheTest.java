@@ -0,0 +1,101 @@
+package com.trading.api;
+
+import com.trading.aggregator.AggregatorManager;
+import com.trading.aggregator.StatsSnapshots;
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.json.bind.JsonbBuilder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsJsonCacheTest {
+
+    private AggregatorManager manager;
+    private StatsJsonCache cache;
+
+    @BeforeEach
+    void setUp() {
+        manager = new AggregatorManager(() -> new InHeapRingBuffer(1_000), 1_024);
+        cache = new StatsJsonCache(manager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdownAll();
+    }
+
+    @Test
+    void testWindowJsonMatchesJsonb() throws Exception {
+        double[] fields = new double[StatsSnapshots.LENGTH];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = i * 1.25 + 0.1;
+        }
+        for (int k = 1; k <= StatsSnapshots.WINDOWS; k++) {
+            Stats stats = StatsSnapshots.toStats(fields, k);
+            assertEquals(JsonbBuilder.create().toJson(stats), json(StatsJsonCache.windowJson(fields, k)));
+        }
+    }
+
+    @Test
+    void testUnknownSymbolsAreNotRegistered() {
+        assertEquals("{\"NOPE\":null}", json(cache.bulk(List.of("NOPE"), new int[]{1})));
+        assertEquals("{\"avg\":null,\"count\":0,\"last\":null,\"max\":null,\"min\":null,"
+                        + "\"p50\":null,\"p95\":null,\"p99\":null,\"variance\":null}",
+                json(cache.window(manager.find("NOPE"), 3)));
+        assertNull(manager.find("NOPE"));
+        assertEquals(0, manager.getStats("NOPE", 1).getCount());
+        assertNull(manager.find("NOPE"));
+    }
+
+    @Test
+    void testBulkServesRequestedWindowsOfEverySymbol() {
+        push("AAPL", 1, 2, 3);
+        push("MS\"FT", 10);
+
+        String json = json(cache.bulk(List.of("AAPL", "MS\"FT", "NOPE"), new int[]{1, 8}));
+        Stats stats = manager.getStats("AAPL", 1);
+        String aapl = "{\"avg\":2.0,\"count\":3,\"last\":3.0,\"max\":3.0,\"min\":1.0,\"p50\":" + stats.getP50()
+                + ",\"p95\":" + stats.getP95() + ",\"p99\":" + stats.getP99() + ",\"variance\":" + stats.getVariance() + "}";
+        String msft = "{\"avg\":10.0,\"count\":1,\"last\":10.0,\"max\":10.0,\"min\":10.0,"
+                + "\"p50\":10.0,\"p95\":10.0,\"p99\":10.0,\"variance\":0.0}";
+        assertEquals("{\"AAPL\":{\"1\":" + aapl + ",\"8\":" + aapl + "},"
+                + "\"MS\\\"FT\":{\"1\":" + msft + ",\"8\":" + msft + "},"
+                + "\"NOPE\":null}", json);
+    }
+
+    @Test
+    void testSerializedWindowsAreReusedUntilTheSnapshotChanges() {
+        SymbolAggregator aggregator = push("AAPL", 1, 2, 3);
+        byte[] first = cache.window(aggregator, 2);
+        assertSame(first, cache.window(aggregator, 2));
+
+        push("AAPL", 4);
+        byte[] second = cache.window(aggregator, 2);
+        assertNotSame(first, second);
+        assertTrue(json(second).contains("\"count\":4"));
+    }
+
+    private SymbolAggregator push(String symbol, double... values) {
+        SymbolAggregator aggregator = manager.getOrCreate(symbol);
+        long expected = aggregator.valuesProcessed() + values.length;
+        aggregator.enqueueBatch(values);
+        manager.dispatcher().submit(aggregator);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (aggregator.getStats(8).getCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(expected, aggregator.getStats(8).getCount());
+        return aggregator;
+    }
+
+    private static String json(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.trading.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChronicleRingBufferTest {
+
+    @Test
+    void testMemoryIsAllocatedAsSlotsAreWritten() {
+        ChronicleRingBuffer ring = new ChronicleRingBuffer(100_000_000);
+        try {
+            assertEquals(0, ring.offHeapBytes());
+            for (long i = 0; i < 1_000; i++) {
+                ring.set(i, i * 0.5);
+            }
+            assertEquals((long) ChronicleRingBuffer.CHUNK_SLOTS * Double.BYTES, ring.offHeapBytes());
+            assertEquals(499.5, ring.get(999));
+            assertEquals(0, ring.get(50_000_000));
+
+            ring.set(ChronicleRingBuffer.CHUNK_SLOTS, 1.0);
+            assertEquals(2L * ChronicleRingBuffer.CHUNK_SLOTS * Double.BYTES, ring.offHeapBytes());
+        } finally {
+            ring.release();
+        }
+        assertEquals(0, ring.offHeapBytes());
+    }
+
+    @Test
+    void testLastChunkIsCutToTheCapacity() {
+        ChronicleRingBuffer ring = new ChronicleRingBuffer(ChronicleRingBuffer.CHUNK_SLOTS + 10);
+        try {
+            for (long i = 0; i < ChronicleRingBuffer.CHUNK_SLOTS + 20; i++) {
+                ring.set(i, i);
+            }
+            assertEquals((ChronicleRingBuffer.CHUNK_SLOTS + 10L) * Double.BYTES, ring.offHeapBytes());
+            // wrapped onto the first slots
+            assertEquals(ChronicleRingBuffer.CHUNK_SLOTS + 19, ring.get(9));
+            assertEquals(ChronicleRingBuffer.CHUNK_SLOTS + 9, ring.get(ChronicleRingBuffer.CHUNK_SLOTS + 9));
+        } finally {
+            ring.release();
+        }
+    }
+}
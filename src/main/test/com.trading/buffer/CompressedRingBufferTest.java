@@ -0,0 +1,116 @@
+package com.trading.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedRingBufferTest {
+
+    @Test
+    void testDecimalPricesAreReadBackExactlyAcrossWraps() {
+        int capacity = 50_000;
+        CompressedRingBuffer compressed = new CompressedRingBuffer(capacity);
+        InHeapRingBuffer raw = new InHeapRingBuffer(capacity);
+        Random random = new Random(7);
+        long ticks = 10_000;
+        for (long i = 0; i < 3L * capacity + 123; i++) {
+            ticks += random.nextInt(7) - 3;
+            double price = ticks / 100.0;
+            compressed.set(i, price);
+            raw.set(i, price);
+
+            if (i % 997 == 0) {
+                // the trailing edge of the largest window, plus a random point inside it
+                long oldest = Math.max(0, i - capacity + 1);
+                assertEquals(raw.get(oldest), compressed.get(oldest), "index " + oldest);
+                long inside = oldest + (long) (random.nextDouble() * (i - oldest));
+                assertEquals(raw.get(inside), compressed.get(inside), "index " + inside);
+            }
+        }
+    }
+
+    @Test
+    void testArbitraryDoublesFallBackToXorEncoding() {
+        int capacity = 10 * CompressedRingBuffer.BLOCK;
+        CompressedRingBuffer buffer = new CompressedRingBuffer(capacity);
+        Random random = new Random(11);
+        double[] values = new double[3 * capacity];
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 5) {
+                case 0:
+                    values[i] = random.nextDouble() * 1e6;
+                    break;
+                case 1:
+                    values[i] = values[i - 1];
+                    break;
+                case 2:
+                    values[i] = i % 1_000 == 2 ? Double.NaN : -0.0;
+                    break;
+                default:
+                    values[i] = Math.PI * i;
+                    break;
+            }
+            buffer.set(i, values[i]);
+        }
+        // walk the retained history the way windows' trailing edges do, front to back
+        for (int i = values.length - capacity; i < values.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(buffer.get(i)), "index " + i);
+        }
+    }
+
+    @Test
+    void testTickPricesTakeAQuarterOfTheRawFootprint() {
+        int capacity = 1_000_000;
+        CompressedRingBuffer buffer = new CompressedRingBuffer(capacity);
+        Random random = new Random(3);
+        long ticks = 1_500_000;
+        for (long i = 0; i < capacity + CompressedRingBuffer.BLOCK; i++) {
+            ticks += random.nextInt(21) - 10;
+            buffer.set(i, ticks / 10_000.0);
+        }
+        long rawBytes = (long) capacity * Double.BYTES;
+        assertTrue(buffer.footprintBytes() * 4 <= rawBytes,
+                "footprint " + buffer.footprintBytes() + " bytes vs " + rawBytes + " raw");
+    }
+
+    @Test
+    void testStreamRestoresTheRingAndResumesBehindIt() throws IOException {
+        int capacity = 5 * CompressedRingBuffer.BLOCK + 100;
+        CompressedRingBuffer buffer = new CompressedRingBuffer(capacity);
+        Random random = new Random(5);
+        double[] values = new double[4 * capacity];
+        long ticks = 10_000;
+        for (int i = 0; i < values.length; i++) {
+            ticks += random.nextInt(5) - 2;
+            // every third block needs the XOR fallback
+            values[i] = (i >> CompressedRingBuffer.BLOCK_SHIFT) % 3 == 0 ? ticks * Math.E : ticks / 100.0;
+        }
+        // a checkpoint captures index 'captured', and the worker has gone on by the time the ring is copied
+        int captured = 3 * capacity + 17;
+        int copied = captured + 2 * CompressedRingBuffer.BLOCK + 300;
+        for (int i = 0; i < copied; i++) {
+            buffer.set(i, values[i]);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        buffer.writeTo(Channels.newChannel(bytes));
+
+        CompressedRingBuffer restored = new CompressedRingBuffer(capacity);
+        restored.readFrom(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        for (int i = copied - capacity; i < captured; i++) {
+            assertEquals(values[i], restored.get(i), "index " + i);
+        }
+        for (int i = captured; i < values.length; i++) {
+            restored.set(i, -values[i]);
+            values[i] = -values[i];
+        }
+        for (int i = values.length - capacity; i < values.length; i++) {
+            assertEquals(values[i], restored.get(i), "index " + i);
+        }
+    }
+}
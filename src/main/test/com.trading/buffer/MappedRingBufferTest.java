@@ -0,0 +1,51 @@
+package com.trading.buffer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedRingBufferTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWrapAround() {
+        MappedRingBuffer buffer = new MappedRingBuffer(directory.resolve("wrap.ring"), 100);
+        for (long i = 0; i < 250; i++) {
+            buffer.set(i, i * 0.5);
+        }
+        assertEquals(100, buffer.capacity());
+        assertEquals(249 * 0.5, buffer.get(249));
+        assertEquals(150 * 0.5, buffer.get(150));
+        // slot of index 149 has been overwritten by index 249
+        assertEquals(249 * 0.5, buffer.get(149));
+        buffer.release();
+    }
+
+    @Test
+    void testOneFilePerSymbolDeletedOnRelease() {
+        Function<String, RingBuffer> factory = MappedRingBuffer.perSymbol(directory.resolve("rings"), 1_000);
+        RingBuffer aapl = factory.apply("AAPL");
+        RingBuffer brk = factory.apply("BRK/B");
+        aapl.set(0, 1.0);
+        brk.set(0, 2.0);
+
+        Path aaplFile = directory.resolve("rings").resolve(MappedRingBuffer.fileName("AAPL"));
+        Path brkFile = directory.resolve("rings").resolve(MappedRingBuffer.fileName("BRK/B"));
+        assertTrue(Files.exists(aaplFile));
+        assertTrue(Files.exists(brkFile));
+        assertEquals(1.0, aapl.get(0));
+        assertEquals(2.0, brk.get(0));
+
+        aapl.release();
+        brk.release();
+        assertFalse(Files.exists(aaplFile));
+        assertFalse(Files.exists(brkFile));
+    }
+}
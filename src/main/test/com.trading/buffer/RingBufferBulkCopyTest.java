@@ -0,0 +1,91 @@
+package com.trading.buffer;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferBulkCopyTest {
+
+    // spans several scratch chunks and ends mid-chunk
+    private static final int CAPACITY = 300_001;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "chronicle", "mapped"})
+    void testWriteToAndReadFromRoundTrip(String type) throws Exception {
+        RingBuffer source = create(type, "source");
+        RingBuffer target = create(type, "target");
+        try {
+            for (long i = 0; i < CAPACITY + 1_000; i++) {
+                source.set(i, i * 0.25);
+            }
+
+            Path file = directory.resolve("copy.bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                source.writeTo(channel);
+                assertEquals((long) CAPACITY * Double.BYTES, channel.size());
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                target.readFrom(channel);
+            }
+
+            for (long i = 1_000; i < CAPACITY + 1_000; i++) {
+                assertEquals(source.get(i), target.get(i), "index " + i);
+            }
+        } finally {
+            source.release();
+            target.release();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "chronicle", "mapped"})
+    void testPrefixCopyOnlyTouchesTheFirstSlots(String type) throws Exception {
+        RingBuffer source = create(type, "source");
+        RingBuffer target = create(type, "target");
+        try {
+            long slots = CAPACITY / 3;
+            for (long i = 0; i < CAPACITY; i++) {
+                source.set(i, i + 0.5);
+                target.set(i, -1);
+            }
+
+            Path file = directory.resolve("prefix.bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                source.writeTo(channel, slots);
+                assertEquals(slots * Double.BYTES, channel.size());
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                target.readFrom(channel, slots);
+            }
+
+            assertEquals(0.5, target.get(0));
+            assertEquals(slots - 0.5, target.get(slots - 1));
+            assertEquals(-1, target.get(slots));
+        } finally {
+            source.release();
+            target.release();
+        }
+    }
+
+    private RingBuffer create(String type, String name) {
+        switch (type) {
+            case "heap":
+                return new InHeapRingBuffer(CAPACITY);
+            case "chronicle":
+                return new ChronicleRingBuffer(CAPACITY);
+            case "mapped":
+                return new MappedRingBuffer(directory.resolve(name + ".ring"), CAPACITY);
+            default:
+                throw new IllegalArgumentException(type);
+        }
+    }
+}
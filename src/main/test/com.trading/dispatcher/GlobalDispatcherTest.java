@@ -0,0 +1,43 @@
+package com.trading.dispatcher;
+
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GlobalDispatcherTest {
+
+    @ParameterizedTest
+    @EnumSource(WorkerIdleMode.class)
+    void testWorkersProcessSubmittedBatches(WorkerIdleMode idleMode) throws InterruptedException {
+        GlobalDispatcher dispatcher = new GlobalDispatcher(1_024, 2, idleMode);
+        SymbolAggregator aggregator = new SymbolAggregator("IDLE", new InHeapRingBuffer(1_000));
+        try {
+            for (int i = 0; i < 10; i++) {
+                aggregator.enqueueBatch(new double[]{1, 2, 3, 4, 5});
+                dispatcher.submit(aggregator);
+                // let workers go idle between submits so wake-ups are exercised
+                Thread.sleep(5);
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (aggregator.getStats(2).getCount() < 50 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(50, aggregator.getStats(2).getCount());
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(WorkerIdleMode.class)
+    void testFromConfig(WorkerIdleMode idleMode) {
+        String configValue = idleMode.name().toLowerCase().replace('_', '-');
+        assertEquals(idleMode, WorkerIdleMode.fromConfig(configValue));
+    }
+}
@@ -0,0 +1,118 @@
+package com.trading.dispatcher;
+
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.buffer.RingBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedDispatcherTest {
+
+    private static final int SYMBOLS = 50;
+    private static final int PRODUCERS = 4;
+    private static final int BATCHES_PER_PRODUCER = 25;
+
+    @Test
+    void testShardOfIsStableAndInRange() {
+        for (int i = 0; i < 1_000; i++) {
+            String symbol = "SYM" + i;
+            int shard = ShardedDispatcher.shardOf(symbol, 7);
+            assertTrue(shard >= 0 && shard < 7);
+            assertEquals(shard, ShardedDispatcher.shardOf(symbol, 7));
+        }
+    }
+
+    @Test
+    void testShardedDispatcherProcessesEveryBatchOnce() throws InterruptedException {
+        assertEveryBatchProcessedByOneThreadAtATime(
+                () -> new ShardedDispatcher(3, 1_024, WorkerIdleMode.BACKOFF, new int[0]));
+    }
+
+    @Test
+    void testGlobalDispatcherProcessesEveryBatchOnce() throws InterruptedException {
+        assertEveryBatchProcessedByOneThreadAtATime(
+                () -> new GlobalDispatcher(1_024, 3, WorkerIdleMode.BACKOFF));
+    }
+
+    private void assertEveryBatchProcessedByOneThreadAtATime(Supplier<Dispatcher> dispatcherSupplier)
+            throws InterruptedException {
+        Dispatcher dispatcher = dispatcherSupplier.get();
+        AtomicBoolean concurrentAccess = new AtomicBoolean();
+        List<SymbolAggregator> aggregators = new ArrayList<>();
+        for (int i = 0; i < SYMBOLS; i++) {
+            aggregators.add(new SymbolAggregator("SYM" + i, new OwnershipCheckingRingBuffer(10_000, concurrentAccess)));
+        }
+
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            for (int p = 0; p < PRODUCERS; p++) {
+                producers.submit(() -> {
+                    for (int b = 0; b < BATCHES_PER_PRODUCER; b++) {
+                        for (SymbolAggregator aggregator : aggregators) {
+                            aggregator.enqueueBatch(new double[]{1, 2, 3, 4});
+                            dispatcher.submit(aggregator);
+                        }
+                    }
+                });
+            }
+            producers.shutdown();
+            assertTrue(producers.awaitTermination(10, TimeUnit.SECONDS));
+
+            long expected = (long) PRODUCERS * BATCHES_PER_PRODUCER * 4;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            for (SymbolAggregator aggregator : aggregators) {
+                while (aggregator.getStats(3).getCount() < expected && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertEquals(expected, aggregator.getStats(3).getCount(), aggregator.getSymbol());
+                assertEquals(2.5, aggregator.getStats(3).getAvg(), 1e-9, aggregator.getSymbol());
+            }
+            assertFalse(concurrentAccess.get(), "a symbol was processed by two threads at once");
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Flags any overlap between two threads writing the same ring buffer.
+     */
+    private static final class OwnershipCheckingRingBuffer implements RingBuffer {
+        private final RingBuffer delegate;
+        private final AtomicInteger writers = new AtomicInteger();
+        private final AtomicBoolean concurrentAccess;
+
+        OwnershipCheckingRingBuffer(int capacity, AtomicBoolean concurrentAccess) {
+            this.delegate = new InHeapRingBuffer(capacity);
+            this.concurrentAccess = concurrentAccess;
+        }
+
+        @Override
+        public void set(long absoluteIndex, double value) {
+            if (writers.incrementAndGet() != 1) {
+                concurrentAccess.set(true);
+            }
+            delegate.set(absoluteIndex, value);
+            writers.decrementAndGet();
+        }
+
+        @Override
+        public double get(long absoluteIndex) {
+            return delegate.get(absoluteIndex);
+        }
+
+        @Override
+        public long capacity() {
+            return delegate.capacity();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.trading.journal;
+
+import com.trading.aggregator.AggregatorManager;
+import com.trading.aggregator.AggregatorOptions;
+import com.trading.aggregator.BatchPool;
+import com.trading.aggregator.BatchRejectedException;
+import com.trading.aggregator.CheckpointStore;
+import com.trading.aggregator.OverflowPolicy;
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.aggregator.SymbolOptions;
+import com.trading.buffer.InHeapRingBuffer;
+import com.trading.dispatcher.Dispatcher;
+import com.trading.dispatcher.GlobalDispatcher;
+import com.trading.dispatcher.WorkerMetrics;
+import com.trading.model.Batch;
+import com.trading.model.Stats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.DoubleBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReplayAfterReopenContinuesTheSequence() {
+        Journal journal = new Journal(directory, 1 << 16);
+        SymbolJournal aapl = journal.forSymbol("AAPL");
+        aapl.append(batch(1, 2, 3));
+        aapl.append(batch(4));
+        journal.close();
+
+        SymbolJournal reopened = new Journal(directory, 1 << 16).forSymbol("AAPL");
+        Batch next = batch(5, 6);
+        reopened.append(next);
+        assertEquals(3, next.getSequence());
+
+        List<String> records = replay(reopened, 0);
+        assertEquals(List.of("1:[1.0, 2.0, 3.0]", "2:[4.0]", "3:[5.0, 6.0]"), records);
+        assertEquals(List.of("3:[5.0, 6.0]"), replay(reopened, 2));
+    }
+
+    @Test
+    void testSegmentsRollAndAreTruncatedUpToAProcessedSequence() throws Exception {
+        // room for one 3-value record per segment
+        SymbolJournal journal = new Journal(directory, 64).forSymbol("MSFT");
+        for (int i = 1; i <= 5; i++) {
+            journal.append(batch(i, i, i));
+        }
+        assertEquals(5, segmentCount("MSFT"));
+
+        journal.truncate(3);
+        assertEquals(2, segmentCount("MSFT"));
+        assertEquals(List.of("4:[4.0, 4.0, 4.0]", "5:[5.0, 5.0, 5.0]"), replay(journal, 0));
+
+        // an oversized batch gets a segment of its own
+        journal.append(batch(new double[100]));
+        assertEquals(3, segmentCount("MSFT"));
+        assertEquals(3, replay(journal, 0).size());
+    }
+
+    @Test
+    void testRejectedBatchIsNotReplayed() {
+        SymbolJournal journal = new Journal(directory, 1 << 16).forSymbol("FULL");
+        SymbolAggregator aggregator = new SymbolAggregator("FULL", new InHeapRingBuffer(100),
+                new BatchPool(16, 8), SymbolOptions.builder().queueCapacity(2).journal(journal).build());
+        aggregator.enqueueBatch(new double[]{1});
+        aggregator.enqueueBatch(new double[]{2});
+        assertThrows(BatchRejectedException.class, () -> aggregator.enqueueBatch(new double[]{3}));
+        aggregator.run();
+        aggregator.enqueueBatch(new double[]{});
+        aggregator.run();
+        assertEquals(4, aggregator.lastProcessedSequence());
+
+        assertEquals(List.of("1:[1.0]", "2:[2.0]", "4:[]"), replay(journal, 0));
+    }
+
+    @Test
+    void testDroppedBatchIsNotReplayed() {
+        // small segments, so the dropped records are in a segment before the current one
+        SymbolJournal journal = new Journal(directory, 64).forSymbol("DROP");
+        SymbolAggregator aggregator = new SymbolAggregator("DROP", new InHeapRingBuffer(100),
+                new BatchPool(16, 8), SymbolOptions.builder()
+                        .queueCapacity(2)
+                        .overflowPolicy(OverflowPolicy.DROP_OLDEST)
+                        .journal(journal)
+                        .build());
+        for (int i = 1; i <= 4; i++) {
+            aggregator.enqueueBatch(new double[]{i});
+        }
+        assertEquals(2, aggregator.droppedBatches());
+        aggregator.run();
+        assertEquals(7, aggregator.getStats(1).getAvg() * aggregator.getStats(1).getCount());
+
+        assertEquals(List.of("3:[3.0]", "4:[4.0]"), replay(journal, 0));
+    }
+
+    @Test
+    void testUnprocessedBatchesAreRecoveredOnTopOfTheCheckpoint() {
+        CheckpointStore checkpoints = new CheckpointStore(directory.resolve("checkpoints"));
+        Path journalDirectory = directory.resolve("journal");
+
+        AggregatorManager running = manager(journalDirectory, new GlobalDispatcher(1_024));
+        running.getAndPushCalculations("AAPL", List.of(1.0, 2.0));
+        awaitCount(running.getOrCreate("AAPL"), 2);
+        running.checkpointAll(checkpoints);
+        running.shutdownAll();
+
+        // the next run crashes before its worker gets to the batches
+        AggregatorManager crashing = manager(journalDirectory, new StalledDispatcher());
+        crashing.restoreCheckpoints(checkpoints);
+        assertEquals(0, crashing.recoverFromJournal());
+        crashing.getAndPushCalculations("AAPL", List.of(3.0));
+        crashing.getAndPushCalculations("AAPL", List.of(4.0, 5.0));
+
+        AggregatorManager restarted = manager(journalDirectory, new StalledDispatcher());
+        assertEquals(1, restarted.restoreCheckpoints(checkpoints));
+        assertEquals(2, restarted.recoverFromJournal());
+        Stats stats = restarted.getOrCreate("AAPL").getStats(1);
+        assertEquals(5, stats.getCount());
+        assertEquals(3.0, stats.getAvg(), 1e-9);
+        assertEquals(5.0, stats.getLast());
+    }
+
+    private static AggregatorManager manager(Path journalDirectory, Dispatcher dispatcher) {
+        return new AggregatorManager(symbol -> new InHeapRingBuffer(1_000), new BatchPool(64, 64), dispatcher,
+                AggregatorOptions.builder().journal(new Journal(journalDirectory, 1 << 16)).build());
+    }
+
+    private static void awaitCount(SymbolAggregator aggregator, long count) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (aggregator.getStats(1).getCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(count, aggregator.getStats(1).getCount());
+    }
+
+    private long segmentCount(String symbol) throws Exception {
+        try (Stream<Path> files = Files.list(directory.resolve(symbol))) {
+            return files.count();
+        }
+    }
+
+    private static List<String> replay(SymbolJournal journal, long afterSequence) {
+        List<String> records = new ArrayList<>();
+        journal.replay(afterSequence, (sequence, values) -> {
+            List<Double> copy = new ArrayList<>();
+            while (values.hasRemaining()) {
+                copy.add(values.get());
+            }
+            records.add(sequence + ":" + copy);
+        });
+        return records;
+    }
+
+    private static Batch batch(double... values) {
+        Batch batch = new Batch(Math.max(1, values.length));
+        batch.addAll(DoubleBuffer.wrap(values));
+        return batch;
+    }
+
+    /**
+     * Accepts submissions but never runs them, like a process that dies first.
+     */
+    private static final class StalledDispatcher implements Dispatcher {
+        @Override
+        public void submit(SymbolAggregator aggregator) {
+        }
+
+        @Override
+        public int queueDepth() {
+            return 0;
+        }
+
+        @Override
+        public WorkerMetrics workerMetrics() {
+            return null;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.trading.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBucketsAreContiguous() {
+        for (int i = 0; i < LatencyHistogram.BUCKETS - 1; i++) {
+            long lower = LatencyHistogram.lowerBound(i);
+            long upper = LatencyHistogram.lowerBound(i + 1);
+            assertTrue(upper > lower);
+            assertEquals(i, LatencyHistogram.bucketOf(lower));
+            assertEquals(i, LatencyHistogram.bucketOf(upper - 1));
+        }
+    }
+
+    @Test
+    void testQuantilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1_000);
+        }
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(buckets);
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(50_000_000L, LatencyHistogram.valueAtQuantile(buckets, 0.5), 50_000_000L * 0.125);
+        assertEquals(99_000_000L, LatencyHistogram.valueAtQuantile(buckets, 0.99), 99_000_000L * 0.125);
+    }
+
+    @Test
+    void testOutOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        long[] buckets = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(buckets);
+
+        assertEquals(1, buckets[0]);
+        assertEquals(1, buckets[LatencyHistogram.BUCKETS - 1]);
+        assertEquals(0, LatencyHistogram.valueAtQuantile(new long[LatencyHistogram.BUCKETS], 0.99));
+    }
+}
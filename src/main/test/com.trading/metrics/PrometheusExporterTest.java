@@ -0,0 +1,46 @@
+package com.trading.metrics;
+
+import com.trading.aggregator.AggregatorManager;
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrometheusExporterTest {
+
+    private AggregatorManager manager;
+
+    @BeforeEach
+    void setUp() {
+        manager = new AggregatorManager(() -> new InHeapRingBuffer(1_000), 1_024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdownAll();
+    }
+
+    @Test
+    void testScrapeReportsProcessedBatches() throws InterruptedException {
+        manager.getAndPushCalculations("AAPL", List.of(1.0, 2.0, 3.0));
+        manager.getAndPushCalculations("say \"hi\"", List.of(4.0));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (manager.find("AAPL").ingestLatency().count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        String scrape = new PrometheusExporter(manager).scrape();
+        assertTrue(scrape.contains("# TYPE trading_ingest_to_snapshot_seconds summary"), scrape);
+        assertTrue(scrape.contains("trading_values_total{symbol=\"AAPL\"} 3\n"), scrape);
+        assertTrue(scrape.contains("trading_batch_queue_depth{symbol=\"say \\\"hi\\\"\"}"), scrape);
+        assertTrue(scrape.contains("trading_worker_busy_seconds_total{worker=\"0\"}"), scrape);
+        assertTrue(scrape.contains("trading_ring_buffer_off_heap_bytes{symbol=\"AAPL\"} 0\n"), scrape);
+        assertFalse(scrape.contains("trading_ingest_to_snapshot_seconds_count 0\n"), scrape);
+    }
+}
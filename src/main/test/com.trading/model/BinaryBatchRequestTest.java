@@ -0,0 +1,106 @@
+package com.trading.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryBatchRequestTest {
+
+    @Test
+    void testRoundTrip() {
+        double[] values = {120.5, 121.0, 119.8, 122.3};
+        BinaryBatchRequest request = BinaryBatchRequest.decode(BinaryBatchRequest.encode("AAPL", values));
+
+        assertEquals("AAPL", request.getSymbol());
+        double[] decoded = new double[request.size()];
+        request.getValues().get(decoded);
+        assertArrayEquals(values, decoded);
+    }
+
+    @Test
+    void testLittleEndianFraming() {
+        byte[] body = BinaryBatchRequest.encode("X", new double[]{1.0});
+
+        assertEquals(2 + 1 + 8, body.length);
+        assertEquals(1, body[0]);
+        assertEquals(0, body[1]);
+        assertEquals('X', body[2]);
+        // 1.0 = 0x3FF0000000000000, most significant byte last
+        assertEquals((byte) 0x3F, body[10]);
+    }
+
+    @Test
+    void testRejectsMalformedBodies() {
+        byte[] valid = BinaryBatchRequest.encode("AAPL", new double[]{1.0, 2.0});
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decode(new byte[1]));
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decode(Arrays.copyOf(valid, valid.length - 3)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decode(new byte[]{9, 0, 'A'}));
+    }
+
+    @Test
+    void testSymbolIdFraming() {
+        double[] values = {1.0, 2.0};
+        byte[] body = BinaryBatchRequest.encode(7, values);
+        assertEquals(2 + 4 + 16, body.length);
+
+        BinaryBatchRequest request = BinaryBatchRequest.decode(body);
+        assertTrue(request.hasSymbolId());
+        assertEquals(7, request.getSymbolId());
+        assertNull(request.getSymbol());
+        double[] decoded = new double[request.size()];
+        request.getValues().get(decoded);
+        assertArrayEquals(values, decoded);
+
+        assertFalse(BinaryBatchRequest.decode(BinaryBatchRequest.encode("AAPL", values)).hasSymbolId());
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decode(new byte[]{0, 0, 1}));
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decode(new byte[]{0, 0, -1, -1, -1, -1}));
+    }
+
+    @Test
+    void testMultiSymbolFraming() {
+        byte[] body = BinaryBatchRequest.encodeAll(List.of("AAPL", "MSFT", "AAPL"),
+                List.of(new double[]{1, 2}, new double[]{7}, new double[]{3}));
+        ByteBuffer withId = ByteBuffer.allocate(2 + 4 + 4 + 8).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) 0).putInt(5).putInt(1).putDouble(4);
+        byte[] combined = Arrays.copyOf(body, body.length + withId.capacity());
+        System.arraycopy(withId.array(), 0, combined, body.length, withId.capacity());
+
+        List<BinaryBatchRequest> requests = BinaryBatchRequest.decodeAll(combined);
+        assertEquals(4, requests.size());
+        assertEquals("AAPL", requests.get(0).getSymbol());
+        assertArrayEquals(new double[]{1, 2}, values(requests.get(0)));
+        assertEquals("MSFT", requests.get(1).getSymbol());
+        assertArrayEquals(new double[]{7}, values(requests.get(1)));
+        assertArrayEquals(new double[]{3}, values(requests.get(2)));
+        assertEquals(5, requests.get(3).getSymbolId());
+        assertArrayEquals(new double[]{4}, values(requests.get(3)));
+
+        assertTrue(BinaryBatchRequest.decodeAll(new byte[0]).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryBatchRequest.decodeAll(Arrays.copyOf(body, body.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryBatchRequest.decodeAll(Arrays.copyOf(body, 7)));
+    }
+
+    @Test
+    void testFrameWithoutPricesIsRejected() {
+        byte[] body = BinaryBatchRequest.encodeAll(List.of("AAPL", "MSFT"),
+                List.of(new double[]{1}, new double[]{}));
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decodeAll(body));
+        byte[] withId = ByteBuffer.allocate(2 + 4 + 4).order(ByteOrder.LITTLE_ENDIAN)
+                .putShort((short) 0).putInt(5).putInt(0).array();
+        assertThrows(IllegalArgumentException.class, () -> BinaryBatchRequest.decodeAll(withId));
+    }
+
+    private static double[] values(BinaryBatchRequest request) {
+        double[] values = new double[request.size()];
+        request.getValues().get(values);
+        return values;
+    }
+}
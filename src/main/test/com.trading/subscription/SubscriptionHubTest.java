@@ -0,0 +1,119 @@
+package com.trading.subscription;
+
+import com.trading.aggregator.SymbolAggregator;
+import com.trading.buffer.InHeapRingBuffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriptionHubTest {
+
+    private final SubscriptionHub hub = new SubscriptionHub();
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void testSubscriberGetsCurrentSnapshotsThenEveryPublication() {
+        SymbolAggregator aapl = aggregator("AAPL");
+        SymbolAggregator msft = aggregator("MSFT");
+        push(aapl, 1, 2);
+        RecordingSink sink = new RecordingSink();
+        hub.subscribe(List.of(aapl, msft), sink);
+
+        await(() -> sink.sent.size() == 2);
+        assertTrue(sink.sent.containsAll(List.of("AAPL@2", "MSFT@0")));
+
+        push(msft, 3);
+        await(() -> sink.sent.size() == 3);
+        assertEquals("MSFT@1", sink.sent.get(2));
+    }
+
+    @Test
+    void testSlowSubscriberIsConflatedToTheLatestSnapshot() {
+        SymbolAggregator aapl = aggregator("AAPL");
+        RecordingSink sink = new RecordingSink();
+        CompletableFuture<Void> firstSend = new CompletableFuture<>();
+        sink.pending = firstSend;
+        hub.subscribe(List.of(aapl), sink);
+        await(() -> sink.sent.size() == 1);
+
+        // the worker keeps publishing while the first update is still being written
+        for (int i = 0; i < 50; i++) {
+            push(aapl, i);
+        }
+        assertEquals(1, sink.sent.size());
+
+        firstSend.complete(null);
+        await(() -> sink.sent.size() == 2);
+        assertEquals("AAPL@50", sink.sent.get(1));
+
+        push(aapl, 50);
+        await(() -> sink.sent.size() == 3);
+        assertEquals("AAPL@51", sink.sent.get(2));
+    }
+
+    @Test
+    void testFailedSinkIsUnsubscribed() {
+        SymbolAggregator aapl = aggregator("AAPL");
+        RecordingSink sink = new RecordingSink();
+        sink.pending = CompletableFuture.failedFuture(new IllegalStateException("client gone"));
+        Subscription subscription = hub.subscribe(List.of(aapl), sink);
+
+        await(subscription::isClosed);
+        assertTrue(sink.closed);
+        sink.pending = null;
+        push(aapl, 1);
+        assertEquals(1, sink.sent.size());
+    }
+
+    private static SymbolAggregator aggregator(String symbol) {
+        return new SymbolAggregator(symbol, new InHeapRingBuffer(1_000));
+    }
+
+    private static void push(SymbolAggregator aggregator, double... values) {
+        aggregator.enqueueBatch(values);
+        aggregator.run();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.onSpinWait();
+        }
+    }
+
+    private static final class RecordingSink implements UpdateSink {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        volatile CompletableFuture<Void> pending;
+        volatile boolean closed;
+
+        @Override
+        public CompletionStage<?> send(SymbolAggregator aggregator) {
+            sent.add(aggregator.getSymbol() + "@" + aggregator.getStats(8).getCount());
+            CompletableFuture<Void> result = pending;
+            pending = null;
+            return result != null ? result : CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}